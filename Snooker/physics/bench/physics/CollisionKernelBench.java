@@ -0,0 +1,163 @@
+package physics;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the projection collision response in {@link PhysicsWorld}
+ * and its {@link ContactSolver} against the rotate into a local frame
+ * kernel it replaced. <p>
+ * Every invocation places a pair of overlapping balls at one of a
+ * set of random contact angles and resolves it once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionKernelBench {
+    /** Number of different contacts to cycle through */
+    private static final int CASES = 64;
+    /** Starting positions and velocities of ball b, ball a is at rest at the origin */
+    private double[] bx, bz, bvx, bvz;
+    /** The world the projection kernel runs in */
+    private PhysicsWorld world;
+    /** The world's ball store, also used by the old kernel */
+    private BallStore store;
+    /** The next case to run */
+    private int next;
+
+    /**
+     * Creates the contacts, each overlapping by a millimetre and closing
+     */
+    @Setup
+    public void setup () {
+        Random r = new Random(1);
+        this.bx = new double[CASES];
+        this.bz = new double[CASES];
+        this.bvx = new double[CASES];
+        this.bvz = new double[CASES];
+        for (int k=0; k<CASES; k++) {
+            double angle = r.nextDouble() * 2*Math.PI;
+            double dist = 2*Ball.radius - 0.001;
+            this.bx[k] = Math.cos(angle) * dist;
+            this.bz[k] = Math.sin(angle) * dist;
+            this.bvx[k] = -Math.cos(angle + r.nextGaussian()*0.3) * 2;
+            this.bvz[k] = -Math.sin(angle + r.nextGaussian()*0.3) * 2;
+        }
+        this.world = new PhysicsWorld(2);
+        this.world.setBall(0, 0, 0, 0);
+        this.world.setBall(1, 1, 0, 0);
+        this.store = this.world.getStore();
+    }
+
+    /**
+     * Places the next pair of balls
+     */
+    private void place () {
+        int k = this.next;
+        this.next = (k + 1) & (CASES - 1);
+        BallStore s = this.store;
+        s.setX(0, 0); s.setZ(0, 0); s.setVx(0, 0); s.setVz(0, 0);
+        s.setX(1, this.bx[k]); s.setZ(1, this.bz[k]);
+        s.setVx(1, this.bvx[k]); s.setVz(1, this.bvz[k]);
+        s.setFlags(0, 0);
+        s.setFlags(1, BallStore.IN_MOTION);
+    }
+
+    @Benchmark
+    public double projection () {
+        place();
+        this.world.checkCollision(0, 1);
+        this.world.getSolver().solve();
+        return this.store.vx(0) + this.store.vz(1);
+    }
+
+    @Benchmark
+    public double rotation () {
+        place();
+        rotationKernel(this.store, 0, 1);
+        return this.store.vx(0) + this.store.vz(1);
+    }
+
+    /**
+     * The kernel {@link PhysicsWorld} used before, kept for comparison.
+     * Includes its velocity bug on the second ball.
+     * @param s The ball store
+     * @param a Index of one ball
+     * @param b Index of the other ball
+     */
+    private static void rotationKernel (BallStore s, int a, int b) {
+        if (s.is(a, BallStore.IN_MOTION) || s.is(b, BallStore.IN_MOTION)) {
+            double difx = s.x(b) - s.x(a) ;
+            double difz = s.z(b) - s.z(a) ;
+            if (difx*difx+difz*difz <= Ball.radius2*4) {
+                double angle = Math.atan2(difz,difx);
+                double sin = Math.sin(angle), cos = Math.cos(angle);
+
+                double x1 = 0, z1 = 0;
+                double x2 = difx*cos+difz*sin;
+                double z2 = difz*cos-difx*sin;
+
+                double vx1 = s.vx(a)*cos+s.vz(a)*sin;
+                double vz1 = s.vz(a)*cos-s.vx(a)*sin;
+                double vx2 = s.vx(b)*cos+s.vz(b)*sin;
+                double vz2 = s.vz(b)*cos-s.vz(b)*sin;
+
+                double vx1final = vx2 ;
+                double vx2final = vx1 ;
+                vx1 = vx1final;
+                vx2 = vx2final;
+
+                double absV = Math.abs(vx1)+Math.abs(vx2);
+                double overlap = (Ball.radius*2)-Math.abs(x1-x2);
+                x1 += vx1/absV*overlap;
+                x2 += vx2/absV*overlap;
+
+                double x1final = x1*cos-z1*sin;
+                double z1final = z1*cos+x1*sin;
+                double x2final = x2*cos-z2*sin;
+                double z2final = z2*cos+x2*sin;
+
+                s.setX(a, s.x(a) + x1final);
+                s.setZ(a, s.z(a) + z1final);
+                s.setX(b, s.x(b) + x2final);
+                s.setZ(b, s.z(b) + z2final);
+                setVel(s, a, vx1*cos-vz1*sin, vz1*cos+vx1*sin);
+                setVel(s, b, vx2*cos-vz2*sin, vz2*cos+vx2*sin);
+            }
+        }
+    }
+
+    /**
+     * Sets a velocity the way the old kernel did
+     * @param s The ball store
+     * @param i Index of the ball
+     * @param x The new x velocity
+     * @param z The new z velocity
+     */
+    private static void setVel (BallStore s, int i, double x, double z) {
+        if (x*x+z*z < Ball.spdLimit2) {
+            s.setVx(i, 0);
+            s.setVz(i, 0);
+            s.set(i, BallStore.IN_MOTION, false);
+        } else {
+            s.setVx(i, x);
+            s.setVz(i, z);
+            s.set(i, BallStore.IN_MOTION, true);
+        }
+    }
+
+}
@@ -0,0 +1,551 @@
+package physics;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Works out where the cue ball and the first ball it hits will go, while the player aims. <p>
+ * Angles are rounded into buckets, {@link #defaultBuckets} to a full turn,
+ * and each bucket is played out at each of the {@link #powerLevels} powers on
+ * headless worlds. Nothing is worked out until {@link #aim(double, int)} moves
+ * into a new bucket, which queues the bucket aimed at and the buckets either side
+ * of it, so turning a little or picking another power finds the answer already
+ * waiting. The newest work is done first, and work for buckets the aim has since
+ * moved well away from is dropped without being played.
+ * <p>
+ * Everything is played on the preview's own threads, and {@link #get(double, int)}
+ * never waits, so it can be asked every frame. Shots are played with fixed steps
+ * of {@link #setStepLength(double)}, so as long as that is the game world's step
+ * length and the game isn't event driven, a shot struck at {@link #snap(double)}
+ * of the angle takes the same path as predicted. It isn't bit for bit the same,
+ * as stretches where nothing can collide are coasted in whatever time each
+ * {@link PhysicsWorld#advance(double)} covers, so the frame rate moves where
+ * the balls stop by a fraction of a millimetre.
+ * <p>
+ * The table, its predictions, and the bucket last aimed at are swapped out
+ * together as one immutable holder, so a reader never sees one table's
+ * predictions with another table.
+ */
+public class AimPreview {
+    /** Number of powers previewed, level n strikes at n metres per second */
+    public static final int powerLevels = 9;
+    /** Number of buckets in a full turn, making each about a tenth of a degree */
+    public static final int defaultBuckets = 3600;
+    /** Number of buckets either side of the aim that are worked out ahead of time */
+    public static final int defaultSpread = 6;
+    /** Simulated seconds between the points of a path */
+    public static final double sampleTime = 1 / 30.0;
+    /** Most points kept in a path, the last is always where the ball stopped */
+    public static final int maxPoints = 256;
+    /** Furthest a point may be off the line through its neighbours and still be dropped, in metres */
+    private static final double straightness = 1e-4;
+    /** Marks work that has been queued but not finished */
+    private static final Prediction pending = new Prediction(null, -1, -1, null, 0, null, 0);
+    /** Holds no table, before the first {@link #setTable(TableState)} and after {@link #clear()} */
+    private static final Snapshot empty = new Snapshot(null, PhysicsWorld.fixedStep);
+
+    /**
+     * Where one shot sends the cue ball and the first ball it hits. <p>
+     * Paths are x, z pairs in table coordinates, from where the ball started
+     * to where it stopped or was potted. Straight runs are a single line.
+     */
+    public static final class Prediction {
+        /** What happened */
+        private final ShotResult result;
+        /** Angle bucket and power level */
+        private final int bucket, level;
+        /** Path of the cue ball */
+        private final float[] cuePath;
+        /** Number of points in the cue ball's path */
+        private final int cuePoints;
+        /** Path of the first ball hit, or null */
+        private final float[] objectPath;
+        /** Number of points in the first ball's path */
+        private final int objectPoints;
+
+        /**
+         * Creates a prediction
+         * @param result What happened
+         * @param bucket Angle bucket
+         * @param level Power level
+         * @param cuePath Path of the cue ball
+         * @param cuePoints Number of points in it
+         * @param objectPath Path of the first ball hit, or null
+         * @param objectPoints Number of points in it
+         */
+        Prediction (ShotResult result, int bucket, int level, float[] cuePath, int cuePoints, float[] objectPath, int objectPoints) {
+            this.result = result;
+            this.bucket = bucket;
+            this.level = level;
+            this.cuePath = cuePath;
+            this.cuePoints = cuePoints;
+            this.objectPath = objectPath;
+            this.objectPoints = objectPoints;
+        }
+
+        /**
+         * Returns what the shot does, where every ball stops and which are potted
+         * @return The result
+         */
+        public ShotResult getResult () {
+            return this.result;
+        }
+
+        /**
+         * Returns the angle bucket the shot was played at
+         * @return Index of the bucket
+         */
+        public int getBucket () {
+            return this.bucket;
+        }
+
+        /**
+         * Returns the power level the shot was played at
+         * @return 1 to {@link AimPreview#powerLevels}
+         */
+        public int getLevel () {
+            return this.level;
+        }
+
+        /**
+         * Returns the number of points in the cue ball's path
+         * @return At least one
+         */
+        public int getCuePoints () {
+            return this.cuePoints;
+        }
+
+        /**
+         * Returns the x coord of a point of the cue ball's path
+         * @param k Index of the point
+         * @return x coord
+         */
+        public float getCueX (int k) {
+            return this.cuePath[2*k];
+        }
+
+        /**
+         * Returns the z coord of a point of the cue ball's path
+         * @param k Index of the point
+         * @return z coord
+         */
+        public float getCueZ (int k) {
+            return this.cuePath[2*k+1];
+        }
+
+        /**
+         * Returns the first ball the cue ball hits
+         * @return Index of the ball, or -1 if it hits nothing
+         */
+        public int getObjectBall () {
+            return this.result.getFirstHit();
+        }
+
+        /**
+         * Returns the number of points in the first ball's path
+         * @return The count, 0 if nothing is hit
+         */
+        public int getObjectPoints () {
+            return this.objectPoints;
+        }
+
+        /**
+         * Returns the x coord of a point of the first ball's path
+         * @param k Index of the point
+         * @return x coord
+         */
+        public float getObjectX (int k) {
+            return this.objectPath[2*k];
+        }
+
+        /**
+         * Returns the z coord of a point of the first ball's path
+         * @param k Index of the point
+         * @return z coord
+         */
+        public float getObjectZ (int k) {
+            return this.objectPath[2*k+1];
+        }
+    }
+
+    /**
+     * A table being previewed along with everything worked out for it. <br>
+     * Replaced whole whenever the table or the step length changes.
+     */
+    private static final class Snapshot {
+        /** The table, or null */
+        final TableState table;
+        /** Step length the shots are played at, in seconds */
+        final double stepLength;
+        /** Predictions for the table, by {@link AimPreview#key(int, int)} */
+        final ConcurrentHashMap<Integer, Prediction> results = new ConcurrentHashMap<>();
+        /** The bucket last aimed at, or -1 */
+        final AtomicInteger aimed = new AtomicInteger(-1);
+
+        /**
+         * Creates a snapshot with nothing worked out
+         * @param table The table, or null
+         * @param stepLength Step length the shots are played at
+         */
+        Snapshot (TableState table, double stepLength) {
+            this.table = table;
+            this.stepLength = stepLength;
+        }
+    }
+
+    /**
+     * Plays shots and records the paths, one per worker thread
+     */
+    private static final class Recorder {
+        /** Plays the shots */
+        private final ShotSimulator sim;
+        /** Paths being recorded, x, z pairs */
+        private final float[] cue = new float[2*maxPoints], object = new float[2*maxPoints];
+        /** Number of points recorded in each path */
+        private int cueCount, objectCount;
+        /** The table the shot started from */
+        private TableState start;
+
+        /**
+         * Creates a recorder
+         * @param count Number of ball slots
+         */
+        Recorder (int count) {
+            this.sim = new ShotSimulator(count);
+        }
+
+        /**
+         * Plays a shot, recording the paths
+         * @param start The table to play from
+         * @param stepLength Step length to play at
+         * @param bucket Angle bucket
+         * @param level Power level
+         * @param angle Angle to strike at
+         * @return The prediction
+         */
+        Prediction play (TableState start, double stepLength, int bucket, int level, double angle) {
+            this.start = start;
+            this.sim.getWorld().setStepLength(stepLength);
+            this.cueCount = 0;
+            this.objectCount = 0;
+            ShotResult r = this.sim.trace(start, angle, level, sampleTime, this::sample);
+            float[] obj = (this.objectCount > 0) ? Arrays.copyOf(this.object, 2*this.objectCount) : null;
+            return new Prediction(r, bucket, level, Arrays.copyOf(this.cue, 2*this.cueCount), this.cueCount, obj, this.objectCount);
+        }
+
+        /**
+         * Records where the cue ball and the first ball hit are
+         * @param w The world being played
+         */
+        private void sample (PhysicsWorld w) {
+            if (!w.isPotted(PhysicsWorld.CUE) || this.cueCount == 0)
+                this.cueCount = add(this.cue, this.cueCount, w.getPosX(PhysicsWorld.CUE), w.getPosZ(PhysicsWorld.CUE));
+            int hit = this.sim.getFirstHit();
+            if (hit < 0) return;
+            if (this.objectCount == 0)
+                this.objectCount = add(this.object, 0, this.start.getPosX(hit), this.start.getPosZ(hit));
+            if (!w.isPotted(hit))
+                this.objectCount = add(this.object, this.objectCount, w.getPosX(hit), w.getPosZ(hit));
+        }
+
+        /**
+         * Adds a point to a path, replacing the last point if it is in line
+         * with the one before and the new one, or if the path is full
+         * @param path The path
+         * @param n Number of points in it
+         * @param x x coord
+         * @param z z coord
+         * @return The new number of points
+         */
+        private static int add (float[] path, int n, double x, double z) {
+            if (n > 0 && path[2*n-2] == (float) x && path[2*n-1] == (float) z) return n;
+            if (n >= 2) {
+                double ax = path[2*n-4], az = path[2*n-3];
+                double bx = path[2*n-2] - ax, bz = path[2*n-1] - az;
+                double cx = x - ax, cz = z - az;
+                double len = Math.sqrt(cx*cx + cz*cz);
+                // Still heading the same way, so the last point isn't needed
+                if (bx*cx + bz*cz > 0 && Math.abs(bx*cz - bz*cx) <= straightness * len) n--;
+            }
+            if (n == maxPoints) n--;
+            path[2*n] = (float) x;
+            path[2*n+1] = (float) z;
+            return n + 1;
+        }
+    }
+
+    /** Number of ball slots of every table previewed */
+    private final int count;
+    /** Number of angle buckets in a full turn */
+    private final int buckets;
+    /** Number of buckets either side of the aim worked out ahead */
+    private final int spread;
+    /** Runs the work, newest first */
+    private final ThreadPoolExecutor workers;
+    /** The recorder of each worker thread */
+    private final ThreadLocal<Recorder> recorders;
+    /** The table being previewed and its predictions */
+    private volatile Snapshot current = empty;
+    /** Number of shots played */
+    private final AtomicLong played = new AtomicLong();
+    /** Number of queued shots dropped because the aim moved away */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a preview for a standard table, with half as many threads as there are cores
+     */
+    public AimPreview () {
+        this(PhysicsWorld.standardCount, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), defaultBuckets, defaultSpread);
+    }
+
+    /**
+     * Creates a preview
+     * @param count The number of ball slots, at most 64
+     * @param threads Number of worker threads, at least one
+     * @param buckets Number of angle buckets in a full turn, at least one
+     * @param spread Number of buckets either side of the aim worked out ahead, at least zero
+     */
+    public AimPreview (int count, int threads, int buckets, int spread) {
+        if (count < 1 || count > 64) throw new IllegalArgumentException("Ball count must be between 1 and 64: "+count);
+        if (threads < 1) throw new IllegalArgumentException("Need at least one thread: "+threads);
+        if (buckets < 1) throw new IllegalArgumentException("Need at least one bucket: "+buckets);
+        if (spread < 0) throw new IllegalArgumentException("Spread can't be negative: "+spread);
+        this.count = count;
+        this.buckets = buckets;
+        this.spread = spread;
+        this.recorders = ThreadLocal.withInitial(() -> new Recorder(count));
+        AtomicInteger made = new AtomicInteger();
+        // Taking from the front of the queue runs the newest work first
+        LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<Runnable>() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public boolean offer (Runnable r) {
+                return offerFirst(r);
+            }
+        };
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, queue, r -> {
+            Thread t = new Thread(r, "AimPreview-"+made.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+        // Otherwise the first shots queued skip the queue to start the threads
+        this.workers.prestartAllCoreThreads();
+    }
+
+    /**
+     * Stops the worker threads, shots already being played are left to finish
+     */
+    public void shutdown () {
+        this.workers.shutdown();
+    }
+
+    /**
+     * Sets the table to preview shots from, throwing away every prediction for the last one
+     * @param state The table, at rest, copied so it can be reused straight away
+     */
+    public synchronized void setTable (TableState state) {
+        if (state.getBallCount() != this.count)
+            throw new IllegalArgumentException("Preview is for "+this.count+" balls, not "+state.getBallCount());
+        TableState copy = new TableState(this.count);
+        copy.copyFrom(state);
+        this.current = new Snapshot(copy, this.current.stepLength);
+    }
+
+    /**
+     * Forgets the table, until the next {@link #setTable(TableState)}
+     */
+    public synchronized void clear () {
+        this.current = new Snapshot(null, this.current.stepLength);
+    }
+
+    /**
+     * Sets the length of the fixed steps shots are played with,
+     * throwing away every prediction if it changed. <br>
+     * Set it to the step length of the world the shots will really be played
+     * in, or the predictions drift from what happens. {@link PhysicsWorld#fixedStep} by default.
+     * @param stepLength The step length in seconds, more than zero
+     */
+    public synchronized void setStepLength (double stepLength) {
+        if (!(stepLength > 0)) throw new IllegalArgumentException("Step length must be positive: "+stepLength);
+        Snapshot s = this.current;
+        if (stepLength != s.stepLength) this.current = new Snapshot(s.table, stepLength);
+    }
+
+    /**
+     * Returns the length of the fixed steps shots are played with
+     * @return The step length in seconds
+     */
+    public double getStepLength () {
+        return this.current.stepLength;
+    }
+
+    /**
+     * Returns the angle bucket an angle falls in
+     * @param angle The angle, in radians
+     * @return Index of the bucket
+     */
+    public int bucket (double angle) {
+        long b = Math.round(angle / (2*Math.PI) * this.buckets);
+        return (int) Math.floorMod(b, (long) this.buckets);
+    }
+
+    /**
+     * Rounds an angle to the middle of its bucket, the angle it is previewed at
+     * @param angle The angle, in radians
+     * @return The angle previewed, in radians
+     */
+    public double snap (double angle) {
+        return angleOf(bucket(angle));
+    }
+
+    /**
+     * Returns the middle of a bucket
+     * @param bucket Index of the bucket
+     * @return The angle, in radians
+     */
+    private double angleOf (int bucket) {
+        // Rounded to a float, so a strike given it as one plays the same shot
+        return (float) (bucket * (2*Math.PI) / this.buckets);
+    }
+
+    /**
+     * Returns the key a prediction is stored under
+     * @param bucket Angle bucket
+     * @param level Power level
+     * @return The key
+     */
+    private static Integer key (int bucket, int level) {
+        return bucket * (powerLevels + 1) + level;
+    }
+
+    /**
+     * Returns how many buckets apart two buckets are, the short way round
+     * @param a A bucket
+     * @param b Another bucket
+     * @return The distance
+     */
+    private int distance (int a, int b) {
+        int d = Math.abs(a - b);
+        return Math.min(d, this.buckets - d);
+    }
+
+    /**
+     * Points the preview at an angle. <br>
+     * Does nothing unless the angle is in a new bucket, otherwise has a worker
+     * queue every power of the new bucket and of the buckets either side that
+     * haven't been worked out, the given power of the bucket aimed at first.
+     * Either way it only takes a few microseconds.
+     * @param angle The angle being aimed at, in radians
+     * @param level The power level most wanted, 1 to {@link #powerLevels}
+     * @return True if the aim moved into a new bucket
+     */
+    public boolean aim (double angle, int level) {
+        checkLevel(level);
+        int b = bucket(angle);
+        Snapshot s = this.current;
+        if (s.table == null || s.aimed.getAndSet(b) == b) return false;
+        this.workers.execute(() -> queueAround(s, b, level));
+        return true;
+    }
+
+    /**
+     * Queues the shots around a bucket, unless the aim has moved on already
+     * @param s The table to play from and where to store the predictions
+     * @param b The bucket aimed at
+     * @param level The power level most wanted
+     */
+    private void queueAround (Snapshot s, int b, int level) {
+        if (s != this.current || b != s.aimed.get()) return;
+        // Newest runs first, so queue the furthest first and the bucket aimed at last
+        for (int d=this.spread; d>=0; d--) {
+            for (int l=powerLevels; l>=1; l--) {
+                if (l == level) continue;
+                queue(s, Math.floorMod(b + d, this.buckets), l);
+                if (d > 0) queue(s, Math.floorMod(b - d, this.buckets), l);
+            }
+            queue(s, Math.floorMod(b + d, this.buckets), level);
+            if (d > 0) queue(s, Math.floorMod(b - d, this.buckets), level);
+        }
+    }
+
+    /**
+     * Queues a shot, unless it has been worked out or queued already
+     * @param s The table to play from and where to store the prediction
+     * @param bucket Angle bucket
+     * @param level Power level
+     */
+    private void queue (Snapshot s, int bucket, int level) {
+        Integer k = key(bucket, level);
+        if (s.results.putIfAbsent(k, pending) != null) return;
+        this.workers.execute(() -> {
+            // Dropped if the aim has moved on, or the table has changed
+            if (s != this.current || distance(bucket, s.aimed.get()) > this.spread) {
+                s.results.remove(k, pending);
+                this.dropped.incrementAndGet();
+                return;
+            }
+            boolean stored = false;
+            try {
+                Prediction p = this.recorders.get().play(s.table, s.stepLength, bucket, level, angleOf(bucket));
+                this.played.incrementAndGet();
+                s.results.put(k, p);
+                stored = true;
+            } finally {
+                // A shot that failed to play can be queued again
+                if (!stored) s.results.remove(k, pending);
+            }
+        });
+    }
+
+    /**
+     * Returns the prediction for a shot, if it has been worked out. Never waits
+     * @param angle The angle, in radians, rounded to its bucket
+     * @param level The power level, 1 to {@link #powerLevels}
+     * @return The prediction, or null if it isn't ready or there is no table
+     */
+    public Prediction get (double angle, int level) {
+        checkLevel(level);
+        Prediction p = this.current.results.get(key(bucket(angle), level));
+        return (p == pending) ? null : p;
+    }
+
+    /**
+     * Complains if a power level is out of range
+     * @param level The power level
+     */
+    private static void checkLevel (int level) {
+        if (level < 1 || level > powerLevels)
+            throw new IllegalArgumentException("Power level must be between 1 and "+powerLevels+": "+level);
+    }
+
+    /**
+     * Returns whether there is a table to preview
+     * @return True after {@link #setTable(TableState)}, until {@link #clear()}
+     */
+    public boolean hasTable () {
+        return this.current.table != null;
+    }
+
+    /**
+     * Returns the number of shots played so far
+     * @return The running total
+     */
+    public long getPlayedCount () {
+        return this.played.get();
+    }
+
+    /**
+     * Returns the number of queued shots dropped so far because the aim moved away
+     * @return The running total
+     */
+    public long getDroppedCount () {
+        return this.dropped.get();
+    }
+
+}
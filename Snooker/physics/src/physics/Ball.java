@@ -0,0 +1,101 @@
+package physics;
+
+/**
+ * Physical constants shared by every pool ball,
+ * and the closed form of how a rolling ball slows down. <p>
+ * Everything is in SI units, metres and seconds. A ball travels in a
+ * straight line and its speed {@code s} falls as {@code ds/dt = -dragK*s - dragA},
+ * so its speed, distance travelled and stop time are all exact formulas
+ * no matter what time step they are evaluated with.
+ */
+public class Ball {
+
+    /** Private constructor, as the class is static */
+    private Ball() {}
+
+    /** The radius of each pool ball */
+    public static final double radius = 0.02625;
+    /** Equal to {@link #radius} squared */
+    public static final double radius2 = radius * radius;
+    /** The mass of a standard pool ball, in kilograms */
+    public static final double mass = 0.142;
+    /** Default coefficient of restitution between two balls, 1 is perfectly elastic */
+    public static final double restitution = 1.0;
+    /** The length of a frame the drag was first tuned at, 16ms */
+    public static final double frame = 0.016;
+    /** Drag coefficient the drag was tuned with, spd*dragCo per {@link #frame} */
+    public static final double dragCo = 0.985;
+    /** Drag constant the drag was tuned with, metres per second lost per {@link #frame} */
+    public static final double dragCa = 0.00001 / frame;
+    /** Drag rate, the fraction of speed lost per second */
+    public static final double dragK = -Math.log(dragCo) / frame;
+    /** Constant drag, in metres per second squared */
+    public static final double dragA = dragCa / frame * -Math.log(dragCo) / (1 - dragCo);
+    /** Equal to {@link #dragA} over {@link #dragK}, the speed offset of the exponential */
+    public static final double dragB = dragA / dragK;
+    /** A speed below this limit is considered neglibile and should be set to 0 */
+    public static final double spdLimit = dragCa / dragCo;
+    /** Equal to {@link #spdLimit} squared */
+    public static final double spdLimit2 = spdLimit * spdLimit;
+
+    /**
+     * Returns the speed of a ball after some time
+     * @param s0 Starting speed, in metres per second
+     * @param t Seconds since it had that speed
+     * @return The speed at time t, zero once it has stopped
+     */
+    public static double speedAfter (double s0, double t) {
+        return Math.max((s0 + dragB) * Math.exp(-dragK*t) - dragB, 0);
+    }
+
+    /**
+     * Returns how far a ball travels in some time
+     * @param s0 Starting speed, in metres per second
+     * @param t Seconds since it had that speed
+     * @return The distance travelled, which stops growing once it has stopped
+     */
+    public static double distanceAfter (double s0, double t) {
+        t = Math.min(t, stopTime(s0));
+        return (s0 + dragB) * -Math.expm1(-dragK*t) / dragK - dragB*t;
+    }
+
+    /**
+     * Returns how long a ball takes to come to rest
+     * @param s0 Starting speed, in metres per second
+     * @return Seconds until the speed reaches zero
+     */
+    public static double stopTime (double s0) {
+        return Math.log1p(s0 / dragB) / dragK;
+    }
+
+    /**
+     * Returns how far a ball rolls before coming to rest
+     * @param s0 Starting speed, in metres per second
+     * @return The total distance it travels
+     */
+    public static double stopDistance (double s0) {
+        return distanceAfter(s0, stopTime(s0));
+    }
+
+    /**
+     * Returns how long a ball takes to travel a distance. <br>
+     * The distance curve is concave, so Newton's method from zero
+     * closes in from below without overshooting.
+     * @param s0 Starting speed, in metres per second
+     * @param d Distance to travel
+     * @return Seconds taken, or the stop time if it never gets that far
+     */
+    public static double timeToTravel (double s0, double d) {
+        double end = stopTime(s0);
+        double t = 0;
+        for (int it=0; it<50; it++) {
+            double err = d - distanceAfter(s0, t);
+            if (err <= 1e-13) break;
+            double v = speedAfter(s0, t);
+            if (v <= 0) return end;
+            t = Math.min(t + err / v, end);
+        }
+        return t;
+    }
+
+}
@@ -0,0 +1,244 @@
+package physics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Structure-of-arrays storage for the state of every ball. <p>
+ * Each field is its own contiguous column inside a single
+ * {@link ByteBuffer}, so a loop over one field touches one
+ * run of memory instead of chasing a pointer per ball.
+ * <h3> Layout </h3>
+ * With {@code n} being the capacity, in native byte order:
+ * <ul>
+ * <li> {@code n} doubles of x position
+ * <li> {@code n} doubles of z position
+ * <li> {@code n} doubles of x velocity
+ * <li> {@code n} doubles of z velocity
+ * <li> {@code n} ints of flags, see {@link #IN_MOTION} and {@link #POTTED}
+ * <li> {@code n} ints of type, the point value of the ball
+ * </ul>
+ * The buffer can be on the heap, off the heap, or handed in by the
+ * caller (a memory mapped file for example), so a renderer or another
+ * process can read the same memory without copying.
+ */
+public class BallStore {
+    /** Flag set while the ball has a non-negligible velocity */
+    public static final int IN_MOTION = 1;
+    /** Flag set once the ball has been sunk */
+    public static final int POTTED = 2;
+    /** Number of bytes each ball takes up across all columns */
+    public static final int bytesPerBall = 4*Double.BYTES + 2*Integer.BYTES;
+    /** Number of balls the store has room for */
+    private final int capacity;
+    /** The memory backing every column */
+    private final ByteBuffer buf;
+    /** Byte offset of each column */
+    private final int xOff, zOff, vxOff, vzOff, flagOff, typeOff;
+
+    /**
+     * Creates a store with a newly allocated buffer
+     * @param capacity The number of balls to make room for
+     * @param offHeap True to allocate a direct buffer outside of the java heap
+     */
+    public BallStore (int capacity, boolean offHeap) {
+        this(offHeap ? ByteBuffer.allocateDirect(capacity*bytesPerBall)
+                     : ByteBuffer.allocate(capacity*bytesPerBall), capacity);
+    }
+
+    /**
+     * Creates a store on top of an existing buffer. <br>
+     * The contents of the buffer are used as is, not cleared.
+     * @param buf The buffer to use, must have at least {@link #bytesPerBall} times capacity bytes remaining
+     * @param capacity The number of balls the buffer holds
+     */
+    public BallStore (ByteBuffer buf, int capacity) {
+        if (buf.remaining() < capacity*bytesPerBall)
+            throw new IllegalArgumentException("Buffer too small for "+capacity+" balls");
+        this.capacity = capacity;
+        this.buf = buf.slice().order(ByteOrder.nativeOrder());
+        int col = capacity*Double.BYTES;
+        this.xOff = 0;
+        this.zOff = col;
+        this.vxOff = col*2;
+        this.vzOff = col*3;
+        this.flagOff = col*4;
+        this.typeOff = this.flagOff + capacity*Integer.BYTES;
+    }
+
+    /**
+     * Returns the number of balls this store has room for
+     * @return The capacity of the store
+     */
+    public int capacity () {
+        return this.capacity;
+    }
+
+    /**
+     * Returns a view of the backing buffer, to share with something else. <br>
+     * Writes through the view are seen by this store.
+     * @return A duplicate of the backing buffer, in native byte order
+     */
+    public ByteBuffer buffer () {
+        return this.buf.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns whether the backing buffer lives outside of the java heap
+     * @return True if the buffer is direct
+     */
+    public boolean isOffHeap () {
+        return this.buf.isDirect();
+    }
+
+    /**
+     * Returns the x position of a ball
+     * @param i Index of the ball
+     * @return x position of the ball
+     */
+    public double x (int i) {
+        return this.buf.getDouble(this.xOff + (i<<3));
+    }
+
+    /**
+     * Returns the z position of a ball
+     * @param i Index of the ball
+     * @return z position of the ball
+     */
+    public double z (int i) {
+        return this.buf.getDouble(this.zOff + (i<<3));
+    }
+
+    /**
+     * Returns the x velocity of a ball
+     * @param i Index of the ball
+     * @return x velocity of the ball
+     */
+    public double vx (int i) {
+        return this.buf.getDouble(this.vxOff + (i<<3));
+    }
+
+    /**
+     * Returns the z velocity of a ball
+     * @param i Index of the ball
+     * @return z velocity of the ball
+     */
+    public double vz (int i) {
+        return this.buf.getDouble(this.vzOff + (i<<3));
+    }
+
+    /**
+     * Returns the flags of a ball
+     * @param i Index of the ball
+     * @return Flags of the ball
+     */
+    public int flags (int i) {
+        return this.buf.getInt(this.flagOff + (i<<2));
+    }
+
+    /**
+     * Returns the point value of a ball
+     * @param i Index of the ball
+     * @return Point value of the ball
+     */
+    public int type (int i) {
+        return this.buf.getInt(this.typeOff + (i<<2));
+    }
+
+    /**
+     * Sets the x position of a ball
+     * @param i Index of the ball
+     * @param v New x position
+     */
+    public void setX (int i, double v) {
+        this.buf.putDouble(this.xOff + (i<<3), v);
+    }
+
+    /**
+     * Sets the z position of a ball
+     * @param i Index of the ball
+     * @param v New z position
+     */
+    public void setZ (int i, double v) {
+        this.buf.putDouble(this.zOff + (i<<3), v);
+    }
+
+    /**
+     * Sets the x velocity of a ball
+     * @param i Index of the ball
+     * @param v New x velocity
+     */
+    public void setVx (int i, double v) {
+        this.buf.putDouble(this.vxOff + (i<<3), v);
+    }
+
+    /**
+     * Sets the z velocity of a ball
+     * @param i Index of the ball
+     * @param v New z velocity
+     */
+    public void setVz (int i, double v) {
+        this.buf.putDouble(this.vzOff + (i<<3), v);
+    }
+
+    /**
+     * Sets the flags of a ball
+     * @param i Index of the ball
+     * @param v New flags
+     */
+    public void setFlags (int i, int v) {
+        this.buf.putInt(this.flagOff + (i<<2), v);
+    }
+
+    /**
+     * Sets the point value of a ball
+     * @param i Index of the ball
+     * @param v New point value
+     */
+    public void setType (int i, int v) {
+        this.buf.putInt(this.typeOff + (i<<2), v);
+    }
+
+    /**
+     * Returns whether the given flag is set on a ball
+     * @param i Index of the ball
+     * @param flag One of {@link #IN_MOTION} or {@link #POTTED}
+     * @return True if set
+     */
+    public boolean is (int i, int flag) {
+        return (flags(i) & flag) != 0;
+    }
+
+    /**
+     * Returns whether a ball is on the table and moving
+     * @param i Index of the ball
+     * @return True if in motion and not potted
+     */
+    public boolean isMoving (int i) {
+        return (flags(i) & (IN_MOTION|POTTED)) == IN_MOTION;
+    }
+
+    /**
+     * Sets or clears a flag on a ball
+     * @param i Index of the ball
+     * @param flag One of {@link #IN_MOTION} or {@link #POTTED}
+     * @param on True to set, false to clear
+     */
+    public void set (int i, int flag, boolean on) {
+        int f = flags(i);
+        setFlags(i, on ? (f | flag) : (f & ~flag));
+    }
+
+    /**
+     * Copies every column of another store into this one
+     * @param src The store to copy from, must have the same capacity
+     */
+    public void copyFrom (BallStore src) {
+        if (src.capacity != this.capacity)
+            throw new IllegalArgumentException("Stores differ in capacity");
+        // Exactly the columns, the buffers may be bigger than the stores in them
+        int bytes = this.capacity*bytesPerBall;
+        this.buf.duplicate().put(src.buf.slice(0, bytes));
+    }
+
+}
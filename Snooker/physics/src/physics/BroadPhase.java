@@ -0,0 +1,66 @@
+package physics;
+
+/**
+ * Finds the pairs of balls that might be touching, so the
+ * exact collision check only runs on those. <p>
+ * {@link #update(BallStore)} is called once per step after the
+ * balls have moved, then {@link #forEachPair(BallStore, PairVisitor)}
+ * hands every candidate pair to the world.
+ * <p>
+ * When the world knows which balls are moving it calls the versions
+ * that take an active list instead, so a broad phase that can make use
+ * of it only has to look at those. By default they ignore the list.
+ */
+public interface BroadPhase {
+
+    /**
+     * Receives candidate pairs from a {@link BroadPhase}
+     */
+    interface PairVisitor {
+        /**
+         * Called once for each candidate pair
+         * @param a Index of one of the balls
+         * @param b Index of the other ball
+         */
+        void visit (int a, int b);
+    }
+
+    /**
+     * Brings any internal structure up to date with the ball positions
+     * @param balls The balls to track
+     */
+    void update (BallStore balls);
+
+    /**
+     * Visits every pair of balls on the table that could be touching
+     * where at least one of the two is in motion. Each pair is visited at most once.
+     * @param balls The balls, as last passed to {@link #update(BallStore)}
+     * @param visitor Receives each candidate pair
+     */
+    void forEachPair (BallStore balls, PairVisitor visitor);
+
+    /**
+     * Brings any internal structure up to date when only some balls can have moved. <br>
+     * Every ball that moved since the last update is in the list,
+     * though the list may also hold balls that have since stopped.
+     * @param balls The balls to track
+     * @param active Indices of the balls that may have moved
+     * @param activeCount Number of entries in use at the front of the list
+     */
+    default void update (BallStore balls, int[] active, int activeCount) {
+        update(balls);
+    }
+
+    /**
+     * Visits every pair that could be touching where at least one of the two is in motion. <br>
+     * Every ball that is in motion is in the list.
+     * @param balls The balls, as last updated
+     * @param active Indices of the balls that may be moving
+     * @param activeCount Number of entries in use at the front of the list
+     * @param visitor Receives each candidate pair
+     */
+    default void forEachPair (BallStore balls, int[] active, int activeCount, PairVisitor visitor) {
+        forEachPair(balls, visitor);
+    }
+
+}
@@ -0,0 +1,419 @@
+package physics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Works out whether the colours can be cleared, and with which shots. <p>
+ * Once the reds are gone the colours have to be potted lowest first,
+ * yellow through to black. From each table the solver tries a spread of
+ * shots potting the next colour into every pocket it can be cut into,
+ * keeps the few that leave the cue ball best placed for the colour after,
+ * and searches on from each of those. The branches are searched in
+ * parallel on a {@link ForkJoinPool}, and the search stops as soon as
+ * any branch clears the table, or the time runs out.
+ * <p>
+ * Results are remembered by the {@link ZobristHash} of the table with
+ * positions rounded to {@link #memoQuantum}, so once the other colours
+ * are fixed, tables whose cue ball ends up in the same square are only
+ * searched once, even across calls to {@link #solve(TableState, double)}.
+ * The later shots of a plan are then only as exact as the square, but the
+ * first shot is always worked out from exactly where the cue ball is.
+ * <p>
+ * No tables or simulators are built per node. Every worker plays its
+ * shots on its own {@link ShotSimulator}, and the tables searched on from are
+ * saved into states taken from that worker's own {@link TableState.Pool}.
+ */
+public class ClearanceSolver {
+    /** Size of the squares tables are rounded to when remembering results, in metres */
+    public static final double memoQuantum = 0.01;
+    /** Most results remembered before they are all forgotten */
+    private static final int memoLimit = 1 << 16;
+    /** Powers every pot is tried at, in metres per second */
+    private static final double[] powers = { 1.5, 2.5, 4, 6 };
+    /**
+     * Turns added to every pot, in radians, to try fuller and thinner contacts. <br>
+     * Wide, as balls part a little off the line between their centres,
+     * so cuts go in a few hundredths of a radian off the ghost ball line.
+     */
+    private static final double[] offsets = { 0, -0.01, 0.01, -0.02, 0.02, -0.03, 0.03, -0.04, 0.04 };
+    /** Most shots searched on from each table */
+    private static final int branching = 3;
+
+    /**
+     * A way of clearing some or all of the colours left. <br>
+     * Immutable, and shared between the tables it was found from.
+     */
+    public static final class Plan {
+        /** The plan for a table with nothing left to pot */
+        private static final Plan done = new Plan(new ShotResult[0], true, false);
+
+        /** The shots, in the order to play them */
+        private final ShotResult[] shots;
+        /** True if the shots pot every colour left */
+        private final boolean clear;
+        /** True if part of the search was cut short, so there may be a better plan */
+        private final boolean cut;
+
+        /**
+         * Creates a plan
+         * @param shots The shots in order, kept rather than copied
+         * @param clear True if they pot every colour left
+         * @param cut True if the search was cut short
+         */
+        private Plan (ShotResult[] shots, boolean clear, boolean cut) {
+            this.shots = shots;
+            this.clear = clear;
+            this.cut = cut;
+        }
+
+        /**
+         * Makes the plan of playing a shot and then following this plan
+         * @param shot The shot to play first
+         * @param cut True if the search for the shot was cut short
+         * @return The longer plan
+         */
+        private Plan after (ShotResult shot, boolean cut) {
+            ShotResult[] s = new ShotResult[this.shots.length + 1];
+            s[0] = shot;
+            System.arraycopy(this.shots, 0, s, 1, this.shots.length);
+            return new Plan(s, this.clear, this.cut || cut);
+        }
+
+        /**
+         * Returns whether the plan clears every colour left
+         * @return True if the table can be cleared this way
+         */
+        public boolean isClear () {
+            return this.clear;
+        }
+
+        /**
+         * Returns whether part of the search was cut short by the time limit,
+         * in which case a longer plan might have been found with more time
+         * @return True if the search wasn't finished
+         */
+        public boolean isCut () {
+            return this.cut;
+        }
+
+        /**
+         * Returns the number of colours the plan pots
+         * @return The shot count
+         */
+        public int getCleared () {
+            return this.shots.length;
+        }
+
+        /**
+         * Returns the shots of the plan
+         * @return The shots in the order to play them, each potting the next colour
+         */
+        public List<ShotResult> getShots () {
+            return Collections.unmodifiableList(Arrays.asList(this.shots));
+        }
+
+        @Override
+        public String toString () {
+            return "Plan[cleared="+this.shots.length+", clear="+this.clear+", cut="+this.cut+"]";
+        }
+    }
+
+    /** The number of ball slots of every table solved */
+    private final int count;
+    /** Runs the search */
+    private final ForkJoinPool pool;
+    /** The simulator of each worker thread */
+    private final ThreadLocal<ShotSimulator> simulators;
+    /** The spare states of each worker thread */
+    private final ThreadLocal<TableState.Pool> states;
+    /** Finished plans, by the hash of the table they start from */
+    private final ConcurrentHashMap<Long, Plan> memo = new ConcurrentHashMap<>();
+    /** Number of tables searched from by the current or last solve */
+    private final LongAdder nodes = new LongAdder();
+    /** Number of tables answered from {@link #memo} by the current or last solve */
+    private final LongAdder memoHits = new LongAdder();
+
+    /**
+     * Creates a solver for a standard table, using every core
+     */
+    public ClearanceSolver () {
+        this(PhysicsWorld.standardCount, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a solver
+     * @param count The number of ball slots, at most 64
+     * @param threads Number of worker threads, at least one
+     */
+    public ClearanceSolver (int count, int threads) {
+        if (count < 1 || count > 64) throw new IllegalArgumentException("Ball count must be between 1 and 64: "+count);
+        if (threads < 1) throw new IllegalArgumentException("Need at least one thread: "+threads);
+        this.count = count;
+        this.pool = new ForkJoinPool(threads);
+        this.simulators = ThreadLocal.withInitial(() -> new ShotSimulator(count));
+        this.states = ThreadLocal.withInitial(() -> new TableState.Pool(count));
+    }
+
+    /**
+     * Works out the order the colours left must be potted in
+     * @param state The table, with no reds left on it
+     * @return The indices of the colours on the table, lowest value first
+     */
+    public static int[] sequence (TableState state) {
+        int[] seq = new int[state.getBallCount()];
+        int n = 0;
+        for (int i=0; i<state.getBallCount(); i++) {
+            if (i == PhysicsWorld.CUE || state.isPotted(i)) continue;
+            if (state.getPointValue(i) == 1) throw new IllegalArgumentException("Reds are still on the table");
+            // Insertion sort, there are at most a handful
+            int k = n++;
+            while (k > 0 && state.getPointValue(seq[k-1]) > state.getPointValue(i)) {
+                seq[k] = seq[k-1];
+                k--;
+            }
+            seq[k] = i;
+        }
+        return Arrays.copyOf(seq, n);
+    }
+
+    /**
+     * Searches for a way to clear the colours. <br>
+     * Blocks until the table is found to be clearable, the search is
+     * finished, or the time is up, whichever comes first.
+     * @param start The table to play from, at rest, with no reds left on it
+     * @param budget Seconds to spend looking
+     * @return The plan that pots the most colours, see {@link Plan#isClear()}
+     */
+    public Plan solve (TableState start, double budget) {
+        if (start.getBallCount() != this.count)
+            throw new IllegalArgumentException("Solver is for "+this.count+" balls, not "+start.getBallCount());
+        if (start.isPotted(PhysicsWorld.CUE)) throw new IllegalArgumentException("Cue ball has been potted");
+        int[] seq = sequence(start);
+        if (this.memo.size() > memoLimit) this.memo.clear();
+        this.nodes.reset();
+        this.memoHits.reset();
+        Search s = new Search(seq, System.nanoTime() + (long)(budget * 1e9));
+        return this.pool.invoke(s.new Node(start, 0));
+    }
+
+    /**
+     * Returns the number of tables searched from by the last solve
+     * @return The node count
+     */
+    public long getLastNodes () {
+        return this.nodes.sum();
+    }
+
+    /**
+     * Returns the number of tables the last solve answered from earlier results
+     * @return The memo hit count
+     */
+    public long getLastMemoHits () {
+        return this.memoHits.sum();
+    }
+
+    /**
+     * Forgets every remembered plan
+     */
+    public void clearMemo () {
+        this.memo.clear();
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    public void shutdown () {
+        this.pool.shutdown();
+    }
+
+    /**
+     * One call to {@link ClearanceSolver#solve(TableState, double)}
+     */
+    private class Search {
+        /** The colours to pot, in order */
+        private final int[] seq;
+        /** When to stop, by {@link System#nanoTime()} */
+        private final long deadline;
+        /** Set once any branch clears the table, to stop the rest */
+        private final AtomicBoolean solved = new AtomicBoolean();
+
+        /**
+         * Creates a search
+         * @param seq The colours to pot, in order
+         * @param deadline When to stop, by {@link System#nanoTime()}
+         */
+        Search (int[] seq, long deadline) {
+            this.seq = seq;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Searches from one table
+         */
+        private class Node extends RecursiveTask<Plan> {
+            private static final long serialVersionUID = 1L;
+            /** The table to search from, never written to */
+            private final TableState state;
+            /** How many colours have been potted, the next to pot is seq[depth] */
+            private final int depth;
+
+            /**
+             * Creates a node
+             * @param state The table to search from, not copied
+             * @param depth How many colours have been potted
+             */
+            Node (TableState state, int depth) {
+                this.state = state;
+                this.depth = depth;
+            }
+
+            @Override
+            protected Plan compute () {
+                int[] seq = Search.this.seq;
+                if (this.depth == seq.length) {
+                    Search.this.solved.set(true);
+                    return Plan.done;
+                }
+                if (Search.this.solved.get() || System.nanoTime() >= Search.this.deadline)
+                    return new Plan(new ShotResult[0], false, true);
+                // The first shot is always worked out from exactly where the cue ball is
+                long key = ZobristHash.hash(this.state, memoQuantum);
+                Plan known = (this.depth == 0) ? null : ClearanceSolver.this.memo.get(key);
+                if (known != null) {
+                    ClearanceSolver.this.memoHits.increment();
+                    if (known.clear) Search.this.solved.set(true);
+                    return known;
+                }
+                ClearanceSolver.this.nodes.increment();
+
+                // Keep the few pots that leave the best position for the colour after
+                int t = seq[this.depth];
+                long next = (this.depth + 1 < seq.length) ? 1L << seq[this.depth + 1] : 0;
+                TableState.Pool spare = ClearanceSolver.this.states.get();
+                ShotSimulator sim = ClearanceSolver.this.simulators.get();
+                ShotResult[] kept = new ShotResult[branching];
+                TableState[] after = new TableState[branching];
+                double[] ease = new double[branching];
+                int n = 0;
+                // Each shot ends in a spare table, which is only kept if the shot is
+                TableState end = null;
+                double cx = this.state.getPosX(PhysicsWorld.CUE), cz = this.state.getPosZ(PhysicsWorld.CUE);
+                double tx = this.state.getPosX(t), tz = this.state.getPosZ(t);
+                for (int p=0; p<Table.pocketX.length; p++) {
+                    if (ShotPlanner.cutCos(cx, cz, tx, tz, p) < ShotPlanner.minCutCos) continue;
+                    double aim = ShotPlanner.potAngle(cx, cz, tx, tz, p);
+                    for (double power : powers) {
+                        for (double off : offsets) {
+                            if (end == null) end = spare.acquire();
+                            ShotResult r = sim.run(this.state, aim + off, power, end);
+                            if (r.getFirstHit() != t || r.getPottedMask() != 1L << t) continue;
+                            double e = (next == 0) ? 1 : ShotPlanner.ease(r.getPosX(PhysicsWorld.CUE), r.getPosZ(PhysicsWorld.CUE), r, next);
+                            if (n == branching && e <= ease[n-1]) continue;
+                            // Insert in order of ease, dropping the worst if full
+                            TableState s = end;
+                            end = (n == branching) ? after[--n] : null;
+                            int k = n++;
+                            while (k > 0 && ease[k-1] < e) {
+                                kept[k] = kept[k-1];
+                                after[k] = after[k-1];
+                                ease[k] = ease[k-1];
+                                k--;
+                            }
+                            kept[k] = r;
+                            after[k] = s;
+                            ease[k] = e;
+                        }
+                    }
+                }
+
+                if (end != null) spare.release(end);
+                Plan best = new Plan(new ShotResult[0], false, false);
+                if (n > 0) {
+                    Node[] children = new Node[n];
+                    for (int k=0; k<n; k++) children[k] = new Node(after[k], this.depth + 1);
+                    for (int k=1; k<n; k++) children[k].fork();
+                    Plan[] plans = new Plan[n];
+                    plans[0] = children[0].compute();
+                    for (int k=n-1; k>0; k--) plans[k] = children[k].join();
+                    boolean cut = false;
+                    for (int k=0; k<n; k++) {
+                        cut |= plans[k].cut;
+                        Plan p = plans[k].after(kept[k], false);
+                        if (better(p, best)) best = p;
+                    }
+                    if (cut && !best.cut && !best.clear) best = new Plan(best.shots, best.clear, true);
+                    for (int k=0; k<n; k++) spare.release(after[k]);
+                }
+                if (!best.cut) {
+                    ClearanceSolver.this.memo.put(key, best);
+                    if (best.clear) Search.this.solved.set(true);
+                }
+                return best;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a plan is better than another, a clearance beats
+     * anything else, then the more colours potted the better
+     * @param a The plan to check
+     * @param b The plan to beat
+     * @return True if a is better
+     */
+    private static boolean better (Plan a, Plan b) {
+        if (a.clear != b.clear) return a.clear;
+        return a.shots.length > b.shots.length;
+    }
+
+    /**
+     * Takes the reds off the standard layout and tries to clear the colours,
+     * printing the plan. <p>
+     * Options, all optional: <br>
+     * {@code --budget S} seconds to spend looking, 5 by default <br>
+     * {@code --threads N} number of threads, every core by default
+     * @param args The command line options
+     */
+    public static void main (String[] args) {
+        double budget = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int k=0; k<args.length; k++) {
+            switch (args[k]) {
+            case "--budget":  budget = Double.parseDouble(args[++k]);   break;
+            case "--threads": threads = Integer.parseInt(args[++k]);    break;
+            default:
+                System.err.println("Unknown option "+args[k]);
+                System.err.println("Usage: ClearanceSolver [--budget S] [--threads N]");
+                System.exit(1);
+            }
+        }
+        PhysicsWorld standard = PhysicsWorld.createStandard();
+        PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+        for (int i=0; i<PhysicsWorld.standardCount; i++)
+            if (standard.getPointValue(i) != 1) w.setBall(i, standard.getPointValue(i), standard.getPosX(i), standard.getPosZ(i));
+        TableState start = new TableState(PhysicsWorld.standardCount);
+        w.save(start);
+
+        ClearanceSolver solver = new ClearanceSolver(PhysicsWorld.standardCount, threads);
+        long t0 = System.nanoTime();
+        Plan plan = solver.solve(start, budget);
+        double secs = (System.nanoTime() - t0) * 1e-9;
+        System.out.printf("%s in %.2fs, %d tables searched, %d remembered%n",
+            plan, secs, solver.getLastNodes(), solver.getLastMemoHits());
+        List<ShotResult> shots = plan.getShots();
+        int[] seq = sequence(start);
+        for (int k=0; k<shots.size(); k++) {
+            ShotResult r = shots.get(k);
+            System.out.printf("%d: pot %d with angle %.4f power %.1f, cue ends at (%.3f, %.3f)%n", k+1, seq[k],
+                r.getAngle(), r.getPower(), r.getPosX(PhysicsWorld.CUE), r.getPosZ(PhysicsWorld.CUE));
+        }
+        solver.shutdown();
+    }
+
+}
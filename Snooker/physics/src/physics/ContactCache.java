@@ -0,0 +1,131 @@
+package physics;
+
+/**
+ * Remembers which pairs of balls are touching from one step to the next. <p>
+ * Stored as a square bit matrix with a row of bits per ball, so a pair
+ * is looked up with a shift and a mask, and every contact of a ball is
+ * found by scanning its row. With 22 balls each row is a single long.
+ * <p>
+ * Knowing last step's contacts lets the world tell a new contact from one
+ * that is still going on, and report each start and end exactly once.
+ */
+public class ContactCache {
+    /** Number of ball slots */
+    private final int count;
+    /** Number of longs in each row */
+    private final int words;
+    /** Bit j of row i is set while balls i and j are touching, the matrix is kept symmetric */
+    private final long[] bits;
+    /** Number of pairs touching */
+    private int contacts;
+
+    /**
+     * Creates an empty cache
+     * @param count The number of ball slots
+     */
+    public ContactCache (int count) {
+        this.count = count;
+        this.words = (count + 63) >>> 6;
+        this.bits = new long[count * this.words];
+    }
+
+    /**
+     * Returns whether two balls are recorded as touching
+     * @param a Index of one ball
+     * @param b Index of the other ball
+     * @return True if they were touching when last checked
+     */
+    public boolean isTouching (int a, int b) {
+        return (this.bits[a*this.words + (b>>>6)] & (1L << b)) != 0;
+    }
+
+    /**
+     * Records two balls as touching
+     * @param a Index of one ball
+     * @param b Index of the other ball
+     * @return True if this is a new contact
+     */
+    public boolean touch (int a, int b) {
+        int ia = a*this.words + (b>>>6);
+        long mask = 1L << b;
+        if ((this.bits[ia] & mask) != 0) return false;
+        this.bits[ia] |= mask;
+        this.bits[b*this.words + (a>>>6)] |= 1L << a;
+        this.contacts++;
+        return true;
+    }
+
+    /**
+     * Records two balls as no longer touching
+     * @param a Index of one ball
+     * @param b Index of the other ball
+     * @return True if they had been touching
+     */
+    public boolean separate (int a, int b) {
+        int ia = a*this.words + (b>>>6);
+        long mask = 1L << b;
+        if ((this.bits[ia] & mask) == 0) return false;
+        this.bits[ia] &= ~mask;
+        this.bits[b*this.words + (a>>>6)] &= ~(1L << a);
+        this.contacts--;
+        return true;
+    }
+
+    /**
+     * Visits every ball recorded as touching the given one. <br>
+     * The visitor may safely {@link #separate(int, int)} the pair it is given.
+     * @param i Index of the ball
+     * @param visitor Receives i and each ball touching it
+     */
+    public void forEachContact (int i, BroadPhase.PairVisitor visitor) {
+        int row = i*this.words;
+        for (int w=0; w<this.words; w++) {
+            long word = this.bits[row + w];
+            while (word != 0) {
+                int j = (w<<6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                visitor.visit(i, j);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a ball is touching anything
+     * @param i Index of the ball
+     * @return True if it has at least one contact
+     */
+    public boolean hasContacts (int i) {
+        int row = i*this.words;
+        for (int w=0; w<this.words; w++)
+            if (this.bits[row + w] != 0) return true;
+        return false;
+    }
+
+    /**
+     * Copies every contact of another cache into this one, without any events
+     * @param src The cache to copy from, must have the same number of ball slots
+     */
+    public void copyFrom (ContactCache src) {
+        if (src.count != this.count)
+            throw new IllegalArgumentException("Caches differ in ball count");
+        System.arraycopy(src.bits, 0, this.bits, 0, this.bits.length);
+        this.contacts = src.contacts;
+    }
+
+    /**
+     * Returns the number of pairs touching
+     * @return The contact count
+     */
+    public int getContactCount () {
+        return this.contacts;
+    }
+
+    /**
+     * Returns the number of ball slots
+     * @return The count the cache was created with
+     */
+    public int getBallCount () {
+        return this.count;
+    }
+
+}
@@ -0,0 +1,497 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * Resolves every contact found in a step together, one island at a time. <p>
+ * Balls that touch, directly or through other balls, form an island. Each
+ * island is solved on its own in three parts, every one of them bounded
+ * by {@link #getIterations()}:
+ * <ol>
+ * <li> Impacts. The pair closing fastest gets a restitution impulse, then
+ *      the next fastest, until nothing is closing. A row of touching balls
+ *      passes the impact along like a Newton's cradle, whatever order the
+ *      contacts were found in.
+ * <li> Resting contact. Sequential impulses with no bounce stop touching
+ *      balls from pushing into each other. The impulse each contact needed
+ *      last step is applied up front, so a cluster that stays in contact
+ *      settles in a few iterations instead of starting from scratch.
+ * <li> Overlap. Overlapping pairs are pushed apart, the lighter ball
+ *      further, a few times over so a packed cluster ends up separated
+ *      rather than shuffling the overlap from one pair to the next.
+ * </ol>
+ * Contacts within an island are always solved in the order of their ball
+ * indices, so the result doesn't depend on which broad phase found them.
+ */
+public class ContactSolver {
+    /** The default most iterations of each part per island */
+    public static final int defaultIterations = 8;
+    /** Closing speeds below this are treated as resting, in metres per second */
+    private static final double restingSpeed = 1e-9;
+    /** Overlaps below this are left alone, in metres */
+    private static final double overlapSlop = 1e-12;
+
+    /** The world whose balls are solved */
+    private final PhysicsWorld world;
+    /** Number of ball slots */
+    private final int count;
+    /** The most iterations of each part per island */
+    private int iterations = defaultIterations;
+
+    /** Number of contacts gathered this step */
+    private int n;
+    /** The two balls of each contact, a is the lower index */
+    private int[] ca, cb;
+    /** Whether each contact was already touching the step before */
+    private boolean[] persisting;
+    /** Whether each contact has had an impact impulse this step */
+    private boolean[] hit;
+    /** The accumulated resting impulse of each contact */
+    private double[] lambda;
+    /** The island root of each contact */
+    private int[] rootOf;
+    /** Each contact packed into one sortable key, see {@link #sortContacts()} */
+    private long[] keys;
+
+    /** Union find parent of each ball, only valid where {@link #stamp} matches {@link #step} */
+    private final int[] parent;
+    /** The step each ball was last added to the union find, or last had its velocity written */
+    private final int[] stamp, written;
+    /** Counts calls to {@link #solve()}, to invalidate {@link #stamp} without clearing it */
+    private int step;
+
+    /** Resting impulses from the last step, keyed by pair, open addressing */
+    private int[] warmKeys, nextKeys;
+    /** The impulse for each key in {@link #warmKeys} and {@link #nextKeys} */
+    private double[] warmValues, nextValues;
+    /** Number of keys in {@link #nextKeys} */
+    private int nextSize;
+
+    /** Number of islands solved in the last step */
+    private int islands;
+    /** Most contacts in any one island in the last step */
+    private int largestIsland;
+    /** Number of times an iteration limit was hit, since creation */
+    private long saturated;
+
+    /**
+     * Creates a solver for a world
+     * @param world The world whose balls to solve
+     */
+    public ContactSolver (PhysicsWorld world) {
+        this.world = world;
+        this.count = world.getBallCount();
+        this.parent = new int[this.count];
+        this.stamp = new int[this.count];
+        this.written = new int[this.count];
+        grow(16);
+        this.warmKeys = newTable(16);
+        this.warmValues = new double[16];
+        this.nextKeys = newTable(16);
+        this.nextValues = new double[16];
+    }
+
+    /**
+     * Sets the most iterations each part of the solve may take per island
+     * @param iterations At least one
+     */
+    public void setIterations (int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("Need at least one iteration: "+iterations);
+        this.iterations = iterations;
+    }
+
+    /**
+     * Returns the most iterations each part of the solve may take per island
+     * @return The iteration limit
+     */
+    public int getIterations () {
+        return this.iterations;
+    }
+
+    /**
+     * Returns the number of islands solved in the last step
+     * @return The island count
+     */
+    public int getIslandCount () {
+        return this.islands;
+    }
+
+    /**
+     * Returns the most contacts in any one island in the last step
+     * @return The size of the largest island
+     */
+    public int getLargestIsland () {
+        return this.largestIsland;
+    }
+
+    /**
+     * Returns how many times a part of the solve stopped at the iteration
+     * limit rather than converging. If this keeps climbing, raise the limit.
+     * @return The running total
+     */
+    public long getSaturatedCount () {
+        return this.saturated;
+    }
+
+    /**
+     * Adds a pair of touching balls to be solved at the end of the step
+     * @param a Index of one ball
+     * @param b Index of the other ball
+     * @param persisting True if they were already touching the step before
+     */
+    void add (int a, int b, boolean persisting) {
+        if (this.n == this.ca.length) grow(this.n * 2);
+        if (a > b) { int t = a; a = b; b = t; }
+        this.ca[this.n] = a;
+        this.cb[this.n] = b;
+        this.persisting[this.n] = persisting;
+        this.n++;
+    }
+
+    /**
+     * Solves every contact added since the last call, then forgets them
+     */
+    void solve () {
+        this.islands = 0;
+        this.largestIsland = 0;
+        int n = this.n;
+        if (n == 0) {
+            swapWarm();
+            return;
+        }
+        this.step++;
+        // Group the contacts into islands
+        for (int c=0; c<n; c++) union(this.ca[c], this.cb[c]);
+        for (int c=0; c<n; c++) this.rootOf[c] = find(this.ca[c]);
+        sortContacts();
+        // Solve each island, they are runs of the same root in the sorted order
+        for (int start=0; start<n; ) {
+            int end = start + 1;
+            while (end < n && this.rootOf[end] == this.rootOf[start]) end++;
+            solveIsland(start, end);
+            this.islands++;
+            this.largestIsland = Math.max(this.largestIsland, end - start);
+            start = end;
+        }
+        // Remember the resting impulses for next step
+        for (int c=0; c<n; c++)
+            if (this.lambda[c] > 0) putNext(key(this.ca[c], this.cb[c]), this.lambda[c]);
+        swapWarm();
+        this.n = 0;
+    }
+
+    /**
+     * Solves one island
+     * @param start Index of the island's first contact
+     * @param end One past the index of its last contact
+     */
+    private void solveIsland (int start, int end) {
+        BallStore s = this.world.getStore();
+        double e = this.world.getRestitution();
+        int size = end - start;
+
+        // Warm start the resting impulses
+        for (int c=start; c<end; c++) {
+            this.hit[c] = false;
+            this.lambda[c] = this.persisting[c] ? getWarm(key(this.ca[c], this.cb[c])) : 0;
+            if (this.lambda[c] > 0) applyImpulse(s, c, this.lambda[c]);
+        }
+
+        // Impacts, the fastest closing pair first
+        int budget = this.iterations * size;
+        while (true) {
+            int best = -1;
+            double fastest = restingSpeed;
+            for (int c=start; c<end; c++) {
+                double closing = -relativeSpeed(s, c);
+                if (closing > fastest) {
+                    fastest = closing;
+                    best = c;
+                }
+            }
+            if (best < 0) break;
+            if (budget-- == 0) {
+                this.saturated++;
+                break;
+            }
+            double w = this.world.getInvMass(this.ca[best]) + this.world.getInvMass(this.cb[best]);
+            applyImpulse(s, best, (1 + e) * fastest / w);
+            if (!this.hit[best]) {
+                this.hit[best] = true;
+                this.world.getListener().ballCollision(this.ca[best], this.cb[best]);
+            }
+        }
+
+        // Resting contact, sequential impulses that may only push apart
+        boolean converged = false;
+        for (int it=0; it<this.iterations && !converged; it++) {
+            converged = true;
+            for (int c=start; c<end; c++) {
+                double w = this.world.getInvMass(this.ca[c]) + this.world.getInvMass(this.cb[c]);
+                double old = this.lambda[c];
+                double next = Math.max(old - relativeSpeed(s, c) / w, 0);
+                if (next != old) {
+                    applyImpulse(s, c, next - old);
+                    this.lambda[c] = next;
+                    if (Math.abs(next - old) * w > restingSpeed) converged = false;
+                }
+            }
+        }
+        if (!converged) this.saturated++;
+
+        // Push overlapping balls apart
+        converged = false;
+        for (int it=0; it<this.iterations && !converged; it++) {
+            converged = true;
+            for (int c=start; c<end; c++) {
+                if (separate(s, c)) converged = false;
+            }
+        }
+        if (!converged) this.saturated++;
+
+        // Write the velocities back once per ball, stopping any that are negligible
+        for (int c=start; c<end; c++) {
+            writeVelocity(s, this.ca[c]);
+            writeVelocity(s, this.cb[c]);
+        }
+    }
+
+    /**
+     * Returns how fast a contact's balls are moving apart along the line between them
+     * @param s The ball store
+     * @param c Index of the contact
+     * @return The separating speed, negative if closing
+     */
+    private double relativeSpeed (BallStore s, int c) {
+        int a = this.ca[c], b = this.cb[c];
+        double nx = s.x(b) - s.x(a), nz = s.z(b) - s.z(a);
+        double d = Math.sqrt(nx*nx + nz*nz);
+        if (d == 0) { nx = 1; nz = 0; }
+        else { nx /= d; nz /= d; }
+        return (s.vx(b) - s.vx(a))*nx + (s.vz(b) - s.vz(a))*nz;
+    }
+
+    /**
+     * Applies an impulse pushing a contact's balls apart
+     * @param s The ball store
+     * @param c Index of the contact
+     * @param j The size of the impulse, in kilogram metres per second
+     */
+    private void applyImpulse (BallStore s, int c, double j) {
+        int a = this.ca[c], b = this.cb[c];
+        double nx = s.x(b) - s.x(a), nz = s.z(b) - s.z(a);
+        double d = Math.sqrt(nx*nx + nz*nz);
+        if (d == 0) { nx = 1; nz = 0; }
+        else { nx /= d; nz /= d; }
+        double ja = j * this.world.getInvMass(a), jb = j * this.world.getInvMass(b);
+        s.setVx(a, s.vx(a) - nx*ja);
+        s.setVz(a, s.vz(a) - nz*ja);
+        s.setVx(b, s.vx(b) + nx*jb);
+        s.setVz(b, s.vz(b) + nz*jb);
+    }
+
+    /**
+     * Pushes a contact's balls apart if they overlap
+     * @param s The ball store
+     * @param c Index of the contact
+     * @return True if they were overlapping
+     */
+    private boolean separate (BallStore s, int c) {
+        int a = this.ca[c], b = this.cb[c];
+        double nx = s.x(b) - s.x(a), nz = s.z(b) - s.z(a);
+        double d = Math.sqrt(nx*nx + nz*nz);
+        double overlap = Ball.radius*2 - d;
+        if (overlap <= overlapSlop) return false;
+        if (d == 0) { nx = 1; nz = 0; }
+        else { nx /= d; nz /= d; }
+        double wa = this.world.getInvMass(a), wb = this.world.getInvMass(b);
+        double push = overlap / (wa + wb);
+        s.setX(a, s.x(a) - nx*push*wa);
+        s.setZ(a, s.z(a) - nz*push*wa);
+        s.setX(b, s.x(b) + nx*push*wb);
+        s.setZ(b, s.z(b) + nz*push*wb);
+        // Either may have been at rest, so it has to be redrawn and re-entered in the broad phase
+        if (wa > 0) this.world.displaced(a);
+        if (wb > 0) this.world.displaced(b);
+        return true;
+    }
+
+    /**
+     * Passes a ball's solved velocity through the world, once per step,
+     * so it is stopped if negligible and woken if it started moving.
+     * @param s The ball store
+     * @param i Index of the ball
+     */
+    private void writeVelocity (BallStore s, int i) {
+        if (this.written[i] == this.step) return;
+        this.written[i] = this.step;
+        this.world.setVel(i, s.vx(i), s.vz(i));
+    }
+
+    /**
+     * Sorts the contacts by island, then by ball indices. <br>
+     * Each contact is packed into a long, root, a, b and then whether it
+     * is persisting, so one primitive sort puts them in order, and the
+     * contact arrays are written back from the sorted keys.
+     */
+    private void sortContacts () {
+        int n = this.n;
+        long count = this.count;
+        long[] keys = this.keys;
+        for (int c=0; c<n; c++) {
+            long pair = (this.rootOf[c]*count + this.ca[c])*count + this.cb[c];
+            keys[c] = (pair << 1) | (this.persisting[c] ? 1 : 0);
+        }
+        Arrays.sort(keys, 0, n);
+        for (int c=0; c<n; c++) {
+            long pair = keys[c] >>> 1;
+            this.persisting[c] = (keys[c] & 1) != 0;
+            this.cb[c] = (int) (pair % count);
+            this.ca[c] = (int) (pair / count % count);
+            this.rootOf[c] = (int) (pair / count / count);
+        }
+    }
+
+    /**
+     * Returns the union find root of a ball, adding it if this step hasn't seen it
+     * @param i Index of the ball
+     * @return Index of the root ball
+     */
+    private int find (int i) {
+        if (this.stamp[i] != this.step) {
+            this.stamp[i] = this.step;
+            this.parent[i] = i;
+            return i;
+        }
+        while (this.parent[i] != i) {
+            this.parent[i] = this.parent[this.parent[i]];
+            i = this.parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Joins the islands of two balls
+     * @param a Index of one ball
+     * @param b Index of the other ball
+     */
+    private void union (int a, int b) {
+        int ra = find(a), rb = find(b);
+        // The lower index becomes the root, keeping the island order stable
+        if (ra < rb) this.parent[rb] = ra;
+        else if (rb < ra) this.parent[ra] = rb;
+    }
+
+    /**
+     * Returns the key a pair is stored under in the warm start tables. <br>
+     * Unique as long as there are fewer than 46341 balls.
+     * @param a The lower ball index
+     * @param b The higher ball index
+     * @return A key unique to the pair
+     */
+    private int key (int a, int b) {
+        return a*this.count + b;
+    }
+
+    /**
+     * Returns last step's resting impulse for a pair
+     * @param key The pair's key
+     * @return The impulse, zero if there wasn't one
+     */
+    private double getWarm (int key) {
+        int mask = this.warmKeys.length - 1;
+        for (int h=mix(key)&mask; this.warmKeys[h] != -1; h=(h+1)&mask)
+            if (this.warmKeys[h] == key) return this.warmValues[h];
+        return 0;
+    }
+
+    /**
+     * Stores a pair's resting impulse for next step
+     * @param key The pair's key
+     * @param value The impulse
+     */
+    private void putNext (int key, double value) {
+        if (this.nextSize*2 >= this.nextKeys.length) growNext();
+        int mask = this.nextKeys.length - 1;
+        int h = mix(key) & mask;
+        while (this.nextKeys[h] != -1 && this.nextKeys[h] != key) h = (h+1) & mask;
+        if (this.nextKeys[h] == -1) this.nextSize++;
+        this.nextKeys[h] = key;
+        this.nextValues[h] = value;
+    }
+
+    /**
+     * Doubles the size of the next step's warm start table
+     */
+    private void growNext () {
+        int[] keys = this.nextKeys;
+        double[] values = this.nextValues;
+        this.nextKeys = newTable(keys.length * 2);
+        this.nextValues = new double[keys.length * 2];
+        this.nextSize = 0;
+        for (int h=0; h<keys.length; h++)
+            if (keys[h] != -1) putNext(keys[h], values[h]);
+    }
+
+    /**
+     * Forgets every stored impulse and any contacts not yet solved. <br>
+     * Used when the balls are put back to an earlier state, so a restored
+     * table always plays out the same way whatever came before.
+     */
+    void reset () {
+        Arrays.fill(this.warmKeys, -1);
+        Arrays.fill(this.nextKeys, -1);
+        this.nextSize = 0;
+        this.n = 0;
+    }
+
+    /**
+     * Makes the impulses stored this step the ones read next step
+     */
+    private void swapWarm () {
+        int[] keys = this.warmKeys;
+        double[] values = this.warmValues;
+        this.warmKeys = this.nextKeys;
+        this.warmValues = this.nextValues;
+        this.nextKeys = keys;
+        this.nextValues = values;
+        Arrays.fill(this.nextKeys, -1);
+        this.nextSize = 0;
+    }
+
+    /**
+     * Creates an empty warm start key table
+     * @param size The number of slots, a power of two
+     * @return The table, every slot -1
+     */
+    private static int[] newTable (int size) {
+        int[] t = new int[size];
+        Arrays.fill(t, -1);
+        return t;
+    }
+
+    /**
+     * Scrambles a key so neighbouring pairs don't cluster in the table
+     * @param key The pair's key
+     * @return The hash
+     */
+    private static int mix (int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Makes room for more contacts
+     * @param size The new capacity
+     */
+    private void grow (int size) {
+        this.ca = (this.ca == null) ? new int[size] : Arrays.copyOf(this.ca, size);
+        this.cb = (this.cb == null) ? new int[size] : Arrays.copyOf(this.cb, size);
+        this.persisting = (this.persisting == null) ? new boolean[size] : Arrays.copyOf(this.persisting, size);
+        this.hit = new boolean[size];
+        this.lambda = new double[size];
+        this.rootOf = new int[size];
+        this.keys = new long[size];
+    }
+
+}
@@ -0,0 +1,483 @@
+package physics;
+
+import java.util.PriorityQueue;
+
+/**
+ * Simulates a {@link PhysicsWorld} by jumping from event to event
+ * instead of taking fixed steps. <p>
+ * Between events every ball travels in a straight line and slows down
+ * under a continuous form of the drag model, so its position at any time
+ * is known exactly. The time of every ball-ball, ball-cushion and
+ * ball-pocket contact is predicted up front and kept in a priority queue.
+ * When an event changes a ball's velocity, every other prediction that
+ * involved that ball is dropped by bumping the ball's event counter.
+ * <p>
+ * Nothing can tunnel, no matter how hard the cue ball is struck, and a
+ * whole shot costs a few hundred events rather than hundreds of steps
+ * over every pair of balls.
+ * <h3> Drag </h3>
+ * Uses the same closed form drag as the stepper, see {@link Ball}.
+ * <p>
+ * Time is measured in seconds, the same as {@link PhysicsWorld#advance(double)}.
+ * The world's ball store is kept up to date after every
+ * {@link #advance(double)}, so it can be drawn the same way.
+ */
+public class EventSimulator {
+    /** Gap between two balls, or a ball and a cushion, that counts as touching */
+    private static final double touch = 1e-9;
+    /** Most refinement steps to spend predicting one pair before checking back later */
+    private static final int maxIterations = 64;
+
+    /** Event type for two balls touching */
+    private static final int BALLS = 0;
+    /** Event type for a ball hitting a cushion */
+    private static final int CUSHION = 1;
+    /** Event type for a ball hitting the jaw of a pocket */
+    private static final int JAW = 2;
+    /** Event type for a ball falling into a pocket */
+    private static final int POCKET = 3;
+    /** Event type for a ball coming to rest */
+    private static final int STOP = 4;
+    /** Event type for re-predicting a pair that took too long to resolve */
+    private static final int RECHECK = 5;
+
+    /**
+     * A predicted event, only valid while the event
+     * counters of its balls haven't moved on.
+     */
+    private static class Event implements Comparable<Event> {
+        /** When the event happens, in seconds */
+        double time;
+        /** One of the event type constants */
+        int type;
+        /** The ball, or first ball, this event is for */
+        int a;
+        /** The second ball, or the cushion, jaw or pocket index, or -1 */
+        int b;
+        /** The event counters of a and b when this was predicted */
+        int countA, countB;
+
+        @Override
+        public int compareTo (Event o) {
+            return Double.compare(this.time, o.time);
+        }
+    }
+
+    /** The world being simulated */
+    private final PhysicsWorld world;
+    /** The world's ball store, positions and velocities are as of {@link #t0} */
+    private final BallStore balls;
+    /** Number of ball slots */
+    private final int count;
+    /** The time each ball's stored state is for */
+    private final double[] t0;
+    /** Speed of each ball as of {@link #t0} */
+    private final double[] spd;
+    /** Unit direction of travel of each ball */
+    private final double[] ux, uz;
+    /** The time at which each ball comes to rest */
+    private final double[] tStop;
+    /** Where each ball comes to rest if nothing gets in its way */
+    private final double[] endX, endZ;
+    /** Bumped every time a ball's motion changes, to invalidate old events */
+    private final int[] counter;
+    /** The predicted events, soonest first */
+    private final PriorityQueue<Event> queue;
+    /** The current time of the simulation, in seconds */
+    private double now;
+    /** The world's modification count when the events were last predicted */
+    private int seenMods;
+    /** Number of events processed since creation */
+    private long eventCount;
+
+    /**
+     * Creates a simulator for the given world. <br>
+     * The world can still be struck as normal, the
+     * simulator notices and predicts again.
+     * @param world The world whose balls to move
+     */
+    public EventSimulator (PhysicsWorld world) {
+        this.world = world;
+        this.balls = world.getStore();
+        this.count = this.balls.capacity();
+        this.t0 = new double[this.count];
+        this.spd = new double[this.count];
+        this.ux = new double[this.count];
+        this.uz = new double[this.count];
+        this.tStop = new double[this.count];
+        this.endX = new double[this.count];
+        this.endZ = new double[this.count];
+        this.counter = new int[this.count];
+        this.queue = new PriorityQueue<Event>();
+        this.seenMods = world.getModCount() - 1;
+    }
+
+    /**
+     * Returns the number of events processed so far
+     * @return The running total of events
+     */
+    public long getEventCount () {
+        return this.eventCount;
+    }
+
+    /**
+     * Advances the simulation by the given amount of time,
+     * handling every event on the way exactly.
+     * @param dt The amount of time to advance, in seconds
+     */
+    public void advance (double dt) {
+        sync();
+        double target = this.now + dt;
+        while (!this.queue.isEmpty() && this.queue.peek().time <= target)
+            handle(this.queue.poll());
+        this.now = target;
+        for (int i=0; i<this.count; i++)
+            if (this.balls.isMoving(i)) rebase(i, target);
+    }
+
+    /**
+     * Runs the simulation until every ball has stopped
+     * @return The number of events it took
+     */
+    public long runToRest () {
+        sync();
+        long start = this.eventCount;
+        while (!this.queue.isEmpty()) {
+            Event e = this.queue.poll();
+            handle(e);
+            this.now = Math.max(this.now, e.time);
+        }
+        return this.eventCount - start;
+    }
+
+    /**
+     * Predicts every event again if the world has
+     * been changed since the last prediction. <br>
+     * Nothing from before is kept, so the clock starts again from zero,
+     * and a table restored and played again rounds exactly the same.
+     */
+    private void sync () {
+        if (this.seenMods == this.world.getModCount()) return;
+        this.seenMods = this.world.getModCount();
+        this.queue.clear();
+        this.now = 0;
+        for (int i=0; i<this.count; i++) {
+            // Take the stored state as it is now, it may have been struck
+            this.counter[i]++;
+            this.t0[i] = this.now;
+            this.tStop[i] = this.now;
+            rebase(i, this.now);
+        }
+        for (int i=0; i<this.count; i++) {
+            if (!this.balls.isMoving(i)) continue;
+            predictBoundary(i);
+            for (int j=0; j<this.count; j++)
+                if (j != i && (j > i || !this.balls.isMoving(j)))
+                    predictPair(i, j, this.now);
+        }
+    }
+
+    /**
+     * Carries out an event if it is still valid, then predicts
+     * the next events for whichever balls it changed.
+     * @param e The event to process
+     */
+    private void handle (Event e) {
+        int a = e.a, b = e.b;
+        if (this.counter[a] != e.countA) return;
+        if ((e.type == BALLS || e.type == RECHECK) && this.counter[b] != e.countB) return;
+        this.eventCount++;
+        double t = e.time;
+        switch (e.type) {
+        case STOP:
+            rebase(a, t);
+            this.balls.setVx(a, 0);
+            this.balls.setVz(a, 0);
+            this.balls.set(a, BallStore.IN_MOTION, false);
+            rebase(a, t);
+            return;
+        case RECHECK:
+            predictPair(a, b, t);
+            return;
+        case POCKET:
+            rebase(a, t);
+            this.balls.setVx(a, 0);
+            this.balls.setVz(a, 0);
+            this.balls.setFlags(a, BallStore.POTTED);
+            this.counter[a]++;
+            rebase(a, t);
+            this.world.getListener().ballPotted(a, b);
+            return;
+        case CUSHION:
+            rebase(a, t);
+            this.world.getGeometry().reflect(TableGeometry.CUSHION, b, this.balls, a);
+            this.world.getListener().cushionHit(a);
+            break;
+        case JAW:
+            rebase(a, t);
+            this.world.getGeometry().reflect(TableGeometry.JAW, b, this.balls, a);
+            this.world.getListener().cushionHit(a);
+            break;
+        case BALLS:
+            rebase(a, t);
+            rebase(b, t);
+            if (!bounce(a, b)) return;
+            this.counter[b]++;
+            rebase(b, t);
+            // Contacts are instantaneous here, so they begin and end together
+            PhysicsListener l = this.world.getListener();
+            l.contactBegin(a, b);
+            l.ballCollision(a, b);
+            l.contactEnd(a, b);
+            predictAll(b, t, a);
+            break;
+        }
+        this.counter[a]++;
+        rebase(a, t);
+        predictAll(a, t, e.type == BALLS ? b : -1);
+    }
+
+    /**
+     * Predicts the cushion, pocket and ball events for a ball whose motion just changed
+     * @param i Index of the ball
+     * @param t The current time
+     * @param skip A ball that has already been predicted against, or -1
+     */
+    private void predictAll (int i, double t, int skip) {
+        if (this.balls.isMoving(i)) predictBoundary(i);
+        for (int j=0; j<this.count; j++)
+            if (j != i && j != skip) predictPair(i, j, t);
+        if (skip >= 0) predictPair(i, skip, t);
+    }
+
+    /**
+     * Resolves two touching balls with an impulse along the line between them,
+     * the same response as an impact in the {@link ContactSolver}.
+     * @param a Index of one ball, already rebased to now
+     * @param b Index of the other ball, already rebased to now
+     * @return False if the balls were moving apart and nothing changed
+     */
+    private boolean bounce (int a, int b) {
+        BallStore s = this.balls;
+        double nx = s.x(b) - s.x(a), nz = s.z(b) - s.z(a);
+        double inv = 1 / Math.sqrt(nx*nx + nz*nz);
+        nx *= inv; nz *= inv;
+        double va = s.vx(a)*nx + s.vz(a)*nz;
+        double vb = s.vx(b)*nx + s.vz(b)*nz;
+        double dv = va - vb;
+        if (dv <= 0) return false;
+        double wa = this.world.getInvMass(a), wb = this.world.getInvMass(b);
+        double j = (1 + this.world.getRestitution()) * dv / (wa + wb);
+        s.setVx(a, s.vx(a) - j*wa*nx);
+        s.setVz(a, s.vz(a) - j*wa*nz);
+        s.setVx(b, s.vx(b) + j*wb*nx);
+        s.setVz(b, s.vz(b) + j*wb*nz);
+        s.set(a, BallStore.IN_MOTION, s.vx(a) != 0 || s.vz(a) != 0);
+        s.set(b, BallStore.IN_MOTION, s.vx(b) != 0 || s.vz(b) != 0);
+        return true;
+    }
+
+    /**
+     * Moves a ball's stored state forward to the given time, then
+     * caches its speed, direction and stop time from there.
+     * @param i Index of the ball
+     * @param t The time to move it to, not before its current {@link #t0}
+     */
+    private void rebase (int i, double t) {
+        BallStore s = this.balls;
+        if (s.isMoving(i)) {
+            double dt = Math.min(t, this.tStop[i]) - this.t0[i];
+            if (dt > 0) {
+                double d = Ball.distanceAfter(this.spd[i], dt);
+                double v = Ball.speedAfter(this.spd[i], dt);
+                s.setX(i, s.x(i) + this.ux[i]*d);
+                s.setZ(i, s.z(i) + this.uz[i]*d);
+                s.setVx(i, this.ux[i]*v);
+                s.setVz(i, this.uz[i]*v);
+            }
+        }
+        this.t0[i] = t;
+        double vx = s.vx(i), vz = s.vz(i);
+        double v = Math.sqrt(vx*vx + vz*vz);
+        if (v > 0 && !s.is(i, BallStore.POTTED)) {
+            s.set(i, BallStore.IN_MOTION, true);
+            this.world.wake(i);
+            this.spd[i] = v;
+            this.ux[i] = vx / v;
+            this.uz[i] = vz / v;
+            this.tStop[i] = t + Ball.stopTime(v);
+            double reach = Ball.distanceAfter(v, this.tStop[i] - t);
+            this.endX[i] = s.x(i) + this.ux[i]*reach;
+            this.endZ[i] = s.z(i) + this.uz[i]*reach;
+        } else {
+            s.set(i, BallStore.IN_MOTION, false);
+            this.spd[i] = 0;
+            this.ux[i] = 0;
+            this.uz[i] = 0;
+            this.tStop[i] = t;
+            this.endX[i] = s.x(i);
+            this.endZ[i] = s.z(i);
+        }
+    }
+
+    /**
+     * Adds an event to the queue, recording the current event counters
+     * @param time When the event happens
+     * @param type The event type
+     * @param a The first ball
+     * @param b The second ball, pocket, or -1
+     */
+    private void schedule (double time, int type, int a, int b) {
+        Event e = new Event();
+        e.time = time;
+        e.type = type;
+        e.a = a;
+        e.b = b;
+        e.countA = this.counter[a];
+        e.countB = (type == BALLS || type == RECHECK) ? this.counter[b] : 0;
+        this.queue.add(e);
+    }
+
+    /**
+     * Predicts which happens first to a moving ball out of
+     * hitting a cushion or jaw, dropping into a pocket, or stopping.
+     * @param i Index of the ball, in motion and rebased to now
+     */
+    private void predictBoundary (int i) {
+        BallStore s = this.balls;
+        double x = s.x(i), z = s.z(i);
+        double ex = this.endX[i] - x, ez = this.endZ[i] - z;
+        double reach = Math.sqrt(ex*ex + ez*ez);
+        int[] hit = this.hit;
+        double d = this.world.getGeometry().firstContact(x, z, this.ux[i], this.uz[i], reach, hit);
+        int type;
+        switch (hit[0]) {
+        case TableGeometry.CUSHION: type = CUSHION; break;
+        case TableGeometry.JAW:     type = JAW;     break;
+        case TableGeometry.POCKET:  type = POCKET;  break;
+        default:                    type = STOP;    break;
+        }
+        double t = (type == STOP) ? this.tStop[i] : this.t0[i] + Ball.timeToTravel(this.spd[i], d);
+        schedule(t, type, i, hit[1]);
+    }
+
+    /**
+     * Predicts when two balls will first touch, if ever,
+     * and schedules the event. At least one must be moving.
+     * @param i Index of one ball
+     * @param j Index of the other ball
+     * @param from The time to start looking from
+     */
+    private void predictPair (int i, int j, double from) {
+        BallStore s = this.balls;
+        if (s.is(i, BallStore.POTTED) || s.is(j, BallStore.POTTED)) return;
+        boolean mi = s.isMoving(i), mj = s.isMoving(j);
+        if (!mi && !mj) return;
+        double end = Math.max(mi ? this.tStop[i] : from, mj ? this.tStop[j] : from);
+        if (!pathsMeet(i, j)) return;
+        double[] p = this.scratch;
+        double t = from;
+        for (int it=0; it<maxIterations; it++) {
+            state(i, t, p, 0);
+            state(j, t, p, 4);
+            double dx = p[4]-p[0], dz = p[5]-p[1];
+            double dvx = p[6]-p[2], dvz = p[7]-p[3];
+            double dist = Math.sqrt(dx*dx + dz*dz);
+            double gap = dist - 2*Ball.radius;
+            double rate = (dx*dvx + dz*dvz) / dist;
+            if (gap <= touch) {
+                if (rate < 0) { schedule(t, BALLS, i, j); return; }
+                // Rolling along together, nothing will change until one is hit
+                if (dvx*dvx + dvz*dvz < touch*touch) return;
+                gap = 0;
+            }
+            // The gap between two straight paths is convex, only the drag
+            // can bend it down, so this bounds how soon it can reach zero
+            double h = safeStep(gap, rate, decel(i, t) + decel(j, t));
+            if (mi && mj) {
+                // While both still move, only the difference in drag matters
+                double e = Math.min(this.tStop[i], this.tStop[j]) - t;
+                double bi = Ball.speedAfter(this.spd[i], t-this.t0[i]) + Ball.dragB, bj = Ball.speedAfter(this.spd[j], t-this.t0[j]) + Ball.dragB;
+                double ex = this.ux[j]*bj - this.ux[i]*bi, ez = this.uz[j]*bj - this.uz[i]*bi;
+                double dux = this.ux[j] - this.ux[i], duz = this.uz[j] - this.uz[i];
+                double du = Math.sqrt(dux*dux + duz*duz);
+                double tight = safeStep(gap, rate, Ball.dragK*(Math.sqrt(ex*ex + ez*ez) + Ball.dragB*du) + Ball.dragA*du);
+                if (tight > h) h = Math.min(tight, Math.max(e, h));
+            }
+            if (h == Double.POSITIVE_INFINITY) return;
+            t += h;
+            if (t >= end) return;
+        }
+        schedule(t, RECHECK, i, j);
+    }
+
+    /**
+     * Returns how far ahead it is safe to jump without two balls overlapping. <p>
+     * With the gap shrinking at most as fast as a parabola with the given
+     * curvature, this is where that parabola reaches zero. Never steps less
+     * than it would take the curvature alone to close the touching distance.
+     * @param gap The current gap between the balls, at least zero
+     * @param rate How fast the gap is growing, negative if closing
+     * @param bend The most the gap's rate can fall by per second
+     * @return The time step, infinite if they can never touch
+     */
+    private static double safeStep (double gap, double rate, double bend) {
+        if (rate < 0) return 2*gap / (Math.sqrt(rate*rate + 2*bend*gap) - rate);
+        if (bend <= 0) return Double.POSITIVE_INFINITY;
+        return Math.max((rate + Math.sqrt(rate*rate + 2*bend*gap)) / bend, Math.sqrt(2*touch/bend));
+    }
+
+    /** Scratch space for what a ball's path meets first */
+    private final int[] hit = new int[2];
+    /** Scratch space for the positions and velocities of a pair */
+    private final double[] scratch = new double[8];
+
+    /**
+     * Cheaply checks whether the remaining paths of two balls come within reach of each other. <br>
+     * Compares the boxes around each path, grown by a ball's radius.
+     * @param i Index of one ball, rebased to now or resting
+     * @param j Index of the other ball
+     * @return False if they can't possibly touch
+     */
+    private boolean pathsMeet (int i, int j) {
+        BallStore s = this.balls;
+        double ix0 = s.x(i), ix1 = this.endX[i], iz0 = s.z(i), iz1 = this.endZ[i];
+        double jx0 = s.x(j), jx1 = this.endX[j], jz0 = s.z(j), jz1 = this.endZ[j];
+        double r2 = 2*Ball.radius;
+        return Math.min(ix0, ix1) - r2 <= Math.max(jx0, jx1)
+            && Math.min(jx0, jx1) - r2 <= Math.max(ix0, ix1)
+            && Math.min(iz0, iz1) - r2 <= Math.max(jz0, jz1)
+            && Math.min(jz0, jz1) - r2 <= Math.max(iz0, iz1);
+    }
+
+    /**
+     * Writes a ball's position and velocity at the given time into an array
+     * @param i Index of the ball
+     * @param t Time to evaluate at, not before its {@link #t0}
+     * @param out Receives x, z, vx, vz
+     * @param off Where in the array to write them
+     */
+    private void state (int i, double t, double[] out, int off) {
+        BallStore s = this.balls;
+        double dt = Math.min(t, this.tStop[i]) - this.t0[i];
+        double d = (dt > 0) ? Ball.distanceAfter(this.spd[i], dt) : 0;
+        double v = (t < this.tStop[i]) ? Ball.speedAfter(this.spd[i], dt) : 0;
+        out[off]   = s.x(i) + this.ux[i]*d;
+        out[off+1] = s.z(i) + this.uz[i]*d;
+        out[off+2] = this.ux[i]*v;
+        out[off+3] = this.uz[i]*v;
+    }
+
+    /**
+     * Returns how quickly a ball is slowing down at the given time. <br>
+     * This only ever gets smaller, so it bounds the rest of the path too.
+     * @param i Index of the ball
+     * @param t Time to evaluate at
+     * @return The deceleration, in metres per second squared
+     */
+    private double decel (int i, double t) {
+        if (t >= this.tStop[i]) return 0;
+        return Ball.dragK * Ball.speedAfter(this.spd[i], t - this.t0[i]) + Ball.dragA;
+    }
+
+}
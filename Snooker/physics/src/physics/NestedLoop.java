@@ -0,0 +1,25 @@
+package physics;
+
+/**
+ * The simplest {@link BroadPhase}, it hands over every pair of balls. <br>
+ * Costs n squared over two per step, but needs no bookkeeping.
+ */
+public class NestedLoop implements BroadPhase {
+
+    @Override
+    public void update (BallStore balls) {}
+
+    @Override
+    public void forEachPair (BallStore balls, PairVisitor visitor) {
+        int count = balls.capacity();
+        for (int i=0; i<count-1; i++) {
+            if (!balls.is(i, BallStore.POTTED))
+                for (int j=i+1; j<count; j++) {
+                    if (!balls.is(j, BallStore.POTTED)
+                    && (balls.is(i, BallStore.IN_MOTION) || balls.is(j, BallStore.IN_MOTION)))
+                        visitor.visit(i, j);
+                }
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package physics;
+
+/**
+ * Receives the events a {@link PhysicsWorld} produces while stepping. <br>
+ * Every method has an empty default, so only override what you need.
+ */
+public interface PhysicsListener {
+
+    /**
+     * Called when two balls have collided
+     * @param a Index of one of the balls
+     * @param b Index of the other ball
+     */
+    default void ballCollision (int a, int b) {}
+
+    /**
+     * Called once when two balls start touching. <br>
+     * Unlike {@link #ballCollision(int, int)} this isn't repeated
+     * for as long as they stay in contact.
+     * @param a Index of one of the balls
+     * @param b Index of the other ball
+     */
+    default void contactBegin (int a, int b) {}
+
+    /**
+     * Called once when two balls that were touching move apart,
+     * or when one of them leaves the table.
+     * @param a Index of one of the balls
+     * @param b Index of the other ball
+     */
+    default void contactEnd (int a, int b) {}
+
+    /**
+     * Called when a ball has fallen into a pocket
+     * @param ball Index of the ball
+     * @param pocket Index of the pocket, see {@link Table#pocketX}
+     */
+    default void ballPotted (int ball, int pocket) {}
+
+    /**
+     * Called when a ball bounces off a cushion, or the jaw of a pocket
+     * @param ball Index of the ball
+     */
+    default void cushionHit (int ball) {}
+
+}
@@ -0,0 +1,292 @@
+package physics;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Runs a {@link PhysicsWorld} on its own thread at a fixed rate. <p>
+ * After every tick the state of the world is published as an immutable
+ * {@link Snapshot} through an {@link AtomicReference}, so a renderer can
+ * pick up the latest one at any time without locking. Each snapshot
+ * holds the start and end of its tick, and rendering a tick behind,
+ * see {@link #getRenderTime()}, lets balls be drawn smoothly in between.
+ * <p>
+ * While the thread runs, only it may touch the world. Anything else that
+ * wants to change it, such as striking the cue ball, should
+ * {@link #post(Consumer)} a command, which runs before the next tick.
+ * Listener events are queued up in the same way and handed back on
+ * whichever thread calls {@link #deliverEvents(PhysicsListener)}.
+ * <p>
+ * Once the table comes to rest the thread stops ticking altogether
+ * until the next command is posted.
+ */
+public class PhysicsThread implements Runnable {
+    /** The default number of ticks per second */
+    public static final double defaultRate = 480;
+    /** The most real time one tick may simulate, in seconds */
+    private static final double maxTickTime = 0.25;
+    /** Queued event type for two balls colliding */
+    private static final int COLLISION = 0;
+    /** Queued event type for a ball being potted */
+    private static final int POTTED = 1;
+    /** Queued event type for two balls starting to touch */
+    private static final int CONTACT_BEGIN = 2;
+    /** Queued event type for two balls no longer touching */
+    private static final int CONTACT_END = 3;
+    /** Queued event type for a ball bouncing off a cushion */
+    private static final int CUSHION = 4;
+
+    /** The world being simulated, only touched by the physics thread while running */
+    private final PhysicsWorld world;
+    /** Exact simulation to use instead of stepping, null when stepping. Only touched by the physics thread */
+    private EventSimulator events;
+    /** Number of ticks per second */
+    private final double rate;
+    /** The time between ticks, in nanoseconds */
+    private final long periodNanos;
+    /** The latest published snapshot */
+    private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+    /** Commands waiting to be run on the physics thread */
+    private final ConcurrentLinkedQueue<Consumer<PhysicsWorld>> commands = new ConcurrentLinkedQueue<>();
+    /** Number of commands posted */
+    private final AtomicLong posted = new AtomicLong();
+    /** Number of commands whose effects are in the latest snapshot */
+    private volatile long applied;
+    /** Events waiting to be delivered, each as type, a, b */
+    private final ConcurrentLinkedQueue<int[]> pending = new ConcurrentLinkedQueue<>();
+    /** Records the world's events into {@link #pending} */
+    private final PhysicsListener recorder = new PhysicsListener() {
+        @Override
+        public void ballCollision (int a, int b) {
+            pending.add(new int[] {COLLISION, a, b});
+        }
+        @Override
+        public void ballPotted (int ball, int pocket) {
+            pending.add(new int[] {POTTED, ball, pocket});
+        }
+        @Override
+        public void contactBegin (int a, int b) {
+            pending.add(new int[] {CONTACT_BEGIN, a, b});
+        }
+        @Override
+        public void contactEnd (int a, int b) {
+            pending.add(new int[] {CONTACT_END, a, b});
+        }
+        @Override
+        public void cushionHit (int ball) {
+            pending.add(new int[] {CUSHION, ball, 0});
+        }
+    };
+    /** The world's listener from before the thread started, put back when it stops */
+    private PhysicsListener previousListener;
+    /** The running thread, or null */
+    private volatile Thread thread;
+    /** Cleared to ask the thread to finish */
+    private volatile boolean running;
+    /** Number of ticks taken */
+    private volatile long tickCount;
+
+    /**
+     * Creates a physics thread ticking at the {@link #defaultRate}
+     * @param world The world to simulate
+     */
+    public PhysicsThread (PhysicsWorld world) {
+        this(world, defaultRate);
+    }
+
+    /**
+     * Creates a physics thread, it doesn't start until {@link #start()}. <br>
+     * The world's step length is set to match the rate.
+     * @param world The world to simulate
+     * @param rate Number of ticks per second, more than zero
+     */
+    public PhysicsThread (PhysicsWorld world, double rate) {
+        if (!(rate > 0)) throw new IllegalArgumentException("Rate must be positive: "+rate);
+        this.world = world;
+        this.rate = rate;
+        this.periodNanos = Math.max(1, Math.round(1e9 / rate));
+        world.setStepLength(1 / rate);
+        this.latest.set(new Snapshot(world, null, System.nanoTime()));
+    }
+
+    /**
+     * Starts ticking on a new daemon thread, if not already running
+     */
+    public synchronized void start () {
+        if (this.thread != null) return;
+        this.previousListener = this.world.getListener();
+        this.world.setListener(this.recorder);
+        this.running = true;
+        this.thread = new Thread(this, "Physics");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops ticking and waits for the thread to finish. <br>
+     * Commands posted before this is called are still run, without
+     * another tick, and their events wait for {@link #deliverEvents(PhysicsListener)}.
+     * Afterwards the world can be used directly again.
+     */
+    public synchronized void stop () {
+        if (this.thread == null) return;
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        boolean interrupted = false;
+        while (this.thread.isAlive()) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        this.thread = null;
+        this.world.setListener(this.previousListener);
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Returns whether the thread is running
+     * @return True between {@link #start()} and {@link #stop()}
+     */
+    public boolean isRunning () {
+        return this.running;
+    }
+
+    /**
+     * Queues a command to run on the physics thread before the next tick. <br>
+     * Commands run in the order they were posted.
+     * @param command Receives the world
+     */
+    public void post (Consumer<PhysicsWorld> command) {
+        this.commands.add(command);
+        this.posted.incrementAndGet();
+        Thread t = this.thread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /**
+     * Returns whether the thread has nothing left to do. <br>
+     * That is when every posted command has run and
+     * the latest snapshot shows the table at rest.
+     * @return True if nothing will change until another command is posted
+     */
+    public boolean isIdle () {
+        // Read the applied count first, the snapshot is always published before it
+        long applied = this.applied;
+        return applied == this.posted.get() && this.latest.get().isAtRest();
+    }
+
+    /**
+     * Chooses between stepping the world and the exact event driven simulation
+     * @param eventDriven True to use an {@link EventSimulator}
+     */
+    public void setEventDriven (boolean eventDriven) {
+        post(w -> this.events = eventDriven ? new EventSimulator(w) : null);
+    }
+
+    /**
+     * Returns the latest published snapshot. Never null
+     * @return The state of the world after the last tick
+     */
+    public Snapshot getSnapshot () {
+        return this.latest.get();
+    }
+
+    /**
+     * Returns the moment that should be drawn right now. <br>
+     * This is one tick behind, so the latest snapshot nearly always
+     * covers it and the balls can be interpolated instead of extrapolated.
+     * @return The time to pass to {@link Snapshot#alpha(long)}
+     */
+    public long getRenderTime () {
+        return System.nanoTime() - this.periodNanos;
+    }
+
+    /**
+     * Hands any queued events to a listener, on the calling thread
+     * @param target Receives the events, in the order they happened
+     * @return The number of events delivered
+     */
+    public int deliverEvents (PhysicsListener target) {
+        int n = 0;
+        int[] e;
+        while ((e = this.pending.poll()) != null) {
+            switch (e[0]) {
+            case COLLISION:     target.ballCollision(e[1], e[2]); break;
+            case POTTED:        target.ballPotted(e[1], e[2]);    break;
+            case CONTACT_BEGIN: target.contactBegin(e[1], e[2]);  break;
+            case CONTACT_END:   target.contactEnd(e[1], e[2]);    break;
+            case CUSHION:       target.cushionHit(e[1]);          break;
+            }
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of ticks per second
+     * @return The tick rate
+     */
+    public double getRate () {
+        return this.rate;
+    }
+
+    /**
+     * Returns the number of ticks taken so far
+     * @return The running total of ticks
+     */
+    public long getTickCount () {
+        return this.tickCount;
+    }
+
+    /**
+     * The tick loop, runs until {@link #stop()} is called
+     */
+    @Override
+    public void run () {
+        long last = System.nanoTime();
+        long next = last;
+        long ran = this.applied;
+        while (this.running) {
+            Consumer<PhysicsWorld> command;
+            long before = ran;
+            while ((command = this.commands.poll()) != null) {
+                command.accept(this.world);
+                ran++;
+            }
+            if (ran == before && this.latest.get().isAtRest() && this.world.isAtRest()) {
+                // Nothing to do until a command comes in
+                LockSupport.park(this);
+                last = next = System.nanoTime();
+                continue;
+            }
+            long now = System.nanoTime();
+            double elapsed = Math.min((now - last) * 1e-9, maxTickTime);
+            last = now;
+            if (this.events != null) this.events.advance(elapsed);
+            else this.world.advance(elapsed);
+            this.latest.set(new Snapshot(this.world, this.latest.get(), now));
+            this.applied = ran;
+            this.tickCount++;
+            // Sleep until the next tick, or start again straight away if behind
+            next += this.periodNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(this, wait);
+            else next = System.nanoTime();
+        }
+        // Whatever was asked for before stopping still happens
+        long before = ran;
+        Consumer<PhysicsWorld> command;
+        while ((command = this.commands.poll()) != null) {
+            command.accept(this.world);
+            ran++;
+        }
+        if (ran != before) this.latest.set(new Snapshot(this.world, this.latest.get(), System.nanoTime()));
+        this.applied = ran;
+    }
+
+}
@@ -0,0 +1,964 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * A headless pool table that can be struck and stepped. <p>
+ * Holds the position and velocity of every ball and resolves
+ * pocketing, cushion bounces, and ball collisions. It knows nothing
+ * about Java3D, so anything that draws the balls should copy
+ * the state out after each {@link #advance(double)}.
+ * <p>
+ * Positions are in metres and velocities in metres per second.
+ * <p>
+ * Balls are referred to by index. Potted balls keep their slot,
+ * see {@link #isPotted(int)}.
+ */
+public class PhysicsWorld {
+    /** Index of the cue ball in the standard layout */
+    public static final int CUE = 0;
+    /** Number of balls in the standard layout */
+    public static final int standardCount = 22;
+    /** How far two touching balls must move apart before the contact ends, in metres. <br>
+     * Stops a pair that sits right on the edge from flickering in and out of contact. */
+    public static final double contactSlop = 1e-4;
+    /** Default length of each step taken by {@link #advance(double)}, in seconds */
+    public static final double fixedStep = 1.0 / 120;
+    /** The furthest the fastest ball may move in one substep, in metres */
+    public static final double maxTravel = Ball.radius / 2;
+    /** Number of ball slots in this world */
+    private int count;
+    /** Position, velocity, and flags of every ball. Velocities are in metres per second */
+    private BallStore balls;
+    /** Receives the collision and pocket events, never null */
+    private PhysicsListener listener;
+    /** Finds the pairs of balls worth checking for a collision */
+    private BroadPhase broadPhase;
+    /** The cushions, jaws and pockets balls bounce off and drop into */
+    private TableGeometry geometry;
+    /** Hands candidate pairs from the broad phase to {@link #checkCollision(int, int)} */
+    private final BroadPhase.PairVisitor pairCheck = this::checkCollision;
+    /** Equal to 1 over the mass of each ball, in 1 over kilograms */
+    private final double[] invMass;
+    /** Coefficient of restitution between two balls */
+    private double restitution = Ball.restitution;
+    /** Which pairs of balls are touching, carried over between steps */
+    private final ContactCache contacts;
+    /** Resolves all the contacts found in a step together */
+    private final ContactSolver solver;
+    /** Ends the contacts of a ball that have come apart, see {@link #checkSeparations()} */
+    private final BroadPhase.PairVisitor separationCheck = this::checkSeparation;
+    /** Ends every contact of a ball, see {@link #endContacts(int)} */
+    private final BroadPhase.PairVisitor contactEnd = this::endContact;
+    /** Number of pairs that have had their distance checked */
+    private long pairsTested;
+    /** Number of checked pairs that turned out to be touching */
+    private long pairsColliding;
+    /** Bumped whenever a ball is placed or struck from outside */
+    private int modCount;
+    /** Length of each step taken by {@link #advance(double)}, in seconds */
+    private double stepLength = fixedStep;
+    /** Elapsed time not yet simulated by {@link #advance(double)}, in seconds */
+    private double accumulator;
+    /** Number of fixed steps taken by {@link #advance(double)}, stepped or skipped */
+    private long stepCount;
+    /** Number of substeps taken by {@link #advance(double)} */
+    private long substepCount;
+    /** Number of steps {@link #advance(double)} has skipped over in closed form */
+    private long coastedSteps;
+    /** Seconds until every moving ball has stopped, worked out by the last {@link #clearTime(double)} */
+    private double restTime;
+    /** Indices of the balls that may be moving, the first {@link #activeCount} are in use. <br>
+     * Balls that come to rest are dropped the next time the list is looked at. */
+    private final int[] active;
+    /** Whether each ball is on {@link #active}, every other ball is resting */
+    private final boolean[] isActive;
+    /** Number of entries in use in {@link #active} */
+    private int activeCount;
+    /** The {@link #modCount} the active list was last rebuilt at */
+    private int activeMods = -1;
+    /** Balls that moved since the last {@link #collectMoved(int[])}, the first {@link #movedCount} are in use */
+    private final int[] moved;
+    /** Whether each ball is on {@link #moved} */
+    private final boolean[] isMoved;
+    /** Number of entries in use in {@link #moved} */
+    private int movedCount;
+    /** Set when the broad phase has to look at every ball on the next step */
+    private boolean fullUpdate = true;
+    /** Every ball slot sorted by x, kept nearly in order from one {@link #clearTime(double)} to the next */
+    private final int[] byX;
+    /** Where each ball is in {@link #byX} */
+    private final int[] rankX;
+
+    /**
+     * Creates a world with room for the given number of balls, stored on the heap. <br>
+     * Every slot starts out potted until {@link #setBall(int, int, double, double)} is called.
+     * @param count The number of ball slots
+     */
+    public PhysicsWorld (int count) {
+        this(new BallStore(count, false));
+        for (int i=0; i<count; i++) this.balls.setFlags(i, BallStore.POTTED);
+    }
+
+    /**
+     * Creates a world that simulates the balls in the given store. <br>
+     * Use this with an off-heap store to share the ball state with
+     * a renderer or another process without copying.
+     * @param balls The store to read and write, its contents are kept
+     */
+    public PhysicsWorld (BallStore balls) {
+        this.count = balls.capacity();
+        this.balls = balls;
+        this.listener = new PhysicsListener() {};
+        this.broadPhase = new UniformGrid();
+        this.geometry = TableGeometry.standard();
+        this.contacts = new ContactCache(this.count);
+        this.solver = new ContactSolver(this);
+        this.invMass = new double[this.count];
+        Arrays.fill(this.invMass, 1 / Ball.mass);
+        this.active = new int[this.count];
+        this.isActive = new boolean[this.count];
+        this.moved = new int[this.count];
+        this.isMoved = new boolean[this.count];
+        this.byX = new int[this.count];
+        this.rankX = new int[this.count];
+        for (int i=0; i<this.count; i++) this.byX[i] = i;
+    }
+
+    /**
+     * Creates a world containing the 22 snooker balls in their starting spots. <p>
+     * 0 = Cue ball <br>
+     * 1 = Black ball <br>
+     * 2 = Pink ball <br>
+     * 3 = Blue ball <br>
+     * 4 = Brown ball <br>
+     * 5 = Green ball <br>
+     * 6 = Yellow ball <br>
+     * 7-21 = 15 Red balls
+     * @return The newly created world
+     */
+    public static PhysicsWorld createStandard () {
+        PhysicsWorld w = new PhysicsWorld(standardCount);
+        // The cue ball is worth nothing, then black down to yellow
+        for (int i=0; i<Table.spotX.length; i++)
+            w.setBall(i, (i == 0) ? 0 : 8-i, Table.spotX[i], Table.spotZ[i]);
+        w.addPyramid(7, 5, 1, 0, Table.length/-4 - 2*Ball.radius);
+        return w;
+    }
+
+    /**
+     * Adds multiple pool balls in a equilateral pyramid shape at the given coord. <br>
+     * It will always grow the pyramid towards -z.
+     * @param index The index to start from
+     * @param layers The number of layers in the pyramid
+     * @param value The point value of the balls to spawn
+     * @param x The x-coord of the first pool ball, at the top of the pyramid
+     * @param z The z-coord of the first pool ball, at the top of the pyramid
+     */
+    private void addPyramid (int index, int layers, int value, double x, double z) {
+        double difWidth = Ball.radius*1.1;
+        double difHeight = Math.sin(Math.PI/3) * Ball.radius*2.2;
+        for (int i=0; i<layers; i++) {
+            for (int j=0; j<=i; j++)
+                setBall(index++, value, x+difWidth*2*j, z);
+            x -= difWidth;
+            z -= difHeight;
+        }
+    }
+
+    /**
+     * Places a resting ball on the table
+     * @param i Index of the slot to use
+     * @param value Number of points the ball is worth
+     * @param x x position to set to
+     * @param z z position to set to
+     */
+    public void setBall (int i, int value, double x, double z) {
+        endContacts(i);
+        this.balls.setType(i, value);
+        this.balls.setFlags(i, 0);
+        this.balls.setX(i, x);
+        this.balls.setZ(i, z);
+        stop(i);
+        this.modCount++;
+    }
+
+    /**
+     * Copies the state of every ball into a {@link TableState}. <br>
+     * Along with which balls are touching and the time banked towards the
+     * next step, so restoring it carries on exactly. Doesn't touch the turn.
+     * @param state The state to overwrite, with the same number of ball slots
+     */
+    public void save (TableState state) {
+        state.balls.copyFrom(this.balls);
+        state.contacts.copyFrom(this.contacts);
+        state.accumulator = this.accumulator;
+    }
+
+    /**
+     * Puts every ball back the way a {@link TableState} has it. <p>
+     * No contact events are fired, the touching pairs are simply swapped
+     * for the saved ones. Every ball counts as having moved, so
+     * {@link #collectMoved(int[])} hands them all out once. The solver's
+     * warm start is forgotten, so restoring the same state always plays
+     * out the same way.
+     * @param state The state to restore, with the same number of ball slots
+     */
+    public void restore (TableState state) {
+        this.balls.copyFrom(state.balls);
+        this.contacts.copyFrom(state.contacts);
+        this.solver.reset();
+        this.accumulator = state.accumulator;
+        for (int i=0; i<this.count; i++) {
+            if (!this.isMoved[i]) {
+                this.isMoved[i] = true;
+                this.moved[this.movedCount++] = i;
+            }
+        }
+        this.fullUpdate = true;
+        this.modCount++;
+    }
+
+    /**
+     * Sets the mass of a ball, {@link Ball#mass} by default
+     * @param i Index of the ball
+     * @param mass The mass in kilograms, more than zero
+     */
+    public void setMass (int i, double mass) {
+        if (!(mass > 0)) throw new IllegalArgumentException("Mass must be positive: "+mass);
+        this.invMass[i] = 1 / mass;
+    }
+
+    /**
+     * Returns the mass of a ball
+     * @param i Index of the ball
+     * @return The mass in kilograms
+     */
+    public double getMass (int i) {
+        return 1 / this.invMass[i];
+    }
+
+    /**
+     * Returns 1 over the mass of a ball, as used by the collision response
+     * @param i Index of the ball
+     * @return The inverse mass, in 1 over kilograms
+     */
+    double getInvMass (int i) {
+        return this.invMass[i];
+    }
+
+    /**
+     * Sets how much of their closing speed two balls keep after colliding
+     * @param restitution Between 0 for dead and 1 for perfectly elastic
+     */
+    public void setRestitution (double restitution) {
+        if (!(restitution >= 0 && restitution <= 1))
+            throw new IllegalArgumentException("Restitution must be between 0 and 1: "+restitution);
+        this.restitution = restitution;
+    }
+
+    /**
+     * Returns the coefficient of restitution between two balls
+     * @return Between 0 for dead and 1 for perfectly elastic
+     */
+    public double getRestitution () {
+        return this.restitution;
+    }
+
+    /**
+     * Sets the object that receives collision and pocket events
+     * @param listener The listener, or null for none
+     */
+    public void setListener (PhysicsListener listener) {
+        this.listener = (listener == null) ? new PhysicsListener() {} : listener;
+    }
+
+    /**
+     * Returns the object that receives collision and pocket events
+     * @return The listener, never null
+     */
+    public PhysicsListener getListener () {
+        return this.listener;
+    }
+
+    /**
+     * Returns a number that changes whenever a ball is placed or struck. <br>
+     * Lets anything caching predictions about the balls know to start over.
+     * @return The modification count
+     */
+    public int getModCount () {
+        return this.modCount;
+    }
+
+    /**
+     * Sets the method used to find which pairs of balls to check for collisions. <br>
+     * Defaults to a {@link UniformGrid} over the table.
+     * @param broadPhase The broad phase to use from the next step on
+     */
+    public void setBroadPhase (BroadPhase broadPhase) {
+        this.broadPhase = broadPhase;
+        this.fullUpdate = true;
+    }
+
+    /**
+     * Sets the cushions, jaws and pockets of the table. <br>
+     * Defaults to {@link TableGeometry#standard()}.
+     * @param geometry The table to use from the next step on
+     */
+    public void setGeometry (TableGeometry geometry) {
+        this.geometry = geometry;
+        this.modCount++;
+    }
+
+    /**
+     * Returns the cushions, jaws and pockets of the table
+     * @return The table geometry
+     */
+    public TableGeometry getGeometry () {
+        return this.geometry;
+    }
+
+    /**
+     * Returns the number of ball pairs that have had their
+     * distance checked since the last {@link #resetCounters()}
+     * @return Number of pairs tested
+     */
+    public long getPairsTested () {
+        return this.pairsTested;
+    }
+
+    /**
+     * Returns the number of tested pairs that were touching
+     * since the last {@link #resetCounters()}
+     * @return Number of pairs colliding
+     */
+    public long getPairsColliding () {
+        return this.pairsColliding;
+    }
+
+    /**
+     * Sets the pair counters back to zero
+     */
+    public void resetCounters () {
+        this.pairsTested = 0;
+        this.pairsColliding = 0;
+    }
+
+    /**
+     * Starts moving a ball in the given direction at the given power. <p>
+     * You're fine to pass a negative power to strike the ball backwards.
+     * @param i Index of the ball to strike
+     * @param angle The x-z plane angle to aim at, in radians, where 0 aims towards +z
+     * @param power The speed at which the ball should move, in metres per second
+     * @return False if the ball has been potted and can't be struck
+     */
+    public boolean strike (int i, double angle, double power) {
+        if (this.balls.is(i, BallStore.POTTED)) return false;
+        setVel(i, Math.sin(angle)*power, Math.cos(angle)*power);
+        this.modCount++;
+        return true;
+    }
+
+    /**
+     * Strikes the cue ball, see {@link #strike(int, double, double)}
+     * @param angle The x-z plane angle to aim at, in radians, where 0 aims towards +z
+     * @param power The speed at which the ball should move, in metres per second
+     * @return False if the cue ball has been potted
+     */
+    public boolean strike (double angle, double power) {
+        return strike(CUE, angle, power);
+    }
+
+    /**
+     * Advances the world by real elapsed time, in fixed size steps. <p>
+     * Time is banked until there is enough for a whole step, see {@link #setStepLength(double)},
+     * so the result only depends on the total time passed, not on how it
+     * was sliced up. Each fixed step is split into just enough substeps
+     * that the fastest ball moves at most {@link #maxTravel} per substep.
+     * Nothing is banked while the table is at rest.
+     * <p>
+     * Whole steps in which no ball can reach another ball or a pocket mouth are
+     * not stepped at all, every ball is moved straight to where its
+     * {@link Trajectory} puts it at the end of them. How many can be skipped
+     * at once depends on the time banked, so a shot played at another frame
+     * rate takes the same number of steps but can end up a few microns apart.
+     * @param elapsed Seconds of real time that have passed
+     * @return The number of fixed steps taken
+     */
+    public int advance (double elapsed) {
+        if (isAtRest()) {
+            this.accumulator = 0;
+            return 0;
+        }
+        this.accumulator += elapsed;
+        int steps = 0;
+        double h = this.stepLength;
+        while (this.accumulator >= h) {
+            if (isAtRest()) {
+                this.accumulator = 0;
+                break;
+            }
+            int free = (int) Math.min(Math.floor(clearTime(this.accumulator) / h), Math.floor(this.accumulator / h));
+            // No further than the step the table comes to rest in
+            free = Math.min(free, (int) Math.ceil(this.restTime / h));
+            if (free > 0) {
+                coast(free * h);
+                this.accumulator -= free * h;
+                steps += free;
+                this.coastedSteps += free;
+                continue;
+            }
+            this.accumulator -= h;
+            steps++;
+            int n = (int) Math.ceil(maxSpeed() * h / maxTravel);
+            if (n < 1) n = 1;
+            for (int k=0; k<n; k++) step(h / n);
+            this.substepCount += n;
+        }
+        this.stepCount += steps;
+        return steps;
+    }
+
+    /**
+     * Sets the length of each step taken by {@link #advance(double)}. <br>
+     * Shorter steps cost more but resolve collisions more accurately.
+     * @param stepLength The step length in seconds, more than zero
+     */
+    public void setStepLength (double stepLength) {
+        if (!(stepLength > 0)) throw new IllegalArgumentException("Step length must be positive: "+stepLength);
+        this.stepLength = stepLength;
+    }
+
+    /**
+     * Returns the length of each step taken by {@link #advance(double)}
+     * @return The step length in seconds
+     */
+    public double getStepLength () {
+        return this.stepLength;
+    }
+
+    /**
+     * Returns the speed of the fastest ball on the table
+     * @return The highest speed, in metres per second
+     */
+    public double maxSpeed () {
+        refreshActive();
+        BallStore b = this.balls;
+        double max2 = 0;
+        for (int k=0; k<this.activeCount; k++) {
+            int i = this.active[k];
+            if (b.isMoving(i)) {
+                double vx = b.vx(i), vz = b.vz(i);
+                max2 = Math.max(max2, vx*vx + vz*vz);
+            }
+        }
+        return Math.sqrt(max2);
+    }
+
+    /**
+     * Returns the number of fixed steps taken by {@link #advance(double)} so far,
+     * including those skipped over in closed form
+     * @return The running total of steps
+     */
+    public long getStepCount () {
+        return this.stepCount;
+    }
+
+    /**
+     * Returns the number of substeps taken by {@link #advance(double)} so far
+     * @return The running total of substeps
+     */
+    public long getSubstepCount () {
+        return this.substepCount;
+    }
+
+    /**
+     * Returns the number of steps {@link #advance(double)} has skipped
+     * over in closed form instead of stepping, so far
+     * @return The running total of skipped steps
+     */
+    public long getCoastedSteps () {
+        return this.coastedSteps;
+    }
+
+    /**
+     * Returns how long every moving ball can roll on without
+     * reaching another ball or anything but a plain rail. <p>
+     * Each moving ball gets a share of the gap to everything around it,
+     * all of it next to a resting ball and half next to a moving one, and
+     * the time it takes to roll that far comes from the drag model. The
+     * rails don't count, as a {@link Trajectory} bounces off them exactly,
+     * but the pocket mouths do, see {@link TableGeometry#clearance(double, double)}.
+     * <p>
+     * Only the answer up to a horizon matters, so each ball only looks at
+     * the balls it could get near within it. They are found by sweeping out
+     * from the ball along the balls sorted by x, as in {@link SweepAndPrune}.
+     * @param horizon Seconds that will be simulated at most
+     * @return Seconds of free rolling, exact if less than the horizon,
+     * zero if anything is already close
+     */
+    private double clearTime (double horizon) {
+        refreshActive();
+        BallStore b = this.balls;
+        sortByX();
+        double clear = Double.POSITIVE_INFINITY;
+        this.restTime = 0;
+        double r2 = Ball.radius*2;
+        for (int k=0; k<this.activeCount; k++) {
+            int i = this.active[k];
+            if (!b.isMoving(i)) continue;
+            double x = b.x(i), z = b.z(i);
+            double vx = b.vx(i), vz = b.vz(i);
+            double spd = Math.sqrt(vx*vx + vz*vz);
+            this.restTime = Math.max(this.restTime, Ball.stopTime(spd));
+            double gap = this.geometry.clearance(x, z);
+            if (gap <= 0) return 0;
+            // Further than this, no share of the gap is less than the gap that would matter
+            double reach = r2 + 2*Math.min(gap, Ball.distanceAfter(spd, horizon));
+            int at = this.rankX[i];
+            for (int m=at-1; m>=0; m--) {
+                int j = this.byX[m];
+                if (x - b.x(j) >= reach) break;
+                gap = share(b, i, j, x, z, reach, gap);
+            }
+            for (int m=at+1; m<this.count; m++) {
+                int j = this.byX[m];
+                if (b.x(j) - x >= reach) break;
+                gap = share(b, i, j, x, z, reach, gap);
+            }
+            if (gap <= 0) return 0;
+            if (gap < Ball.stopDistance(spd))
+                clear = Math.min(clear, Ball.timeToTravel(spd, gap));
+        }
+        return clear;
+    }
+
+    /**
+     * Narrows a moving ball's gap down to its share of the gap to another ball
+     * @param b The ball store
+     * @param i Index of the moving ball
+     * @param j Index of the other ball
+     * @param x x coord of the moving ball
+     * @param z z coord of the moving ball
+     * @param reach Balls further apart than this along z are skipped
+     * @param gap The gap so far
+     * @return The smaller of the gap so far and the share of this one
+     */
+    private static double share (BallStore b, int i, int j, double x, double z, double reach, double gap) {
+        if (j == i || b.is(j, BallStore.POTTED)) return gap;
+        double difx = b.x(j) - x;
+        double difz = b.z(j) - z;
+        if (difz >= reach || difz <= -reach) return gap;
+        double share = b.isMoving(j) ? 0.5 : 1;
+        return Math.min(gap, (Math.sqrt(difx*difx+difz*difz) - Ball.radius*2) * share);
+    }
+
+    /**
+     * Brings {@link #byX} back into order by x with an insertion sort,
+     * which costs little as the balls only move a bit between calls
+     */
+    private void sortByX () {
+        BallStore b = this.balls;
+        int[] order = this.byX;
+        for (int p=1; p<this.count; p++) {
+            int i = order[p];
+            double x = b.x(i);
+            int q = p;
+            for (; q>0 && b.x(order[q-1]) > x; q--) order[q] = order[q-1];
+            order[q] = i;
+        }
+        for (int p=0; p<this.count; p++) this.rankX[order[p]] = p;
+    }
+
+    /**
+     * Moves every moving ball along its {@link Trajectory} in one go. <br>
+     * Only safe for as long as {@link #clearTime(double)} allows.
+     * @param t The amount of time to skip, in seconds
+     */
+    private void coast (double t) {
+        BallStore b = this.balls;
+        double limitX = this.geometry.getHalfWidth() - Ball.radius;
+        double limitZ = this.geometry.getHalfLength() - Ball.radius;
+        for (int k=0; k<this.activeCount; k++) {
+            int i = this.active[k];
+            if (!b.isMoving(i)) continue;
+            double vx = b.vx(i), vz = b.vz(i);
+            double spd = Math.sqrt(vx*vx + vz*vz);
+            double dist = Ball.distanceAfter(spd, t) / spd;
+            double drag = Ball.speedAfter(spd, t) / spd;
+            double x = b.x(i) + vx*dist;
+            double z = b.z(i) + vz*dist;
+            double newDX = vx * drag;
+            double newDZ = vz * drag;
+            if (Trajectory.mirrored(x, limitX)) newDX = -newDX;
+            if (Trajectory.mirrored(z, limitZ)) newDZ = -newDZ;
+            // The bounces folded into the path still count
+            int bounces = Trajectory.bounces(x, limitX) + Trajectory.bounces(z, limitZ);
+            for (int c=0; c<bounces; c++) this.listener.cushionHit(i);
+            b.setX(i, Trajectory.fold(x, limitX));
+            b.setZ(i, Trajectory.fold(z, limitZ));
+            setVel(i, newDX, newDZ);
+        }
+        // Balls that stopped along the way leave the active list before the broad phase sees them move
+        this.fullUpdate = true;
+    }
+
+    /**
+     * Moves all the pool balls based on their velocity,
+     * slows them down with drag,
+     * then sinks, bounces, and collides them.
+     * @param dt The amount of time to advance, in seconds
+     */
+    public void step (double dt) {
+        refreshActive();
+        BallStore b = this.balls;
+        int[] active = this.active;
+        int n = this.activeCount;
+        for (int k=0; k<n; k++) {
+            int i = active[k];
+            if (b.isMoving(i)) {
+                if (!checkPocketSink(i))
+                    checkWallCollision(i, dt);
+            }
+        }
+        // Check ball collisions
+        if (this.fullUpdate) {
+            this.broadPhase.update(b);
+            this.fullUpdate = false;
+        } else {
+            this.broadPhase.update(b, active, n);
+        }
+        this.broadPhase.forEachPair(b, active, n, this.pairCheck);
+        this.solver.solve();
+        checkSeparations();
+    }
+
+    /**
+     * Ends the contacts of moving balls that have come apart
+     * without the broad phase handing over the pair.
+     */
+    private void checkSeparations () {
+        if (this.contacts.getContactCount() == 0) return;
+        for (int k=0; k<this.activeCount; k++)
+            this.contacts.forEachContact(this.active[k], this.separationCheck);
+    }
+
+    /**
+     * Ends a contact if the two balls are further apart than the slop allows
+     * @param a Index of one of the balls
+     * @param b Index of the other ball
+     */
+    private void checkSeparation (int a, int b) {
+        double difx = this.balls.x(b) - this.balls.x(a);
+        double difz = this.balls.z(b) - this.balls.z(a);
+        double apart = Ball.radius*2 + contactSlop;
+        if (difx*difx+difz*difz > apart*apart) endContact(a, b);
+    }
+
+    /**
+     * Forgets a contact and tells the listener it has ended
+     * @param a Index of one of the balls
+     * @param b Index of the other ball
+     */
+    private void endContact (int a, int b) {
+        if (this.contacts.separate(a, b)) this.listener.contactEnd(a, b);
+    }
+
+    /**
+     * Ends every contact of a ball, such as when it leaves the table
+     * @param i Index of the ball
+     */
+    private void endContacts (int i) {
+        this.contacts.forEachContact(i, this.contactEnd);
+    }
+
+    /**
+     * Returns the solver that resolves the contacts found each step
+     * @return The contact solver, for its settings and statistics
+     */
+    public ContactSolver getSolver () {
+        return this.solver;
+    }
+
+    /**
+     * Returns the pairs of balls currently touching
+     * @return The contact cache, read only
+     */
+    public ContactCache getContacts () {
+        return this.contacts;
+    }
+
+    /**
+     * Puts a ball on the active list if it is moving. <br>
+     * Anything that sets a ball moving by writing to the
+     * {@link BallStore} directly should call this afterwards.
+     * @param i Index of the ball
+     */
+    public void wake (int i) {
+        if (!this.isActive[i] && this.balls.isMoving(i)) {
+            this.isActive[i] = true;
+            this.active[this.activeCount++] = i;
+        }
+        if (!this.isMoved[i] && this.balls.isMoving(i)) {
+            this.isMoved[i] = true;
+            this.moved[this.movedCount++] = i;
+        }
+    }
+
+    /**
+     * Notes that a ball's position was changed by the solver rather than
+     * by moving, such as when it is pushed out of an overlap. It goes on the
+     * moved list even if at rest, and if it isn't active the broad phase,
+     * which only refreshes active balls, looks at every ball next step.
+     * @param i Index of the ball
+     */
+    void displaced (int i) {
+        if (!this.isMoved[i]) {
+            this.isMoved[i] = true;
+            this.moved[this.movedCount++] = i;
+        }
+        if (!this.isActive[i]) this.fullUpdate = true;
+    }
+
+    /**
+     * Lists every ball that has been in motion since the last call. <p>
+     * Unlike the active list this keeps balls that have already come to
+     * rest, until they have been handed out once, so anything drawing the
+     * balls sees where they stopped. Balls placed with
+     * {@link #setBall(int, int, double, double)} aren't included,
+     * but after a {@link #restore(TableState)} every ball is.
+     * @param out Receives the ball indices, needs room for every ball
+     * @return The number of indices written
+     */
+    public int collectMoved (int[] out) {
+        int n = this.movedCount, kept = 0;
+        for (int k=0; k<n; k++) {
+            int i = this.moved[k];
+            out[k] = i;
+            if (this.balls.isMoving(i)) this.moved[kept++] = i;
+            else this.isMoved[i] = false;
+        }
+        this.movedCount = kept;
+        return n;
+    }
+
+    /**
+     * Returns the number of balls on the active list
+     * @return How many balls may be moving, resting balls are not counted
+     */
+    public int getActiveCount () {
+        refreshActive();
+        return this.activeCount;
+    }
+
+    /**
+     * Drops balls that have come to rest from the active list. <br>
+     * After a ball was placed or struck from outside, the
+     * whole list is rebuilt instead.
+     */
+    private void refreshActive () {
+        BallStore b = this.balls;
+        if (this.activeMods != this.modCount) {
+            this.activeMods = this.modCount;
+            this.activeCount = 0;
+            Arrays.fill(this.isActive, false);
+            for (int i=0; i<this.count; i++) wake(i);
+            this.fullUpdate = true;
+            return;
+        }
+        int n = 0;
+        for (int k=0; k<this.activeCount; k++) {
+            int i = this.active[k];
+            if (b.isMoving(i)) this.active[n++] = i;
+            else this.isActive[i] = false;
+        }
+        this.activeCount = n;
+    }
+
+    /**
+     * Returns whether every ball on the table has stopped
+     * @return True if nothing is in motion
+     */
+    public boolean isAtRest () {
+        refreshActive();
+        return this.activeCount == 0;
+    }
+
+    /**
+     * Checks if a pool ball is within a pocket
+     * and sinks it if so.
+     * @param i The index the pool ball is at
+     * @return True if the ball was sunk
+     */
+    private boolean checkPocketSink (int i) {
+        int p = this.geometry.pocketAt(this.balls.x(i), this.balls.z(i));
+        if (p < 0) return false;
+        stop(i);
+        this.balls.set(i, BallStore.POTTED, true);
+        endContacts(i);
+        this.listener.ballPotted(i, p);
+        return true;
+    }
+
+    /**
+     * Moves a pool ball, applies drag, and
+     * calculates the bounce off any wall it hits.
+     * @param i The index of the pool ball to move
+     * @param dt The amount of time to advance, in seconds
+     */
+    private void checkWallCollision (int i, double dt) {
+        // Calculate raw new values
+        BallStore b = this.balls;
+        double vx = b.vx(i), vz = b.vz(i);
+        double spd = Math.sqrt(vx*vx + vz*vz);
+        double dist = Ball.distanceAfter(spd, dt) / spd;
+        double drag = Ball.speedAfter(spd, dt) / spd;
+        double newX = b.x(i) + vx*dist;
+        double newZ = b.z(i) + vz*dist;
+        b.setX(i, newX);
+        b.setZ(i, newZ);
+        b.setVx(i, vx * drag);
+        b.setVz(i, vz * drag);
+        // Only the cushions and jaws near the ball are looked at
+        if (this.geometry.bounce(b, i) > 0) this.listener.cushionHit(i);
+        setVel(i, b.vx(i), b.vz(i));
+    }
+
+    /**
+     * Checks whether two balls are touching. <br>
+     * Touching pairs are handed to the {@link ContactSolver}, which
+     * resolves them all together at the end of the step.
+     * @param a Index of one of the pool balls, not potted
+     * @param b Index of a different pool ball, not potted
+     */
+    void checkCollision (int a, int b) {
+        // Both exist and either or are in motion
+        BallStore s = this.balls;
+        if (s.is(a, BallStore.IN_MOTION) || s.is(b, BallStore.IN_MOTION)) {
+            double difx = s.x(b) - s.x(a) ;
+            double difz = s.z(b) - s.z(a) ;
+            this.pairsTested++;
+            if (difx*difx+difz*difz > Ball.radius2*4) {
+                // Only a pair that was touching needs a closer look
+                if (this.contacts.isTouching(a, b)) checkSeparation(a, b);
+            } else {
+                this.pairsColliding++;
+                boolean begun = this.contacts.touch(a, b);
+                if (begun) this.listener.contactBegin(a, b);
+                this.solver.add(a, b, !begun);
+            }
+        }
+    }
+
+    /**
+     * Sets the velocity of a pool ball, <br>
+     * and updates {@link BallStore#IN_MOTION} appropriately.
+     * @param i Index of the pool ball
+     * @param x The new x velocity of the pool ball
+     * @param z The new z velocity of the pool ball
+     */
+    void setVel (int i, double x, double z) {
+        if (x*x+z*z < Ball.spdLimit2) {
+            stop(i);
+        } else {
+            this.balls.setVx(i, x);
+            this.balls.setVz(i, z);
+            this.balls.set(i, BallStore.IN_MOTION, true);
+            wake(i);
+        }
+    }
+
+    /**
+     * Sets a pool ball's velocity to
+     * zero and sets inMotion to false.
+     * @param i Index of the pool ball
+     */
+    private void stop (int i) {
+        this.balls.setVx(i, 0);
+        this.balls.setVz(i, 0);
+        this.balls.set(i, BallStore.IN_MOTION, false);
+    }
+
+    /**
+     * Returns the store holding the state of every ball. <br>
+     * The collision code reads and writes it directly, so changes
+     * made through it are seen on the next step.
+     * @return The backing ball store
+     */
+    public BallStore getStore () {
+        return this.balls;
+    }
+
+    /**
+     * Returns the number of ball slots in this world
+     * @return The number of ball slots, potted or not
+     */
+    public int getBallCount () {
+        return this.count;
+    }
+
+    /**
+     * Returns the x position of a pool ball
+     * @param i Index of the pool ball
+     * @return x position of the pool ball
+     */
+    public double getPosX (int i) {
+        return this.balls.x(i);
+    }
+
+    /**
+     * Returns the z position of a pool ball
+     * @param i Index of the pool ball
+     * @return z position of the pool ball
+     */
+    public double getPosZ (int i) {
+        return this.balls.z(i);
+    }
+
+    /**
+     * Returns the x velocity of a pool ball
+     * @param i Index of the pool ball
+     * @return The x velocity of the pool ball, in metres per second
+     */
+    public double getVelX (int i) {
+        return this.balls.vx(i);
+    }
+
+    /**
+     * Returns the z velocity of a pool ball
+     * @param i Index of the pool ball
+     * @return The z velocity of the pool ball, in metres per second
+     */
+    public double getVelZ (int i) {
+        return this.balls.vz(i);
+    }
+
+    /**
+     * Returns whether a pool ball is in motion, <br>
+     * or, has a non-negligible velocity.
+     * @param i Index of the pool ball
+     * @return True if the ball is moving
+     */
+    public boolean isInMotion (int i) {
+        return this.balls.is(i, BallStore.IN_MOTION);
+    }
+
+    /**
+     * Returns whether a pool ball has been sunk
+     * @param i Index of the pool ball
+     * @return True if the ball is off the table
+     */
+    public boolean isPotted (int i) {
+        return this.balls.is(i, BallStore.POTTED);
+    }
+
+    /**
+     * Returns the number of points a ball is worth
+     * @param i Index of the pool ball
+     * @return Integer value of the ball
+     */
+    public int getPointValue (int i) {
+        return this.balls.type(i);
+    }
+
+}
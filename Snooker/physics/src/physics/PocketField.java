@@ -0,0 +1,434 @@
+package physics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Which pockets an object ball can be potted into from where the cue ball is,
+ * and how thin the cut is, worked out ahead of time for the whole table. <p>
+ * The playing surface is split into square cells. For every cell the cue ball
+ * could be in and every cell the object ball could be in, one int holds the
+ * cut angle into each pocket, rounded to {@link #cutStep}, along with the pocket
+ * with the straightest pot. A pocket only counts if a ball rolling from the
+ * object cell straight at it meets the pocket before any cushion or jaw, found
+ * with {@link TableGeometry#firstContact(double, double, double, double, double, int[])},
+ * and the cut is less than a right angle. Other balls in the way are ignored.
+ * <p>
+ * Building takes a second or so, so the field is written to a file the first
+ * time and memory mapped from it after that. The header records the table and
+ * cell size it was built for, and the file is built again if they don't match.
+ * Every lookup is a couple of multiplies and one read from the mapping.
+ */
+public class PocketField {
+    /** Default size of the cells, in metres */
+    public static final double defaultCellSize = 0.05;
+    /** Cut angles are rounded down to a multiple of this, in radians, six degrees */
+    public static final double cutStep = Math.PI / 30;
+    /** The cut code for a pocket that can't be potted into */
+    public static final int NONE = 15;
+    /** Most pockets a field can hold, each takes four bits */
+    public static final int maxPockets = 6;
+    /** Marks a file as a pocket field, "PKFD" */
+    private static final int magic = 0x504B4644;
+    /** Bumped whenever the layout of the file changes */
+    private static final int version = 1;
+    /** Bytes before the first cell pair */
+    private static final int headerBytes = 64;
+    /** The cosine each cut code starts at, cut code k covers cosines above cosEdge[k] */
+    private static final double[] cosEdge = new double[NONE];
+    static {
+        for (int k=0; k<NONE; k++) cosEdge[k] = Math.cos((k+1) * cutStep);
+    }
+
+    /** The mapped cell pairs */
+    private final ByteBuffer data;
+    /** Size of the cells */
+    private final double cellSize;
+    /** Half the size of the table, the grid starts at minus these */
+    private final double halfWidth, halfLength;
+    /** Number of cells across and along the table */
+    private final int cellsX, cellsZ;
+    /** Number of cells in total */
+    private final int cells;
+    /** Number of pockets */
+    private final int pockets;
+
+    /**
+     * Wraps a mapped file, see {@link #open(Path, TableGeometry, double)}
+     * @param data The whole file
+     * @param geometry The table it was built for
+     * @param cellSize Size of the cells
+     */
+    private PocketField (ByteBuffer data, TableGeometry geometry, double cellSize) {
+        this.data = data;
+        this.cellSize = cellSize;
+        this.halfWidth = geometry.getHalfWidth();
+        this.halfLength = geometry.getHalfLength();
+        this.cellsX = (int) Math.ceil(2*this.halfWidth / cellSize);
+        this.cellsZ = (int) Math.ceil(2*this.halfLength / cellSize);
+        this.cells = this.cellsX * this.cellsZ;
+        this.pockets = geometry.getPocketCount();
+    }
+
+    /**
+     * Opens the field for the standard table from the user's cache directory,
+     * see {@link #defaultFile()}, building it first if it isn't there
+     * @return The field
+     * @throws IOException If the file can't be read or written
+     */
+    public static PocketField openDefault () throws IOException {
+        return open(defaultFile(), TableGeometry.standard(), defaultCellSize);
+    }
+
+    /**
+     * Returns where {@link #openDefault()} keeps the field. <br>
+     * Under {@code $XDG_CACHE_HOME/snooker} if that is set, otherwise
+     * {@code ~/.cache/snooker}, so every user has their own file that
+     * others can't swap out. The file layout version is in the name.
+     * @return The path of the file, which may not exist yet
+     */
+    public static Path defaultFile () {
+        String cache = System.getenv("XDG_CACHE_HOME");
+        Path dir = (cache != null && !cache.isEmpty())
+            ? Paths.get(cache)
+            : Paths.get(System.getProperty("user.home"), ".cache");
+        return dir.resolve("snooker").resolve("pockets-v"+version+".bin");
+    }
+
+    /**
+     * Maps a field from a file, building and writing it first if the
+     * file is missing or was built for a different table or cell size
+     * @param file Where the field is kept
+     * @param geometry The table, with at most {@link #maxPockets} pockets
+     * @param cellSize Size of the cells in metres, more than zero
+     * @return The field
+     * @throws IOException If the file can't be read or written
+     */
+    public static PocketField open (Path file, TableGeometry geometry, double cellSize) throws IOException {
+        if (!(cellSize > 0)) throw new IllegalArgumentException("Cell size must be positive: "+cellSize);
+        if (geometry.getPocketCount() > maxPockets)
+            throw new IllegalArgumentException("At most "+maxPockets+" pockets: "+geometry.getPocketCount());
+        PocketField f = new PocketField(null, geometry, cellSize);
+        long size = headerBytes + 4L * f.cells * f.cells;
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Cells too small to map: "+cellSize);
+        long stamp = stamp(geometry, cellSize);
+        if (!matches(file, size, stamp)) build(file, geometry, f, size, stamp);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            return new PocketField(data, geometry, cellSize);
+        }
+    }
+
+    /**
+     * Checks whether a file holds a field built for the same table
+     * @param file The file
+     * @param size The size it should be
+     * @param stamp The stamp it should have
+     * @return True if it can be used as it is
+     * @throws IOException If the file can't be read
+     */
+    private static boolean matches (Path file, long size, long stamp) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) != size) return false;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer h = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+            while (h.hasRemaining() && ch.read(h) >= 0);
+            return h.getInt(0) == magic && h.getInt(4) == version && h.getLong(8) == stamp;
+        }
+    }
+
+    /**
+     * Works out a number that changes whenever anything the field depends on does
+     * @param g The table
+     * @param cellSize Size of the cells
+     * @return The stamp
+     */
+    private static long stamp (TableGeometry g, double cellSize) {
+        long s = ZobristHash.mix(Double.doubleToLongBits(cellSize) ^ Double.doubleToLongBits(Ball.radius));
+        // Every end of every cushion and jaw decides which pockets can be reached
+        return ZobristHash.mix(s ^ g.fingerprint());
+    }
+
+    /**
+     * Builds the field into a file next to the target, then moves it into place,
+     * so a half written file is never left where it would be read
+     * @param file Where the field is kept
+     * @param g The table
+     * @param f An empty field with the grid worked out
+     * @param size The size of the file
+     * @param stamp The stamp to write in the header
+     * @throws IOException If the file can't be written
+     */
+    private static void build (Path file, TableGeometry g, PocketField f, long size, long stamp) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "pockets", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer out = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                out.order(ByteOrder.LITTLE_ENDIAN);
+                fill(out, g, f);
+                out.putInt(4, version);
+                out.putLong(8, stamp);
+                out.putInt(16, f.cellsX);
+                out.putInt(20, f.cellsZ);
+                out.putDouble(24, f.cellSize);
+                // The magic goes in last, a file without it is never trusted
+                out.putInt(0, magic);
+                out.force();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Works out every cell pair, one cue cell per task across every core
+     * @param out The mapped file to fill
+     * @param g The table
+     * @param f An empty field with the grid worked out
+     */
+    private static void fill (ByteBuffer out, TableGeometry g, PocketField f) {
+        int n = f.cells, pockets = g.getPocketCount();
+        // For every object cell, the pockets it can reach and where the cue ball must hit it
+        long[] reach = new long[n];
+        double[] ox = new double[n], oz = new double[n];
+        double[] ux = new double[n*pockets], uz = new double[n*pockets];
+        double[] gx = new double[n*pockets], gz = new double[n*pockets];
+        int[] hit = new int[2];
+        double lx = g.getHalfWidth() - Ball.radius, lz = g.getHalfLength() - Ball.radius;
+        for (int o=0; o<n; o++) {
+            // Cells round the edge are looked at from the nearest spot a ball fits
+            ox[o] = Math.max(-lx, Math.min(lx, f.centreX(o)));
+            oz[o] = Math.max(-lz, Math.min(lz, f.centreZ(o)));
+            for (int p=0; p<pockets; p++) {
+                double dx = g.getPocketX(p) - ox[o], dz = g.getPocketZ(p) - oz[o];
+                double d = Math.hypot(dx, dz);
+                if (d == 0) continue;
+                int k = o*pockets + p;
+                ux[k] = dx / d;
+                uz[k] = dz / d;
+                gx[k] = ox[o] - ux[k]*2*Ball.radius;
+                gz[k] = oz[o] - uz[k]*2*Ball.radius;
+                g.firstContact(ox[o], oz[o], ux[k], uz[k], d, hit);
+                if (hit[0] == TableGeometry.POCKET && hit[1] == p) reach[o] |= 1L << p;
+            }
+        }
+        IntStream.range(0, n).parallel().forEach(c -> {
+            ByteBuffer buf = out.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            double cx = f.centreX(c), cz = f.centreZ(c);
+            int base = headerBytes + 4*c*n;
+            for (int o=0; o<n; o++) {
+                int packed = -1;
+                double sx = ox[o] - cx, sz = oz[o] - cz;
+                if (sx*sx + sz*sz > 4*Ball.radius*Ball.radius) {
+                    int best = 7, bestCode = NONE;
+                    packed = 0;
+                    for (int p=0; p<maxPockets; p++) {
+                        int code = NONE;
+                        if (p < pockets && (reach[o] & (1L << p)) != 0) {
+                            int k = o*pockets + p;
+                            double ax = gx[k] - cx, az = gz[k] - cz;
+                            double a = Math.sqrt(ax*ax + az*az);
+                            if (a > 0) code = code((ax*ux[k] + az*uz[k]) / a);
+                            else code = 0;
+                        }
+                        packed |= code << (4*p);
+                        if (code < bestCode) {
+                            bestCode = code;
+                            best = p;
+                        }
+                    }
+                    packed |= best << 24;
+                }
+                buf.putInt(base + 4*o, packed);
+            }
+        });
+    }
+
+    /**
+     * Rounds a cut to its code
+     * @param cos The cosine of the cut angle
+     * @return The cut angle over {@link #cutStep} rounded down, or {@link #NONE} if a right angle or more
+     */
+    private static int code (double cos) {
+        int k = 0;
+        while (k < NONE && cos <= cosEdge[k]) k++;
+        return k;
+    }
+
+    /**
+     * Returns the x position of the middle of a cell
+     * @param cell Index of the cell
+     * @return x position in metres
+     */
+    private double centreX (int cell) {
+        return -this.halfWidth + (cell % this.cellsX + 0.5) * this.cellSize;
+    }
+
+    /**
+     * Returns the z position of the middle of a cell
+     * @param cell Index of the cell
+     * @return z position in metres
+     */
+    private double centreZ (int cell) {
+        return -this.halfLength + (cell / this.cellsX + 0.5) * this.cellSize;
+    }
+
+    /**
+     * Finds the cell a point is in, points off the table use the nearest cell
+     * @param x x position
+     * @param z z position
+     * @return Index of the cell
+     */
+    public int cellOf (double x, double z) {
+        int i = (int) ((x + this.halfWidth) / this.cellSize);
+        int j = (int) ((z + this.halfLength) / this.cellSize);
+        i = Math.max(0, Math.min(this.cellsX - 1, i));
+        j = Math.max(0, Math.min(this.cellsZ - 1, j));
+        return i + j*this.cellsX;
+    }
+
+    /**
+     * Looks up everything the field knows about a cue ball and object ball
+     * @param cx x position of the cue ball
+     * @param cz z position of the cue ball
+     * @param ox x position of the object ball
+     * @param oz z position of the object ball
+     * @return Four bits per pocket holding its cut code, then three for the
+     * best pocket, or -1 if the balls are too close to pot anything
+     */
+    public int get (double cx, double cz, double ox, double oz) {
+        return get(cellOf(cx, cz), cellOf(ox, oz));
+    }
+
+    /**
+     * Looks up a pair of cells
+     * @param cue Cell of the cue ball, from {@link #cellOf(double, double)}
+     * @param obj Cell of the object ball
+     * @return The packed pair, see {@link #get(double, double, double, double)}
+     */
+    public int get (int cue, int obj) {
+        return this.data.getInt(headerBytes + 4*(cue*this.cells + obj));
+    }
+
+    /**
+     * Unpacks the cut code of one pocket
+     * @param packed From {@link #get(double, double, double, double)}
+     * @param p Index of the pocket
+     * @return The cut angle over {@link #cutStep} rounded down, or {@link #NONE}
+     */
+    public static int cutCode (int packed, int p) {
+        return (packed >>> (4*p)) & 15;
+    }
+
+    /**
+     * Unpacks the pocket with the straightest pot
+     * @param packed From {@link #get(double, double, double, double)}
+     * @return Index of the pocket, or -1 if nothing can be potted
+     */
+    public static int bestPocket (int packed) {
+        int p = (packed >>> 24) & 7;
+        return (p >= maxPockets) ? -1 : p;
+    }
+
+    /**
+     * Returns the cut angle into a pocket
+     * @param cx x position of the cue ball
+     * @param cz z position of the cue ball
+     * @param ox x position of the object ball
+     * @param oz z position of the object ball
+     * @param p Index of the pocket
+     * @return The angle in radians, the middle of its step, or NaN if it can't be potted there
+     */
+    public double getCut (double cx, double cz, double ox, double oz, int p) {
+        int code = cutCode(get(cx, cz, ox, oz), p);
+        return (code == NONE) ? Double.NaN : (code + 0.5) * cutStep;
+    }
+
+    /**
+     * Returns the pockets an object ball can be potted into with at most a given cut
+     * @param cx x position of the cue ball
+     * @param cz z position of the cue ball
+     * @param ox x position of the object ball
+     * @param oz z position of the object ball
+     * @param maxCut The thinnest cut allowed, in radians
+     * @return One bit per pocket
+     */
+    public int getReachable (double cx, double cz, double ox, double oz, double maxCut) {
+        int packed = get(cx, cz, ox, oz);
+        int limit = (int) Math.min(NONE, maxCut / cutStep);
+        int mask = 0;
+        for (int p=0; p<this.pockets; p++)
+            if (cutCode(packed, p) < limit) mask |= 1 << p;
+        return mask;
+    }
+
+    /**
+     * Returns the pocket with the straightest pot
+     * @param cx x position of the cue ball
+     * @param cz z position of the cue ball
+     * @param ox x position of the object ball
+     * @param oz z position of the object ball
+     * @return Index of the pocket, or -1 if nothing can be potted
+     */
+    public int getBestPocket (double cx, double cz, double ox, double oz) {
+        return bestPocket(get(cx, cz, ox, oz));
+    }
+
+    /**
+     * Returns the size of the cells
+     * @return The cell size in metres
+     */
+    public double getCellSize () {
+        return this.cellSize;
+    }
+
+    /**
+     * Returns the number of cells
+     * @return The cells across times the cells along
+     */
+    public int getCellCount () {
+        return this.cells;
+    }
+
+    /**
+     * Opens or builds the standard field and times lookups from random spots
+     * @param args Optionally the file to keep the field in
+     * @throws IOException If the file can't be read or written
+     */
+    public static void main (String[] args) throws IOException {
+        long t0 = System.nanoTime();
+        PocketField f = (args.length > 0)
+            ? open(Paths.get(args[0]), TableGeometry.standard(), defaultCellSize)
+            : openDefault();
+        System.out.printf("%d cells, %d MB, opened in %.2fs%n", f.cells,
+            (4L * f.cells * f.cells) >> 20, (System.nanoTime() - t0) * 1e-9);
+        int n = 1 << 20;
+        double[] xs = new double[n], zs = new double[n];
+        Random r = new Random(1);
+        for (int k=0; k<n; k++) {
+            xs[k] = (r.nextDouble() - 0.5) * 2*f.halfWidth;
+            zs[k] = (r.nextDouble() - 0.5) * 2*f.halfLength;
+        }
+        for (int round=0; round<5; round++) {
+            long sum = 0;
+            t0 = System.nanoTime();
+            for (int k=0; k<n; k++)
+                sum += f.getBestPocket(xs[k], zs[k], xs[(k*7+1) & (n-1)], zs[(k*7+1) & (n-1)]);
+            double secs = (System.nanoTime() - t0) * 1e-9;
+            System.out.printf("%.1f million lookups per second (%d)%n", n / secs / 1e6, sum);
+        }
+    }
+
+}
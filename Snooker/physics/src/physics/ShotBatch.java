@@ -0,0 +1,309 @@
+package physics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plays a list of shots from one table across every core. <p>
+ * The shots are split up with a {@link ForkJoinPool}, halving the list
+ * until each task is down to a few shots. Every worker thread plays its
+ * shots on its own {@link ShotSimulator}, made the first time that thread
+ * needs one, so nothing is shared while shots play out apart from the
+ * starting table, which is only read, and an optional {@link ShotCache}.
+ * <p>
+ * {@link #main(String[])} runs a batch of shots at increasing thread
+ * counts and prints the shots per second per core, to show how well it
+ * scales. The shots are random unless read from a file, and are played
+ * from the standard layout unless a table is read from a file too.
+ */
+public class ShotBatch {
+    /** Number of shots a task plays itself rather than splitting further */
+    private static final int leafSize = 4;
+
+    /** The table every shot is played from, never written to */
+    private final TableState start;
+    /** Answers repeated shots, or null */
+    private final ShotCache cache;
+    /** The simulator of each worker thread */
+    private final ThreadLocal<ShotSimulator> simulators;
+    /** How long the last {@link #run(double[], double[], ForkJoinPool)} took, in nanoseconds */
+    private volatile long lastNanos;
+
+    /**
+     * Creates a batch that plays from a copy of a table
+     * @param start The table to play every shot from
+     */
+    public ShotBatch (TableState start) {
+        this(start, null);
+    }
+
+    /**
+     * Creates a batch that plays from a copy of a table
+     * @param start The table to play every shot from
+     * @param cache Shared by every worker to answer repeated shots, or null
+     */
+    public ShotBatch (TableState start, ShotCache cache) {
+        this.start = new TableState(start.getBallCount());
+        this.start.copyFrom(start);
+        this.cache = cache;
+        int count = start.getBallCount();
+        this.simulators = ThreadLocal.withInitial(() -> {
+            ShotSimulator sim = new ShotSimulator(count);
+            sim.setCache(this.cache);
+            return sim;
+        });
+    }
+
+    /**
+     * Plays every shot on the common pool
+     * @param angles The angle of each shot, in radians, where 0 aims towards +z
+     * @param powers The speed of each shot, in metres per second
+     * @return The result of each shot, in the same order
+     */
+    public ShotResult[] run (double[] angles, double[] powers) {
+        return run(angles, powers, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plays every shot on the given pool. <br>
+     * Blocks until every shot has come to rest.
+     * @param angles The angle of each shot, in radians, where 0 aims towards +z
+     * @param powers The speed of each shot, in metres per second, as many as there are angles
+     * @param pool The pool to run on, its parallelism sets how many cores are used
+     * @return The result of each shot, in the same order
+     */
+    public ShotResult[] run (double[] angles, double[] powers, ForkJoinPool pool) {
+        if (angles.length != powers.length)
+            throw new IllegalArgumentException("Got "+angles.length+" angles but "+powers.length+" powers");
+        ShotResult[] results = new ShotResult[angles.length];
+        long t0 = System.nanoTime();
+        pool.invoke(new Task(angles, powers, results, 0, angles.length));
+        this.lastNanos = System.nanoTime() - t0;
+        return results;
+    }
+
+    /**
+     * Returns how long the last batch took
+     * @return The wall clock time in seconds
+     */
+    public double getLastSeconds () {
+        return this.lastNanos * 1e-9;
+    }
+
+    /**
+     * Plays a range of the shots, splitting it in half while it's big
+     */
+    private class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /** The angle of each shot */
+        private final double[] angles;
+        /** The power of each shot */
+        private final double[] powers;
+        /** Receives the result of each shot */
+        private final ShotResult[] results;
+        /** The first shot of the range, and one past the last */
+        private final int from, to;
+
+        /**
+         * Creates a task for a range of shots
+         * @param angles The angle of each shot
+         * @param powers The power of each shot
+         * @param results Receives the result of each shot
+         * @param from The first shot to play
+         * @param to One past the last shot to play
+         */
+        Task (double[] angles, double[] powers, ShotResult[] results, int from, int to) {
+            this.angles = angles;
+            this.powers = powers;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute () {
+            if (this.to - this.from <= leafSize) {
+                ShotSimulator sim = ShotBatch.this.simulators.get();
+                for (int k=this.from; k<this.to; k++)
+                    this.results[k] = sim.run(ShotBatch.this.start, this.angles[k], this.powers[k]);
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(new Task(this.angles, this.powers, this.results, this.from, mid),
+                      new Task(this.angles, this.powers, this.results, mid, this.to));
+        }
+    }
+
+    /**
+     * Reads a table from a text file. <p>
+     * Each line is a ball index then its x and z position, in metres,
+     * separated by spaces. Balls are worth what they are in the standard
+     * layout, and any ball not listed is off the table. Blank lines and
+     * lines starting with {@code #} are skipped.
+     * @param file The file to read
+     * @return The table, with {@link PhysicsWorld#standardCount} ball slots
+     * @throws IOException If the file can't be read
+     */
+    static TableState readTable (Path file) throws IOException {
+        PhysicsWorld standard = PhysicsWorld.createStandard();
+        PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+        int n = 0;
+        for (String line : Files.readAllLines(file)) {
+            n++;
+            String[] f = fields(line);
+            if (f == null) continue;
+            if (f.length != 3) throw new IllegalArgumentException(file+":"+n+": expected index x z, got \""+line+"\"");
+            int i = Integer.parseInt(f[0]);
+            if (i < 0 || i >= PhysicsWorld.standardCount)
+                throw new IllegalArgumentException(file+":"+n+": no ball "+i);
+            w.setBall(i, standard.getPointValue(i), Double.parseDouble(f[1]), Double.parseDouble(f[2]));
+        }
+        TableState state = new TableState(PhysicsWorld.standardCount);
+        w.save(state);
+        return state;
+    }
+
+    /**
+     * Reads a list of shots from a text file. <br>
+     * Each line is an angle, in radians, then a power, in metres per second.
+     * Blank lines and lines starting with {@code #} are skipped.
+     * @param file The file to read
+     * @return The angles then the powers, as many of each as there are shots
+     * @throws IOException If the file can't be read
+     */
+    static double[][] readShots (Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        double[] angles = new double[lines.size()], powers = new double[lines.size()];
+        int shots = 0, n = 0;
+        for (String line : lines) {
+            n++;
+            String[] f = fields(line);
+            if (f == null) continue;
+            if (f.length != 2) throw new IllegalArgumentException(file+":"+n+": expected angle power, got \""+line+"\"");
+            angles[shots] = Double.parseDouble(f[0]);
+            powers[shots] = Double.parseDouble(f[1]);
+            if (!(powers[shots] > 0)) throw new IllegalArgumentException(file+":"+n+": power must be positive");
+            shots++;
+        }
+        return new double[][] { Arrays.copyOf(angles, shots), Arrays.copyOf(powers, shots) };
+    }
+
+    /**
+     * Splits a line of one of the input files into its fields
+     * @param line The line
+     * @return The fields, or null if the line is blank or a comment
+     */
+    private static String[] fields (String line) {
+        String t = line.trim();
+        if (t.isEmpty() || t.startsWith("#")) return null;
+        return t.split("\\s+");
+    }
+
+    /**
+     * Plays a batch of shots at 1, 2, 4 ... threads up to every core,
+     * printing shots per second and shots per second per core. <p>
+     * Options, all optional: <br>
+     * {@code --table FILE} table to play from, see {@link #readTable(Path)}, the standard layout by default <br>
+     * {@code --input FILE} shots to play, see {@link #readShots(Path)}, every result is printed <br>
+     * {@code --shots N} number of random shots if there is no input, 2000 by default <br>
+     * {@code --threads N} most threads to try, every core by default <br>
+     * {@code --seed N} seed for the random shots <br>
+     * {@code --list} print every shot of the last run
+     * @param args The command line options
+     * @throws IOException If an input file can't be read
+     */
+    public static void main (String[] args) throws IOException {
+        int shots = 2000, maxThreads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        boolean list = false;
+        Path table = null, input = null;
+        for (int k=0; k<args.length; k++) {
+            switch (args[k]) {
+            case "--table":   table = Paths.get(args[++k]);             break;
+            case "--input":   input = Paths.get(args[++k]);             break;
+            case "--shots":   shots = Integer.parseInt(args[++k]);      break;
+            case "--threads": maxThreads = Integer.parseInt(args[++k]); break;
+            case "--seed":    seed = Long.parseLong(args[++k]);         break;
+            case "--list":    list = true;                              break;
+            default:
+                System.err.println("Unknown option "+args[k]);
+                System.err.println("Usage: ShotBatch [--table FILE] [--input FILE] [--shots N] [--threads N] [--seed N] [--list]");
+                System.exit(1);
+            }
+        }
+        if (maxThreads < 1) throw new IllegalArgumentException("Need at least one thread: "+maxThreads);
+        double[] angles, powers;
+        if (input != null) {
+            double[][] read = readShots(input);
+            angles = read[0];
+            powers = read[1];
+            shots = angles.length;
+            if (shots == 0) throw new IllegalArgumentException("No shots in "+input);
+            list = true;
+        } else {
+            if (shots < 1) throw new IllegalArgumentException("Need at least one shot: "+shots);
+            // Powers are whole metres per second, the same as the number keys in the game
+            Random r = new Random(seed);
+            angles = new double[shots];
+            powers = new double[shots];
+            for (int k=0; k<shots; k++) {
+                angles[k] = r.nextDouble() * 2*Math.PI;
+                powers[k] = 1 + r.nextInt(9);
+            }
+        }
+        TableState start;
+        if (table != null) {
+            start = readTable(table);
+        } else {
+            start = new TableState(PhysicsWorld.standardCount);
+            PhysicsWorld.createStandard().save(start);
+        }
+        ShotBatch batch = new ShotBatch(start);
+
+        // Warm up, so the first timed run isn't paying for compilation
+        ForkJoinPool warm = new ForkJoinPool(maxThreads);
+        batch.run(angles, powers, warm);
+        warm.shutdown();
+
+        System.out.printf("%d shots from %s%n", shots, (table != null) ? table : "the standard layout");
+        System.out.printf("%8s %12s %14s %9s%n", "threads", "shots/s", "shots/s/core", "speedup");
+        double single = 0;
+        ShotResult[] results = null;
+        for (int threads=1; ; threads=Math.min(threads*2, maxThreads)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            results = batch.run(angles, powers, pool);
+            pool.shutdown();
+            double rate = shots / batch.getLastSeconds();
+            if (threads == 1) single = rate;
+            System.out.printf("%8d %12.1f %14.1f %9.2f%n", threads, rate, rate / threads, rate / single);
+            if (threads >= maxThreads) break;
+        }
+
+        long steps = 0;
+        int potted = 0, cueLost = 0;
+        for (ShotResult res : results) {
+            steps += res.getSteps();
+            potted += res.getPottedCount();
+            if (res.wasPotted(PhysicsWorld.CUE)) cueLost++;
+        }
+        System.out.printf("balls potted %d, cue ball lost %d times, mean steps per shot %.1f%n",
+            potted, cueLost, (double) steps / shots);
+        if (list) {
+            System.out.println("shot,angle,power,potted,firstHit,cushions,steps,cueX,cueZ");
+            for (int k=0; k<shots; k++) {
+                ShotResult res = results[k];
+                System.out.printf("%d,%.6f,%.3f,%s,%d,%d,%d,%.4f,%.4f%n", k, res.getAngle(), res.getPower(),
+                    Long.toBinaryString(res.getPottedMask()), res.getFirstHit(), res.getCushions(), res.getSteps(),
+                    res.getPosX(PhysicsWorld.CUE), res.getPosZ(PhysicsWorld.CUE));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+package physics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the outcome of recently played shots. <p>
+ * Shots are looked up by the {@link ZobristHash} of the table they
+ * were played from, along with the angle and power rounded to a step,
+ * so aiming at the same table over and over only plays each shot once.
+ * Holds at most a fixed number of results, dropping whichever was used
+ * least recently to make room.
+ * <p>
+ * The table hash is whatever the caller looks shots up under, a
+ * {@link ShotSimulator} mixes its world's settings into it, so
+ * simulators set up differently can share one cache safely.
+ * <p>
+ * Shots rounded to the same step share a result, so keep the steps
+ * below the difference that matters to whatever is asking. Every
+ * method is synchronized, one cache can be shared between threads.
+ */
+public class ShotCache {
+    /** Default step angles are rounded to, in radians */
+    public static final double defaultAngleStep = 1e-4;
+    /** Default step powers are rounded to, in metres per second */
+    public static final double defaultPowerStep = 1e-3;
+
+    /**
+     * A table hash, rounded angle, and rounded power
+     */
+    private static final class Key {
+        /** The hash of the table */
+        final long state;
+        /** The angle in steps */
+        final long angle;
+        /** The power in steps */
+        final long power;
+
+        /**
+         * Creates a key
+         * @param state The hash of the table
+         * @param angle The angle in steps
+         * @param power The power in steps
+         */
+        Key (long state, long angle, long power) {
+            this.state = state;
+            this.angle = angle;
+            this.power = power;
+        }
+
+        @Override
+        public boolean equals (Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return k.state == this.state && k.angle == this.angle && k.power == this.power;
+        }
+
+        @Override
+        public int hashCode () {
+            return Long.hashCode(ZobristHash.mix(this.state ^ this.angle*31 ^ this.power*961));
+        }
+    }
+
+    /** Most results held at once */
+    private final int capacity;
+    /** Step angles are rounded to */
+    private final double angleStep;
+    /** Step powers are rounded to */
+    private final double powerStep;
+    /** The results, least recently used first */
+    private final LinkedHashMap<Key, ShotResult> map;
+    /** Number of lookups that found a result */
+    private long hits;
+    /** Number of lookups that didn't */
+    private long misses;
+    /** Number of results dropped to make room */
+    private long evictions;
+
+    /**
+     * Creates a cache with the default steps
+     * @param capacity Most results to hold at once, more than zero
+     */
+    public ShotCache (int capacity) {
+        this(capacity, defaultAngleStep, defaultPowerStep);
+    }
+
+    /**
+     * Creates an empty cache
+     * @param capacity Most results to hold at once, more than zero
+     * @param angleStep Step angles are rounded to, in radians, more than zero
+     * @param powerStep Step powers are rounded to, in metres per second, more than zero
+     */
+    public ShotCache (int capacity, double angleStep, double powerStep) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: "+capacity);
+        if (!(angleStep > 0) || !(powerStep > 0))
+            throw new IllegalArgumentException("Steps must be positive: "+angleStep+", "+powerStep);
+        this.capacity = capacity;
+        this.angleStep = angleStep;
+        this.powerStep = powerStep;
+        this.map = new LinkedHashMap<Key, ShotResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<Key, ShotResult> eldest) {
+                if (size() <= ShotCache.this.capacity) return false;
+                ShotCache.this.evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Makes the key for a shot
+     * @param state The hash of the table
+     * @param angle The angle in radians
+     * @param power The power in metres per second
+     * @return The key
+     */
+    private Key key (long state, double angle, double power) {
+        return new Key(state, Math.round(angle / this.angleStep), Math.round(power / this.powerStep));
+    }
+
+    /**
+     * Looks up the result of a shot, marking it as recently used
+     * @param state The {@link ZobristHash} of the table
+     * @param angle The angle in radians
+     * @param power The power in metres per second
+     * @return The result, or null if it isn't held
+     */
+    public synchronized ShotResult get (long state, double angle, double power) {
+        ShotResult r = this.map.get(key(state, angle, power));
+        if (r != null) this.hits++;
+        else this.misses++;
+        return r;
+    }
+
+    /**
+     * Stores the result of a shot, dropping the least recently used if full
+     * @param state The {@link ZobristHash} of the table
+     * @param angle The angle in radians
+     * @param power The power in metres per second
+     * @param result What happened
+     */
+    public synchronized void put (long state, double angle, double power, ShotResult result) {
+        this.map.put(key(state, angle, power), result);
+    }
+
+    /**
+     * Drops every result, the counters are kept
+     */
+    public synchronized void clear () {
+        this.map.clear();
+    }
+
+    /**
+     * Zeroes the hit, miss and eviction counters
+     */
+    public synchronized void resetCounters () {
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+    }
+
+    /**
+     * Returns the number of results held
+     * @return The size of the cache
+     */
+    public synchronized int size () {
+        return this.map.size();
+    }
+
+    /**
+     * Returns the most results held at once
+     * @return The capacity
+     */
+    public int getCapacity () {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of lookups that found a result
+     * @return The running total of hits
+     */
+    public synchronized long getHits () {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of lookups that found nothing
+     * @return The running total of misses
+     */
+    public synchronized long getMisses () {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of results dropped to make room
+     * @return The running total of evictions
+     */
+    public synchronized long getEvictions () {
+        return this.evictions;
+    }
+
+    /**
+     * Returns the fraction of lookups that found a result
+     * @return Between 0 and 1, 0 before any lookups
+     */
+    public synchronized double getHitRate () {
+        long total = this.hits + this.misses;
+        return (total == 0) ? 0 : (double) this.hits / total;
+    }
+
+}
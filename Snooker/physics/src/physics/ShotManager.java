@@ -0,0 +1,803 @@
+package physics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plays shots on a table one at a time and judges each one once it comes
+ * to rest, without drawing anything. <p>
+ * A strike is only taken while the table is at rest, and waits for the
+ * next {@link #update(double)}, which starts the {@link SnookerRules} on
+ * the shot and strikes the cue ball, on the {@link PhysicsThread} if one
+ * runs. Every update then advances the world by the time that passed, or
+ * shows part of a shot worked out ahead, see {@link #setPlayback(Playback)},
+ * and notes which balls should be drawn somewhere new. Once the table is
+ * at rest the rules judge the shot, the future from
+ * {@link #strikeCueBall(double, double)} completes, and any balls the rules
+ * call for are respotted.
+ * <p>
+ * Every event goes to the rules first and then to the listener, so
+ * whatever draws the table can play sounds and take potted balls off.
+ * Only one thread should call {@link #update(double)} and the methods
+ * that say so, such as the Java3D thread. Striking and reading whether the
+ * table is at rest are safe from any thread.
+ */
+public class ShotManager implements PhysicsListener {
+    /** Default speed up of {@link Playback#FAST} over real time */
+    public static final double defaultFastSpeed = 8;
+    /** Takes the events on to nobody */
+    private static final PhysicsListener nobody = new PhysicsListener() {};
+
+    /**
+     * Ways to show a shot
+     */
+    public enum Playback {
+        /** Step the shot as the frames go by, at the speed it really happens */
+        REAL_TIME,
+        /** Work the shot out ahead, then play it back {@link ShotManager#setFastSpeed(double) faster} */
+        FAST,
+        /** Work the shot out ahead, then jump straight to where the balls stop */
+        INSTANT
+    }
+
+    /**
+     * A shot from its strike until the table comes to rest
+     */
+    private static final class Shot {
+        /** The angle the cue ball was struck at */
+        final double angle;
+        /** The speed the cue ball was struck at */
+        final double power;
+        /** Completes with what happened */
+        final CompletableFuture<ShotResult> done = new CompletableFuture<>();
+        /** The world's step count when struck, only touched by whichever thread runs the world */
+        long startSteps;
+        /** Steps taken by replays of the shot, set before the shot is completed */
+        int replaySteps;
+        /** True once working the shot out ahead has failed, so the rest is played live. Only touched by the updating thread */
+        boolean live;
+        /** Why working the shot out ahead failed, the future fails with it once the shot is judged, or null */
+        volatile Throwable replayError;
+
+        /**
+         * Creates a shot
+         * @param angle The angle the cue ball is struck at
+         * @param power The speed it is struck at
+         */
+        Shot (double angle, double power) {
+            this.angle = angle;
+            this.power = power;
+        }
+    }
+
+    /** The world the shots are played in */
+    private final PhysicsWorld world;
+    /** Number of ball slots */
+    private final int count;
+    /** Moves the world from event to event instead of stepping it, null when stepping */
+    private EventSimulator events;
+    /** Runs the world on its own thread, null when it is advanced by {@link #update(double)} */
+    private PhysicsThread physicsThread;
+    /** The world's step length, kept here so other threads can read it while the physics thread runs */
+    private volatile double stepLength;
+    /** Judges each shot and keeps the score */
+    private final SnookerRules rules = new SnookerRules();
+    /** Whose turn it is, 0 for player 1 and 1 for player 2 */
+    private int turn;
+    /** Hash of where the balls are drawn, updated for each ball as it moves */
+    private final ZobristHash stateHash;
+    /** Receives every event after the rules */
+    private PhysicsListener listener = nobody;
+
+    /** A shot asked for but not yet struck, or null. Set by any thread, cleared by the updating thread */
+    private final AtomicReference<Shot> pending = new AtomicReference<>();
+    /** The shot being played, from its strike until the rules have judged it, or null */
+    private volatile Shot shot;
+
+    /** How shots are shown */
+    private volatile Playback playback = Playback.REAL_TIME;
+    /** Speed up of {@link Playback#FAST} over real time */
+    private volatile double fastSpeed = defaultFastSpeed;
+    /** The rest of the shot being worked out ahead, or null. Only touched by the updating thread */
+    private CompletableFuture<ShotReplay> replay;
+    /** True if the replay is being worked out on the physics thread, which puts the world at rest itself */
+    private boolean replayOnThread;
+    /** Simulated seconds of the replay shown so far */
+    private double replayTime;
+    /** Index of the next replay event to deliver */
+    private int replayEvent;
+    /** True while events are delivered without being seen happen */
+    private boolean muted;
+
+    /** Where each ball should be drawn, and how fast it is going */
+    private final double[] drawX, drawZ, drawVx, drawVz;
+    /** Whether each ball was last drawn moving */
+    private final boolean[] drawMoving;
+    /** The balls given somewhere new to be drawn by the last update, the first {@link #movedCount} */
+    private final int[] moved;
+    /** Whether each ball is in {@link #moved} */
+    private final boolean[] isMoved;
+    /** Number of entries in use in {@link #moved} */
+    private int movedCount;
+    /** Balls the world says moved, handed out by {@link PhysicsWorld#collectMoved(int[])} */
+    private final int[] changed;
+    /** Balls put back on the table by the last update, one bit each */
+    private long respotted;
+
+    /**
+     * Creates a manager playing shots in a world. <br>
+     * It becomes the world's listener, see {@link #setListener(PhysicsListener)}
+     * to hear the events as well.
+     * @param world The world, with at most 64 balls, which shouldn't be touched directly from now on
+     */
+    public ShotManager (PhysicsWorld world) {
+        this.world = world;
+        this.count = world.getBallCount();
+        if (this.count > 64) throw new IllegalArgumentException("At most 64 balls, not "+this.count);
+        this.stepLength = world.getStepLength();
+        this.stateHash = new ZobristHash(this.count);
+        this.stateHash.setAll(world);
+        this.drawX = new double[this.count];
+        this.drawZ = new double[this.count];
+        this.drawVx = new double[this.count];
+        this.drawVz = new double[this.count];
+        this.drawMoving = new boolean[this.count];
+        this.moved = new int[this.count];
+        this.isMoved = new boolean[this.count];
+        this.changed = new int[this.count];
+        world.setListener(this);
+    }
+
+    /**
+     * Sets what hears every event of every shot, after the rules have
+     * @param listener The listener, or null for none
+     */
+    public void setListener (PhysicsListener listener) {
+        this.listener = (listener != null) ? listener : nobody;
+    }
+
+    /**
+     * Returns the world the shots are played in. <br>
+     * Don't touch it while the physics thread is running.
+     * @return The world
+     */
+    public PhysicsWorld getWorld () {
+        return this.world;
+    }
+
+    /**
+     * Asks for the cue ball to be struck on the next {@link #update(double)}. <p>
+     * Safe to call from any thread. Only one shot is played at a time, the cue
+     * ball can only be struck once the last shot has been judged and the table
+     * is at rest. You're fine to pass a negative power to strike the ball backwards.
+     * <p>
+     * The future completes once every ball has stopped, after the rules have
+     * judged the shot and before any ball is respotted, on the updating thread,
+     * or on the physics thread while that runs. Steps are only counted when
+     * the physics is stepped, an event driven shot takes none.
+     * It fails with an {@link IllegalStateException} straight away if the
+     * table isn't at rest, or later if there is no cue ball to strike. If the
+     * shot can't be worked out ahead for {@link #setPlayback(Playback)}, the
+     * rest of it is played live and judged as usual, and the future fails
+     * with the reason once it comes to rest.
+     * @param angle The x-z plane angle to aim at, in radians, where 0 aims towards +z
+     * @param power The speed at which the ball should move, in metres per second
+     * @return Completes with the balls potted, the first ball hit,
+     * the cushion bounces and the steps taken
+     */
+    public CompletableFuture<ShotResult> strikeCueBall (double angle, double power) {
+        Shot shot = new Shot(angle, power);
+        // The shot is set before the pending one is cleared, so one of them is always seen
+        if (this.shot != null || !isAtRest() || !this.pending.compareAndSet(null, shot)) {
+            shot.done.completeExceptionally(new IllegalStateException("Can't strike the cue ball until the table is at rest"));
+        }
+        return shot.done;
+    }
+
+    /**
+     * Starts any shot asked for, moves the balls on by some real time,
+     * and judges the shot once the table comes to rest. <br>
+     * Call from one thread only, such as once a frame. Afterwards
+     * {@link #getMovedCount()} says which balls to draw somewhere new.
+     * @param elapsed Seconds since the last update
+     * @return True if a shot came to rest and was judged, not when it was
+     * never struck, so the rules' last shot is the one just played
+     */
+    public boolean update (double elapsed) {
+        for (int k=0; k<this.movedCount; k++) this.isMoved[this.moved[k]] = false;
+        this.movedCount = 0;
+        this.respotted = 0;
+        beginShot();
+        advance(elapsed);
+        return this.shot != null && isAtRest() && endShot();
+    }
+
+    /**
+     * Strikes the shot waiting in {@link #pending}, if there is one
+     */
+    private void beginShot () {
+        Shot shot = this.pending.get();
+        if (shot == null) return;
+        // Anything the physics thread saw before the strike belongs to the last shot
+        if (this.physicsThread != null) this.physicsThread.deliverEvents(this);
+        this.rules.beginShot();
+        this.shot = shot;
+        this.pending.set(null);
+        if (this.physicsThread != null) {
+            this.physicsThread.post(w -> strikeCueBall(w, shot));
+        } else {
+            strikeCueBall(this.world, shot);
+        }
+    }
+
+    /**
+     * Strikes the cue ball of a world, failing the shot if it has been potted
+     * @param world The world to strike in
+     * @param shot The shot to play
+     */
+    private static void strikeCueBall (PhysicsWorld world, Shot shot) {
+        shot.startSteps = world.getStepCount();
+        if (!world.strike(shot.angle, shot.power)) {
+            shot.done.completeExceptionally(new IllegalStateException("Tried to strike a cue ball that doesn't exist"));
+        }
+    }
+
+    /**
+     * Advances the physics world by some real time, noting where the balls
+     * that moved should be drawn
+     * @param elapsed Seconds since the last update
+     */
+    private void advance (double elapsed) {
+        if (fastForward(elapsed)) return;
+        if (this.physicsThread != null) {
+            readSnapshot();
+            return;
+        }
+        if (this.events != null) this.events.advance(elapsed);
+        else this.world.advance(elapsed);
+        // Only the balls that moved, including any that just stopped
+        int[] changed = this.changed;
+        int n = this.world.collectMoved(changed);
+        for (int k=0; k<n; k++) {
+            int i = changed[k];
+            this.stateHash.set(this.world, i);
+            if (!this.world.isPotted(i))
+                draw(i, this.world.getPosX(i), this.world.getPosZ(i), this.world.getVelX(i), this.world.getVelZ(i));
+        }
+    }
+
+    /**
+     * Delivers the physics thread's events, then reads where the balls are
+     * from the latest snapshot, interpolated to the moment being drawn
+     */
+    private void readSnapshot () {
+        this.physicsThread.deliverEvents(this);
+        Snapshot snap = this.physicsThread.getSnapshot();
+        // Once at rest, make sure every ball lands exactly where it stopped
+        boolean settle = snap.isAtRest();
+        double alpha = settle ? 1 : snap.alpha(this.physicsThread.getRenderTime());
+        for (int i=0; i<this.count; i++) {
+            if (!settle && !this.drawMoving[i] && !snap.isInMotion(i)) continue;
+            double x = snap.getPosX(i, alpha), z = snap.getPosZ(i, alpha);
+            this.stateHash.set(i, x, z, snap.isPotted(i));
+            if (!snap.isPotted(i)) draw(i, x, z, snap.getVelX(i), snap.getVelZ(i));
+        }
+    }
+
+    /**
+     * Notes where a ball should be drawn
+     * @param i Index of the ball
+     * @param x x position
+     * @param z z position
+     * @param vx x velocity
+     * @param vz z velocity
+     */
+    private void draw (int i, double x, double z, double vx, double vz) {
+        this.drawX[i] = x;
+        this.drawZ[i] = z;
+        this.drawVx[i] = vx;
+        this.drawVz[i] = vz;
+        this.drawMoving[i] = vx != 0 || vz != 0;
+        if (this.isMoved[i]) return;
+        this.isMoved[i] = true;
+        this.moved[this.movedCount++] = i;
+    }
+
+    /**
+     * Sets how shots are shown. <p>
+     * Other than in {@link Playback#REAL_TIME}, the rest of a moving shot is
+     * played to rest as fast as possible, on a worker thread or on the physics
+     * thread when it runs, while the balls hold still. The recorded shot is then
+     * shown at speed, or skipped to the end. Events, scoring, and the future
+     * from {@link #strikeCueBall(double, double)} are the same either way.
+     * Takes effect from the next update, even part way through a shot.
+     * @param playback How to show shots
+     */
+    public void setPlayback (Playback playback) {
+        if (playback == null) throw new IllegalArgumentException("Playback can't be null");
+        this.playback = playback;
+    }
+
+    /**
+     * Returns how shots are shown
+     * @return The playback
+     */
+    public Playback getPlayback () {
+        return this.playback;
+    }
+
+    /**
+     * Sets how much faster than real time {@link Playback#FAST} shows shots
+     * @param speed The speed up, more than zero, {@link #defaultFastSpeed} by default
+     */
+    public void setFastSpeed (double speed) {
+        if (!(speed > 0)) throw new IllegalArgumentException("Speed must be positive: "+speed);
+        this.fastSpeed = speed;
+    }
+
+    /**
+     * Works out the rest of the shot ahead if the playback asks for it,
+     * and shows the part of it due this update
+     * @param elapsed Seconds since the last update
+     * @return True if the update was handled, false to step the shot as usual
+     */
+    private boolean fastForward (double elapsed) {
+        if (this.replay == null) {
+            Shot shot = this.shot;
+            if (this.playback == Playback.REAL_TIME || shot == null || shot.live || isAtRest()) return false;
+            resolve();
+        }
+        if (!this.replay.isDone()) {
+            // The balls hold still for the moment it takes
+            return true;
+        }
+        ShotReplay r;
+        try {
+            r = this.replay.join();
+        } catch (RuntimeException e) {
+            // The world is where the shot was handed over, so carry on from there
+            replayFailed(e);
+            return false;
+        }
+        // Events from before the shot was handed over come first
+        if (this.replayTime == 0 && this.physicsThread != null) this.physicsThread.deliverEvents(this);
+        boolean instant = this.playback == Playback.INSTANT;
+        int last = r.getSampleCount() - 1;
+        this.replayTime = instant ? r.getDuration() : this.replayTime + elapsed * this.fastSpeed;
+        double at = Math.min(this.replayTime / r.getInterval(), last);
+        int sample = (int) at;
+        double alpha = at - sample;
+        int next = Math.min(sample + 1, last);
+        this.muted = instant;
+        this.replayEvent = r.deliver(this.replayEvent, sample, this);
+        this.muted = false;
+        for (int i=0; i<this.count; i++) {
+            if (r.isPotted(sample, i)) continue;
+            double x = r.getPosX(sample, i), z = r.getPosZ(sample, i);
+            // Balls about to drop stay put rather than sliding towards wherever the pocket keeps them
+            if (!r.isPotted(next, i)) {
+                x += (r.getPosX(next, i) - x) * alpha;
+                z += (r.getPosZ(next, i) - z) * alpha;
+            }
+            this.stateHash.set(i, x, z, false);
+            draw(i, x, z, 0, 0);
+        }
+        if (sample == last) finishReplay(r);
+        return true;
+    }
+
+    /**
+     * Starts working out the rest of the shot, on the physics thread
+     * if it runs, otherwise on a worker thread from a saved copy
+     */
+    private void resolve () {
+        boolean eventDriven = this.events != null;
+        this.replayTime = 0;
+        this.replayEvent = 0;
+        this.replayOnThread = this.physicsThread != null;
+        if (this.replayOnThread) {
+            CompletableFuture<ShotReplay> f = new CompletableFuture<>();
+            this.physicsThread.post(w -> {
+                TableState s = new TableState(w.getBallCount());
+                w.save(s);
+                try {
+                    ShotReplay r = ShotReplay.record(s, ShotReplay.defaultInterval, eventDriven, w.getStepLength());
+                    w.restore(r.getEnd());
+                    f.complete(r);
+                } catch (RuntimeException e) {
+                    // Back to where the shot was handed over, for the thread to carry on stepping it
+                    w.restore(s);
+                    f.completeExceptionally(e);
+                }
+            });
+            this.replay = f;
+        } else {
+            TableState s = new TableState(this.count);
+            this.world.save(s);
+            double h = this.world.getStepLength();
+            this.replay = CompletableFuture.supplyAsync(() -> ShotReplay.record(s, ShotReplay.defaultInterval, eventDriven, h));
+        }
+    }
+
+    /**
+     * Gives up on the replay of the shot being played, which is played
+     * live from where it was handed over instead. The playback is kept
+     * for later shots, and the shot's future fails with the error once
+     * the shot has been judged.
+     * @param e Why the replay failed
+     */
+    private void replayFailed (RuntimeException e) {
+        this.replay = null;
+        Shot shot = this.shot;
+        if (shot == null) return;
+        shot.live = true;
+        shot.replayError = (e.getCause() != null) ? e.getCause() : e;
+    }
+
+    /**
+     * Delivers whatever is left of a replay and puts the world where it ended
+     * @param r The replay
+     */
+    private void finishReplay (ShotReplay r) {
+        this.muted = true;
+        this.replayEvent = r.deliver(this.replayEvent, r.getSampleCount() - 1, this);
+        this.muted = false;
+        if (!this.replayOnThread) {
+            if (this.physicsThread != null) this.physicsThread.post(w -> w.restore(r.getEnd()));
+            else this.world.restore(r.getEnd());
+        }
+        this.stateHash.setAll(r.getEnd());
+        Shot shot = this.shot;
+        if (shot != null) shot.replaySteps += r.getSteps();
+        this.replay = null;
+    }
+
+    /**
+     * Jumps to the end of any replay, waiting for it to be worked out,
+     * so the physics can change threads without losing the shot
+     */
+    private void skipReplay () {
+        CompletableFuture<ShotReplay> f = this.replay;
+        if (f == null) return;
+        try {
+            finishReplay(f.join());
+        } catch (RuntimeException e) {
+            replayFailed(e);
+        }
+    }
+
+    /**
+     * Judges the shot that just came to rest, completes its future,
+     * and puts any balls it calls for back on their spots
+     * @return True if the shot was judged, false if it was never struck
+     */
+    private boolean endShot () {
+        // Events from the last ticks may not have been delivered yet
+        if (this.physicsThread != null) this.physicsThread.deliverEvents(this);
+        Shot shot = this.shot;
+        this.shot = null;
+        if (shot.done.isDone()) {
+            // Never struck, so there is nothing to judge
+            this.rules.beginShot();
+            return false;
+        }
+        long potted = this.rules.getPotted();
+        int firstHit = this.rules.getFirstHit(), cushions = this.rules.getCushions();
+        int respot = this.rules.endShot();
+        // Before the respots, so the result is the table as the shot left it
+        if (this.physicsThread != null) {
+            this.physicsThread.post(w -> complete(w, shot, potted, firstHit, cushions));
+        } else {
+            complete(this.world, shot, potted, firstHit, cushions);
+        }
+        for (int m=respot; m!=0; m&=m-1) {
+            int i = Integer.numberOfTrailingZeros(m);
+            this.respotted |= 1L << i;
+            if (this.physicsThread != null) {
+                // Drawn where it lands once the world has placed it
+                this.physicsThread.post(w -> SnookerRules.respot(w, i));
+            } else {
+                SnookerRules.respot(this.world, i);
+                this.stateHash.set(this.world, i);
+                draw(i, this.world.getPosX(i), this.world.getPosZ(i), 0, 0);
+            }
+        }
+        this.turn = this.rules.getTurn();
+        return true;
+    }
+
+    /**
+     * Completes a shot's future with the table as it came to rest,
+     * or fails it if the shot couldn't be worked out ahead
+     * @param world The world, on the thread that runs it
+     * @param shot The shot
+     * @param potted Balls potted, one bit each
+     * @param firstHit The first ball the cue ball touched, or -1
+     * @param cushions Number of cushion bounces
+     */
+    private static void complete (PhysicsWorld world, Shot shot, long potted, int firstHit, int cushions) {
+        if (shot.done.isDone()) return;
+        if (shot.replayError != null) {
+            shot.done.completeExceptionally(shot.replayError);
+            return;
+        }
+        int steps = (int) (world.getStepCount() - shot.startSteps) + shot.replaySteps;
+        shot.done.complete(ShotResult.of(world, shot.angle, shot.power, potted, firstHit, cushions, steps));
+    }
+
+    /**
+     * Returns the number of balls the last update gave somewhere new to be drawn. <br>
+     * Potted balls are never among them.
+     * @return The count, see {@link #getMoved(int)}
+     */
+    public int getMovedCount () {
+        return this.movedCount;
+    }
+
+    /**
+     * Returns one of the balls the last update gave somewhere new to be drawn
+     * @param k Between 0 and {@link #getMovedCount()}
+     * @return Index of the ball
+     */
+    public int getMoved (int k) {
+        return this.moved[k];
+    }
+
+    /**
+     * Returns where a ball should be drawn
+     * @param i Index of the ball
+     * @return x position
+     */
+    public double getDrawX (int i) {
+        return this.drawX[i];
+    }
+
+    /**
+     * Returns where a ball should be drawn
+     * @param i Index of the ball
+     * @return z position
+     */
+    public double getDrawZ (int i) {
+        return this.drawZ[i];
+    }
+
+    /**
+     * Returns how fast a ball is going where it is drawn
+     * @param i Index of the ball
+     * @return x velocity, 0 while a shot worked out ahead is shown
+     */
+    public double getDrawVelX (int i) {
+        return this.drawVx[i];
+    }
+
+    /**
+     * Returns how fast a ball is going where it is drawn
+     * @param i Index of the ball
+     * @return z velocity, 0 while a shot worked out ahead is shown
+     */
+    public double getDrawVelZ (int i) {
+        return this.drawVz[i];
+    }
+
+    /**
+     * Returns the balls the last update put back on the table, which
+     * should be drawn again. With the physics thread running they are
+     * only placed, and among the moved balls, an update or so later.
+     * @return One bit per ball
+     */
+    public long getRespotted () {
+        return this.respotted;
+    }
+
+    /**
+     * Returns whether the events being handed out happened out of sight,
+     * as when a shot shown {@link Playback#INSTANT instantly} jumps to its end
+     * @return True if there is nothing to hear
+     */
+    public boolean isMuted () {
+        return this.muted;
+    }
+
+    /**
+     * Chooses between stepping the physics in fixed steps, which
+     * only notices collisions once balls overlap, and the exact
+     * event driven simulation. Stepping is the default.
+     * @param eventDriven True to use an {@link EventSimulator}
+     */
+    public void setEventDriven (boolean eventDriven) {
+        if (this.physicsThread != null) this.physicsThread.setEventDriven(eventDriven);
+        this.events = eventDriven ? new EventSimulator(this.world) : null;
+    }
+
+    /**
+     * Moves the physics onto its own thread, so its cost doesn't
+     * hold up whoever is updating. <br>
+     * Each update then reads the balls between the last two ticks.
+     * Does nothing if the thread is already running.
+     * @param rate Number of physics ticks per second, such as {@link PhysicsThread#defaultRate}
+     */
+    public void startPhysicsThread (double rate) {
+        if (this.physicsThread != null) return;
+        skipReplay();
+        this.physicsThread = new PhysicsThread(this.world, rate);
+        this.stepLength = this.world.getStepLength();
+        // Stepping is the thread's default, and posting nothing keeps it idle so a strike is taken straight away
+        if (this.events != null) this.physicsThread.setEventDriven(true);
+        this.physicsThread.start();
+    }
+
+    /**
+     * Stops the physics thread, after which the physics is advanced
+     * by {@link #update(double)} again. A shot in play carries on.
+     */
+    public void stopPhysicsThread () {
+        if (this.physicsThread == null) return;
+        skipReplay();
+        this.physicsThread.stop();
+        // Pots and contacts from the last ticks and commands still count towards the shot
+        this.physicsThread.deliverEvents(this);
+        this.physicsThread = null;
+        this.world.setStepLength(PhysicsWorld.fixedStep);
+        this.stepLength = PhysicsWorld.fixedStep;
+        if (this.events != null) this.events = new EventSimulator(this.world);
+    }
+
+    /**
+     * Returns the length of the fixed steps the shots are played with,
+     * which changes when the physics thread is started or stopped. <br>
+     * Safe to call from any thread.
+     * @return The step length in seconds
+     */
+    public double getStepLength () {
+        return this.stepLength;
+    }
+
+    /**
+     * Returns whether the physics is running on its own thread
+     * @return True after {@link #startPhysicsThread(double)}
+     */
+    public boolean isPhysicsThreaded () {
+        return this.physicsThread != null;
+    }
+
+    /**
+     * Returns whose turn it is
+     * @return 0 for player 1, 1 for player 2
+     */
+    public int getTurn () {
+        return this.turn;
+    }
+
+    /**
+     * Sets whose turn it is
+     * @param turn 0 for player 1, 1 for player 2
+     */
+    public void setTurn (int turn) {
+        this.turn = turn;
+        this.rules.setTurn(turn);
+    }
+
+    /**
+     * Returns the rules judging the shots. <br>
+     * Only read them on the updating thread, or while the table is at rest.
+     * @return The rules, with the score and which balls are on
+     */
+    public SnookerRules getRules () {
+        return this.rules;
+    }
+
+    /**
+     * Returns a hash of where the balls are drawn and which are potted. <br>
+     * Kept up to date one ball at a time as they move, so it costs nothing
+     * to ask for. Positions are rounded to {@link ZobristHash#defaultQuantum},
+     * the same as a {@link ShotSimulator} hashes the tables it plays from.
+     * @return The 64 bit hash, for looking shots up in a {@link ShotCache}
+     */
+    public long getStateHash () {
+        return this.stateHash.get();
+    }
+
+    /**
+     * Saves the whole table, every ball and whose turn it is. <br>
+     * Can't be used while the physics thread is running, as only it may read the world.
+     * @param state The state to overwrite, with room for every ball
+     */
+    public void saveState (TableState state) {
+        requireUnthreaded();
+        this.world.save(state);
+        state.setTurn(this.turn);
+    }
+
+    /**
+     * Saves the whole table, whether or not the physics thread is running. <br>
+     * With the thread running the save is posted to it, and happens before its next tick.
+     * @param state The state to overwrite, with room for every ball
+     * @return Completes with the state once it has been saved, on whichever thread saved it
+     */
+    public CompletableFuture<TableState> saveStateAsync (TableState state) {
+        if (this.physicsThread == null) {
+            saveState(state);
+            return CompletableFuture.completedFuture(state);
+        }
+        CompletableFuture<TableState> saved = new CompletableFuture<>();
+        int turn = this.turn;
+        this.physicsThread.post(w -> {
+            w.save(state);
+            state.setTurn(turn);
+            saved.complete(state);
+        });
+        return saved;
+    }
+
+    /**
+     * Puts the whole table back the way it was saved. <br>
+     * The shot in play, and one asked for but not struck, are cancelled.
+     * Every ball on the table is among the moved balls of the next update.
+     * Can't be used while the physics thread is running.
+     * @param state A state from {@link #saveState(TableState)}
+     */
+    public void restoreState (TableState state) {
+        requireUnthreaded();
+        this.replay = null;
+        this.world.restore(state);
+        this.turn = state.getTurn();
+        this.rules.setTurn(this.turn);
+        this.rules.setOnTable(state);
+        Shot last = this.shot;
+        this.shot = null;
+        if (last != null) last.done.cancel(false);
+        last = this.pending.getAndSet(null);
+        if (last != null) last.done.cancel(false);
+        this.stateHash.setAll(state);
+    }
+
+    /**
+     * Complains if the physics thread is running
+     */
+    private void requireUnthreaded () {
+        if (this.physicsThread != null)
+            throw new IllegalStateException("Stop the physics thread before saving or restoring the table");
+    }
+
+    /**
+     * Returns whether the table is at rest and nothing will
+     * move until the cue ball is struck again. Safe from any thread
+     * @return True if no ball is moving or waiting to be drawn, and no strike is waiting
+     */
+    public boolean isAtRest () {
+        if (this.replay != null || this.pending.get() != null) return false;
+        PhysicsThread t = this.physicsThread;
+        if (t != null) return t.isIdle();
+        return this.world.isAtRest();
+    }
+
+    @Override
+    public void ballCollision (int a, int b) {
+        this.listener.ballCollision(a, b);
+    }
+
+    @Override
+    public void contactBegin (int a, int b) {
+        this.rules.contactBegin(a, b);
+        this.listener.contactBegin(a, b);
+    }
+
+    @Override
+    public void contactEnd (int a, int b) {
+        this.listener.contactEnd(a, b);
+    }
+
+    @Override
+    public void cushionHit (int ball) {
+        this.rules.cushionHit(ball);
+        this.listener.cushionHit(ball);
+    }
+
+    @Override
+    public void ballPotted (int ball, int pocket) {
+        this.rules.ballPotted(ball, pocket);
+        this.stateHash.set(ball, 0, 0, true);
+        this.listener.ballPotted(ball, pocket);
+    }
+
+}
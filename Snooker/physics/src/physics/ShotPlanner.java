@@ -0,0 +1,457 @@
+package physics;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks a shot for a computer player by playing lots of them out. <p>
+ * Candidate shots are aimed along the lines that would pot a target ball
+ * into each pocket, plus straight at each target, and tried first at a
+ * few fixed powers. After that, every worker keeps trying shots until the
+ * time runs out, half of them scattered randomly around the aim lines and
+ * half close to the best shot found so far. Every shot is played to rest
+ * on a headless {@link ShotSimulator} and scored by {@link #score(TableState, long, ShotResult)}.
+ * <p>
+ * The search runs on the planner's own threads and hands back the best shot
+ * found once the time is up, so a game can ask for a shot and carry on drawing
+ * frames while it waits. Workers run just below normal priority, and by default
+ * there is one fewer of them than there are cores, leaving one for drawing.
+ */
+public class ShotPlanner {
+    /** Softest shot tried, in metres per second */
+    public static final double minPower = 1;
+    /** Hardest shot tried, in metres per second */
+    public static final double maxPower = 9;
+    /** Fewest points a foul gives away */
+    public static final int minFoul = 4;
+    /** Powers every aim line is tried at before any random shots */
+    private static final double[] sweepPowers = { 3, 6 };
+    /** Thinnest cut worth aiming for, as the cosine between the cue ball's path and the object ball's */
+    static final double minCutCos = 0.2;
+    /** Standard deviation of the turn added to an aim line, in radians */
+    private static final double aimSpread = 0.02;
+    /** Standard deviation of the turn added to the best shot so far, in radians */
+    private static final double refineSpread = 0.003;
+    /** Standard deviation of the change in power from the best shot so far, in metres per second */
+    private static final double refinePower = 0.5;
+    /** Fraction of random shots spent close to the best shot so far */
+    private static final double refineShare = 0.5;
+    /** How much a good next shot is worth after a pot, in points */
+    private static final double positionWeight = 0.8;
+    /** How much leaving the opponent a good shot costs after a miss, in points */
+    private static final double safetyWeight = 0.5;
+
+    /** The number of ball slots of every table planned from */
+    private final int count;
+    /** Number of worker threads */
+    private final int threads;
+    /** Runs the workers */
+    private final ExecutorService workers;
+    /** The simulator of each worker thread */
+    private final ThreadLocal<ShotSimulator> simulators;
+    /** Seed for the next search's random shots */
+    private long seed = 1;
+    /** Number of shots played by the last search to finish */
+    private volatile int lastCount;
+
+    /**
+     * Creates a planner for a standard table, with one thread fewer than there are cores
+     */
+    public ShotPlanner () {
+        this(PhysicsWorld.standardCount, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Creates a planner
+     * @param count The number of ball slots, at most 64
+     * @param threads Number of worker threads, at least one
+     */
+    public ShotPlanner (int count, int threads) {
+        if (count < 1 || count > 64) throw new IllegalArgumentException("Ball count must be between 1 and 64: "+count);
+        if (threads < 1) throw new IllegalArgumentException("Need at least one thread: "+threads);
+        this.count = count;
+        this.threads = threads;
+        this.simulators = ThreadLocal.withInitial(() -> new ShotSimulator(count));
+        AtomicInteger made = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ShotPlanner-"+made.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    /**
+     * Sets the seed for the random shots of the next search. <br>
+     * Searches are still only repeatable on one thread, as
+     * how many shots each worker gets through varies.
+     * @param seed The seed
+     */
+    public synchronized void setSeed (long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the number of worker threads
+     * @return The thread count
+     */
+    public int getThreadCount () {
+        return this.threads;
+    }
+
+    /**
+     * Returns the number of shots the last finished search played out
+     * @return The shot count
+     */
+    public int getLastCount () {
+        return this.lastCount;
+    }
+
+    /**
+     * Stops the worker threads, searches already running are left to finish
+     */
+    public void shutdown () {
+        this.workers.shutdown();
+    }
+
+    /**
+     * Starts looking for the best shot on the balls from {@link #ballOn(TableState)}
+     * @param start The table to play from, at rest
+     * @param budget Seconds to spend looking
+     * @return Completes with the best shot once the time is up
+     */
+    public CompletableFuture<ShotResult> plan (TableState start, double budget) {
+        return plan(start, ballOn(start), budget);
+    }
+
+    /**
+     * Starts looking for the best shot. <p>
+     * Returns straight away, the search runs on the worker threads until
+     * the time is up, then the future completes with the best shot found.
+     * The workers carry on past the time until at least one shot has been
+     * played between them, so there is always an answer, which may arrive
+     * a little after the time is up on a slow machine. Completing or
+     * cancelling the future early stops the search once it has that shot.
+     * @param start The table to play from, at rest, copied so it can be reused straight away
+     * @param targets The balls that may be hit first and potted, one bit each
+     * @param budget Seconds to spend looking
+     * @return Completes with the best shot once the time is up
+     */
+    public CompletableFuture<ShotResult> plan (TableState start, long targets, double budget) {
+        if (start.getBallCount() != this.count)
+            throw new IllegalArgumentException("Planner is for "+this.count+" balls, not "+start.getBallCount());
+        if (start.isPotted(PhysicsWorld.CUE)) throw new IllegalArgumentException("Cue ball has been potted");
+        double[] lines = aimLines(start, targets);
+        if (lines.length == 0) throw new IllegalArgumentException("No targets on the table: "+Long.toBinaryString(targets));
+        long seed;
+        synchronized (this) {
+            seed = this.seed++;
+        }
+        Search s = new Search(start, targets, lines, System.nanoTime() + (long)(budget * 1e9));
+        Random root = new Random(seed);
+        for (int k=0; k<this.threads; k++) {
+            Random r = new Random(root.nextLong());
+            this.workers.execute(() -> s.work(r));
+        }
+        return s.future;
+    }
+
+    /**
+     * Scores the outcome of a shot, higher is better. <p>
+     * A foul scores minus the points given away. Otherwise a shot that pots
+     * scores the points potted plus up to {@link #positionWeight} for how easy
+     * the next pot looks, and one that doesn't pot loses up to {@link #safetyWeight}
+     * for how easy a pot it leaves the opponent. Override to play differently.
+     * @param start The table the shot was played from
+     * @param targets The balls that could be hit first and potted
+     * @param r What happened
+     * @return The score, in points
+     */
+    protected double score (TableState start, long targets, ShotResult r) {
+        int foul = foul(start, targets, r);
+        if (foul > 0) return -foul;
+        int points = 0;
+        boolean red = false;
+        for (long m=r.getPottedMask(); m!=0; m&=m-1) {
+            int i = Long.numberOfTrailingZeros(m);
+            points += start.getPointValue(i);
+            red |= start.getPointValue(i) == 1;
+        }
+        long onTable = onTable(r);
+        double cx = r.getPosX(PhysicsWorld.CUE), cz = r.getPosZ(PhysicsWorld.CUE);
+        if (points == 0) return -safetyWeight * ease(cx, cz, r, targets & onTable);
+        // A red is followed by a colour while there are reds left
+        long reds = onTable & valued(start, 1), next;
+        if (red && reds != 0) next = onTable & ~reds;
+        else next = ballOn(start, onTable);
+        return points + positionWeight * ease(cx, cz, r, next);
+    }
+
+    /**
+     * Works out the points a shot gives away, as in snooker. <br>
+     * It's a foul to lose the cue ball, to hit nothing or a ball that isn't a
+     * target first, or to pot a ball that isn't a target. The penalty is the
+     * value of the highest ball involved, and never less than {@link #minFoul}.
+     * @param start The table the shot was played from
+     * @param targets The balls that could be hit first and potted
+     * @param r What happened
+     * @return The penalty, 0 if it isn't a foul
+     */
+    public static int foul (TableState start, long targets, ShotResult r) {
+        int hit = r.getFirstHit();
+        long wrong = r.getPottedMask() & ~targets;
+        if (hit >= 0 && (targets & (1L << hit)) != 0 && wrong == 0) return 0;
+        int penalty = minFoul;
+        if (hit >= 0) penalty = Math.max(penalty, start.getPointValue(hit));
+        for (long m=wrong; m!=0; m&=m-1)
+            penalty = Math.max(penalty, start.getPointValue(Long.numberOfTrailingZeros(m)));
+        return penalty;
+    }
+
+    /**
+     * Guesses the balls on from the table alone, the reds while there are any
+     * left, then the colours lowest first. <br>
+     * It can't know a red was just potted, in which case any colour is on.
+     * @param state The table
+     * @return The balls on, one bit each
+     */
+    public static long ballOn (TableState state) {
+        long onTable = 0;
+        for (int i=0; i<state.getBallCount(); i++)
+            if (i != PhysicsWorld.CUE && !state.isPotted(i)) onTable |= 1L << i;
+        return ballOn(state, onTable);
+    }
+
+    /**
+     * Picks the balls on out of the ones still on the table
+     * @param state Gives the value of each ball
+     * @param onTable Balls on the table, not counting the cue ball
+     * @return The reds if there are any, otherwise the lowest colour left
+     */
+    private static long ballOn (TableState state, long onTable) {
+        long reds = onTable & valued(state, 1);
+        if (reds != 0) return reds;
+        long best = 0;
+        int lowest = Integer.MAX_VALUE;
+        for (long m=onTable; m!=0; m&=m-1) {
+            int i = Long.numberOfTrailingZeros(m);
+            int v = state.getPointValue(i);
+            if (v < lowest) {
+                lowest = v;
+                best = 0;
+            }
+            if (v == lowest) best |= 1L << i;
+        }
+        return best;
+    }
+
+    /**
+     * Finds the balls worth a number of points
+     * @param state Gives the value of each ball
+     * @param value The number of points
+     * @return The balls with that value, potted or not, one bit each
+     */
+    private static long valued (TableState state, int value) {
+        long m = 0;
+        for (int i=0; i<state.getBallCount(); i++)
+            if (i != PhysicsWorld.CUE && state.getPointValue(i) == value) m |= 1L << i;
+        return m;
+    }
+
+    /**
+     * Finds the balls left on the table after a shot
+     * @param r What happened
+     * @return Every ball but the cue ball that isn't potted, one bit each
+     */
+    private static long onTable (ShotResult r) {
+        long all = (r.getBallCount() == 64) ? -1L : (1L << r.getBallCount()) - 1;
+        return all & ~(1L << PhysicsWorld.CUE) & ~r.getRestMask();
+    }
+
+    /**
+     * Works out the angle of every line worth aiming along, at each target
+     * and at the spot that would cut it into each pocket. <br>
+     * Pots blocked by another ball are left out, and targets that can be hit
+     * directly are aimed at through the middle of their widest open window.
+     * @param s The table
+     * @param targets The balls to aim at
+     * @return The angles in radians, where 0 aims towards +z
+     */
+    private static double[] aimLines (TableState s, long targets) {
+        VisibilityIndex vis = new VisibilityIndex(s.getBallCount());
+        vis.update(s);
+        double cx = s.getPosX(PhysicsWorld.CUE), cz = s.getPosZ(PhysicsWorld.CUE);
+        int pockets = Table.pocketX.length;
+        double[] out = new double[Long.bitCount(targets) * (pockets + 1)];
+        int n = 0;
+        for (long m=targets; m!=0; m&=m-1) {
+            int t = Long.numberOfTrailingZeros(m);
+            if (t >= s.getBallCount() || s.isPotted(t)) continue;
+            double tx = s.getPosX(t), tz = s.getPosZ(t);
+            // Hidden targets are still aimed at, in case the spread finds a way round
+            out[n++] = vis.isVisible(t) ? vis.getBestAngle(t) : Math.atan2(tx - cx, tz - cz);
+            for (int p=0; p<pockets; p++) {
+                if (cutCos(cx, cz, tx, tz, p) < minCutCos) continue;
+                double aim = potAngle(cx, cz, tx, tz, p);
+                if (vis.firstHit(aim) == t) out[n++] = aim;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Works out the angle to strike the cue ball at to send an object ball
+     * into a pocket, aiming at the spot where the two touch
+     * @param cx x position of the cue ball
+     * @param cz z position of the cue ball
+     * @param tx x position of the object ball
+     * @param tz z position of the object ball
+     * @param p Index of the pocket
+     * @return The angle in radians, where 0 aims towards +z
+     */
+    static double potAngle (double cx, double cz, double tx, double tz, int p) {
+        double d = Math.hypot(Table.pocketX[p] - tx, Table.pocketZ[p] - tz);
+        if (d == 0) return Math.atan2(tx - cx, tz - cz);
+        double gx = tx - (Table.pocketX[p] - tx) / d * 2*Ball.radius;
+        double gz = tz - (Table.pocketZ[p] - tz) / d * 2*Ball.radius;
+        return Math.atan2(gx - cx, gz - cz);
+    }
+
+    /**
+     * Works out how straight a pot is, ignoring any balls in the way
+     * @param cx x position of the cue ball
+     * @param cz z position of the cue ball
+     * @param tx x position of the object ball
+     * @param tz z position of the object ball
+     * @param p Index of the pocket
+     * @return The cosine between the cue ball's path to the contact spot and the
+     * object ball's path to the pocket, 1 for a straight pot, -1 if the cue ball is in the way
+     */
+    static double cutCos (double cx, double cz, double tx, double tz, int p) {
+        double ux = Table.pocketX[p] - tx, uz = Table.pocketZ[p] - tz;
+        double d = Math.hypot(ux, uz);
+        if (d == 0) return 1;
+        ux /= d;
+        uz /= d;
+        double ax = tx - ux*2*Ball.radius - cx, az = tz - uz*2*Ball.radius - cz;
+        double a = Math.hypot(ax, az);
+        if (a < Ball.radius) return -1;
+        return (ax*ux + az*uz) / a;
+    }
+
+    /**
+     * Rates how easy the easiest pot is, ignoring any balls in the way. <br>
+     * Straight pots with little distance to travel rate highest.
+     * @param cx x position of the cue ball
+     * @param cz z position of the cue ball
+     * @param r Gives where the balls are
+     * @param targets The balls that could be potted
+     * @return Between 0 for nothing pottable and 1 for a dead straight pot over the lip
+     */
+    static double ease (double cx, double cz, ShotResult r, long targets) {
+        double best = 0;
+        for (long m=targets; m!=0; m&=m-1) {
+            int t = Long.numberOfTrailingZeros(m);
+            double tx = r.getPosX(t), tz = r.getPosZ(t);
+            for (int p=0; p<Table.pocketX.length; p++) {
+                double cos = cutCos(cx, cz, tx, tz, p);
+                if (cos < minCutCos) continue;
+                double travel = Math.hypot(tx - cx, tz - cz) + Math.hypot(Table.pocketX[p] - tx, Table.pocketZ[p] - tz);
+                best = Math.max(best, cos / (1 + travel));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * One search, shared by every worker playing shots for it
+     */
+    private class Search {
+        /** The table every shot is played from, never written to */
+        private final TableState start;
+        /** The balls that may be hit first and potted */
+        private final long targets;
+        /** The angle of every aim line */
+        private final double[] lines;
+        /** When to stop, by {@link System#nanoTime()} */
+        private final long deadline;
+        /** Completes with the best shot */
+        private final CompletableFuture<ShotResult> future = new CompletableFuture<>();
+        /** Number of shots handed out so far */
+        private final AtomicInteger handed = new AtomicInteger();
+        /** Number of workers still playing shots */
+        private final AtomicInteger running = new AtomicInteger(ShotPlanner.this.threads);
+        /** The best shot so far, or null */
+        private volatile ShotResult best;
+        /** The score of the best shot so far */
+        private double bestScore = Double.NEGATIVE_INFINITY;
+
+        /**
+         * Creates a search
+         * @param start The table to play from, copied
+         * @param targets The balls that may be hit first and potted
+         * @param lines The angle of every aim line
+         * @param deadline When to stop, by {@link System#nanoTime()}
+         */
+        Search (TableState start, long targets, double[] lines, long deadline) {
+            this.start = new TableState(start.getBallCount());
+            this.start.copyFrom(start);
+            this.targets = targets;
+            this.lines = lines;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Plays shots until the time is up and some worker has played one,
+         * then hands over the best shot if this is the last worker to stop
+         * @param r This worker's random numbers
+         */
+        void work (Random r) {
+            try {
+                ShotSimulator sim = ShotPlanner.this.simulators.get();
+                while (this.best == null || (!this.future.isDone() && System.nanoTime() < this.deadline)) {
+                    int k = this.handed.getAndIncrement();
+                    double angle, power;
+                    ShotResult b = this.best;
+                    if (k < this.lines.length * sweepPowers.length) {
+                        angle = this.lines[k % this.lines.length];
+                        power = sweepPowers[k / this.lines.length];
+                    } else if (b != null && r.nextDouble() < refineShare) {
+                        angle = b.getAngle() + r.nextGaussian() * refineSpread;
+                        power = b.getPower() + r.nextGaussian() * refinePower;
+                    } else {
+                        angle = this.lines[r.nextInt(this.lines.length)] + r.nextGaussian() * aimSpread;
+                        power = minPower + r.nextDouble() * (maxPower - minPower);
+                    }
+                    power = Math.max(minPower, Math.min(maxPower, power));
+                    ShotResult res = sim.run(this.start, angle, power);
+                    offer(res, score(this.start, this.targets, res));
+                }
+            } catch (RuntimeException | Error e) {
+                this.future.completeExceptionally(e);
+            } finally {
+                if (this.running.decrementAndGet() == 0) {
+                    ShotPlanner.this.lastCount = this.handed.get();
+                    this.future.complete(this.best);
+                }
+            }
+        }
+
+        /**
+         * Keeps a shot if it beats the best so far
+         * @param res The shot
+         * @param score Its score
+         */
+        private synchronized void offer (ShotResult res, double score) {
+            if (score > this.bestScore) {
+                this.bestScore = score;
+                this.best = res;
+            }
+        }
+    }
+
+}
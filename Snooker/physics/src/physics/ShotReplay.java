@@ -0,0 +1,325 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * A shot played out to rest ahead of time, to be shown afterwards at any speed. <p>
+ * {@link #record(TableState, double, boolean)} plays the rest of a shot on a
+ * private world as fast as it can, keeping where every ball is at evenly spaced
+ * samples and every event the world produced, tagged with the first sample that
+ * shows it. Showing the shot is then just reading samples, so it can be played
+ * back faster than real time, or skipped straight to the end, and costs the same
+ * however many balls are moving. Immutable once recorded.
+ */
+public final class ShotReplay {
+    /** Default simulated seconds between samples */
+    public static final double defaultInterval = 1 / 60.0;
+    /** Event type for two balls colliding */
+    private static final int COLLISION = 0;
+    /** Event type for a ball being potted */
+    private static final int POTTED = 1;
+    /** Event type for two balls starting to touch */
+    private static final int CONTACT_BEGIN = 2;
+    /** Event type for two balls no longer touching */
+    private static final int CONTACT_END = 3;
+    /** Event type for a ball bouncing off a cushion */
+    private static final int CUSHION = 4;
+
+    /** Number of ball slots */
+    private final int count;
+    /** Simulated seconds between samples */
+    private final double interval;
+    /** Number of samples, the first is the table the recording started from */
+    private final int samples;
+    /** x, z of every ball at every sample, sample by sample */
+    private final float[] pos;
+    /** Balls off the table at every sample, one bit each */
+    private final long[] potted;
+    /** Every event as sample, type, a, b */
+    private final int[] events;
+    /** Number of events */
+    private final int eventCount;
+    /** Number of fixed steps taken, 0 if event driven */
+    private final int steps;
+    /** The table once it came to rest */
+    private final TableState end;
+
+    /**
+     * Creates a replay, keeping the arrays rather than copying them
+     * @param count Number of ball slots
+     * @param interval Simulated seconds between samples
+     * @param samples Number of samples
+     * @param pos Positions of every sample
+     * @param potted Balls off the table at every sample
+     * @param events Every event as sample, type, a, b
+     * @param eventCount Number of events
+     * @param steps Number of fixed steps taken
+     * @param end The table at rest
+     */
+    private ShotReplay (int count, double interval, int samples, float[] pos, long[] potted, int[] events, int eventCount, int steps, TableState end) {
+        this.count = count;
+        this.interval = interval;
+        this.samples = samples;
+        this.pos = pos;
+        this.potted = potted;
+        this.events = events;
+        this.eventCount = eventCount;
+        this.steps = steps;
+        this.end = end;
+    }
+
+    /**
+     * Collects a replay as the world plays it
+     */
+    private static final class Recorder implements PhysicsListener {
+        /** Number of ball slots */
+        final int count;
+        /** Positions so far */
+        float[] pos;
+        /** Potted balls so far */
+        long[] potted = new long[64];
+        /** Number of samples so far */
+        int samples;
+        /** Events so far */
+        int[] events = new int[64];
+        /** Number of events so far */
+        int eventCount;
+
+        /**
+         * Creates a recorder
+         * @param count Number of ball slots
+         */
+        Recorder (int count) {
+            this.count = count;
+            this.pos = new float[64 * 2*count];
+        }
+
+        /**
+         * Keeps where every ball is now as the next sample
+         * @param w The world
+         */
+        void sample (PhysicsWorld w) {
+            int n = this.samples;
+            if (n == this.potted.length) {
+                this.potted = Arrays.copyOf(this.potted, 2*n);
+                this.pos = Arrays.copyOf(this.pos, 2*this.pos.length);
+            }
+            long mask = 0;
+            int k = n * 2*this.count;
+            for (int i=0; i<this.count; i++) {
+                this.pos[k++] = (float) w.getPosX(i);
+                this.pos[k++] = (float) w.getPosZ(i);
+                if (w.isPotted(i)) mask |= 1L << i;
+            }
+            this.potted[n] = mask;
+            this.samples = n + 1;
+        }
+
+        /**
+         * Keeps an event, shown from the next sample
+         * @param type Event type
+         * @param a First index
+         * @param b Second index
+         */
+        void add (int type, int a, int b) {
+            if (4*this.eventCount == this.events.length) this.events = Arrays.copyOf(this.events, 2*this.events.length);
+            int k = 4*this.eventCount++;
+            this.events[k] = this.samples;
+            this.events[k+1] = type;
+            this.events[k+2] = a;
+            this.events[k+3] = b;
+        }
+
+        @Override
+        public void ballCollision (int a, int b) {
+            add(COLLISION, a, b);
+        }
+
+        @Override
+        public void ballPotted (int ball, int pocket) {
+            add(POTTED, ball, pocket);
+        }
+
+        @Override
+        public void contactBegin (int a, int b) {
+            add(CONTACT_BEGIN, a, b);
+        }
+
+        @Override
+        public void contactEnd (int a, int b) {
+            add(CONTACT_END, a, b);
+        }
+
+        @Override
+        public void cushionHit (int ball) {
+            add(CUSHION, ball, 0);
+        }
+    }
+
+    /**
+     * Plays the rest of a shot out to rest on a private world, stepped at
+     * {@link PhysicsWorld#fixedStep}, recording it. <br>
+     * Safe to call from any thread, nothing is shared.
+     * @param start The table part way through a shot, at most 64 balls
+     * @param interval Simulated seconds between samples, more than zero
+     * @param eventDriven True to play it with an {@link EventSimulator} rather than stepping
+     * @return The replay, ending at rest or after {@link ShotSimulator#maxShotTime}
+     */
+    public static ShotReplay record (TableState start, double interval, boolean eventDriven) {
+        return record(start, interval, eventDriven, PhysicsWorld.fixedStep);
+    }
+
+    /**
+     * Plays the rest of a shot out to rest on a private world, recording it. <br>
+     * Safe to call from any thread, nothing is shared.
+     * @param start The table part way through a shot, at most 64 balls
+     * @param interval Simulated seconds between samples, more than zero
+     * @param eventDriven True to play it with an {@link EventSimulator} rather than stepping
+     * @param stepLength Length of the fixed steps, the same as the world the shot came from
+     * @return The replay, ending at rest or after {@link ShotSimulator#maxShotTime}
+     */
+    public static ShotReplay record (TableState start, double interval, boolean eventDriven, double stepLength) {
+        if (!(interval > 0)) throw new IllegalArgumentException("Interval must be positive: "+interval);
+        int count = start.getBallCount();
+        if (count > 64) throw new IllegalArgumentException("Replays are for at most 64 balls, not "+count);
+        PhysicsWorld w = new PhysicsWorld(count);
+        w.setStepLength(stepLength);
+        w.restore(start);
+        Recorder rec = new Recorder(count);
+        w.setListener(rec);
+        EventSimulator events = eventDriven ? new EventSimulator(w) : null;
+        rec.sample(w);
+        int steps = 0;
+        for (double t=0; t<ShotSimulator.maxShotTime && !w.isAtRest(); t+=interval) {
+            if (events != null) events.advance(interval);
+            else steps += w.advance(interval);
+            rec.sample(w);
+        }
+        TableState end = new TableState(count);
+        w.save(end);
+        end.setTurn(start.getTurn());
+        return new ShotReplay(count, interval, rec.samples, rec.pos, rec.potted, rec.events, rec.eventCount, steps, end);
+    }
+
+    /**
+     * Returns the number of ball slots
+     * @return The ball count
+     */
+    public int getBallCount () {
+        return this.count;
+    }
+
+    /**
+     * Returns the simulated time between samples
+     * @return The interval in seconds
+     */
+    public double getInterval () {
+        return this.interval;
+    }
+
+    /**
+     * Returns the number of samples, the first is where the recording started and the last is at rest
+     * @return At least one
+     */
+    public int getSampleCount () {
+        return this.samples;
+    }
+
+    /**
+     * Returns the simulated time from the first sample to the last
+     * @return The duration in seconds
+     */
+    public double getDuration () {
+        return (this.samples - 1) * this.interval;
+    }
+
+    /**
+     * Returns where a ball is at a sample
+     * @param sample Index of the sample
+     * @param i Index of the ball
+     * @return x position, meaningless if potted
+     */
+    public double getPosX (int sample, int i) {
+        return this.pos[sample * 2*this.count + 2*i];
+    }
+
+    /**
+     * Returns where a ball is at a sample
+     * @param sample Index of the sample
+     * @param i Index of the ball
+     * @return z position, meaningless if potted
+     */
+    public double getPosZ (int sample, int i) {
+        return this.pos[sample * 2*this.count + 2*i + 1];
+    }
+
+    /**
+     * Returns whether a ball is off the table at a sample
+     * @param sample Index of the sample
+     * @param i Index of the ball
+     * @return True if potted
+     */
+    public boolean isPotted (int sample, int i) {
+        return (this.potted[sample] & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns whether a ball moves between a sample and the next
+     * @param sample Index of the sample
+     * @param i Index of the ball
+     * @return True if it is somewhere else at the next sample, false at the last sample
+     */
+    public boolean isMoving (int sample, int i) {
+        if (sample + 1 >= this.samples) return false;
+        int k = sample * 2*this.count + 2*i, next = k + 2*this.count;
+        return this.pos[k] != this.pos[next] || this.pos[k+1] != this.pos[next+1];
+    }
+
+    /**
+     * Returns the number of events recorded
+     * @return The event count
+     */
+    public int getEventCount () {
+        return this.eventCount;
+    }
+
+    /**
+     * Hands events to a listener, in the order they happened, up to a sample
+     * @param from Index of the first event to deliver
+     * @param sample Events shown by this sample or earlier are delivered
+     * @param target Receives the events
+     * @return Index of the first event not delivered, to pass as from next time
+     */
+    public int deliver (int from, int sample, PhysicsListener target) {
+        int k = from;
+        int[] e = this.events;
+        for (; k<this.eventCount && e[4*k] <= sample; k++) {
+            int a = e[4*k+2], b = e[4*k+3];
+            switch (e[4*k+1]) {
+            case COLLISION:     target.ballCollision(a, b); break;
+            case POTTED:        target.ballPotted(a, b);    break;
+            case CONTACT_BEGIN: target.contactBegin(a, b);  break;
+            case CONTACT_END:   target.contactEnd(a, b);    break;
+            case CUSHION:       target.cushionHit(a);       break;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Returns the number of fixed steps the shot took
+     * @return The step count, 0 if event driven
+     */
+    public int getSteps () {
+        return this.steps;
+    }
+
+    /**
+     * Returns the table once the shot came to rest. Don't change it
+     * @return The state at rest
+     */
+    public TableState getEnd () {
+        return this.end;
+    }
+
+}
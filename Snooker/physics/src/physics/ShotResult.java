@@ -0,0 +1,202 @@
+package physics;
+
+/**
+ * What happened when a shot was played out to rest. <p>
+ * Immutable, so results can be cached, shared between threads,
+ * and compared against each other freely.
+ */
+public final class ShotResult {
+    /** The angle the cue ball was struck at, in radians, where 0 aims towards +z */
+    private final double angle;
+    /** The speed the cue ball was struck at, in metres per second */
+    private final double power;
+    /** Bit i is set if ball i was potted during the shot */
+    private final long pottedMask;
+    /** The first ball the cue ball touched, or -1 */
+    private final int firstHit;
+    /** Number of times a ball bounced off a cushion */
+    private final int cushions;
+    /** Number of fixed steps taken until the table came to rest */
+    private final int steps;
+    /** Where each ball ended up */
+    private final double[] x, z;
+    /** Bit i is set if ball i was potted once the table came to rest, including before the shot */
+    private final long restMask;
+
+    /**
+     * Creates a result, keeping the arrays rather than copying them
+     * @param angle The angle the cue ball was struck at
+     * @param power The speed the cue ball was struck at
+     * @param pottedMask Balls potted during the shot, one bit each
+     * @param restMask Balls off the table at the end, one bit each
+     * @param firstHit The first ball the cue ball touched, or -1
+     * @param cushions Number of cushion bounces
+     * @param steps Number of fixed steps taken
+     * @param x Final x position of each ball
+     * @param z Final z position of each ball
+     */
+    ShotResult (double angle, double power, long pottedMask, long restMask, int firstHit, int cushions, int steps, double[] x, double[] z) {
+        this.angle = angle;
+        this.power = power;
+        this.pottedMask = pottedMask;
+        this.restMask = restMask;
+        this.firstHit = firstHit;
+        this.cushions = cushions;
+        this.steps = steps;
+        this.x = x;
+        this.z = z;
+    }
+
+    /**
+     * Creates the result of a shot that has just come to rest in a world,
+     * taking where the balls are from the world
+     * @param world The world, at rest, with at most 64 ball slots
+     * @param angle The angle the cue ball was struck at
+     * @param power The speed the cue ball was struck at
+     * @param pottedMask Balls potted during the shot, one bit each
+     * @param firstHit The first ball the cue ball touched, or -1
+     * @param cushions Number of cushion bounces
+     * @param steps Number of fixed steps taken
+     * @return The result
+     */
+    public static ShotResult of (PhysicsWorld world, double angle, double power, long pottedMask, int firstHit, int cushions, int steps) {
+        int n = world.getStore().capacity();
+        if (n > 64) throw new IllegalArgumentException("Results are for at most 64 balls, not "+n);
+        double[] x = new double[n], z = new double[n];
+        long rest = 0;
+        for (int i=0; i<n; i++) {
+            x[i] = world.getPosX(i);
+            z[i] = world.getPosZ(i);
+            if (world.isPotted(i)) rest |= 1L << i;
+        }
+        return new ShotResult(angle, power, pottedMask, rest, firstHit, cushions, steps, x, z);
+    }
+
+    /**
+     * Returns the same outcome for a shot struck slightly differently, such as
+     * one answered from a {@link ShotCache} that rounded it to the same step
+     * @param angle The angle the cue ball was struck at
+     * @param power The speed the cue ball was struck at
+     * @return This if nothing changed, otherwise a copy sharing the positions
+     */
+    ShotResult withShot (double angle, double power) {
+        if (angle == this.angle && power == this.power) return this;
+        return new ShotResult(angle, power, this.pottedMask, this.restMask, this.firstHit, this.cushions, this.steps, this.x, this.z);
+    }
+
+    /**
+     * Returns the angle the cue ball was struck at
+     * @return The angle in radians, where 0 aims towards +z
+     */
+    public double getAngle () {
+        return this.angle;
+    }
+
+    /**
+     * Returns the speed the cue ball was struck at
+     * @return The power in metres per second
+     */
+    public double getPower () {
+        return this.power;
+    }
+
+    /**
+     * Returns the balls potted during the shot
+     * @return Bit i is set if ball i went down
+     */
+    public long getPottedMask () {
+        return this.pottedMask;
+    }
+
+    /**
+     * Returns the balls off the table once it came to rest
+     * @return Bit i is set if ball i is potted, whether in this shot or an earlier one
+     */
+    public long getRestMask () {
+        return this.restMask;
+    }
+
+    /**
+     * Returns whether a ball was potted during the shot
+     * @param i Index of the ball
+     * @return True if it went down in this shot
+     */
+    public boolean wasPotted (int i) {
+        return (this.pottedMask & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns whether a ball is off the table at the end of the shot,
+     * whether it went down in this shot or an earlier one
+     * @param i Index of the ball
+     * @return True if potted
+     */
+    public boolean isPotted (int i) {
+        return (this.restMask & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns the number of balls potted during the shot
+     * @return The pot count
+     */
+    public int getPottedCount () {
+        return Long.bitCount(this.pottedMask);
+    }
+
+    /**
+     * Returns the first ball the cue ball touched
+     * @return Index of the ball, or -1 if it hit nothing
+     */
+    public int getFirstHit () {
+        return this.firstHit;
+    }
+
+    /**
+     * Returns the number of times a ball bounced off a cushion, any ball
+     * @return The bounce count
+     */
+    public int getCushions () {
+        return this.cushions;
+    }
+
+    /**
+     * Returns the number of fixed steps until the table came to rest
+     * @return The step count
+     */
+    public int getSteps () {
+        return this.steps;
+    }
+
+    /**
+     * Returns where a ball ended up
+     * @param i Index of the ball
+     * @return x position, meaningless if potted
+     */
+    public double getPosX (int i) {
+        return this.x[i];
+    }
+
+    /**
+     * Returns where a ball ended up
+     * @param i Index of the ball
+     * @return z position, meaningless if potted
+     */
+    public double getPosZ (int i) {
+        return this.z[i];
+    }
+
+    /**
+     * Returns the number of ball slots
+     * @return The ball count
+     */
+    public int getBallCount () {
+        return this.x.length;
+    }
+
+    @Override
+    public String toString () {
+        return "ShotResult[angle="+this.angle+", power="+this.power+", potted="+Long.toBinaryString(this.pottedMask)
+            +", firstHit="+this.firstHit+", cushions="+this.cushions+", steps="+this.steps+"]";
+    }
+
+}
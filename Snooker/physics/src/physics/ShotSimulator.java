@@ -0,0 +1,243 @@
+package physics;
+
+import java.util.function.Consumer;
+
+/**
+ * Plays shots out to rest on a private world, without drawing anything. <p>
+ * Each shot starts from a saved {@link TableState}, so the same simulator
+ * can try shot after shot from one table, or from many, without building
+ * anything new. A simulator isn't thread safe, give each thread its own.
+ * <p>
+ * With a {@link ShotCache} attached, shots already played from the same
+ * table are answered from the cache instead of being played again. The
+ * table is looked up along with the world's step length, restitution,
+ * masses and geometry, so a cache shared by simulators set up differently
+ * never hands one the other's results.
+ */
+public class ShotSimulator {
+    /** Most simulated time a shot may take before it is cut short, in seconds */
+    public static final double maxShotTime = 600;
+    /** Simulated time handed to each {@link PhysicsWorld#advance(double)} call, in seconds */
+    private static final double chunk = 1;
+
+    /** The world shots are played in */
+    private final PhysicsWorld world;
+    /** Answers shots already played, or null */
+    private ShotCache cache;
+    /** Size of the squares positions are rounded to when hashing a table for the cache */
+    private double quantum = ZobristHash.defaultQuantum;
+    /** Balls potted so far in the current shot */
+    private long potted;
+    /** First ball the cue ball touched in the current shot, or -1 */
+    private int firstHit;
+    /** Cushion bounces so far in the current shot */
+    private int cushions;
+    /** Number of shots actually played, not answered from the cache */
+    private long played;
+
+    /**
+     * Creates a simulator for a standard table of {@link PhysicsWorld#standardCount} balls
+     */
+    public ShotSimulator () {
+        this(PhysicsWorld.standardCount);
+    }
+
+    /**
+     * Creates a simulator
+     * @param count The number of ball slots, at most 64
+     */
+    public ShotSimulator (int count) {
+        if (count < 1 || count > 64) throw new IllegalArgumentException("Ball count must be between 1 and 64: "+count);
+        this.world = new PhysicsWorld(count);
+        this.world.setListener(new PhysicsListener() {
+            @Override
+            public void contactBegin (int a, int b) {
+                if (ShotSimulator.this.firstHit < 0) {
+                    if (a == PhysicsWorld.CUE) ShotSimulator.this.firstHit = b;
+                    else if (b == PhysicsWorld.CUE) ShotSimulator.this.firstHit = a;
+                }
+            }
+            @Override
+            public void ballPotted (int ball, int pocket) {
+                ShotSimulator.this.potted |= 1L << ball;
+            }
+            @Override
+            public void cushionHit (int ball) {
+                ShotSimulator.this.cushions++;
+            }
+        });
+    }
+
+    /**
+     * Attaches a cache to answer repeated shots from
+     * @param cache The cache, or null for none
+     */
+    public void setCache (ShotCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the attached cache
+     * @return The cache, or null if none
+     */
+    public ShotCache getCache () {
+        return this.cache;
+    }
+
+    /**
+     * Sets the size of the squares positions are rounded to when
+     * hashing a table for the cache, {@link ZobristHash#defaultQuantum} by default
+     * @param quantum The quantum in metres, more than zero
+     */
+    public void setQuantum (double quantum) {
+        if (!(quantum > 0)) throw new IllegalArgumentException("Quantum must be positive: "+quantum);
+        this.quantum = quantum;
+    }
+
+    /**
+     * Returns the world shots are played in. <br>
+     * Its settings, such as the table geometry, carry over between shots.
+     * @return The private world
+     */
+    public PhysicsWorld getWorld () {
+        return this.world;
+    }
+
+    /**
+     * Returns the number of shots actually played rather than answered from the cache
+     * @return The running total
+     */
+    public long getPlayedCount () {
+        return this.played;
+    }
+
+    /**
+     * Strikes the cue ball and plays the shot out until the table comes to rest. <p>
+     * If the shot is answered from the cache nothing is played, so the world and
+     * {@link #getFirstHit()} are left as the last shot played had them. Otherwise
+     * the world is left as the shot ended. Use
+     * {@link #run(TableState, double, double, TableState)} to get the table at rest either way.
+     * @param start The table to play from, with the same number of ball slots
+     * @param angle The x-z plane angle to aim at, in radians, where 0 aims towards +z
+     * @param power The speed to strike the cue ball at, in metres per second
+     * @return What happened, with the angle and power asked for even if answered from the cache
+     */
+    public ShotResult run (TableState start, double angle, double power) {
+        long hash = 0;
+        if (this.cache != null) {
+            hash = cacheKey(start);
+            ShotResult r = this.cache.get(hash, angle, power);
+            if (r != null) return r.withShot(angle, power);
+        }
+        ShotResult r = play(start, angle, power);
+        if (this.cache != null) this.cache.put(hash, angle, power, r);
+        return r;
+    }
+
+    /**
+     * Plays a shot out like {@link #run(TableState, double, double)} and keeps
+     * the table once it came to rest. <br>
+     * The cache only holds results, not whole tables, so the shot is always
+     * played, and the world is always left as it ended. Its result is still
+     * stored in the cache.
+     * @param start The table to play from, with the same number of ball slots
+     * @param angle The x-z plane angle to aim at, in radians, where 0 aims towards +z
+     * @param power The speed to strike the cue ball at, in metres per second
+     * @param end Overwritten with the table at rest, with the same number of ball slots
+     * @return What happened
+     */
+    public ShotResult run (TableState start, double angle, double power, TableState end) {
+        ShotResult r = play(start, angle, power);
+        this.world.save(end);
+        if (this.cache != null) this.cache.put(cacheKey(start), angle, power, r);
+        return r;
+    }
+
+    /**
+     * Plays a shot out to rest, without looking at the cache
+     * @param start The table to play from
+     * @param angle The angle to aim at
+     * @param power The speed to strike the cue ball at
+     * @return What happened
+     */
+    private ShotResult play (TableState start, double angle, double power) {
+        PhysicsWorld w = this.world;
+        w.restore(start);
+        this.potted = 0;
+        this.firstHit = -1;
+        this.cushions = 0;
+        w.strike(angle, power);
+        int steps = 0;
+        for (double t=0; t<maxShotTime && !w.isAtRest(); t+=chunk)
+            steps += w.advance(chunk);
+        this.played++;
+        return result(angle, power, steps);
+    }
+
+    /**
+     * Works out what a table is looked up under in the cache, the table's
+     * {@link ZobristHash} mixed with everything about the world that
+     * changes how a shot plays out
+     * @param start The table
+     * @return The key
+     */
+    private long cacheKey (TableState start) {
+        PhysicsWorld w = this.world;
+        long s = ZobristHash.mix(ZobristHash.hash(start, this.quantum) ^ w.getGeometry().fingerprint());
+        s = ZobristHash.mix(s ^ Double.doubleToLongBits(w.getStepLength()));
+        s = ZobristHash.mix(s ^ Double.doubleToLongBits(w.getRestitution()));
+        for (int i=0; i<w.getBallCount(); i++)
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(w.getInvMass(i)));
+        return s;
+    }
+
+    /**
+     * Plays a shot out like {@link #run(TableState, double, double)}, stopping
+     * every so often to let something look at the world on the way. <br>
+     * The steps taken are the same however often it stops, so the result
+     * is the same as running the shot. The cache isn't used.
+     * @param start The table to play from, with the same number of ball slots
+     * @param angle The x-z plane angle to aim at, in radians, where 0 aims towards +z
+     * @param power The speed to strike the cue ball at, in metres per second
+     * @param interval Simulated seconds between looks, more than zero
+     * @param sampler Called with the world once after the strike, then after every interval
+     * @return What happened
+     */
+    public ShotResult trace (TableState start, double angle, double power, double interval, Consumer<PhysicsWorld> sampler) {
+        if (!(interval > 0)) throw new IllegalArgumentException("Interval must be positive: "+interval);
+        PhysicsWorld w = this.world;
+        w.restore(start);
+        this.potted = 0;
+        this.firstHit = -1;
+        this.cushions = 0;
+        w.strike(angle, power);
+        sampler.accept(w);
+        int steps = 0;
+        for (double t=0; t<maxShotTime && !w.isAtRest(); t+=interval) {
+            steps += w.advance(interval);
+            sampler.accept(w);
+        }
+        this.played++;
+        return result(angle, power, steps);
+    }
+
+    /**
+     * Returns the first ball the cue ball touched so far in the shot being played
+     * @return Index of the ball, or -1
+     */
+    public int getFirstHit () {
+        return this.firstHit;
+    }
+
+    /**
+     * Builds the result of the shot just played from the world
+     * @param angle The angle the cue ball was struck at
+     * @param power The speed the cue ball was struck at
+     * @param steps Number of fixed steps taken
+     * @return The result
+     */
+    private ShotResult result (double angle, double power, int steps) {
+        return ShotResult.of(this.world, angle, power, this.potted, this.firstHit, this.cushions, steps);
+    }
+
+}
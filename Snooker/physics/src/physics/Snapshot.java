@@ -0,0 +1,155 @@
+package physics;
+
+/**
+ * An immutable copy of where every ball was over one tick of a {@link PhysicsThread}. <p>
+ * Holds the positions at the start and the end of the tick, along with
+ * when each was taken, so a renderer running at a different rate can
+ * interpolate to any moment in between. Once published a snapshot is
+ * never written to again, so it can be read from any thread.
+ */
+public final class Snapshot {
+    /** Number of balls in the snapshot */
+    private final int count;
+    /** Positions at the start of the tick */
+    private final double[] x0, z0;
+    /** Positions and velocities at the end of the tick */
+    private final double[] x1, z1, vx, vz;
+    /** The {@link BallStore} flags of each ball at the end of the tick */
+    private final int[] flags;
+    /** When the start and end positions were taken, from {@link System#nanoTime()} */
+    private final long time0, time1;
+    /** True if no ball moved during the tick or is still moving */
+    private final boolean atRest;
+
+    /**
+     * Copies the current state of a world
+     * @param world The world to copy
+     * @param previous The snapshot taken at the end of the last tick,
+     * or null if this is the first one
+     * @param time When the world was copied, from {@link System#nanoTime()}
+     */
+    public Snapshot (PhysicsWorld world, Snapshot previous, long time) {
+        BallStore b = world.getStore();
+        int count = b.capacity();
+        this.count = count;
+        this.x1 = new double[count];
+        this.z1 = new double[count];
+        this.vx = new double[count];
+        this.vz = new double[count];
+        this.flags = new int[count];
+        for (int i=0; i<count; i++) {
+            this.x1[i] = b.x(i);
+            this.z1[i] = b.z(i);
+            this.vx[i] = b.vx(i);
+            this.vz[i] = b.vz(i);
+            this.flags[i] = b.flags(i);
+        }
+        this.time1 = time;
+        if (previous == null || previous.count != count) {
+            this.x0 = this.x1;
+            this.z0 = this.z1;
+            this.time0 = time;
+        } else {
+            this.x0 = previous.x1;
+            this.z0 = previous.z1;
+            this.time0 = previous.time1;
+        }
+        boolean atRest = true;
+        for (int i=0; i<count && atRest; i++) atRest = !isInMotion(i);
+        this.atRest = atRest;
+    }
+
+    /**
+     * Returns the number of balls in the snapshot
+     * @return The ball count
+     */
+    public int getBallCount () {
+        return this.count;
+    }
+
+    /**
+     * Returns when the end of the tick was copied
+     * @return The time from {@link System#nanoTime()}
+     */
+    public long getTime () {
+        return this.time1;
+    }
+
+    /**
+     * Returns how far through the tick a moment is
+     * @param time The moment, from {@link System#nanoTime()}
+     * @return 0 at the start of the tick, 1 at the end, clamped between them
+     */
+    public double alpha (long time) {
+        long span = this.time1 - this.time0;
+        if (span <= 0) return 1;
+        double a = (double) (time - this.time0) / span;
+        return (a < 0) ? 0 : (a > 1) ? 1 : a;
+    }
+
+    /**
+     * Returns the x coord of a ball part way through the tick
+     * @param i Index of the ball
+     * @param alpha How far through the tick, see {@link #alpha(long)}
+     * @return The interpolated x coord
+     */
+    public double getPosX (int i, double alpha) {
+        return this.x0[i] + (this.x1[i] - this.x0[i]) * alpha;
+    }
+
+    /**
+     * Returns the z coord of a ball part way through the tick
+     * @param i Index of the ball
+     * @param alpha How far through the tick, see {@link #alpha(long)}
+     * @return The interpolated z coord
+     */
+    public double getPosZ (int i, double alpha) {
+        return this.z0[i] + (this.z1[i] - this.z0[i]) * alpha;
+    }
+
+    /**
+     * Returns the x velocity of a ball at the end of the tick
+     * @param i Index of the ball
+     * @return The x velocity, in metres per second
+     */
+    public double getVelX (int i) {
+        return this.vx[i];
+    }
+
+    /**
+     * Returns the z velocity of a ball at the end of the tick
+     * @param i Index of the ball
+     * @return The z velocity, in metres per second
+     */
+    public double getVelZ (int i) {
+        return this.vz[i];
+    }
+
+    /**
+     * Returns whether a ball was moving at any point during the tick
+     * @param i Index of the ball
+     * @return True if it moved or is still moving
+     */
+    public boolean isInMotion (int i) {
+        return (this.flags[i] & BallStore.IN_MOTION) != 0
+            || this.x0[i] != this.x1[i] || this.z0[i] != this.z1[i];
+    }
+
+    /**
+     * Returns whether nothing moved during the tick
+     * @return True if every ball was still for the whole tick
+     */
+    public boolean isAtRest () {
+        return this.atRest;
+    }
+
+    /**
+     * Returns whether a ball had been potted by the end of the tick
+     * @param i Index of the ball
+     * @return True if it is off the table
+     */
+    public boolean isPotted (int i) {
+        return (this.flags[i] & BallStore.POTTED) != 0;
+    }
+
+}
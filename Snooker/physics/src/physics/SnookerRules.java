@@ -0,0 +1,385 @@
+package physics;
+
+/**
+ * Keeps score and enforces the rules of snooker as a frame is played. <p>
+ * Every set of balls is an int with one bit per ball, laid out the same as
+ * {@link PhysicsWorld#createStandard()}: the cue ball is bit 0, the colours
+ * from black to yellow bits 1 to 6, and the reds bits 7 to 21. The rules
+ * listen to a world the same as anything else, so call {@link #beginShot()}
+ * when the cue ball is struck, pass it the world's events as the shot plays
+ * out, and call {@link #endShot()} once the table is at rest. Each event is a
+ * few bit operations, and the whole state is a handful of ints, so searches
+ * can copy and play through the rules as often as they play shots.
+ * <p>
+ * The colours aren't nominated, the first colour hit counts as the one nominated.
+ * Whatever the rules respot has to be put back on the table by the caller,
+ * see {@link #respot(PhysicsWorld, int)}. Free balls, misses, and the
+ * re-spotted black on a tied frame are left out.
+ */
+public class SnookerRules implements PhysicsListener {
+    /** The cue ball */
+    public static final int CUE = 1;
+    /** The colours, black to yellow */
+    public static final int COLOURS = 0x7E;
+    /** The fifteen reds */
+    public static final int REDS = 0x3FFF80;
+    /** Every ball */
+    public static final int ALL = CUE | COLOURS | REDS;
+    /** Fewest points a foul gives away */
+    public static final int minFoul = 4;
+
+    /** Balls on the table */
+    private int onTable;
+    /** Whose turn it is, 0 or 1 */
+    private int turn;
+    /** Points scored by each player */
+    private int score0, score1;
+    /** True if a red was just potted, so a colour is on */
+    private boolean colourOn;
+    /** The balls that were on when the shot was struck */
+    private int on;
+    /** The first ball the cue ball touched this shot, or -1 */
+    private int firstHit;
+    /** Balls potted this shot */
+    private int potted;
+    /** Number of times a ball bounced off a cushion this shot */
+    private int cushions;
+    /** Points scored by the last shot, by whoever played it */
+    private int lastPoints;
+    /** Points given away by the last shot, 0 if it was fair */
+    private int lastFoul;
+    /** Balls the last shot left to be put back on their spots */
+    private int lastRespot;
+
+    /**
+     * Creates the rules for a new frame, every ball on the table and player 0 to break
+     */
+    public SnookerRules () {
+        reset();
+    }
+
+    /**
+     * Starts a new frame, every ball on the table and player 0 to break
+     */
+    public void reset () {
+        this.onTable = ALL;
+        this.turn = 0;
+        this.score0 = 0;
+        this.score1 = 0;
+        this.colourOn = false;
+        beginShot();
+        this.lastPoints = 0;
+        this.lastFoul = 0;
+        this.lastRespot = 0;
+    }
+
+    /**
+     * Copies the state of other rules, so a search can play ahead and throw it away
+     * @param src The rules to copy
+     */
+    public void copyFrom (SnookerRules src) {
+        this.onTable = src.onTable;
+        this.turn = src.turn;
+        this.score0 = src.score0;
+        this.score1 = src.score1;
+        this.colourOn = src.colourOn;
+        this.on = src.on;
+        this.firstHit = src.firstHit;
+        this.potted = src.potted;
+        this.cushions = src.cushions;
+        this.lastPoints = src.lastPoints;
+        this.lastFoul = src.lastFoul;
+        this.lastRespot = src.lastRespot;
+    }
+
+    /**
+     * Takes which balls are on the table from a saved table,
+     * for when balls have been moved about by hand
+     * @param state The table, with room for 22 balls
+     */
+    public void setOnTable (TableState state) {
+        int mask = 0;
+        for (int i=0; i<Integer.bitCount(ALL); i++)
+            if (!state.isPotted(i)) mask |= 1 << i;
+        this.onTable = mask;
+        this.on = ballOn();
+    }
+
+    /**
+     * Returns the number of points a ball is worth
+     * @param i Index of the ball
+     * @return 0 for the cue ball, 7 for black down to 2 for yellow, 1 for a red
+     */
+    public static int value (int i) {
+        if (i == 0) return 0;
+        return (i <= 6) ? 8-i : 1;
+    }
+
+    /**
+     * Returns the worth of the most valuable ball in a set
+     * @param mask The balls
+     * @return The value of the highest colour, 1 if only reds, 0 if empty
+     */
+    public static int maxValue (int mask) {
+        int colours = mask & COLOURS;
+        if (colours != 0) return 8 - Integer.numberOfTrailingZeros(colours);
+        return ((mask & REDS) != 0) ? 1 : 0;
+    }
+
+    /**
+     * Returns the worth of the least valuable ball in a set
+     * @param mask The balls
+     * @return 1 if there are reds, otherwise the value of the lowest colour, 0 if empty
+     */
+    public static int minValue (int mask) {
+        if ((mask & REDS) != 0) return 1;
+        int colours = mask & COLOURS;
+        return (colours == 0) ? 0 : 8 - (31 - Integer.numberOfLeadingZeros(colours));
+    }
+
+    /**
+     * Returns the balls that may legally be hit first right now
+     * @return The reds, any colour after a red, or the lowest colour once the reds are gone
+     */
+    public int ballOn () {
+        if (this.colourOn) return this.onTable & COLOURS;
+        int reds = this.onTable & REDS;
+        if (reds != 0) return reds;
+        return Integer.highestOneBit(this.onTable & COLOURS);
+    }
+
+    /**
+     * Returns the balls that may be potted by a shot that first hits a ball
+     * @param first The first ball hit
+     * @return The balls that can go down without a foul, empty if hitting it is a foul
+     */
+    public int legalPots (int first) {
+        int on = ballOn();
+        if (first < 0 || (on & (1 << first)) == 0) return 0;
+        // After a red, only the colour hit counts as nominated
+        return this.colourOn ? 1 << first : on;
+    }
+
+    /**
+     * Starts a shot, forgetting the events of the last one
+     */
+    public void beginShot () {
+        this.on = ballOn();
+        this.firstHit = -1;
+        this.potted = 0;
+        this.cushions = 0;
+    }
+
+    @Override
+    public void contactBegin (int a, int b) {
+        if (this.firstHit >= 0) return;
+        if (a == PhysicsWorld.CUE) this.firstHit = b;
+        else if (b == PhysicsWorld.CUE) this.firstHit = a;
+    }
+
+    @Override
+    public void ballPotted (int ball, int pocket) {
+        this.potted |= 1 << ball;
+        this.onTable &= ~(1 << ball);
+    }
+
+    @Override
+    public void cushionHit (int ball) {
+        this.cushions++;
+    }
+
+    /**
+     * Judges the shot once the table is at rest. <p>
+     * A foul gives the opponent the value of the highest ball involved, never
+     * less than {@link #minFoul}, and passes the turn. A fair pot scores the
+     * value of every ball potted and the player carries on, anything else
+     * passes the turn. Colours go back on their spots while there are reds
+     * left, straight after the last red, or after a foul. The cue ball goes
+     * back in the D if potted.
+     * @return The balls to put back on their spots, see {@link #getLastRespot()}
+     */
+    public int endShot () {
+        int hit = (this.firstHit >= 0) ? 1 << this.firstHit : 0;
+        int allowed = ((this.on & hit) == 0) ? 0 : this.colourOn ? hit : this.on;
+        boolean foul = allowed == 0 || (this.potted & ~allowed) != 0;
+        int colours = this.potted & COLOURS;
+        int respot = this.potted & CUE;
+        this.lastPoints = 0;
+        this.lastFoul = 0;
+        if (foul) {
+            int penalty = Math.max(minFoul, Math.max(minValue(this.on), maxValue(hit | this.potted)));
+            this.lastFoul = penalty;
+            addScore(1 - this.turn, penalty);
+            respot |= colours;
+            this.turn ^= 1;
+            this.colourOn = false;
+        } else if (this.potted != 0) {
+            int points = Integer.bitCount(this.potted & REDS);
+            for (int m=colours; m!=0; m&=m-1) points += value(Integer.numberOfTrailingZeros(m));
+            this.lastPoints = points;
+            addScore(this.turn, points);
+            // While reds remain, and for the colour after the last one, colours come back
+            if ((this.onTable & REDS) != 0 || this.colourOn) respot |= colours;
+            this.colourOn = (this.potted & REDS) != 0;
+        } else {
+            this.turn ^= 1;
+            this.colourOn = false;
+        }
+        this.onTable |= respot;
+        this.lastRespot = respot;
+        beginShot();
+        return respot;
+    }
+
+    /**
+     * Adds points to a player
+     * @param player 0 or 1
+     * @param points The points to add
+     */
+    private void addScore (int player, int points) {
+        if (player == 0) this.score0 += points;
+        else this.score1 += points;
+    }
+
+    /**
+     * Returns whose turn it is
+     * @return 0 or 1
+     */
+    public int getTurn () {
+        return this.turn;
+    }
+
+    /**
+     * Sets whose turn it is
+     * @param turn 0 or 1
+     */
+    public void setTurn (int turn) {
+        this.turn = turn;
+    }
+
+    /**
+     * Returns a player's score
+     * @param player 0 or 1
+     * @return The points scored this frame
+     */
+    public int getScore (int player) {
+        return (player == 0) ? this.score0 : this.score1;
+    }
+
+    /**
+     * Returns the balls on the table
+     * @return One bit per ball, the cue ball included
+     */
+    public int getOnTable () {
+        return this.onTable;
+    }
+
+    /**
+     * Returns whether every object ball has been potted
+     * @return True once the frame is over
+     */
+    public boolean isFrameOver () {
+        return (this.onTable & ~CUE) == 0;
+    }
+
+    /**
+     * Returns the first ball the cue ball touched in the current shot
+     * @return Index of the ball, or -1
+     */
+    public int getFirstHit () {
+        return this.firstHit;
+    }
+
+    /**
+     * Returns the balls potted in the current shot
+     * @return One bit per ball
+     */
+    public int getPotted () {
+        return this.potted;
+    }
+
+    /**
+     * Returns the number of cushion bounces in the current shot
+     * @return The bounce count, of any ball
+     */
+    public int getCushions () {
+        return this.cushions;
+    }
+
+    /**
+     * Returns the points the last shot scored for the player who played it
+     * @return The points, 0 if it was a foul or potted nothing
+     */
+    public int getLastPoints () {
+        return this.lastPoints;
+    }
+
+    /**
+     * Returns the points the last shot gave away
+     * @return The penalty, 0 if it wasn't a foul
+     */
+    public int getLastFoul () {
+        return this.lastFoul;
+    }
+
+    /**
+     * Returns the balls the last shot left to be put back on their spots
+     * @return One bit per ball, the cue ball included if it was potted
+     */
+    public int getLastRespot () {
+        return this.lastRespot;
+    }
+
+    /**
+     * Puts a potted ball back on its spot. <p>
+     * If something is in the way, it goes on the highest valued spot that is
+     * free, and if none are, as close to its own spot as it fits towards the
+     * top cushion, or else towards the bottom one. The cue ball goes back
+     * where it started in the D.
+     * @param world The world to place it in
+     * @param i Index of the ball, a colour or the cue ball
+     */
+    public static void respot (PhysicsWorld world, int i) {
+        int value = value(i);
+        if (free(world, i, Table.spotX[i], Table.spotZ[i])) {
+            world.setBall(i, value, Table.spotX[i], Table.spotZ[i]);
+            return;
+        }
+        if (i != PhysicsWorld.CUE) {
+            for (int s=1; s<Table.spotX.length; s++) {
+                if (free(world, i, Table.spotX[s], Table.spotZ[s])) {
+                    world.setBall(i, value, Table.spotX[s], Table.spotZ[s]);
+                    return;
+                }
+            }
+        }
+        double limit = Table.length_2 - Ball.radius, step = Ball.radius / 8;
+        for (int dir=-1; dir<=1; dir+=2) {
+            for (double z=Table.spotZ[i]; Math.abs(z) <= limit; z+=dir*step) {
+                if (free(world, i, Table.spotX[i], z)) {
+                    world.setBall(i, value, Table.spotX[i], z);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a ball could be placed somewhere without touching another
+     * @param world The world
+     * @param i Index of the ball to place
+     * @param x x position
+     * @param z z position
+     * @return True if no other ball on the table is in the way
+     */
+    private static boolean free (PhysicsWorld world, int i, double x, double z) {
+        double min = 2*Ball.radius;
+        for (int j=0; j<world.getBallCount(); j++) {
+            if (j == i || world.isPotted(j)) continue;
+            double dx = world.getPosX(j) - x, dz = world.getPosZ(j) - z;
+            if (dx*dx + dz*dz < min*min) return false;
+        }
+        return true;
+    }
+
+}
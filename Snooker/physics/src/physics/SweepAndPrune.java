@@ -0,0 +1,103 @@
+package physics;
+
+/**
+ * A {@link BroadPhase} that keeps the balls sorted along the length of the table. <p>
+ * Two balls can only touch if their z coords are within a ball's
+ * diameter, so each moving ball only has to look at its neighbours
+ * in the sorted order. The order barely changes from one step to the
+ * next, so it is kept up to date with an insertion sort, which is
+ * close to linear on an almost sorted list.
+ * <p>
+ * Only moving balls sweep for neighbours, so the resting balls
+ * left after a break cost next to nothing.
+ */
+public class SweepAndPrune implements BroadPhase {
+    /** Distance between centres at which two balls touch */
+    private static final double reach = 2*Ball.radius;
+    /** Ball indices sorted by z, potted balls at the end */
+    private int[] order;
+    /** The sort key for each entry of {@link #order} */
+    private double[] keys;
+    /** Where each ball is within {@link #order} */
+    private int[] posOf;
+    /** Number of balls in {@link #order} that are on the table */
+    private int live;
+
+    /**
+     * Creates an empty sweep, it sizes itself on the first update
+     */
+    public SweepAndPrune () {
+        this.order = new int[0];
+    }
+
+    @Override
+    public void update (BallStore balls) {
+        int count = balls.capacity();
+        if (this.order.length != count) {
+            this.order = new int[count];
+            this.keys = new double[count];
+            this.posOf = new int[count];
+            for (int i=0; i<count; i++) this.order[i] = i;
+        }
+        int[] order = this.order;
+        double[] keys = this.keys;
+        int live = 0;
+        for (int k=0; k<count; k++) {
+            int i = order[k];
+            if (balls.is(i, BallStore.POTTED)) {
+                keys[k] = Double.POSITIVE_INFINITY;
+            } else {
+                keys[k] = balls.z(i);
+                live++;
+            }
+        }
+        // Insertion sort, nearly free when little has moved
+        for (int k=1; k<count; k++) {
+            double key = keys[k];
+            if (keys[k-1] <= key) continue;
+            int i = order[k];
+            int m = k-1;
+            while (m >= 0 && keys[m] > key) {
+                keys[m+1] = keys[m];
+                order[m+1] = order[m];
+                m--;
+            }
+            keys[m+1] = key;
+            order[m+1] = i;
+        }
+        for (int k=0; k<count; k++) this.posOf[order[k]] = k;
+        this.live = live;
+    }
+
+    @Override
+    public void forEachPair (BallStore balls, PairVisitor visitor) {
+        int[] order = this.order;
+        double[] keys = this.keys;
+        for (int i=0; i<order.length; i++) {
+            if (!balls.isMoving(i)) continue;
+            int k = this.posOf[i];
+            double z = keys[k], x = balls.x(i);
+            // Sweep towards +z then towards -z
+            for (int m=k+1; m<this.live && keys[m]-z <= reach; m++)
+                visitIfNear(balls, visitor, i, order[m], x);
+            for (int m=k-1; m>=0 && z-keys[m] <= reach; m--)
+                visitIfNear(balls, visitor, i, order[m], x);
+        }
+    }
+
+    /**
+     * Visits a pair if their x coords are close enough to touch,
+     * making sure two moving balls are only visited once.
+     * @param balls The ball store
+     * @param visitor Receives the pair
+     * @param i Index of the moving ball doing the sweep
+     * @param j Index of the ball it swept past
+     * @param x The x coord of ball i
+     */
+    private static void visitIfNear (BallStore balls, PairVisitor visitor, int i, int j, double x) {
+        if (j < i && balls.is(j, BallStore.IN_MOTION)) return;
+        if (Math.abs(balls.x(j) - x) <= reach)
+            visitor.visit(i, j);
+    }
+
+}
@@ -0,0 +1,45 @@
+package physics;
+
+/**
+ * Dimensions of the playing surface. <p>
+ * The origin is the centre of the table, where
+ * +z is towards the baulk line and +x is to the right.
+ */
+public class Table {
+
+    /** Private constructor, as the class is static */
+    private Table() {}
+
+    /** Width of the table in metres */
+    public static final double width = 1.778;
+    /** Equal to {@link #width} divided by 2 */
+    public static final double width_2 = width / 2.0 ;
+    /** Length of the table in metres */
+    public static final double length = 3.569;
+    /** Equal to {@link #length} divided by 2 */
+    public static final double length_2 = length / 2.0 ;
+    /** Radius of any of the pockets */
+    public static final double pocketRadius = 4 * Ball.radius / Math.sqrt(2);
+    /** Equal to {@link #pocketRadius} squared */
+    public static final double pocketRadius2 = pocketRadius * pocketRadius;
+    /** x coords of the six pockets, in the same order as {@link #pocketZ} */
+    public static final double[] pocketX = { +width_2, +width_2, -width_2, -width_2, +width_2, -width_2 };
+    /** z coords of the six pockets, in the same order as {@link #pocketX} */
+    public static final double[] pocketZ = { +length_2, -length_2, +length_2, -length_2, 0, 0 };
+    /** Half the width of each pocket mouth, from the middle of the pocket to where the cushions stop */
+    public static final double mouth_2 = pocketRadius;
+    /** Radius of the rounded jaw at the end of each cushion */
+    public static final double jawRadius = Ball.radius / 2;
+    /** z coord of the baulk line */
+    public static final double baulkLine = length * 0.3;
+    /** Radius of the D, the semicircle behind the baulk line */
+    public static final double dRadius = width / 6;
+    /**
+     * x coords of the spot of each ball, by index, in the same order as {@link #spotZ}. <br>
+     * The cue ball's is where it starts in the D, then black, pink, blue, brown, green, yellow.
+     */
+    public static final double[] spotX = { dRadius/-2, 0, 0, 0, 0, dRadius, -dRadius };
+    /** z coords of the spot of each ball, by index, in the same order as {@link #spotX} */
+    public static final double[] spotZ = { baulkLine+dRadius/4, length * -0.409090909, length / -4, 0, baulkLine, baulkLine, baulkLine };
+
+}
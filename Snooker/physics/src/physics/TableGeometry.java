@@ -0,0 +1,802 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * The edges of the table that balls bounce off and drop into. <p>
+ * Cushions are straight line segments that a ball bounces off once its
+ * centre comes within a radius of them. Where a cushion stops at a pocket
+ * mouth it is finished off with a jaw, the rounded nose of the cushion,
+ * modelled as a circle. Pockets are circles that swallow any ball whose
+ * centre gets inside.
+ * <p>
+ * Every piece is filed into a coarse grid of cells, each listing the
+ * pieces a ball centred in that cell could touch, so checking a ball
+ * costs the same however many pieces the table is made of. The pieces
+ * a ball could roll into soon are filed the same way, further out.
+ * <p>
+ * {@link #standard()} builds the table described by {@link Table},
+ * other layouts can be put together piece by piece.
+ */
+public class TableGeometry {
+    /** Kind of piece for a cushion */
+    public static final int CUSHION = 0;
+    /** Kind of piece for a jaw */
+    public static final int JAW = 1;
+    /** Kind of piece for a pocket */
+    public static final int POCKET = 2;
+    /** Default width and length of each cell of the index */
+    public static final double defaultCellSize = 0.125;
+    /** How far off a rail a cushion may be and still count as lying along it */
+    private static final double railTolerance = 1e-9;
+
+    /** Half the width of the rectangle the rails run around */
+    private final double halfWidth;
+    /** Half the length of the rectangle the rails run around */
+    private final double halfLength;
+    /** Width and length of each cell of the index */
+    private final double cellSize;
+
+    /** Number of cushions */
+    private int cushionCount;
+    /** First end of each cushion */
+    private double[] ax = new double[0], az = new double[0];
+    /** Unit direction from the first end of each cushion to the second */
+    private double[] dx = new double[0], dz = new double[0];
+    /** Length of each cushion */
+    private double[] len = new double[0];
+    /** Number of jaws */
+    private int jawCount;
+    /** Centre and radius of each jaw */
+    private double[] jx = new double[0], jz = new double[0], jr = new double[0];
+    /** Number of pockets */
+    private int pocketCount;
+    /** Centre and radius of each pocket */
+    private double[] px = new double[0], pz = new double[0], pr = new double[0];
+
+    /** Whether the index needs rebuilding before it is next used */
+    private boolean dirty = true;
+    /** The smallest x and z coords the index covers */
+    private double minX, minZ;
+    /** Number of cells along x and along z */
+    private int cols, rows;
+    /** Where each cell's cushions start in {@link #cellCushions}, with one extra entry at the end */
+    private int[] cushionStart;
+    /** The cushions near each cell, one cell after another */
+    private int[] cellCushions;
+    /** Where each cell's jaws start in {@link #cellJaws}, with one extra entry at the end */
+    private int[] jawStart;
+    /** The jaws near each cell, one cell after another */
+    private int[] cellJaws;
+    /** Where each cell's pockets start in {@link #cellPockets}, with one extra entry at the end */
+    private int[] pocketStart;
+    /** The pockets touching each cell, one cell after another */
+    private int[] cellPockets;
+    /** Stretches of the rails with no cushion on them, each as x1, z1, x2, z2 */
+    private double[] openings = new double[0];
+    /** Everything but a plain rail, each as a segment x1, z1, x2, z2 and how far out from it a ball's centre is stopped */
+    private double[] hazards = new double[0];
+    /** Where each cell's hazards start in {@link #cellHazards}, with one extra entry at the end */
+    private int[] hazardStart;
+    /** The hazards within {@link #getClearanceReach()} of each cell, one cell after another */
+    private int[] cellHazards;
+
+    /**
+     * Creates an empty table with no cushions, jaws or pockets
+     * @param halfWidth Half the width of the rectangle the rails run around
+     * @param halfLength Half the length of the rectangle the rails run around
+     * @param cellSize Width and length of each cell of the index, more than zero
+     */
+    public TableGeometry (double halfWidth, double halfLength, double cellSize) {
+        if (!(cellSize > 0)) throw new IllegalArgumentException("Cell size must be positive: "+cellSize);
+        this.halfWidth = halfWidth;
+        this.halfLength = halfLength;
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Builds the standard table from {@link Table}. <p>
+     * Each rail is cut at the pockets into cushions ending
+     * {@link Table#mouth_2} from the middle of the pocket,
+     * and every cushion end gets a jaw of {@link Table#jawRadius}.
+     * The pockets are in the same order as {@link Table#pocketX}.
+     * @return The new table
+     */
+    public static TableGeometry standard () {
+        double w = Table.width_2, l = Table.length_2, m = Table.mouth_2, j = Table.jawRadius;
+        TableGeometry g = new TableGeometry(w, l, defaultCellSize);
+        for (int p=0; p<6; p++) g.addPocket(Table.pocketX[p], Table.pocketZ[p], Table.pocketRadius);
+        g.addCushion(+w, -l+m, +w, -m, j);
+        g.addCushion(+w, +m, +w, +l-m, j);
+        g.addCushion(+w-m, +l, -w+m, +l, j);
+        g.addCushion(-w, +l-m, -w, +m, j);
+        g.addCushion(-w, -m, -w, -l+m, j);
+        g.addCushion(-w+m, -l, +w-m, -l, j);
+        return g;
+    }
+
+    /**
+     * Adds a cushion. <p>
+     * Balls bounce off the side to the left of the cushion, looking from
+     * the first end to the second with +x to the right and +z up. So the
+     * cushions of a table go anticlockwise around it. A ball is only
+     * caught by the straight part of a cushion, put a jaw on any end
+     * a ball could run into.
+     * @param x1 x coord of the first end
+     * @param z1 z coord of the first end
+     * @param x2 x coord of the second end
+     * @param z2 z coord of the second end
+     */
+    public void addCushion (double x1, double z1, double x2, double z2) {
+        double ex = x2 - x1, ez = z2 - z1;
+        double length = Math.sqrt(ex*ex + ez*ez);
+        if (!(length > 0)) throw new IllegalArgumentException("Cushion has no length");
+        int k = this.cushionCount++;
+        if (k == this.ax.length) {
+            int n = Math.max(8, k*2);
+            this.ax = Arrays.copyOf(this.ax, n);
+            this.az = Arrays.copyOf(this.az, n);
+            this.dx = Arrays.copyOf(this.dx, n);
+            this.dz = Arrays.copyOf(this.dz, n);
+            this.len = Arrays.copyOf(this.len, n);
+        }
+        this.ax[k] = x1;
+        this.az[k] = z1;
+        this.dx[k] = ex / length;
+        this.dz[k] = ez / length;
+        this.len[k] = length;
+        this.dirty = true;
+    }
+
+    /**
+     * Adds a cushion with a jaw at each end. <br>
+     * The jaws sit just behind the cushion, so they meet it smoothly.
+     * @param x1 x coord of the first end
+     * @param z1 z coord of the first end
+     * @param x2 x coord of the second end
+     * @param z2 z coord of the second end
+     * @param jawRadius Radius of the jaws
+     */
+    public void addCushion (double x1, double z1, double x2, double z2, double jawRadius) {
+        addCushion(x1, z1, x2, z2);
+        int k = this.cushionCount - 1;
+        // Behind the cushion is the opposite way to its normal
+        double bx = this.dz[k] * jawRadius, bz = -this.dx[k] * jawRadius;
+        addJaw(x1 + bx, z1 + bz, jawRadius);
+        addJaw(x2 + bx, z2 + bz, jawRadius);
+    }
+
+    /**
+     * Adds a jaw
+     * @param x x coord of the centre
+     * @param z z coord of the centre
+     * @param radius Radius of the jaw, not negative
+     */
+    public void addJaw (double x, double z, double radius) {
+        if (!(radius >= 0)) throw new IllegalArgumentException("Jaw radius can't be negative: "+radius);
+        int k = this.jawCount++;
+        if (k == this.jx.length) {
+            int n = Math.max(8, k*2);
+            this.jx = Arrays.copyOf(this.jx, n);
+            this.jz = Arrays.copyOf(this.jz, n);
+            this.jr = Arrays.copyOf(this.jr, n);
+        }
+        this.jx[k] = x;
+        this.jz[k] = z;
+        this.jr[k] = radius;
+        this.dirty = true;
+    }
+
+    /**
+     * Adds a pocket. <br>
+     * Pockets are numbered in the order they are added.
+     * @param x x coord of the centre
+     * @param z z coord of the centre
+     * @param radius Radius of the pocket, more than zero
+     */
+    public void addPocket (double x, double z, double radius) {
+        if (!(radius > 0)) throw new IllegalArgumentException("Pocket radius must be positive: "+radius);
+        int k = this.pocketCount++;
+        if (k == this.px.length) {
+            int n = Math.max(8, k*2);
+            this.px = Arrays.copyOf(this.px, n);
+            this.pz = Arrays.copyOf(this.pz, n);
+            this.pr = Arrays.copyOf(this.pr, n);
+        }
+        this.px[k] = x;
+        this.pz[k] = z;
+        this.pr[k] = radius;
+        this.dirty = true;
+    }
+
+    /**
+     * Returns the pocket a ball centred here has dropped into
+     * @param x x coord of the ball
+     * @param z z coord of the ball
+     * @return The pocket index, or -1 if none
+     */
+    public int pocketAt (double x, double z) {
+        index();
+        int cell = cell(x, z);
+        for (int k=this.pocketStart[cell]; k<this.pocketStart[cell+1]; k++) {
+            int p = this.cellPockets[k];
+            double difx = this.px[p] - x, difz = this.pz[p] - z;
+            if (difx*difx+difz*difz < this.pr[p]*this.pr[p]) return p;
+        }
+        return -1;
+    }
+
+    /**
+     * Bounces a ball off any cushion or jaw it has run into. <br>
+     * The ball is mirrored back out of the piece, and its velocity
+     * reflected, the same as it would be off a flat rail.
+     * @param s The ball store
+     * @param i Index of the ball
+     * @return The number of bounces
+     */
+    public int bounce (BallStore s, int i) {
+        index();
+        int cell = cell(s.x(i), s.z(i));
+        int hits = 0;
+        double r = Ball.radius;
+        for (int k=this.cushionStart[cell]; k<this.cushionStart[cell+1]; k++) {
+            int c = this.cellCushions[k];
+            double x = s.x(i), z = s.z(i);
+            double rx = x - this.ax[c], rz = z - this.az[c];
+            double along = rx*this.dx[c] + rz*this.dz[c];
+            if (along < 0 || along > this.len[c]) continue;
+            double nx = -this.dz[c], nz = this.dx[c];
+            double d = rx*nx + rz*nz;
+            if (d >= r || d <= -r) continue;
+            double vx = s.vx(i), vz = s.vz(i);
+            double vn = vx*nx + vz*nz;
+            if (vn >= 0) continue;
+            s.setX(i, x + 2*(r - d)*nx);
+            s.setZ(i, z + 2*(r - d)*nz);
+            s.setVx(i, vx - 2*vn*nx);
+            s.setVz(i, vz - 2*vn*nz);
+            hits++;
+        }
+        for (int k=this.jawStart[cell]; k<this.jawStart[cell+1]; k++) {
+            int j = this.cellJaws[k];
+            double x = s.x(i), z = s.z(i);
+            double nx = x - this.jx[j], nz = z - this.jz[j];
+            double reach = r + this.jr[j];
+            double d2 = nx*nx + nz*nz;
+            if (d2 >= reach*reach || d2 == 0) continue;
+            double d = Math.sqrt(d2);
+            nx /= d;
+            nz /= d;
+            double vx = s.vx(i), vz = s.vz(i);
+            double vn = vx*nx + vz*nz;
+            if (vn >= 0) continue;
+            s.setX(i, x + 2*(reach - d)*nx);
+            s.setZ(i, z + 2*(reach - d)*nz);
+            s.setVx(i, vx - 2*vn*nx);
+            s.setVz(i, vz - 2*vn*nz);
+            hits++;
+        }
+        return hits;
+    }
+
+    /**
+     * Finds the first piece of the table a ball meets rolling in a straight line. <br>
+     * Looks at every piece, as the path may cross the whole table.
+     * @param x x coord of the ball
+     * @param z z coord of the ball
+     * @param ux x part of the unit direction of travel
+     * @param uz z part of the unit direction of travel
+     * @param max How far along the path to look
+     * @param hit Receives the kind of piece met and its index
+     * @return The distance along the path to the first piece, or max if none is met
+     */
+    public double firstContact (double x, double z, double ux, double uz, double max, int[] hit) {
+        double r = Ball.radius;
+        double best = max;
+        hit[0] = -1;
+        hit[1] = -1;
+        for (int c=0; c<this.cushionCount; c++) {
+            double nx = -this.dz[c], nz = this.dx[c];
+            double vn = ux*nx + uz*nz;
+            if (vn >= 0) continue;
+            double rx = x - this.ax[c], rz = z - this.az[c];
+            double d0 = rx*nx + rz*nz;
+            if (d0 <= -r) continue;
+            double d = Math.max((d0 - r) / -vn, 0);
+            if (d >= best) continue;
+            double along = (rx + ux*d)*this.dx[c] + (rz + uz*d)*this.dz[c];
+            if (along < 0 || along > this.len[c]) continue;
+            best = d;
+            hit[0] = CUSHION;
+            hit[1] = c;
+        }
+        for (int j=0; j<this.jawCount; j++) {
+            double d = meet(this.jx[j] - x, this.jz[j] - z, ux, uz, r + this.jr[j]);
+            if (d < best) {
+                best = d;
+                hit[0] = JAW;
+                hit[1] = j;
+            }
+        }
+        // Pockets win ties, a ball dropping in doesn't bounce first
+        for (int p=0; p<this.pocketCount; p++) {
+            double cx = this.px[p] - x, cz = this.pz[p] - z;
+            double along = cx*ux + cz*uz;
+            double perp2 = cx*cx + cz*cz - along*along;
+            double r2 = this.pr[p]*this.pr[p];
+            if (perp2 >= r2) continue;
+            double half = Math.sqrt(r2 - perp2);
+            if (along + half < 0) continue;
+            double d = Math.max(along - half, 0);
+            if (d <= best) {
+                best = d;
+                hit[0] = POCKET;
+                hit[1] = p;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns how far along a straight path a point first comes within a distance of a centre
+     * @param cx x coord of the centre, relative to the start of the path
+     * @param cz z coord of the centre, relative to the start of the path
+     * @param ux x part of the unit direction of travel
+     * @param uz z part of the unit direction of travel
+     * @param reach The distance
+     * @return The distance along the path, zero if already within and closing, or infinity if never
+     */
+    private static double meet (double cx, double cz, double ux, double uz, double reach) {
+        double along = cx*ux + cz*uz;
+        if (along <= 0) return Double.POSITIVE_INFINITY;
+        double perp2 = cx*cx + cz*cz - along*along;
+        if (perp2 >= reach*reach) return Double.POSITIVE_INFINITY;
+        return Math.max(along - Math.sqrt(reach*reach - perp2), 0);
+    }
+
+    /**
+     * Reflects a ball's velocity off a piece it is touching. <br>
+     * Used with {@link #firstContact(double, double, double, double, double, int[])}.
+     * @param kind {@link #CUSHION} or {@link #JAW}
+     * @param k Index of the cushion or jaw
+     * @param s The ball store
+     * @param i Index of the ball
+     */
+    public void reflect (int kind, int k, BallStore s, int i) {
+        double nx, nz;
+        if (kind == CUSHION) {
+            nx = -this.dz[k];
+            nz = this.dx[k];
+        } else if (kind == JAW) {
+            nx = s.x(i) - this.jx[k];
+            nz = s.z(i) - this.jz[k];
+            double d = Math.sqrt(nx*nx + nz*nz);
+            if (d == 0) return;
+            nx /= d;
+            nz /= d;
+        } else {
+            throw new IllegalArgumentException("Can only reflect off a cushion or jaw: "+kind);
+        }
+        double vx = s.vx(i), vz = s.vz(i);
+        double vn = vx*nx + vz*nz;
+        if (vn >= 0) return;
+        s.setVx(i, vx - 2*vn*nx);
+        s.setVz(i, vz - 2*vn*nz);
+    }
+
+    /**
+     * Returns how far a ball can roll before anything other than a plain
+     * rail could affect it. <p>
+     * Rolling along a {@link Trajectory} folds the path back at the rails,
+     * {@link #getHalfWidth()} and {@link #getHalfLength()} in by a radius,
+     * which is only right where a cushion lies along the rail. So this is
+     * the gap to the nearest pocket, jaw, cushion off the rails, or stretch
+     * of rail with no cushion on it. Only the pieces filed under the ball's
+     * cell are looked at, so the answer is never more than
+     * {@link #getClearanceReach()}, and asking again further on gives the rest.
+     * @param x x coord of the ball
+     * @param z z coord of the ball
+     * @return The distance the ball's centre can move, negative if it is already too close
+     */
+    public double clearance (double x, double z) {
+        index();
+        if (x < this.minX || z < this.minZ || x >= this.minX + this.cols*this.cellSize || z >= this.minZ + this.rows*this.cellSize) {
+            // Off the index, where a clamped cell wouldn't list everything nearby
+            return clearanceScan(x, z);
+        }
+        int cell = cell(x, z);
+        double[] h = this.hazards;
+        double gap = getClearanceReach();
+        for (int k=this.hazardStart[cell]; k<this.hazardStart[cell+1]; k++) {
+            int o = this.cellHazards[k]*5;
+            gap = Math.min(gap, segmentDistance(x, z, h[o], h[o+1], h[o+2], h[o+3]) - h[o+4]);
+        }
+        return gap;
+    }
+
+    /**
+     * Returns how far a ball can roll before anything other than a plain
+     * rail could affect it, looking at every piece of the table
+     * @param x x coord of the ball
+     * @param z z coord of the ball
+     * @return The distance the ball's centre can move, negative if it is already too close
+     */
+    double clearanceScan (double x, double z) {
+        index();
+        double r = Ball.radius;
+        double gap = Double.POSITIVE_INFINITY;
+        for (int p=0; p<this.pocketCount; p++) {
+            double difx = this.px[p] - x, difz = this.pz[p] - z;
+            gap = Math.min(gap, Math.sqrt(difx*difx+difz*difz) - this.pr[p]);
+        }
+        for (int j=0; j<this.jawCount; j++) {
+            double difx = this.jx[j] - x, difz = this.jz[j] - z;
+            gap = Math.min(gap, Math.sqrt(difx*difx+difz*difz) - this.jr[j] - r);
+        }
+        for (int c=0; c<this.cushionCount; c++) {
+            if (rail(c) < 0)
+                gap = Math.min(gap, segmentDistance(x, z, this.ax[c], this.az[c],
+                    this.ax[c] + this.dx[c]*this.len[c], this.az[c] + this.dz[c]*this.len[c]) - r);
+        }
+        double[] o = this.openings;
+        for (int k=0; k<o.length; k+=4)
+            gap = Math.min(gap, segmentDistance(x, z, o[k], o[k+1], o[k+2], o[k+3]) - r);
+        return gap;
+    }
+
+    /**
+     * Returns the distance from a point to a line segment
+     * @param x x coord of the point
+     * @param z z coord of the point
+     * @param x1 x coord of one end
+     * @param z1 z coord of one end
+     * @param x2 x coord of the other end
+     * @param z2 z coord of the other end
+     * @return The shortest distance
+     */
+    private static double segmentDistance (double x, double z, double x1, double z1, double x2, double z2) {
+        double ex = x2 - x1, ez = z2 - z1;
+        double l2 = ex*ex + ez*ez;
+        double t = (l2 > 0) ? ((x - x1)*ex + (z - z1)*ez) / l2 : 0;
+        t = Math.max(0, Math.min(1, t));
+        double difx = x - (x1 + ex*t), difz = z - (z1 + ez*t);
+        return Math.sqrt(difx*difx + difz*difz);
+    }
+
+    /**
+     * Returns which rail a cushion lies along, facing into the table
+     * @param c Index of the cushion
+     * @return 0 for +x, 1 for +z, 2 for -x, 3 for -z, or -1 if none
+     */
+    private int rail (int c) {
+        double x1 = this.ax[c], z1 = this.az[c];
+        double x2 = x1 + this.dx[c]*this.len[c], z2 = z1 + this.dz[c]*this.len[c];
+        double w = this.halfWidth, l = this.halfLength;
+        if (Math.abs(x1 - w) < railTolerance && Math.abs(x2 - w) < railTolerance && this.dz[c] > 0) return 0;
+        if (Math.abs(z1 - l) < railTolerance && Math.abs(z2 - l) < railTolerance && this.dx[c] < 0) return 1;
+        if (Math.abs(x1 + w) < railTolerance && Math.abs(x2 + w) < railTolerance && this.dz[c] < 0) return 2;
+        if (Math.abs(z1 + l) < railTolerance && Math.abs(z2 + l) < railTolerance && this.dx[c] > 0) return 3;
+        return -1;
+    }
+
+    /**
+     * Works out the stretches of each rail that no cushion covers
+     */
+    private void findOpenings () {
+        double w = this.halfWidth, l = this.halfLength;
+        double[] out = new double[0];
+        int n = 0;
+        for (int rail=0; rail<4; rail++) {
+            boolean alongZ = (rail % 2) == 0;
+            double half = alongZ ? l : w;
+            double fixed = (rail == 0) ? w : (rail == 1) ? l : (rail == 2) ? -w : -l;
+            // Covered stretches as from, to pairs along the rail
+            double[] cover = new double[this.cushionCount*2];
+            int m = 0;
+            for (int c=0; c<this.cushionCount; c++) {
+                if (rail(c) != rail) continue;
+                double a = alongZ ? this.az[c] : this.ax[c];
+                double b = a + (alongZ ? this.dz[c] : this.dx[c]) * this.len[c];
+                cover[m++] = Math.min(a, b);
+                cover[m++] = Math.max(a, b);
+            }
+            // Sort the stretches by where they start, there are only a handful
+            for (int p=2; p<m; p+=2) {
+                for (int q=p; q>0 && cover[q-2] > cover[q]; q-=2) {
+                    double t0 = cover[q-2], t1 = cover[q-1];
+                    cover[q-2] = cover[q]; cover[q-1] = cover[q+1];
+                    cover[q] = t0; cover[q+1] = t1;
+                }
+            }
+            double at = -half;
+            for (int p=0; p<=m; p+=2) {
+                double upto = (p < m) ? cover[p] : half;
+                if (upto > at + railTolerance) {
+                    if (n + 4 > out.length) out = Arrays.copyOf(out, Math.max(16, out.length*2));
+                    out[n++] = alongZ ? fixed : at;
+                    out[n++] = alongZ ? at : fixed;
+                    out[n++] = alongZ ? fixed : upto;
+                    out[n++] = alongZ ? upto : fixed;
+                }
+                if (p < m) at = Math.max(at, cover[p+1]);
+            }
+        }
+        this.openings = Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Rebuilds the index if anything has been added since it was last built
+     */
+    private void index () {
+        if (!this.dirty) return;
+        this.dirty = false;
+        double r = Ball.radius;
+        // Cover the rails and every piece, with room for a ball around them
+        double x0 = -this.halfWidth, x1 = this.halfWidth, z0 = -this.halfLength, z1 = this.halfLength;
+        for (int c=0; c<this.cushionCount; c++) {
+            double ex = this.ax[c] + this.dx[c]*this.len[c], ez = this.az[c] + this.dz[c]*this.len[c];
+            x0 = Math.min(x0, Math.min(this.ax[c], ex)); x1 = Math.max(x1, Math.max(this.ax[c], ex));
+            z0 = Math.min(z0, Math.min(this.az[c], ez)); z1 = Math.max(z1, Math.max(this.az[c], ez));
+        }
+        for (int j=0; j<this.jawCount; j++) {
+            x0 = Math.min(x0, this.jx[j] - this.jr[j]); x1 = Math.max(x1, this.jx[j] + this.jr[j]);
+            z0 = Math.min(z0, this.jz[j] - this.jr[j]); z1 = Math.max(z1, this.jz[j] + this.jr[j]);
+        }
+        for (int p=0; p<this.pocketCount; p++) {
+            x0 = Math.min(x0, this.px[p] - this.pr[p]); x1 = Math.max(x1, this.px[p] + this.pr[p]);
+            z0 = Math.min(z0, this.pz[p] - this.pr[p]); z1 = Math.max(z1, this.pz[p] + this.pr[p]);
+        }
+        this.minX = x0 - r;
+        this.minZ = z0 - r;
+        this.cols = Math.max(1, (int) Math.ceil((x1 - x0 + 2*r) / this.cellSize));
+        this.rows = Math.max(1, (int) Math.ceil((z1 - z0 + 2*r) / this.cellSize));
+        int cells = this.cols * this.rows;
+
+        double[] boxes = new double[this.cushionCount*4];
+        for (int c=0; c<this.cushionCount; c++) {
+            double ex = this.ax[c] + this.dx[c]*this.len[c], ez = this.az[c] + this.dz[c]*this.len[c];
+            boxes[c*4]   = Math.min(this.ax[c], ex) - r;
+            boxes[c*4+1] = Math.min(this.az[c], ez) - r;
+            boxes[c*4+2] = Math.max(this.ax[c], ex) + r;
+            boxes[c*4+3] = Math.max(this.az[c], ez) + r;
+        }
+        this.cushionStart = new int[cells + 1];
+        this.cellCushions = file(boxes, this.cushionCount, this.cushionStart);
+
+        boxes = new double[this.jawCount*4];
+        for (int j=0; j<this.jawCount; j++) {
+            double reach = this.jr[j] + r;
+            boxes[j*4]   = this.jx[j] - reach;
+            boxes[j*4+1] = this.jz[j] - reach;
+            boxes[j*4+2] = this.jx[j] + reach;
+            boxes[j*4+3] = this.jz[j] + reach;
+        }
+        this.jawStart = new int[cells + 1];
+        this.cellJaws = file(boxes, this.jawCount, this.jawStart);
+
+        boxes = new double[this.pocketCount*4];
+        for (int p=0; p<this.pocketCount; p++) {
+            boxes[p*4]   = this.px[p] - this.pr[p];
+            boxes[p*4+1] = this.pz[p] - this.pr[p];
+            boxes[p*4+2] = this.px[p] + this.pr[p];
+            boxes[p*4+3] = this.pz[p] + this.pr[p];
+        }
+        this.pocketStart = new int[cells + 1];
+        this.cellPockets = file(boxes, this.pocketCount, this.pocketStart);
+
+        findOpenings();
+        findHazards();
+    }
+
+    /**
+     * Lists everything a rolling ball can't just be folded back from,
+     * and files each under every cell within {@link #getClearanceReach()} of it
+     */
+    private void findHazards () {
+        double r = Ball.radius;
+        double[] h = new double[(this.pocketCount + this.jawCount + this.cushionCount + this.openings.length/4) * 5];
+        int n = 0;
+        // Pockets and jaws are segments of no length
+        for (int p=0; p<this.pocketCount; p++) n = hazard(h, n, this.px[p], this.pz[p], this.px[p], this.pz[p], this.pr[p]);
+        for (int j=0; j<this.jawCount; j++) n = hazard(h, n, this.jx[j], this.jz[j], this.jx[j], this.jz[j], this.jr[j] + r);
+        for (int c=0; c<this.cushionCount; c++) {
+            if (rail(c) < 0)
+                n = hazard(h, n, this.ax[c], this.az[c], this.ax[c] + this.dx[c]*this.len[c], this.az[c] + this.dz[c]*this.len[c], r);
+        }
+        double[] o = this.openings;
+        for (int k=0; k<o.length; k+=4) n = hazard(h, n, o[k], o[k+1], o[k+2], o[k+3], r);
+        this.hazards = Arrays.copyOf(h, n*5);
+
+        double reach = getClearanceReach();
+        double[] boxes = new double[n*4];
+        for (int k=0; k<n; k++) {
+            double out = h[k*5+4] + reach;
+            boxes[k*4]   = Math.min(h[k*5], h[k*5+2]) - out;
+            boxes[k*4+1] = Math.min(h[k*5+1], h[k*5+3]) - out;
+            boxes[k*4+2] = Math.max(h[k*5], h[k*5+2]) + out;
+            boxes[k*4+3] = Math.max(h[k*5+1], h[k*5+3]) + out;
+        }
+        this.hazardStart = new int[this.cols*this.rows + 1];
+        this.cellHazards = file(boxes, n, this.hazardStart);
+    }
+
+    /**
+     * Writes a hazard into a list
+     * @param h The list, five entries each
+     * @param n The number of hazards in it so far
+     * @param x1 x coord of one end
+     * @param z1 z coord of one end
+     * @param x2 x coord of the other end
+     * @param z2 z coord of the other end
+     * @param pad How far out from the segment a ball's centre is stopped
+     * @return The number of hazards now in it
+     */
+    private static int hazard (double[] h, int n, double x1, double z1, double x2, double z2, double pad) {
+        int o = n*5;
+        h[o] = x1;
+        h[o+1] = z1;
+        h[o+2] = x2;
+        h[o+3] = z2;
+        h[o+4] = pad;
+        return n + 1;
+    }
+
+    /**
+     * Files pieces under every cell their boxes overlap
+     * @param boxes The smallest x, smallest z, largest x and largest z of each piece's box
+     * @param n The number of pieces
+     * @param start Filled with where each cell's entries start, needs one more entry than there are cells
+     * @return The entries of every cell, one cell after another
+     */
+    private int[] file (double[] boxes, int n, int[] start) {
+        int cells = start.length - 1;
+        for (int id=0; id<n; id++)
+            for (int rr=row(boxes[id*4+1]); rr<=row(boxes[id*4+3]); rr++)
+                for (int cc=col(boxes[id*4]); cc<=col(boxes[id*4+2]); cc++)
+                    start[rr*this.cols + cc + 1]++;
+        for (int k=1; k<=cells; k++) start[k] += start[k-1];
+        int[] items = new int[start[cells]];
+        int[] fill = Arrays.copyOf(start, cells);
+        for (int id=0; id<n; id++)
+            for (int rr=row(boxes[id*4+1]); rr<=row(boxes[id*4+3]); rr++)
+                for (int cc=col(boxes[id*4]); cc<=col(boxes[id*4+2]); cc++)
+                    items[fill[rr*this.cols + cc]++] = id;
+        return items;
+    }
+
+    /**
+     * Returns the column a x coord falls in, clamped to the index
+     * @param x The x coord
+     * @return The column index
+     */
+    private int col (double x) {
+        int c = (int) Math.floor((x - this.minX) / this.cellSize);
+        return (c < 0) ? 0 : (c >= this.cols) ? this.cols-1 : c;
+    }
+
+    /**
+     * Returns the row a z coord falls in, clamped to the index
+     * @param z The z coord
+     * @return The row index
+     */
+    private int row (double z) {
+        int r = (int) Math.floor((z - this.minZ) / this.cellSize);
+        return (r < 0) ? 0 : (r >= this.rows) ? this.rows-1 : r;
+    }
+
+    /**
+     * Returns the cell a point falls in, clamped to the index
+     * @param x The x coord
+     * @param z The z coord
+     * @return The cell index
+     */
+    private int cell (double x, double z) {
+        return row(z)*this.cols + col(x);
+    }
+
+    /**
+     * Works out a number that changes whenever any piece of the table does,
+     * for telling apart results that were worked out on different tables
+     * @return A hash of the rails, and of the ends and sizes of every cushion, jaw and pocket
+     */
+    public long fingerprint () {
+        long s = ZobristHash.mix(Double.doubleToLongBits(this.halfWidth));
+        s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.halfLength));
+        for (int k=0; k<this.cushionCount; k++) {
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.ax[k]));
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.az[k]));
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.ax[k] + this.dx[k]*this.len[k]));
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.az[k] + this.dz[k]*this.len[k]));
+        }
+        s = ZobristHash.mix(s ^ this.cushionCount);
+        for (int k=0; k<this.jawCount; k++) {
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.jx[k]));
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.jz[k]));
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.jr[k]));
+        }
+        s = ZobristHash.mix(s ^ this.jawCount);
+        for (int k=0; k<this.pocketCount; k++) {
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.px[k]));
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.pz[k]));
+            s = ZobristHash.mix(s ^ Double.doubleToLongBits(this.pr[k]));
+        }
+        return ZobristHash.mix(s ^ this.pocketCount);
+    }
+
+    /**
+     * Returns half the width of the rectangle the rails run around
+     * @return The distance from the middle of the table to the left or right rail
+     */
+    public double getHalfWidth () {
+        return this.halfWidth;
+    }
+
+    /**
+     * Returns half the length of the rectangle the rails run around
+     * @return The distance from the middle of the table to the front or back rail
+     */
+    public double getHalfLength () {
+        return this.halfLength;
+    }
+
+    /**
+     * Returns the most {@link #clearance(double, double)} ever answers,
+     * four cells of the index
+     * @return The distance
+     */
+    public double getClearanceReach () {
+        return 4*this.cellSize;
+    }
+
+    /**
+     * Returns the number of cushions
+     * @return The cushion count
+     */
+    public int getCushionCount () {
+        return this.cushionCount;
+    }
+
+    /**
+     * Returns the number of jaws
+     * @return The jaw count
+     */
+    public int getJawCount () {
+        return this.jawCount;
+    }
+
+    /**
+     * Returns the number of pockets
+     * @return The pocket count
+     */
+    public int getPocketCount () {
+        return this.pocketCount;
+    }
+
+    /**
+     * Returns the x coord of a pocket
+     * @param p Index of the pocket
+     * @return The x coord of its centre
+     */
+    public double getPocketX (int p) {
+        return this.px[p];
+    }
+
+    /**
+     * Returns the z coord of a pocket
+     * @param p Index of the pocket
+     * @return The z coord of its centre
+     */
+    public double getPocketZ (int p) {
+        return this.pz[p];
+    }
+
+    /**
+     * Returns the radius of a pocket
+     * @param p Index of the pocket
+     * @return The radius
+     */
+    public double getPocketRadius (int p) {
+        return this.pr[p];
+    }
+
+}
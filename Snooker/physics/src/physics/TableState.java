@@ -0,0 +1,174 @@
+package physics;
+
+import java.util.ArrayDeque;
+
+/**
+ * Everything needed to put a table back the way it was. <p>
+ * Holds a copy of every ball's position, velocity and flags, which
+ * pairs are touching, the time banked towards the next step, and whose
+ * turn it is. Saving and restoring only copy a few hundred bytes, see
+ * {@link PhysicsWorld#save(TableState)} and
+ * {@link PhysicsWorld#restore(TableState)}, and a state can be saved
+ * into over and over, so searches that branch thousands of times a
+ * second can keep reusing the same few from a {@link Pool}.
+ * <p>
+ * A state is not safe to share between threads while being written.
+ */
+public class TableState {
+    /** Position, velocity, and flags of every ball */
+    final BallStore balls;
+    /** Which pairs of balls were touching */
+    final ContactCache contacts;
+    /** Elapsed time not yet simulated, in seconds */
+    double accumulator;
+    /** Whose turn it is, 0 for the first player */
+    private int turn;
+
+    /**
+     * Creates an empty state
+     * @param count The number of ball slots, the same as the world it will be used with
+     */
+    public TableState (int count) {
+        this.balls = new BallStore(count, false);
+        this.contacts = new ContactCache(count);
+    }
+
+    /**
+     * Copies another state into this one
+     * @param src The state to copy, with the same number of ball slots
+     */
+    public void copyFrom (TableState src) {
+        this.balls.copyFrom(src.balls);
+        this.contacts.copyFrom(src.contacts);
+        this.accumulator = src.accumulator;
+        this.turn = src.turn;
+    }
+
+    /**
+     * Returns whose turn it is
+     * @return The player index, 0 for the first player
+     */
+    public int getTurn () {
+        return this.turn;
+    }
+
+    /**
+     * Sets whose turn it is. <br>
+     * The physics doesn't use this, it's carried along for the game.
+     * @param turn The player index, 0 for the first player
+     */
+    public void setTurn (int turn) {
+        this.turn = turn;
+    }
+
+    /**
+     * Returns the number of ball slots
+     * @return The count the state was created with
+     */
+    public int getBallCount () {
+        return this.balls.capacity();
+    }
+
+    /**
+     * Returns the x position of a ball
+     * @param i Index of the ball
+     * @return x position of the ball
+     */
+    public double getPosX (int i) {
+        return this.balls.x(i);
+    }
+
+    /**
+     * Returns the z position of a ball
+     * @param i Index of the ball
+     * @return z position of the ball
+     */
+    public double getPosZ (int i) {
+        return this.balls.z(i);
+    }
+
+    /**
+     * Returns the x velocity of a ball
+     * @param i Index of the ball
+     * @return x velocity of the ball, in metres per second
+     */
+    public double getVelX (int i) {
+        return this.balls.vx(i);
+    }
+
+    /**
+     * Returns the z velocity of a ball
+     * @param i Index of the ball
+     * @return z velocity of the ball, in metres per second
+     */
+    public double getVelZ (int i) {
+        return this.balls.vz(i);
+    }
+
+    /**
+     * Returns whether a ball had been potted
+     * @param i Index of the ball
+     * @return True if potted
+     */
+    public boolean isPotted (int i) {
+        return this.balls.is(i, BallStore.POTTED);
+    }
+
+    /**
+     * Returns the number of points a ball is worth
+     * @param i Index of the ball
+     * @return Integer value of the ball
+     */
+    public int getPointValue (int i) {
+        return this.balls.type(i);
+    }
+
+    /**
+     * Keeps released states around to be handed out again,
+     * so saving doesn't allocate once the pool has warmed up. <br>
+     * Not thread safe, give each thread its own pool.
+     */
+    public static class Pool {
+        /** The number of ball slots of every state */
+        private final int count;
+        /** States released and waiting to be reused */
+        private final ArrayDeque<TableState> free = new ArrayDeque<>();
+
+        /**
+         * Creates an empty pool
+         * @param count The number of ball slots of the states
+         */
+        public Pool (int count) {
+            this.count = count;
+        }
+
+        /**
+         * Hands out a state, reusing a released one if there is one. <br>
+         * Its contents are whatever was last saved into it.
+         * @return A state to save into
+         */
+        public TableState acquire () {
+            TableState s = this.free.poll();
+            return (s != null) ? s : new TableState(this.count);
+        }
+
+        /**
+         * Gives a state back to be reused. Don't use it afterwards
+         * @param state A state from {@link #acquire()}
+         */
+        public void release (TableState state) {
+            if (state.getBallCount() != this.count)
+                throw new IllegalArgumentException("State has "+state.getBallCount()+" balls, pool has "+this.count);
+            this.free.push(state);
+        }
+
+        /**
+         * Returns the number of states waiting to be reused
+         * @return The size of the free list
+         */
+        public int getFreeCount () {
+            return this.free.size();
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+package physics;
+
+/**
+ * Where a single ball will be at any time from now, worked out in closed form. <p>
+ * A ball rolls in a straight line and slows down as described in
+ * {@link Ball}, so its distance along the line is an exact formula of
+ * time. Bounces off the cushions just mirror that line, which is the same
+ * as folding it back into the table, so they are exact too. Any time can
+ * be asked about in constant time, without stepping towards it.
+ * <p>
+ * Other balls, pockets and the gaps the pocket mouths leave in the
+ * cushions are not considered, this is the path the ball takes as long
+ * as nothing gets in its way. See {@link TableGeometry#clearance(double, double)}.
+ */
+public final class Trajectory {
+    /** Furthest the centre of a ball can get from the middle of the standard table along x */
+    public static final double limitX = Table.width_2 - Ball.radius;
+    /** Furthest the centre of a ball can get from the middle of the standard table along z */
+    public static final double limitZ = Table.length_2 - Ball.radius;
+
+    /** Starting position */
+    private final double x0, z0;
+    /** Unit direction of travel, zero if at rest */
+    private final double ux, uz;
+    /** Starting speed */
+    private final double s0;
+    /** Seconds until the ball comes to rest */
+    private final double restTime;
+    /** Whether the path bounces off the cushions or carries straight on */
+    private final boolean cushions;
+    /** Where the cushions stop the centre of the ball, at plus and minus these */
+    private final double boundX, boundZ;
+
+    /**
+     * Creates the trajectory of a ball bouncing off the cushions of the standard table
+     * @param x Starting x coord
+     * @param z Starting z coord
+     * @param vx Starting x velocity, in metres per second
+     * @param vz Starting z velocity, in metres per second
+     */
+    public Trajectory (double x, double z, double vx, double vz) {
+        this(x, z, vx, vz, true);
+    }
+
+    /**
+     * Creates the trajectory of a ball on the standard table
+     * @param x Starting x coord
+     * @param z Starting z coord
+     * @param vx Starting x velocity, in metres per second
+     * @param vz Starting z velocity, in metres per second
+     * @param cushions True to bounce off the cushions, false to roll on forever
+     */
+    public Trajectory (double x, double z, double vx, double vz, boolean cushions) {
+        this(x, z, vx, vz, cushions, limitX, limitZ);
+    }
+
+    /**
+     * Creates the trajectory of a ball on a table of any size
+     * @param x Starting x coord
+     * @param z Starting z coord
+     * @param vx Starting x velocity, in metres per second
+     * @param vz Starting z velocity, in metres per second
+     * @param cushions True to bounce off the cushions, false to roll on forever
+     * @param boundX Furthest the centre of the ball can get from the middle of the table along x
+     * @param boundZ Furthest the centre of the ball can get from the middle of the table along z
+     */
+    public Trajectory (double x, double z, double vx, double vz, boolean cushions, double boundX, double boundZ) {
+        if (!(boundX > 0 && boundZ > 0)) throw new IllegalArgumentException("Bounds must be positive: "+boundX+", "+boundZ);
+        this.boundX = boundX;
+        this.boundZ = boundZ;
+        this.x0 = x;
+        this.z0 = z;
+        double s = Math.sqrt(vx*vx + vz*vz);
+        this.s0 = s;
+        this.ux = (s > 0) ? vx / s : 0;
+        this.uz = (s > 0) ? vz / s : 0;
+        this.restTime = (s > 0) ? Ball.stopTime(s) : 0;
+        this.cushions = cushions;
+    }
+
+    /**
+     * Creates the trajectory of a ball in a world, as it is now,
+     * bouncing off the cushions of the world's {@link TableGeometry}
+     * @param world The world
+     * @param i Index of the ball
+     * @return The path the ball will take if nothing gets in its way
+     */
+    public static Trajectory of (PhysicsWorld world, int i) {
+        TableGeometry g = world.getGeometry();
+        return new Trajectory(world.getPosX(i), world.getPosZ(i), world.getVelX(i), world.getVelZ(i), true,
+                g.getHalfWidth() - Ball.radius, g.getHalfLength() - Ball.radius);
+    }
+
+    /**
+     * Returns how long until the ball comes to rest
+     * @return Seconds from the start
+     */
+    public double getRestTime () {
+        return this.restTime;
+    }
+
+    /**
+     * Returns how far the ball rolls before it comes to rest
+     * @return The length of the whole path
+     */
+    public double getRestDistance () {
+        return distanceAt(this.restTime);
+    }
+
+    /**
+     * Returns the speed of the ball at a time
+     * @param t Seconds from the start
+     * @return The speed, zero once at rest
+     */
+    public double speedAt (double t) {
+        return (t < this.restTime) ? Ball.speedAfter(this.s0, Math.max(t, 0)) : 0;
+    }
+
+    /**
+     * Returns how far along its path the ball is at a time
+     * @param t Seconds from the start
+     * @return The distance travelled
+     */
+    public double distanceAt (double t) {
+        return (t > 0 && this.s0 > 0) ? Ball.distanceAfter(this.s0, t) : 0;
+    }
+
+    /**
+     * Returns how long the ball takes to travel a distance along its path
+     * @param d The distance
+     * @return Seconds from the start, or infinity if it stops short
+     */
+    public double timeToTravel (double d) {
+        if (d <= 0) return 0;
+        if (d > getRestDistance()) return Double.POSITIVE_INFINITY;
+        return Ball.timeToTravel(this.s0, d);
+    }
+
+    /**
+     * Writes the position and velocity of the ball at a time into an array
+     * @param t Seconds from the start
+     * @param out Receives x, z, vx, vz
+     */
+    public void at (double t, double[] out) {
+        double d = distanceAt(t), v = speedAt(t);
+        double x = this.x0 + this.ux*d, vx = this.ux*v;
+        double z = this.z0 + this.uz*d, vz = this.uz*v;
+        if (this.cushions) {
+            double fx = fold(x, this.boundX), fz = fold(z, this.boundZ);
+            if (mirrored(x, this.boundX)) vx = -vx;
+            if (mirrored(z, this.boundZ)) vz = -vz;
+            x = fx;
+            z = fz;
+        }
+        out[0] = x;
+        out[1] = z;
+        out[2] = vx;
+        out[3] = vz;
+    }
+
+    /**
+     * Returns the x coord of the ball at a time
+     * @param t Seconds from the start
+     * @return The x coord
+     */
+    public double xAt (double t) {
+        double x = this.x0 + this.ux*distanceAt(t);
+        return this.cushions ? fold(x, this.boundX) : x;
+    }
+
+    /**
+     * Returns the z coord of the ball at a time
+     * @param t Seconds from the start
+     * @return The z coord
+     */
+    public double zAt (double t) {
+        double z = this.z0 + this.uz*distanceAt(t);
+        return this.cushions ? fold(z, this.boundZ) : z;
+    }
+
+    /**
+     * Folds a coord on an unbounded line back between two mirrors. <br>
+     * Equal to bouncing off the mirrors as many times as it takes.
+     * @param u The coord as if nothing was in the way
+     * @param limit The mirrors are at plus and minus this
+     * @return The coord between the mirrors
+     */
+    public static double fold (double u, double limit) {
+        if (u >= -limit && u <= limit) return u;
+        double period = 4*limit;
+        double p = (u + limit) % period;
+        if (p < 0) p += period;
+        return (p <= 2*limit) ? p - limit : 3*limit - p;
+    }
+
+    /**
+     * Returns whether a coord has been mirrored an odd number of times by {@link #fold(double, double)}
+     * @param u The coord as if nothing was in the way
+     * @param limit The mirrors are at plus and minus this
+     * @return True if the direction along this axis is reversed
+     */
+    public static boolean mirrored (double u, double limit) {
+        if (u >= -limit && u <= limit) return false;
+        double period = 4*limit;
+        double p = (u + limit) % period;
+        if (p < 0) p += period;
+        return p > 2*limit;
+    }
+
+    /**
+     * Returns how many times {@link #fold(double, double)} bounces a coord
+     * off the mirrors, for a line that starts between them
+     * @param u The coord as if nothing was in the way
+     * @param limit The mirrors are at plus and minus this
+     * @return The number of bounces
+     */
+    public static int bounces (double u, double limit) {
+        if (u >= -limit && u <= limit) return 0;
+        return (int) Math.ceil((Math.abs(u) - limit) / (2*limit));
+    }
+
+}
@@ -0,0 +1,189 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * A {@link BroadPhase} that buckets balls into square cells. <p>
+ * With cells as wide as a ball, two balls can only touch if they are
+ * in the same or neighbouring cells, so each moving ball looks at the
+ * 3x3 block of cells around it instead of at every other ball.
+ * <p>
+ * Each cell is a doubly linked list threaded through per-ball arrays.
+ * {@link #update(BallStore)} only relinks balls that changed cell,
+ * so resting balls cost nothing to keep track of. Given an active list
+ * it only looks at the balls on it, so the cost of a step follows the
+ * number of moving balls rather than the number on the table.
+ */
+public class UniformGrid implements BroadPhase {
+    /** Marks an empty link, or a ball not in any cell */
+    private static final int NONE = -1;
+    /** Width and length of each cell */
+    private final double cellSize;
+    /** Equal to 1 over {@link #cellSize} */
+    private final double invCell;
+    /** The smallest x and z coords the grid covers */
+    private final double minX, minZ;
+    /** Number of cells along x and along z */
+    private final int cols, rows;
+    /** The first ball in each cell, or {@link #NONE} */
+    private final int[] head;
+    /** The cell each ball is in, or {@link #NONE} */
+    private int[] cellOf;
+    /** The next and previous ball in the same cell as each ball */
+    private int[] next, prev;
+
+    /**
+     * Creates a grid over the whole table, with cells as wide as a ball
+     */
+    public UniformGrid () {
+        this(-Table.width_2, -Table.length_2, Table.width, Table.length, 2*Ball.radius);
+    }
+
+    /**
+     * Creates a grid covering the given rectangle. <br>
+     * Balls outside of it are clamped into the border cells.
+     * @param minX The smallest x coord to cover
+     * @param minZ The smallest z coord to cover
+     * @param width The size of the rectangle along x
+     * @param length The size of the rectangle along z
+     * @param cellSize The size of each cell, at least the diameter of a ball
+     */
+    public UniformGrid (double minX, double minZ, double width, double length, double cellSize) {
+        this.cellSize = cellSize;
+        this.invCell = 1 / cellSize;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.cols = Math.max(1, (int) Math.ceil(width * this.invCell));
+        this.rows = Math.max(1, (int) Math.ceil(length * this.invCell));
+        this.head = new int[this.cols * this.rows];
+        Arrays.fill(this.head, NONE);
+        this.cellOf = new int[0];
+    }
+
+    /**
+     * Returns the size of each cell
+     * @return The width and length of a cell
+     */
+    public double getCellSize () {
+        return this.cellSize;
+    }
+
+    /**
+     * Returns the column a x coord falls in, clamped to the grid
+     * @param x The x coord
+     * @return The column index
+     */
+    private int col (double x) {
+        int c = (int) ((x - this.minX) * this.invCell);
+        return (c < 0) ? 0 : (c >= this.cols) ? this.cols-1 : c;
+    }
+
+    /**
+     * Returns the row a z coord falls in, clamped to the grid
+     * @param z The z coord
+     * @return The row index
+     */
+    private int row (double z) {
+        int r = (int) ((z - this.minZ) * this.invCell);
+        return (r < 0) ? 0 : (r >= this.rows) ? this.rows-1 : r;
+    }
+
+    @Override
+    public void update (BallStore balls) {
+        int count = balls.capacity();
+        if (this.cellOf.length != count) {
+            this.cellOf = new int[count];
+            this.next = new int[count];
+            this.prev = new int[count];
+            Arrays.fill(this.cellOf, NONE);
+            Arrays.fill(this.head, NONE);
+        }
+        for (int i=0; i<count; i++) relink(balls, i);
+    }
+
+    @Override
+    public void update (BallStore balls, int[] active, int activeCount) {
+        if (this.cellOf.length != balls.capacity()) {
+            update(balls);
+            return;
+        }
+        for (int k=0; k<activeCount; k++) relink(balls, active[k]);
+    }
+
+    /**
+     * Moves a ball to the cell it is now in, if it changed
+     * @param balls The ball store
+     * @param i Index of the ball
+     */
+    private void relink (BallStore balls, int i) {
+        int cell = balls.is(i, BallStore.POTTED) ? NONE
+                 : row(balls.z(i))*this.cols + col(balls.x(i));
+        if (cell != this.cellOf[i]) {
+            unlink(i);
+            if (cell != NONE) link(i, cell);
+        }
+    }
+
+    /**
+     * Pushes a ball onto the front of a cell's list
+     * @param i Index of the ball
+     * @param cell Index of the cell
+     */
+    private void link (int i, int cell) {
+        int h = this.head[cell];
+        this.next[i] = h;
+        this.prev[i] = NONE;
+        if (h != NONE) this.prev[h] = i;
+        this.head[cell] = i;
+        this.cellOf[i] = cell;
+    }
+
+    /**
+     * Removes a ball from whichever cell it is in
+     * @param i Index of the ball
+     */
+    private void unlink (int i) {
+        int cell = this.cellOf[i];
+        if (cell == NONE) return;
+        int n = this.next[i], p = this.prev[i];
+        if (p != NONE) this.next[p] = n;
+        else this.head[cell] = n;
+        if (n != NONE) this.prev[n] = p;
+        this.cellOf[i] = NONE;
+    }
+
+    @Override
+    public void forEachPair (BallStore balls, PairVisitor visitor) {
+        int count = this.cellOf.length;
+        for (int i=0; i<count; i++) visitNeighbours(balls, i, visitor);
+    }
+
+    @Override
+    public void forEachPair (BallStore balls, int[] active, int activeCount, PairVisitor visitor) {
+        for (int k=0; k<activeCount; k++) visitNeighbours(balls, active[k], visitor);
+    }
+
+    /**
+     * Visits a moving ball against every ball in the 3x3 cells around it
+     * @param balls The ball store
+     * @param i Index of the ball, skipped unless it is on the table and moving
+     * @param visitor Receives each candidate pair
+     */
+    private void visitNeighbours (BallStore balls, int i, PairVisitor visitor) {
+        int cell = this.cellOf[i];
+        if (cell == NONE || !balls.is(i, BallStore.IN_MOTION)) return;
+        int c = cell % this.cols, r = cell / this.cols;
+        int c0 = Math.max(c-1, 0), c1 = Math.min(c+1, this.cols-1);
+        int r0 = Math.max(r-1, 0), r1 = Math.min(r+1, this.rows-1);
+        for (int rr=r0; rr<=r1; rr++) {
+            for (int cc=c0; cc<=c1; cc++) {
+                for (int j=this.head[rr*this.cols+cc]; j!=NONE; j=this.next[j]) {
+                    // Moving pairs are visited from the lower index only
+                    if (j != i && (j > i || !balls.is(j, BallStore.IN_MOTION)))
+                        visitor.visit(i, j);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,362 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * Works out which balls the cue ball can hit directly, and through which
+ * angles. <p>
+ * Seen from the cue ball, every other ball blocks the angles at which the
+ * cue ball would run into it, a window of half width asin(2r / d) around the
+ * direction of its centre, d being the distance between the centres. Where
+ * windows overlap, the nearer ball is the one hit. {@link #update(PhysicsWorld)}
+ * sweeps once around the cue ball over the window edges in angle order,
+ * keeping the balls whose windows are open in a heap by distance, so the
+ * nearest open ball at every angle is found in O(n log n) for n balls.
+ * <p>
+ * The nearer centre is taken to be hit first, which is exact except where
+ * two balls are almost the same distance from the cue ball. Cushions and
+ * pockets are ignored. Nothing is allocated by an update, so it's fine to
+ * call every frame while the player is aiming.
+ * <p>
+ * Angles are in radians where 0 aims towards +z, the same as
+ * {@link PhysicsWorld#strike(double, double)}, and run from 0 up to 2 pi.
+ * A window that wraps past 2 pi ends at more than 2 pi.
+ */
+public class VisibilityIndex {
+    /** A full turn, in radians */
+    private static final double TAU = 2*Math.PI;
+    /** Low bits of a sorted event holding its window index and whether it opens */
+    private static final int idBits = 9;
+    /** Mask of {@link #idBits} */
+    private static final long idMask = (1L << idBits) - 1;
+
+    /** The number of ball slots */
+    private final int count;
+    /** The ball the angles are seen from */
+    private int from = PhysicsWorld.CUE;
+    /** Distance from the cue ball to each ball */
+    private final double[] dist;
+    /** The ball each blocking window belongs to */
+    private final int[] owner;
+    /** Where each blocking window opens and closes */
+    private final double[] winLo, winHi;
+    /** Every window edge, angle bits above {@link #idBits}, window index below */
+    private final long[] events;
+    /** True while a ball's window is open during the sweep */
+    private final boolean[] open;
+    /** Balls with open windows, nearest first, including ones since closed */
+    private final int[] heap;
+    /** Start, end, and ball of every visible stretch, in angle order */
+    private final double[] segLo, segHi;
+    private final int[] segBall;
+    /** Number of visible stretches */
+    private int segCount;
+    /** The visible stretches of each ball, as indices into {@link #order} */
+    private final int[] first, windows;
+    /** Visible stretches grouped by ball */
+    private final int[] order;
+    /** Where the next stretch of each ball goes in {@link #order} while grouping */
+    private final int[] cursor;
+
+    /**
+     * Creates an empty index
+     * @param count The number of ball slots, at most 64
+     */
+    public VisibilityIndex (int count) {
+        if (count < 1 || count > 64) throw new IllegalArgumentException("Ball count must be between 1 and 64: "+count);
+        this.count = count;
+        this.dist = new double[count];
+        // A window crossing 2 pi is split in two, and each window has two edges
+        this.owner = new int[2*count];
+        this.winLo = new double[2*count];
+        this.winHi = new double[2*count];
+        this.events = new long[4*count];
+        this.open = new boolean[count];
+        this.heap = new int[2*count];
+        this.segLo = new double[4*count + 1];
+        this.segHi = new double[4*count + 1];
+        this.segBall = new int[4*count + 1];
+        this.first = new int[count + 1];
+        this.windows = new int[count];
+        this.order = new int[4*count + 1];
+        this.cursor = new int[count];
+    }
+
+    /**
+     * Works the index out again from where the balls are in a world
+     * @param world The world, with the same number of ball slots
+     */
+    public void update (PhysicsWorld world) {
+        update(world.getStore(), PhysicsWorld.CUE);
+    }
+
+    /**
+     * Works the index out again from a saved table
+     * @param state The table, with the same number of ball slots
+     */
+    public void update (TableState state) {
+        update(state.balls, PhysicsWorld.CUE);
+    }
+
+    /**
+     * Works the index out again
+     * @param b The balls, with the same number of slots
+     * @param from The ball to look from, usually the cue ball
+     */
+    void update (BallStore b, int from) {
+        if (b.capacity() != this.count)
+            throw new IllegalArgumentException("Index is for "+this.count+" balls, not "+b.capacity());
+        this.from = from;
+        this.segCount = 0;
+        Arrays.fill(this.windows, 0);
+        Arrays.fill(this.first, 0);
+        if (b.is(from, BallStore.POTTED)) return;
+        double cx = b.x(from), cz = b.z(from);
+
+        // Every ball blocks a window around its direction, split where it crosses 2 pi
+        int w = 0, e = 0;
+        for (int i=0; i<this.count; i++) {
+            this.open[i] = false;
+            if (i == from || b.is(i, BallStore.POTTED)) continue;
+            double dx = b.x(i) - cx, dz = b.z(i) - cz;
+            double d = Math.sqrt(dx*dx + dz*dz);
+            this.dist[i] = d;
+            double centre = Math.atan2(dx, dz);
+            if (centre < 0) centre += TAU;
+            double half = (d <= 2*Ball.radius) ? Math.PI/2 : Math.asin(2*Ball.radius / d);
+            double lo = centre - half, hi = centre + half;
+            if (lo < 0) {
+                e = window(e, w++, i, lo + TAU, TAU);
+                lo = 0;
+            } else if (hi > TAU) {
+                e = window(e, w++, i, 0, hi - TAU);
+                hi = TAU;
+            }
+            e = window(e, w++, i, lo, hi);
+        }
+        Arrays.sort(this.events, 0, e);
+
+        // Sweep, the nearest open ball owns each stretch between edges
+        int size = 0;
+        double prev = 0;
+        for (int k=0; k<=e; k++) {
+            int id = (k == e) ? 0 : (int) (this.events[k] & idMask);
+            double angle = (k == e) ? TAU : ((id & 1) != 0) ? this.winLo[id >> 1] : this.winHi[id >> 1];
+            while (size > 0 && !this.open[this.heap[0]]) size = pop(size);
+            if (size > 0 && angle > prev) stretch(this.heap[0], prev, angle);
+            prev = Math.max(prev, angle);
+            if (k == e) break;
+            int ball = this.owner[id >> 1];
+            if ((id & 1) != 0) {
+                this.open[ball] = true;
+                size = push(size, ball);
+            } else {
+                this.open[ball] = false;
+            }
+        }
+        // Join the stretches either side of 0 when the same ball owns both
+        int n = this.segCount;
+        if (n > 1 && this.segBall[0] == this.segBall[n-1] && this.segLo[0] == 0 && this.segHi[n-1] == TAU) {
+            // The last stretch carries on past 2 pi, and the first is dropped
+            this.segHi[n-1] = TAU + this.segHi[0];
+            System.arraycopy(this.segLo, 1, this.segLo, 0, n-1);
+            System.arraycopy(this.segHi, 1, this.segHi, 0, n-1);
+            System.arraycopy(this.segBall, 1, this.segBall, 0, n-1);
+            this.segCount = --n;
+        }
+
+        // Group the stretches by ball, keeping angle order within each
+        for (int s=0; s<n; s++) this.windows[this.segBall[s]]++;
+        for (int i=0; i<this.count; i++) this.first[i+1] = this.first[i] + this.windows[i];
+        System.arraycopy(this.first, 0, this.cursor, 0, this.count);
+        for (int s=0; s<n; s++) this.order[this.cursor[this.segBall[s]]++] = s;
+    }
+
+    /**
+     * Adds the two edges of a blocking window
+     * @param e Number of edges so far
+     * @param w Index of the window
+     * @param ball The ball blocking it
+     * @param lo The angle the window opens at
+     * @param hi The angle it closes at
+     * @return The number of edges now
+     */
+    private int window (int e, int w, int ball, double lo, double hi) {
+        this.owner[w] = ball;
+        this.winLo[w] = lo;
+        this.winHi[w] = hi;
+        // Closing edges sort first at the same angle, as their bit is 0
+        this.events[e++] = edge(lo, (w << 1) | 1);
+        this.events[e++] = edge(hi, w << 1);
+        return e;
+    }
+
+    /**
+     * Packs an edge into a long that sorts by angle. <br>
+     * The bits of a positive double sort the same as the double does, the lowest
+     * few are swapped for the window index, so edges less than about 1e-13 apart
+     * may sort either way. The exact angle is kept with the window.
+     * @param angle The angle of the edge, from 0 to 2 pi
+     * @param id Index of the window times two, plus one if it opens
+     * @return The packed edge
+     */
+    private static long edge (double angle, int id) {
+        return (Double.doubleToRawLongBits(angle) & ~idMask) | id;
+    }
+
+    /**
+     * Records that a ball is the one hit over a stretch of angles,
+     * joining it to the stretch before if that was the same ball
+     * @param ball The ball hit
+     * @param lo The start of the stretch
+     * @param hi The end of the stretch
+     */
+    private void stretch (int ball, double lo, double hi) {
+        int n = this.segCount;
+        if (n > 0 && this.segBall[n-1] == ball && this.segHi[n-1] == lo) {
+            this.segHi[n-1] = hi;
+            return;
+        }
+        this.segLo[n] = lo;
+        this.segHi[n] = hi;
+        this.segBall[n] = ball;
+        this.segCount++;
+    }
+
+    /**
+     * Adds a ball to the heap
+     * @param size The size of the heap
+     * @param ball The ball to add
+     * @return The new size
+     */
+    private int push (int size, int ball) {
+        int[] h = this.heap;
+        int k = size++;
+        while (k > 0) {
+            int parent = (k - 1) >> 1;
+            if (this.dist[h[parent]] <= this.dist[ball]) break;
+            h[k] = h[parent];
+            k = parent;
+        }
+        h[k] = ball;
+        return size;
+    }
+
+    /**
+     * Removes the nearest ball from the heap
+     * @param size The size of the heap
+     * @return The new size
+     */
+    private int pop (int size) {
+        int[] h = this.heap;
+        int last = h[--size];
+        int k = 0;
+        while (true) {
+            int c = 2*k + 1;
+            if (c >= size) break;
+            if (c + 1 < size && this.dist[h[c+1]] < this.dist[h[c]]) c++;
+            if (this.dist[last] <= this.dist[h[c]]) break;
+            h[k] = h[c];
+            k = c;
+        }
+        if (size > 0) h[k] = last;
+        return size;
+    }
+
+    /**
+     * Returns the ball the angles are seen from
+     * @return Index of the ball, usually the cue ball
+     */
+    public int getFrom () {
+        return this.from;
+    }
+
+    /**
+     * Returns whether a ball can be hit directly at all
+     * @param i Index of the ball
+     * @return True if it has at least one open window
+     */
+    public boolean isVisible (int i) {
+        return this.windows[i] > 0;
+    }
+
+    /**
+     * Returns the number of separate windows a ball can be hit through
+     * @param i Index of the ball
+     * @return The window count, 0 if it is hidden or potted
+     */
+    public int getWindowCount (int i) {
+        return this.windows[i];
+    }
+
+    /**
+     * Returns where a window opens
+     * @param i Index of the ball
+     * @param k Index of the window, below {@link #getWindowCount(int)}
+     * @return The angle in radians, from 0 up to 2 pi
+     */
+    public double getWindowStart (int i, int k) {
+        return this.segLo[this.order[this.first[i] + k]];
+    }
+
+    /**
+     * Returns where a window closes
+     * @param i Index of the ball
+     * @param k Index of the window, below {@link #getWindowCount(int)}
+     * @return The angle in radians, more than the start, and more than 2 pi if it wraps
+     */
+    public double getWindowEnd (int i, int k) {
+        return this.segHi[this.order[this.first[i] + k]];
+    }
+
+    /**
+     * Returns the total width of the windows a ball can be hit through
+     * @param i Index of the ball
+     * @return The width in radians, 0 if it is hidden
+     */
+    public double getVisibleWidth (int i) {
+        double sum = 0;
+        for (int k=0; k<this.windows[i]; k++) sum += getWindowEnd(i, k) - getWindowStart(i, k);
+        return sum;
+    }
+
+    /**
+     * Returns the middle of the widest window a ball can be hit through,
+     * the safest angle to hit it directly
+     * @param i Index of the ball
+     * @return The angle in radians, from 0 up to 2 pi, or NaN if it is hidden
+     */
+    public double getBestAngle (int i) {
+        double best = Double.NaN, width = 0;
+        for (int k=0; k<this.windows[i]; k++) {
+            double lo = getWindowStart(i, k), hi = getWindowEnd(i, k);
+            if (hi - lo > width) {
+                width = hi - lo;
+                best = (lo + hi) / 2;
+            }
+        }
+        return (best >= TAU) ? best - TAU : best;
+    }
+
+    /**
+     * Finds the ball the cue ball would hit first if struck at an angle
+     * @param angle The angle in radians, where 0 aims towards +z
+     * @return Index of the ball, or -1 if it would hit none
+     */
+    public int firstHit (double angle) {
+        angle %= TAU;
+        if (angle < 0) angle += TAU;
+        int n = this.segCount;
+        // The last stretch may wrap, and covers the start as well
+        if (n > 0 && this.segHi[n-1] > TAU && angle < this.segHi[n-1] - TAU) return this.segBall[n-1];
+        int lo = 0, hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (angle < this.segLo[mid]) hi = mid - 1;
+            else if (angle >= this.segHi[mid]) lo = mid + 1;
+            else return this.segBall[mid];
+        }
+        return -1;
+    }
+
+}
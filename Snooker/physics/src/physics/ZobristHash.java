@@ -0,0 +1,143 @@
+package physics;
+
+/**
+ * A 64 bit hash of where the balls are, kept up to date one ball at a time. <p>
+ * Every ball gets a random looking key for the small square its centre is
+ * in, or for being potted, and the hash is all the keys xor'd together.
+ * Moving one ball only swaps its old key for its new one, so keeping the
+ * hash current costs one key per ball that moved rather than one per ball.
+ * <p>
+ * The keys aren't kept in a table, as there are millions of squares on the
+ * table. Each one is worked out by mixing the ball index and square
+ * together, which gives the same key every time, like an endless table.
+ * <p>
+ * Only positions and the potted set are hashed, not velocities, so this
+ * is meant for tables at rest, such as the start of a shot.
+ */
+public class ZobristHash {
+    /** Default size of the squares positions are rounded to, a millimetre */
+    public static final double defaultQuantum = 0.001;
+    /** Square index used for a potted ball, no square on a table is this far out */
+    private static final long POTTED = 0x40000000L;
+
+    /** Size of the squares positions are rounded to */
+    private final double quantum;
+    /** The key each ball currently has in the hash */
+    private final long[] keys;
+    /** All the keys xor'd together */
+    private long hash;
+
+    /**
+     * Creates a hash with the default quantum
+     * @param count The number of ball slots
+     */
+    public ZobristHash (int count) {
+        this(count, defaultQuantum);
+    }
+
+    /**
+     * Creates a hash with no balls in it, call {@link #setAll(PhysicsWorld)} to fill it
+     * @param count The number of ball slots
+     * @param quantum Size of the squares positions are rounded to, more than zero
+     */
+    public ZobristHash (int count, double quantum) {
+        if (!(quantum > 0)) throw new IllegalArgumentException("Quantum must be positive: "+quantum);
+        this.quantum = quantum;
+        this.keys = new long[count];
+    }
+
+    /**
+     * Returns the current hash
+     * @return All the ball keys xor'd together
+     */
+    public long get () {
+        return this.hash;
+    }
+
+    /**
+     * Updates the key of one ball
+     * @param i Index of the ball
+     * @param x x position of the ball
+     * @param z z position of the ball
+     * @param potted True if the ball has been potted, its position is then ignored
+     */
+    public void set (int i, double x, double z, boolean potted) {
+        long k = key(i, x, z, potted, this.quantum);
+        this.hash ^= this.keys[i] ^ k;
+        this.keys[i] = k;
+    }
+
+    /**
+     * Updates the key of one ball from a world
+     * @param world The world the ball is in
+     * @param i Index of the ball
+     */
+    public void set (PhysicsWorld world, int i) {
+        set(i, world.getPosX(i), world.getPosZ(i), world.isPotted(i));
+    }
+
+    /**
+     * Works out the hash again from every ball in a world
+     * @param world The world, with the same number of ball slots
+     */
+    public void setAll (PhysicsWorld world) {
+        for (int i=0; i<this.keys.length; i++) set(world, i);
+    }
+
+    /**
+     * Works out the hash again from every ball in a saved state
+     * @param state The state, with the same number of ball slots
+     */
+    public void setAll (TableState state) {
+        for (int i=0; i<this.keys.length; i++)
+            set(i, state.getPosX(i), state.getPosZ(i), state.isPotted(i));
+    }
+
+    /**
+     * Returns the size of the squares positions are rounded to
+     * @return The quantum in metres
+     */
+    public double getQuantum () {
+        return this.quantum;
+    }
+
+    /**
+     * Hashes a saved state from scratch
+     * @param state The state to hash
+     * @param quantum Size of the squares positions are rounded to
+     * @return The same hash a {@link ZobristHash} holding that state would have
+     */
+    public static long hash (TableState state, double quantum) {
+        long h = 0;
+        for (int i=0; i<state.getBallCount(); i++)
+            h ^= key(i, state.getPosX(i), state.getPosZ(i), state.isPotted(i), quantum);
+        return h;
+    }
+
+    /**
+     * Returns the key for a ball in a square, or potted
+     * @param i Index of the ball
+     * @param x x position of the ball
+     * @param z z position of the ball
+     * @param potted True if potted
+     * @param quantum Size of the squares
+     * @return The ball's key
+     */
+    private static long key (int i, double x, double z, boolean potted, double quantum) {
+        long qx = potted ? POTTED : (long) Math.floor(x / quantum);
+        long qz = potted ? POTTED : (long) Math.floor(z / quantum);
+        return mix(mix(mix(i + 0x9E3779B97F4A7C15L) + qx) + qz);
+    }
+
+    /**
+     * Scrambles the bits of a long, the finaliser from SplitMix64
+     * @param v The value to scramble
+     * @return The scrambled value
+     */
+    static long mix (long v) {
+        v = (v ^ (v >>> 30)) * 0xBF58476D1CE4E5B9L;
+        v = (v ^ (v >>> 27)) * 0x94D049BB133111EBL;
+        return v ^ (v >>> 31);
+    }
+
+}
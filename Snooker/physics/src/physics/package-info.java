@@ -0,0 +1,10 @@
+/**
+ * Headless pool ball physics.
+ * 
+ * Nothing in here may depend on Java3D, so that a table
+ * can be simulated without a Canvas3D or a SimpleUniverse.
+ * The behaviours package adapts this to the scene graph.
+ * 
+ * @see PhysicsWorld
+ */
+package physics;
@@ -0,0 +1,79 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link PhysicsWorld} keeps track of exactly the balls
+ * that are moving and lets the rest of the table sleep.
+ */
+public class ActiveSetTest {
+    /** Simulated seconds between frames */
+    private static final double FRAME = 1 / 60.0;
+
+    /**
+     * Counts the balls in motion by looking at every one
+     * @param w The world
+     * @return The number moving
+     */
+    private static int moving (PhysicsWorld w) {
+        int n = 0;
+        for (int i=0; i<w.getBallCount(); i++) if (w.getStore().isMoving(i)) n++;
+        return n;
+    }
+
+    @Test
+    void activeCountFollowsTheMovingBalls () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        assertEquals(0, w.getActiveCount());
+        w.strike(Math.PI - 0.0708, 6);
+        assertEquals(1, w.getActiveCount());
+        int most = 0;
+        while (!w.isAtRest()) {
+            w.advance(FRAME);
+            assertEquals(moving(w), w.getActiveCount());
+            most = Math.max(most, w.getActiveCount());
+        }
+        assertTrue(most > 1);
+        assertEquals(0, w.getActiveCount());
+    }
+
+    @Test
+    void broadPhaseIsGivenTheMovingBallsOnly () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        int[] most = new int[1];
+        w.setBroadPhase(new UniformGrid() {
+            @Override
+            public void forEachPair (BallStore balls, int[] active, int activeCount, PairVisitor visitor) {
+                boolean[] listed = new boolean[balls.capacity()];
+                for (int k=0; k<activeCount; k++) listed[active[k]] = true;
+                for (int i=0; i<balls.capacity(); i++)
+                    assertTrue(listed[i] || !balls.isMoving(i), "ball "+i+" left out");
+                most[0] = Math.max(most[0], activeCount);
+                super.forEachPair(balls, active, activeCount, visitor);
+            }
+        });
+        w.strike(Math.PI - 0.0708, 6);
+        while (!w.isAtRest()) w.advance(FRAME);
+        // The balls the break never reached were never handed over
+        assertTrue(most[0] > 1 && most[0] < PhysicsWorld.standardCount, "at most "+most[0]);
+    }
+
+    @Test
+    void ballSetMovingInTheStoreWakesUp () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        BallStore b = w.getStore();
+        b.setVx(3, 0.5);
+        b.set(3, BallStore.IN_MOTION, true);
+        w.wake(3);
+        assertEquals(1, w.getActiveCount());
+        assertFalse(w.isAtRest());
+        double x = w.getPosX(3);
+        w.advance(FRAME * 6);
+        assertTrue(w.getPosX(3) > x);
+    }
+
+}
@@ -0,0 +1,110 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link BallStore} keeps every column apart, wherever
+ * its memory lives, and that a world plays the same on any of them.
+ */
+public class BallStoreTest {
+
+    /**
+     * Fills every column of a store with values that tell the balls and columns apart
+     * @param s The store
+     */
+    private static void fill (BallStore s) {
+        for (int i=0; i<s.capacity(); i++) {
+            s.setX(i, i + 0.1);
+            s.setZ(i, i + 0.2);
+            s.setVx(i, -i - 0.3);
+            s.setVz(i, -i - 0.4);
+            s.setFlags(i, i & 3);
+            s.setType(i, 100 + i);
+        }
+    }
+
+    /**
+     * Checks that a store holds what {@link #fill} put in
+     * @param s The store
+     */
+    private static void assertFilled (BallStore s) {
+        for (int i=0; i<s.capacity(); i++) {
+            assertEquals(i + 0.1, s.x(i));
+            assertEquals(i + 0.2, s.z(i));
+            assertEquals(-i - 0.3, s.vx(i));
+            assertEquals(-i - 0.4, s.vz(i));
+            assertEquals(i & 3, s.flags(i));
+            assertEquals(100 + i, s.type(i));
+        }
+    }
+
+    @Test
+    void columnsKeepTheirOwnValues () {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            BallStore s = new BallStore(7, offHeap);
+            assertEquals(offHeap, s.isOffHeap());
+            fill(s);
+            assertFilled(s);
+        }
+    }
+
+    @Test
+    void flagsSetAndClearOneAtATime () {
+        BallStore s = new BallStore(2, false);
+        s.set(0, BallStore.IN_MOTION, true);
+        assertTrue(s.isMoving(0));
+        s.set(0, BallStore.POTTED, true);
+        assertTrue(s.is(0, BallStore.IN_MOTION));
+        assertFalse(s.isMoving(0));
+        s.set(0, BallStore.IN_MOTION, false);
+        assertEquals(BallStore.POTTED, s.flags(0));
+        assertEquals(0, s.flags(1));
+    }
+
+    @Test
+    void copyFromCrossesTheHeap () {
+        BallStore heap = new BallStore(5, false), direct = new BallStore(5, true);
+        fill(heap);
+        direct.copyFrom(heap);
+        assertFilled(direct);
+        BallStore back = new BallStore(5, false);
+        back.copyFrom(direct);
+        assertFilled(back);
+        assertThrows(IllegalArgumentException.class, () -> back.copyFrom(new BallStore(4, false)));
+    }
+
+    @Test
+    void storesOnOneBufferShareTheBalls () {
+        ByteBuffer buf = ByteBuffer.allocateDirect(16 + 3*BallStore.bytesPerBall);
+        buf.position(16);
+        BallStore writer = new BallStore(buf, 3), reader = new BallStore(buf, 3);
+        fill(writer);
+        assertFilled(reader);
+        // The space in front of the store is left alone
+        for (int k=0; k<16; k++) assertEquals(0, buf.get(k));
+        assertThrows(IllegalArgumentException.class, () -> new BallStore(buf, 4));
+    }
+
+    @Test
+    void worldPlaysTheSameOffTheHeap () {
+        PhysicsWorld heap = PhysicsWorld.createStandard();
+        PhysicsWorld direct = new PhysicsWorld(new BallStore(PhysicsWorld.standardCount, true));
+        direct.restore(Tables.standard());
+        heap.strike(Math.PI - 0.0708, 6);
+        direct.strike(Math.PI - 0.0708, 6);
+        heap.advance(30);
+        direct.advance(30);
+        for (int i=0; i<PhysicsWorld.standardCount; i++) {
+            assertEquals(heap.isPotted(i), direct.isPotted(i));
+            assertEquals(heap.getPosX(i), direct.getPosX(i));
+            assertEquals(heap.getPosZ(i), direct.getPosZ(i));
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks {@link ClearanceSolver} on the colours of the standard layout,
+ * where the cue ball starts in the D and a clearance is there to be found.
+ */
+public class ClearanceSolverTest {
+    /** The solver, two threads so the search is forked */
+    private ClearanceSolver solver;
+
+    @BeforeEach
+    void create () {
+        this.solver = new ClearanceSolver(PhysicsWorld.standardCount, 2);
+    }
+
+    @AfterEach
+    void shutdown () {
+        this.solver.shutdown();
+    }
+
+    /**
+     * Makes the standard layout with the reds taken off
+     * @return The table
+     */
+    private static TableState colours () {
+        return Tables.without(SnookerRules.REDS);
+    }
+
+    @Test
+    void sequenceIsYellowToBlack () {
+        assertArrayEquals(new int[] { 6, 5, 4, 3, 2, 1 }, ClearanceSolver.sequence(colours()));
+    }
+
+    @Test
+    void sequenceRejectsReds () {
+        TableState s = Tables.standard();
+        assertThrows(IllegalArgumentException.class, () -> ClearanceSolver.sequence(s));
+    }
+
+    @Test
+    void emptyTableIsAlreadyClear () {
+        PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+        w.setBall(PhysicsWorld.CUE, 0, 0, 1);
+        TableState s = new TableState(PhysicsWorld.standardCount);
+        w.save(s);
+        ClearanceSolver.Plan plan = this.solver.solve(s, 1);
+        assertTrue(plan.isClear());
+        assertEquals(0, plan.getCleared());
+    }
+
+    @Test
+    void clearsTheStandardColours () {
+        TableState start = colours();
+        ClearanceSolver.Plan plan = this.solver.solve(start, 30);
+        assertTrue(plan.isClear());
+        assertFalse(plan.isCut());
+        assertEquals(6, plan.getCleared());
+        // Every shot pots the next colour, and nothing else
+        int[] seq = ClearanceSolver.sequence(start);
+        List<ShotResult> shots = plan.getShots();
+        for (int k=0; k<shots.size(); k++) {
+            assertEquals(seq[k], shots.get(k).getFirstHit());
+            assertEquals(1L << seq[k], shots.get(k).getPottedMask());
+        }
+        // The first shot is worked out from exactly where the cue ball is
+        ShotResult first = shots.get(0);
+        ShotResult replayed = new ShotSimulator().run(start, first.getAngle(), first.getPower());
+        assertEquals(first.getPottedMask(), replayed.getPottedMask());
+        assertEquals(first.getPosX(PhysicsWorld.CUE), replayed.getPosX(PhysicsWorld.CUE));
+        assertEquals(first.getPosZ(PhysicsWorld.CUE), replayed.getPosZ(PhysicsWorld.CUE));
+    }
+
+    @Test
+    void remembersTablesAcrossSolves () {
+        TableState start = colours();
+        assertTrue(this.solver.solve(start, 30).isClear());
+        ClearanceSolver.Plan again = this.solver.solve(start, 30);
+        assertTrue(again.isClear());
+        assertTrue(this.solver.getLastMemoHits() > 0);
+    }
+
+    @Test
+    void noTimeCutsTheSearch () {
+        ClearanceSolver.Plan plan = this.solver.solve(colours(), 0);
+        assertTrue(plan.isCut());
+        assertFalse(plan.isClear());
+    }
+
+    @Test
+    void rejectsAPottedCueBall () {
+        PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+        w.setBall(1, 7, 0, -1);
+        TableState s = new TableState(PhysicsWorld.standardCount);
+        w.save(s);
+        assertThrows(IllegalArgumentException.class, () -> this.solver.solve(s, 1));
+    }
+
+}
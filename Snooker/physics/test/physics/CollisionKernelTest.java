@@ -0,0 +1,67 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the impulse two balls get when they meet: momentum is kept,
+ * the speed along the line of centres is reversed by the restitution,
+ * and nothing changes across it.
+ */
+public class CollisionKernelTest {
+    /** A step short enough that drag and travel don't matter */
+    private static final double INSTANT = 1e-9;
+
+    /**
+     * Fires one ball into another resting against it and checks the result
+     * @param angle The direction of the line of centres, from the first ball
+     * @param heading The direction the first ball is rolling
+     * @param massA Mass of the first ball
+     * @param massB Mass of the second ball
+     */
+    private static void checkHit (double angle, double heading, double massA, double massB) {
+        PhysicsWorld w = new PhysicsWorld(2);
+        double nx = Math.sin(angle), nz = Math.cos(angle);
+        double gap = 2*Ball.radius - 1e-7;
+        w.setBall(0, 0, 0, 0);
+        w.setBall(1, 1, nx*gap, nz*gap);
+        w.setMass(0, massA);
+        w.setMass(1, massB);
+        w.strike(0, heading, 1);
+        double ax = w.getVelX(0), az = w.getVelZ(0);
+        w.step(INSTANT);
+        double ax2 = w.getVelX(0), az2 = w.getVelZ(0), bx2 = w.getVelX(1), bz2 = w.getVelZ(1);
+        String at = "angle "+angle+" heading "+heading;
+        // Momentum
+        assertEquals(massA*ax, massA*ax2 + massB*bx2, 1e-6, at);
+        assertEquals(massA*az, massA*az2 + massB*bz2, 1e-6, at);
+        // Across the line of centres nothing changes
+        assertEquals(-ax*nz + az*nx, -ax2*nz + az2*nx, 1e-6, at);
+        assertEquals(0, -bx2*nz + bz2*nx, 1e-6, at);
+        // Along it the balls part at the restitution times the speed they met at
+        double closing = ax*nx + az*nz, parting = (bx2 - ax2)*nx + (bz2 - az2)*nz;
+        assertEquals(w.getRestitution() * closing, parting, 1e-6, at);
+    }
+
+    @Test
+    void headOnHitPassesTheSpeedOn () {
+        checkHit(0, 0, Ball.mass, Ball.mass);
+    }
+
+    @Test
+    void cutsKeepMomentumAtEveryAngle () {
+        for (int k=0; k<24; k++) {
+            double angle = k * Math.PI / 12;
+            for (double off : new double[] {-1.2, -0.5, 0, 0.5, 1.2})
+                checkHit(angle, angle + off, Ball.mass, Ball.mass);
+        }
+    }
+
+    @Test
+    void unequalMassesKeepMomentum () {
+        checkHit(0.3, 0.1, Ball.mass, 3*Ball.mass);
+        checkHit(-2, -1.9, 2*Ball.mass, Ball.mass);
+    }
+
+}
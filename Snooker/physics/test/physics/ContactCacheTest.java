@@ -0,0 +1,101 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link ContactCache} keeps pairs straight and that the
+ * world reports the start and end of each contact exactly once.
+ */
+public class ContactCacheTest {
+
+    @Test
+    void pairsAreKeptBothWays () {
+        // More than one long per row
+        ContactCache c = new ContactCache(130);
+        assertTrue(c.touch(3, 129));
+        assertFalse(c.touch(129, 3));
+        assertTrue(c.isTouching(129, 3));
+        assertTrue(c.touch(3, 64));
+        assertTrue(c.touch(3, 0));
+        assertEquals(3, c.getContactCount());
+        List<Integer> seen = new ArrayList<>();
+        // Separating from inside the visit is allowed
+        c.forEachContact(3, (a, b) -> {
+            seen.add(b);
+            c.separate(a, b);
+        });
+        assertEquals(List.of(0, 64, 129), seen);
+        assertEquals(0, c.getContactCount());
+        assertFalse(c.hasContacts(129));
+        assertFalse(c.separate(3, 129));
+    }
+
+    @Test
+    void copyTakesEveryContact () {
+        ContactCache a = new ContactCache(22), b = new ContactCache(22);
+        a.touch(1, 7);
+        a.touch(20, 21);
+        b.touch(4, 5);
+        b.copyFrom(a);
+        assertEquals(2, b.getContactCount());
+        assertTrue(b.isTouching(7, 1));
+        assertFalse(b.isTouching(4, 5));
+        assertThrows(IllegalArgumentException.class, () -> b.copyFrom(new ContactCache(23)));
+    }
+
+    @Test
+    void everyContactBeginsAndEndsOnce () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        Set<Long> open = new HashSet<>();
+        int[] begun = new int[1];
+        w.setListener(new PhysicsListener() {
+            @Override
+            public void contactBegin (int a, int b) {
+                assertTrue(open.add(key(a, b)), a+", "+b+" begun twice");
+                begun[0]++;
+            }
+
+            @Override
+            public void contactEnd (int a, int b) {
+                assertTrue(open.remove(key(a, b)), a+", "+b+" ended without beginning");
+            }
+
+            @Override
+            public void ballPotted (int ball, int pocket) {
+                for (int j=0; j<PhysicsWorld.standardCount; j++) assertFalse(open.contains(key(ball, j)));
+            }
+        });
+        w.strike(Math.PI - 0.0708, 6);
+        while (!w.isAtRest()) {
+            w.advance(1 / 60.0);
+            assertEquals(open.size(), w.getContacts().getContactCount());
+        }
+        assertTrue(begun[0] > 10);
+        // Whatever is still touching at rest is just what the cache holds
+        for (long k : open) assertTrue(w.getContacts().isTouching((int) (k >> 32), (int) k));
+        // A table at rest doesn't report anything more
+        int before = begun[0];
+        w.advance(1);
+        assertEquals(before, begun[0]);
+    }
+
+    /**
+     * Returns a key for a pair that doesn't depend on the order
+     * @param a Index of one ball
+     * @param b Index of the other
+     * @return The lower index in the high half, the higher in the low half
+     */
+    private static long key (int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+
+}
@@ -0,0 +1,107 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link ContactSolver} gives the same shot however it is
+ * played and whichever broad phase finds the contacts, and that it
+ * leaves touching balls apart.
+ */
+public class ContactSolverTest {
+    /** Distance between two centres when the balls touch */
+    private static final double R = 2*Ball.radius;
+
+    /**
+     * Breaks off from the standard layout and plays the shot out
+     * @param broadPhase The broad phase to use, or null for the world's own
+     * @return Every ball's x, z and potted flag at rest
+     */
+    private static double[] breakOff (BroadPhase broadPhase) {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        if (broadPhase != null) w.setBroadPhase(broadPhase);
+        w.strike(0.02, 6);
+        for (double t=0; t<ShotSimulator.maxShotTime && !w.isAtRest(); t+=0.1) w.advance(0.1);
+        double[] out = new double[3*w.getBallCount()];
+        for (int i=0; i<w.getBallCount(); i++) {
+            out[3*i] = w.getPosX(i);
+            out[3*i+1] = w.getPosZ(i);
+            out[3*i+2] = w.isPotted(i) ? 1 : 0;
+        }
+        return out;
+    }
+
+    /**
+     * Checks two tables are exactly the same
+     * @param want The first
+     * @param got The second
+     */
+    private static void assertSameTable (double[] want, double[] got) {
+        for (int k=0; k<want.length; k++)
+            assertEquals(want[k], got[k], 0, "ball "+(k/3));
+    }
+
+    @Test
+    void sameShotTwiceIsTheSame () {
+        TableState start = Tables.standard();
+        ShotSimulator sim = new ShotSimulator();
+        ShotResult a = sim.run(start, 0.02, 6), b = sim.run(start, 0.02, 6);
+        assertEquals(a.getPottedMask(), b.getPottedMask());
+        assertEquals(a.getFirstHit(), b.getFirstHit());
+        assertEquals(a.getCushions(), b.getCushions());
+        assertEquals(a.getSteps(), b.getSteps());
+        for (int i=0; i<a.getBallCount(); i++) {
+            assertEquals(a.getPosX(i), b.getPosX(i), 0);
+            assertEquals(a.getPosZ(i), b.getPosZ(i), 0);
+        }
+    }
+
+    @Test
+    void broadPhaseDoesNotChangeTheShot () {
+        double[] grid = breakOff(new UniformGrid());
+        assertSameTable(grid, breakOff(new SweepAndPrune()));
+        assertSameTable(grid, breakOff(new NestedLoop()));
+        assertSameTable(grid, breakOff(null));
+    }
+
+    @Test
+    void overlapsAreGoneByTheNextStep () {
+        // Pushing a pair apart can nudge one of them into a ball that wasn't
+        // part of the island, that pair is only found and pushed apart next step
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        w.strike(0.02, 12);
+        int n = w.getBallCount();
+        boolean[] was = new boolean[n*n];
+        for (int step=0; step<2000 && !w.isAtRest(); step++) {
+            w.advance(w.getStepLength());
+            for (int i=0; i<n; i++)
+                for (int j=i+1; j<n; j++) {
+                    boolean over = false;
+                    if (!w.isPotted(i) && !w.isPotted(j)) {
+                        double d = Math.hypot(w.getPosX(i) - w.getPosX(j), w.getPosZ(i) - w.getPosZ(j));
+                        assertTrue(R - d < 1e-3, "step "+step+": balls "+i+" and "+j+" overlap by "+(R - d));
+                        over = R - d > 1e-9;
+                    }
+                    assertTrue(!over || !was[i*n + j], "step "+step+": balls "+i+" and "+j+" still overlap");
+                    was[i*n + j] = over;
+                }
+        }
+    }
+
+    @Test
+    void rowPassesTheImpactAlong () {
+        // A cue ball into a row of three touching reds, like a Newton's cradle
+        PhysicsWorld w = new PhysicsWorld(4);
+        w.setBall(PhysicsWorld.CUE, 0, 0, -0.5);
+        for (int i=1; i<4; i++) w.setBall(i, 1, 0, (i - 1) * R);
+        w.strike(0, 1);
+        while (w.getPosZ(3) < 3*R && w.getPosZ(PhysicsWorld.CUE) < 0) w.advance(w.getStepLength());
+        double last = w.getVelZ(3);
+        assertTrue(last > 0.4, "the last ball should carry the shot on: "+last);
+        for (int i=0; i<3; i++)
+            assertTrue(Math.abs(w.getVelZ(i)) < 0.2 * last, "ball "+i+" should have passed it on: "+w.getVelZ(i));
+    }
+
+}
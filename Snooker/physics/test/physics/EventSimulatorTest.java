@@ -0,0 +1,126 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link EventSimulator} catches contacts at their exact time,
+ * and plays the same shot the same way every time, whether on a fresh
+ * world or one restored to the start.
+ */
+public class EventSimulatorTest {
+    /** Simulated seconds between looks at the table */
+    private static final double FRAME = 1 / 60.0;
+
+    /**
+     * Restores a table, breaks off and plays it out a frame at a time
+     * @param w The world to play it in
+     * @param events The simulator for that world
+     * @param start The table to restore
+     * @return Every ball's x and z at every frame, then the number of events
+     */
+    private static double[] play (PhysicsWorld w, EventSimulator events, TableState start) {
+        w.restore(start);
+        w.strike(0.02, 6);
+        long before = events.getEventCount();
+        int n = w.getBallCount(), frames = 600;
+        double[] out = new double[2*n*frames + 1];
+        for (int f=0; f<frames; f++) {
+            events.advance(FRAME);
+            for (int i=0; i<n; i++) {
+                out[2*(f*n + i)] = w.getPosX(i);
+                out[2*(f*n + i) + 1] = w.getPosZ(i);
+            }
+        }
+        out[out.length - 1] = events.getEventCount() - before;
+        return out;
+    }
+
+    @Test
+    void restoringPlaysTheSameAgain () {
+        TableState start = Tables.standard();
+        PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+        EventSimulator events = new EventSimulator(w);
+        double[] first = play(w, events, start);
+        assertTrue(first[first.length - 1] > 0);
+        assertArrayEquals(first, play(w, events, start));
+    }
+
+    @Test
+    void freshWorldPlaysTheSame () {
+        TableState start = Tables.standard();
+        PhysicsWorld a = new PhysicsWorld(PhysicsWorld.standardCount);
+        PhysicsWorld b = new PhysicsWorld(PhysicsWorld.standardCount);
+        assertArrayEquals(play(a, new EventSimulator(a), start), play(b, new EventSimulator(b), start));
+    }
+
+    @Test
+    void runningToRestEndsTheSame () {
+        TableState start = Tables.standard();
+        PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+        EventSimulator events = new EventSimulator(w);
+        w.restore(start);
+        w.strike(0.02, 6);
+        long count = events.runToRest();
+        assertTrue(w.isAtRest());
+        TableState end = new TableState(PhysicsWorld.standardCount);
+        w.save(end);
+        w.restore(start);
+        w.strike(0.02, 6);
+        assertEquals(count, events.runToRest());
+        for (int i=0; i<PhysicsWorld.standardCount; i++) {
+            assertEquals(end.isPotted(i), w.isPotted(i));
+            assertEquals(end.getPosX(i), w.getPosX(i), 0);
+            assertEquals(end.getPosZ(i), w.getPosZ(i), 0);
+        }
+    }
+
+    @Test
+    void hardShotMeetsTheBallInItsWayExactly () {
+        PhysicsWorld w = new PhysicsWorld(2);
+        w.setBall(0, 0, 0, -0.5);
+        w.setBall(1, 1, 0, -0.3);
+        List<double[]> hits = new ArrayList<>();
+        w.setListener(new PhysicsListener() {
+            @Override
+            public void ballCollision (int a, int b) {
+                BallStore s = w.getStore();
+                if (hits.isEmpty()) hits.add(new double[] {s.z(b) - s.z(a), s.x(a), s.x(b), s.vz(a), s.vz(b)});
+            }
+        });
+        EventSimulator events = new EventSimulator(w);
+        // Far faster than a ball's width per frame, a stepper would have to substep to see it
+        w.strike(0, 0, 50);
+        events.advance(FRAME);
+        assertEquals(1, hits.size());
+        double[] hit = hits.get(0);
+        assertEquals(2*Ball.radius, hit[0], 1e-9);
+        assertEquals(0, hit[1]);
+        assertEquals(0, hit[2]);
+        // Equal masses, square on: the gap opens at the restitution times the closing speed
+        assertEquals(w.getRestitution(), (hit[4] - hit[3]) / (hit[4] + hit[3]), 1e-9);
+    }
+
+    @Test
+    void ballRolledAtACornerIsPotted () {
+        PhysicsWorld w = new PhysicsWorld(1);
+        List<String> seen = new ArrayList<>();
+        w.setListener(new PhysicsListener() {
+            @Override
+            public void ballPotted (int ball, int pocket) {
+                seen.add("pot "+ball+" "+pocket);
+            }
+        });
+        w.setBall(0, 1, Table.pocketX[0] - 0.4, Table.pocketZ[0] - 0.4);
+        w.strike(0, Math.PI/4, 2);
+        new EventSimulator(w).runToRest();
+        assertTrue(w.isPotted(0));
+        assertEquals(List.of("pot 0 0"), seen);
+    }
+
+}
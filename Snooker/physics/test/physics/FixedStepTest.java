@@ -0,0 +1,81 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link PhysicsWorld#advance(double)} plays a shot the same
+ * way whatever the frame rate, and substeps fast balls.
+ */
+public class FixedStepTest {
+    /** Where to aim the break so the cue ball takes the pink first */
+    private static final double BREAK = Math.PI - 0.0708;
+    /** How close the same shot ends up when played at another frame rate, a hundredth of a millimetre */
+    private static final double CLOSE = 1e-5;
+
+    /**
+     * Breaks off and plays the given time in frames of the given length
+     * @param frames Number of frames
+     * @param frame Seconds per frame
+     * @return The world afterwards
+     */
+    private static PhysicsWorld play (int frames, double frame) {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        w.strike(BREAK, 6);
+        for (int f=0; f<frames; f++) w.advance(frame);
+        return w;
+    }
+
+    @Test
+    void frameRateDoesNotChangeTheShot () {
+        // Two seconds at 120, 60, 40 and 24 frames a second
+        PhysicsWorld fine = play(240, 1 / 120.0);
+        assertTrue(fine.getStepCount() > 0);
+        for (int per : new int[] {2, 3, 5}) {
+            PhysicsWorld w = play(240 / per, per / 120.0);
+            assertEquals(fine.getStepCount(), w.getStepCount(), per+" steps a frame");
+            for (int i=0; i<PhysicsWorld.standardCount; i++) {
+                assertEquals(fine.isPotted(i), w.isPotted(i));
+                assertEquals(fine.getPosX(i), w.getPosX(i), CLOSE, "ball "+i);
+                assertEquals(fine.getPosZ(i), w.getPosZ(i), CLOSE, "ball "+i);
+            }
+        }
+    }
+
+    @Test
+    void timeIsBankedUntilThereIsAWholeStep () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        w.strike(BREAK, 6);
+        double h = w.getStepLength();
+        assertEquals(0, w.advance(h * 0.4));
+        assertEquals(0, w.advance(h * 0.4));
+        assertEquals(1, w.advance(h * 0.4));
+        assertEquals(1, w.getStepCount());
+    }
+
+    @Test
+    void fastBallIsSubstepped () {
+        PhysicsWorld w = new PhysicsWorld(2);
+        // A ball in reach, so the step can't be coasted
+        w.setBall(0, 0, 0, 0);
+        w.setBall(1, 1, 0, 0.1);
+        w.strike(0, 0, 10);
+        double h = w.getStepLength();
+        int expected = (int) Math.ceil(10 * h / PhysicsWorld.maxTravel);
+        assertTrue(expected > 1);
+        assertEquals(1, w.advance(h));
+        assertEquals(0, w.getCoastedSteps());
+        assertEquals(expected, w.getSubstepCount());
+    }
+
+    @Test
+    void rejectsEmptySteps () {
+        PhysicsWorld w = new PhysicsWorld(1);
+        assertThrows(IllegalArgumentException.class, () -> w.setStepLength(0));
+        assertThrows(IllegalArgumentException.class, () -> w.setStepLength(Double.NaN));
+    }
+
+}
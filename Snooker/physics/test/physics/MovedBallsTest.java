@@ -0,0 +1,83 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link PhysicsWorld#collectMoved(int[])} hands out
+ * every ball a renderer has to redraw, and only those.
+ */
+public class MovedBallsTest {
+    /** Simulated seconds between frames */
+    private static final double FRAME = 1 / 60.0;
+
+    @Test
+    void drawingOnlyTheMovedBallsKeepsUp () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        int n = w.getBallCount();
+        int[] moved = new int[n];
+        assertEquals(0, w.collectMoved(moved));
+        // What a renderer that only redraws moved balls would show
+        double[] drawnX = new double[n], drawnZ = new double[n];
+        boolean[] drawnPotted = new boolean[n];
+        for (int i=0; i<n; i++) {
+            drawnX[i] = w.getPosX(i);
+            drawnZ[i] = w.getPosZ(i);
+        }
+        w.strike(Math.PI - 0.0708, 6);
+        int frames = 0, redrawn = 0;
+        do {
+            w.advance(FRAME);
+            int m = w.collectMoved(moved);
+            redrawn += m;
+            for (int k=0; k<m; k++) {
+                int i = moved[k];
+                drawnX[i] = w.getPosX(i);
+                drawnZ[i] = w.getPosZ(i);
+                drawnPotted[i] = w.isPotted(i);
+            }
+            for (int i=0; i<n; i++) {
+                assertEquals(w.getPosX(i), drawnX[i], "ball "+i+" frame "+frames);
+                assertEquals(w.getPosZ(i), drawnZ[i], "ball "+i+" frame "+frames);
+                assertEquals(w.isPotted(i), drawnPotted[i]);
+            }
+            frames++;
+        } while (!w.isAtRest());
+        // Far fewer than redrawing every ball every frame
+        assertTrue(redrawn < n*frames / 2, redrawn+" of "+n*frames);
+        assertEquals(0, w.collectMoved(moved));
+    }
+
+    @Test
+    void stoppedBallIsHandedOutOnceMore () {
+        PhysicsWorld w = new PhysicsWorld(2);
+        w.setBall(0, 0, 0, 0);
+        w.setBall(1, 1, 0.3, 0);
+        int[] moved = new int[2];
+        assertEquals(0, w.collectMoved(moved));
+        w.strike(0, 0, 0.05);
+        while (!w.isAtRest()) {
+            w.advance(FRAME);
+            assertEquals(1, w.collectMoved(moved));
+            assertEquals(0, moved[0]);
+        }
+        assertEquals(0, w.collectMoved(moved));
+    }
+
+    @Test
+    void restoreRedrawsEverything () {
+        PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+        w.restore(Tables.standard());
+        int[] moved = new int[PhysicsWorld.standardCount];
+        assertEquals(PhysicsWorld.standardCount, w.collectMoved(moved));
+        Arrays.sort(moved);
+        int[] all = new int[PhysicsWorld.standardCount];
+        Arrays.setAll(all, i -> i);
+        assertArrayEquals(all, moved);
+    }
+
+}
@@ -0,0 +1,95 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Candidate pairs shared by the broad phase tests
+ */
+final class Pairs {
+
+    /**
+     * Not to be made
+     */
+    private Pairs () {
+    }
+
+    /**
+     * Scatters balls over a patch of the table, crowded enough
+     * that many of them touch, some moving and some potted.
+     * @param count The number of balls
+     * @param seed Seed for the layout
+     * @return The balls
+     */
+    static BallStore crowd (int count, long seed) {
+        Random r = new Random(seed);
+        BallStore b = new BallStore(count, false);
+        for (int i=0; i<count; i++) scatter(b, i, r);
+        return b;
+    }
+
+    /**
+     * Puts one ball somewhere new, with a new state
+     * @param b The balls
+     * @param i Index of the ball
+     * @param r Source of the layout
+     */
+    static void scatter (BallStore b, int i, Random r) {
+        b.setX(i, (r.nextDouble() - 0.5) * 0.5);
+        b.setZ(i, (r.nextDouble() - 0.5) * 0.5);
+        int roll = r.nextInt(10);
+        b.setFlags(i, roll < 3 ? BallStore.IN_MOTION : roll < 4 ? BallStore.POTTED : 0);
+    }
+
+    /**
+     * Collects the pairs a broad phase hands over, checking
+     * that none of them comes twice or shouldn't be there.
+     * @param p The broad phase, already updated
+     * @param b The balls
+     * @param active The active list to pass, or null to use the full sweep
+     * @return Each pair as lower index times the count plus higher index
+     */
+    static Set<Long> of (BroadPhase p, BallStore b, int[] active) {
+        Set<Long> pairs = new HashSet<>();
+        int n = b.capacity();
+        BroadPhase.PairVisitor v = (i, j) -> {
+            assertTrue(i != j);
+            assertTrue(!b.is(i, BallStore.POTTED) && !b.is(j, BallStore.POTTED), i+" or "+j+" potted");
+            assertTrue(b.is(i, BallStore.IN_MOTION) || b.is(j, BallStore.IN_MOTION), i+" and "+j+" at rest");
+            assertTrue(pairs.add((long) Math.min(i, j)*n + Math.max(i, j)), i+", "+j+" twice");
+        };
+        if (active == null) p.forEachPair(b, v);
+        else p.forEachPair(b, active, active.length, v);
+        return pairs;
+    }
+
+    /**
+     * Returns the pairs of balls that touch, with at least one moving, by looking at every pair
+     * @param b The balls
+     * @return Each pair as for {@link #of}
+     */
+    static Set<Long> touching (BallStore b) {
+        Set<Long> all = of(new NestedLoop(), b, null), touching = new HashSet<>();
+        int n = b.capacity();
+        for (long key : all) {
+            int i = (int) (key / n), j = (int) (key % n);
+            double dx = b.x(i) - b.x(j), dz = b.z(i) - b.z(j);
+            if (dx*dx + dz*dz <= 4*Ball.radius*Ball.radius) touching.add(key);
+        }
+        return touching;
+    }
+
+    /**
+     * Returns the balls that are moving
+     * @param b The balls
+     * @return Their indices
+     */
+    static int[] moving (BallStore b) {
+        return IntStream.range(0, b.capacity()).filter(b::isMoving).toArray();
+    }
+
+}
@@ -0,0 +1,105 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link PhysicsThread} runs every command posted to it
+ * and hands over every event, even when it is stopped straight after.
+ */
+public class PhysicsThreadTest {
+
+    /**
+     * Keeps the balls potted, in order
+     */
+    private static final class Pots implements PhysicsListener {
+        /** The balls potted */
+        final List<Integer> balls = new ArrayList<>();
+
+        @Override
+        public void ballPotted (int ball, int pocket) {
+            this.balls.add(ball);
+        }
+    }
+
+    @Test
+    void commandPostedDuringTheLastTickStillRuns () throws InterruptedException {
+        // Two balls touching, so the world steps rather than coasting past the broad phase
+        PhysicsWorld w = new PhysicsWorld(2);
+        w.setBall(PhysicsWorld.CUE, 0, 0, 0);
+        w.setBall(1, 1, 0, 2*Ball.radius);
+        AtomicBoolean applied = new AtomicBoolean();
+        CountDownLatch ticking = new CountDownLatch(1);
+        PhysicsThread[] thread = new PhysicsThread[1];
+        // Holds the first tick until stop has been asked for, then posts from inside it
+        w.setBroadPhase(new NestedLoop() {
+            boolean done;
+            @Override
+            public void update (BallStore balls) {
+                if (this.done) return;
+                this.done = true;
+                ticking.countDown();
+                while (thread[0].isRunning()) Thread.onSpinWait();
+                thread[0].post(world -> {
+                    applied.set(true);
+                    world.getListener().ballPotted(1, 0);
+                });
+            }
+        });
+        Pots pots = new Pots();
+        w.setListener(pots);
+        PhysicsThread t = thread[0] = new PhysicsThread(w);
+        t.start();
+        t.post(world -> world.strike(Math.PI, 1));
+        assertTrue(ticking.await(10, TimeUnit.SECONDS));
+        t.stop();
+        assertTrue(applied.get());
+        assertSame(pots, w.getListener());
+        // The pot came after the thread stopped ticking, it is still handed over
+        assertEquals(1, t.deliverEvents(pots));
+        assertEquals(List.of(1), pots.balls);
+    }
+
+    @Test
+    void commandsRunInOrderBeforeTheSnapshot () throws InterruptedException {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        PhysicsThread t = new PhysicsThread(w);
+        t.start();
+        StringBuilder order = new StringBuilder();
+        for (int k=0; k<5; k++) {
+            int id = k;
+            t.post(world -> order.append(id));
+        }
+        t.post(world -> world.setBall(1, 7, 0.25, 0.5));
+        while (!t.isIdle()) Thread.sleep(1);
+        assertEquals("01234", order.toString());
+        assertEquals(0.25, t.getSnapshot().getPosX(1, 1));
+        t.stop();
+    }
+
+    @Test
+    void stoppedThreadLeavesTheWorldToTheCaller () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        Pots pots = new Pots();
+        w.setListener(pots);
+        PhysicsThread t = new PhysicsThread(w, 240);
+        assertEquals(1 / 240.0, w.getStepLength());
+        t.start();
+        assertTrue(t.isRunning());
+        t.post(world -> world.strike(0, 2));
+        t.stop();
+        assertTrue(!t.isRunning());
+        assertSame(pots, w.getListener());
+        // The strike was run even if no tick came after it
+        assertTrue(!w.isAtRest());
+    }
+
+}
@@ -0,0 +1,97 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link PhysicsWorld} plays snooker on its own, with
+ * nothing but the physics package: the layout, pots and cushions.
+ */
+public class PhysicsWorldTest {
+    /** Seconds to give a shot to come to rest */
+    private static final double LONG_ENOUGH = 60;
+
+    /**
+     * Keeps every event as text, in order
+     */
+    private static final class Events implements PhysicsListener {
+        /** The events */
+        final List<String> seen = new ArrayList<>();
+
+        @Override
+        public void ballPotted (int ball, int pocket) {
+            this.seen.add("pot "+ball+" "+pocket);
+        }
+
+        @Override
+        public void cushionHit (int ball) {
+            this.seen.add("cushion "+ball);
+        }
+    }
+
+    @Test
+    void standardLayoutIsAtRestWithNothingOverlapping () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        assertEquals(PhysicsWorld.standardCount, w.getBallCount());
+        assertTrue(w.isAtRest());
+        assertEquals(0, w.getPointValue(PhysicsWorld.CUE));
+        for (int i=1; i<=6; i++) assertEquals(8 - i, w.getPointValue(i));
+        for (int i=7; i<PhysicsWorld.standardCount; i++) assertEquals(1, w.getPointValue(i));
+        for (int i=0; i<w.getBallCount(); i++) {
+            assertFalse(w.isPotted(i));
+            assertTrue(Math.abs(w.getPosX(i)) < Table.width_2 - Ball.radius);
+            assertTrue(Math.abs(w.getPosZ(i)) < Table.length_2 - Ball.radius);
+            for (int j=0; j<i; j++) {
+                double dx = w.getPosX(i) - w.getPosX(j), dz = w.getPosZ(i) - w.getPosZ(j);
+                assertTrue(Math.sqrt(dx*dx + dz*dz) > 2*Ball.radius - 1e-9, i+" overlaps "+j);
+            }
+        }
+    }
+
+    @Test
+    void ballRolledAtACornerIsPotted () {
+        PhysicsWorld w = new PhysicsWorld(1);
+        Events events = new Events();
+        w.setListener(events);
+        double px = Table.pocketX[0], pz = Table.pocketZ[0];
+        w.setBall(0, 1, px - 0.4, pz - 0.4);
+        assertTrue(w.strike(0, Math.PI/4, 2));
+        w.advance(LONG_ENOUGH);
+        assertTrue(w.isPotted(0));
+        assertTrue(w.isAtRest());
+        assertEquals(List.of("pot 0 0"), events.seen);
+        // Nothing left to strike
+        assertFalse(w.strike(0, 0, 1));
+    }
+
+    @Test
+    void ballBouncesStraightBackOffACushion () {
+        PhysicsWorld w = new PhysicsWorld(1);
+        Events events = new Events();
+        w.setListener(events);
+        w.setBall(0, 1, 0, 0.5);
+        w.strike(0, Math.PI/2, 1.5);
+        double before = w.getVelX(0);
+        for (int f=0; f<600 && w.getVelX(0) > 0; f++) w.advance(1 / 60.0);
+        assertEquals(List.of("cushion 0"), events.seen);
+        assertTrue(w.getVelX(0) < 0);
+        assertTrue(-w.getVelX(0) < before);
+        assertEquals(0.5, w.getPosZ(0), 1e-9);
+        assertEquals(0, w.getVelZ(0), 1e-9);
+    }
+
+    @Test
+    void restingTableDoesNothing () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        long mods = w.getModCount();
+        assertEquals(0, w.advance(1));
+        assertEquals(0, w.getStepCount());
+        assertEquals(mods, w.getModCount());
+    }
+
+}
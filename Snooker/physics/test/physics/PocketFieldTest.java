@@ -0,0 +1,134 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that {@link PocketField} reuses its file while the table and cell
+ * size stay the same, and builds it again as soon as either changes. <br>
+ * Coarse cells keep every build quick.
+ */
+public class PocketFieldTest {
+    /** Size of the cells */
+    private static final double CELL = 0.2;
+    /** Put in the first cell pair to tell whether the file was built again */
+    private static final int MARK = 0x12345678;
+
+    /** Where the fields are kept */
+    @TempDir
+    Path dir;
+
+    /**
+     * Makes the standard table, with the first end of the first cushion moved
+     * @param shift How far to move it along z
+     * @return The table
+     */
+    private static TableGeometry table (double shift) {
+        double w = Table.width_2, l = Table.length_2, m = Table.mouth_2, j = Table.jawRadius;
+        TableGeometry g = new TableGeometry(w, l, TableGeometry.defaultCellSize);
+        for (int p=0; p<6; p++) g.addPocket(Table.pocketX[p], Table.pocketZ[p], Table.pocketRadius);
+        g.addCushion(+w, -l+m+shift, +w, -m, j);
+        g.addCushion(+w, +m, +w, +l-m, j);
+        g.addCushion(+w-m, +l, -w+m, +l, j);
+        g.addCushion(-w, +l-m, -w, +m, j);
+        g.addCushion(-w, -m, -w, -l+m, j);
+        g.addCushion(-w+m, -l, +w-m, -l, j);
+        return g;
+    }
+
+    /**
+     * Writes an int into a file
+     * @param file The file
+     * @param offset Where to write it
+     * @param value What to write
+     * @throws IOException If the file can't be written
+     */
+    private static void poke (Path file, long offset, int value) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value), offset);
+        }
+    }
+
+    /**
+     * Reads the stamp out of a file's header
+     * @param file The file
+     * @return The stamp
+     * @throws IOException If the file can't be read
+     */
+    private static long stamp (Path file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN).getLong(8);
+    }
+
+    @Test
+    void sameTableReusesTheFile () throws IOException {
+        Path file = this.dir.resolve("pockets.bin");
+        PocketField.open(file, table(0), CELL);
+        poke(file, 64, MARK);
+        assertEquals(MARK, PocketField.open(file, table(0), CELL).get(0, 0));
+        // A table built the same way elsewhere is the same table
+        assertEquals(MARK, PocketField.open(file, TableGeometry.standard(), CELL).get(0, 0));
+    }
+
+    @Test
+    void movedCushionBuildsItAgain () throws IOException {
+        Path file = this.dir.resolve("pockets.bin");
+        PocketField.open(file, table(0), CELL);
+        long before = stamp(file);
+        poke(file, 64, MARK);
+        PocketField f = PocketField.open(file, table(0.001), CELL);
+        assertNotEquals(before, stamp(file));
+        assertNotEquals(MARK, f.get(0, 0));
+        // And back again
+        PocketField.open(file, table(0), CELL);
+        assertEquals(before, stamp(file));
+    }
+
+    @Test
+    void otherCellSizeBuildsItAgain () throws IOException {
+        Path file = this.dir.resolve("pockets.bin");
+        PocketField coarse = PocketField.open(file, table(0), CELL);
+        PocketField fine = PocketField.open(file, table(0), CELL / 2);
+        assertTrue(fine.getCellCount() > coarse.getCellCount());
+        assertEquals(64 + 4L * fine.getCellCount() * fine.getCellCount(), Files.size(file));
+    }
+
+    @Test
+    void fileWithoutMagicIsBuiltAgain () throws IOException {
+        Path file = this.dir.resolve("pockets.bin");
+        PocketField.open(file, table(0), CELL);
+        poke(file, 64, MARK);
+        poke(file, 0, 0);
+        assertNotEquals(MARK, PocketField.open(file, table(0), CELL).get(0, 0));
+    }
+
+    @Test
+    void fileInTheWayIsReplaced () throws IOException {
+        Path file = this.dir.resolve("pockets.bin");
+        Files.write(file, new byte[] { 1, 2, 3 });
+        PocketField f = PocketField.open(file, table(0), CELL);
+        assertEquals(64 + 4L * f.getCellCount() * f.getCellCount(), Files.size(file));
+    }
+
+    @Test
+    void straightPotGoesInTheNearPocket () throws IOException {
+        PocketField f = PocketField.open(this.dir.resolve("pockets.bin"), table(0), CELL);
+        double w = Table.width_2, l = Table.length_2;
+        // Down the diagonal into the corner at +x, +z, pocket 0
+        assertEquals(0, f.getBestPocket(w - 0.9, l - 0.9, w - 0.5, l - 0.5));
+        assertTrue(f.getCut(w - 0.9, l - 0.9, w - 0.5, l - 0.5, 0) < Math.PI / 4);
+        // Back the other way the ball is hit away from that pocket
+        assertTrue(Double.isNaN(f.getCut(w - 0.5, l - 0.5, w - 0.9, l - 0.9, 0)));
+    }
+
+}
@@ -0,0 +1,113 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a {@link ShotBatch} gives the same results as playing
+ * each shot one after another, however many threads it runs on, and
+ * that it reads its tables and shots from files.
+ */
+public class ShotBatchTest {
+    /** Where the input files are written */
+    @TempDir
+    Path dir;
+
+    /**
+     * Checks two results are exactly the same
+     * @param want The expected result
+     * @param got The result to check
+     * @param shot Which shot, for the message
+     */
+    private static void assertSameResult (ShotResult want, ShotResult got, int shot) {
+        String at = "shot "+shot;
+        assertEquals(want.getPottedMask(), got.getPottedMask(), at);
+        assertEquals(want.getRestMask(), got.getRestMask(), at);
+        assertEquals(want.getFirstHit(), got.getFirstHit(), at);
+        assertEquals(want.getCushions(), got.getCushions(), at);
+        assertEquals(want.getSteps(), got.getSteps(), at);
+        for (int i=0; i<want.getBallCount(); i++) {
+            assertEquals(want.getPosX(i), got.getPosX(i), at);
+            assertEquals(want.getPosZ(i), got.getPosZ(i), at);
+        }
+    }
+
+    @Test
+    void batchMatchesPlayingOneAtATime () {
+        TableState start = Tables.standard();
+        Random r = new Random(5);
+        int shots = 40;
+        double[] angles = new double[shots], powers = new double[shots];
+        for (int k=0; k<shots; k++) {
+            angles[k] = r.nextDouble() * 2*Math.PI;
+            powers[k] = 1 + r.nextInt(9);
+        }
+        ShotSimulator serial = new ShotSimulator();
+        ShotResult[] want = new ShotResult[shots];
+        for (int k=0; k<shots; k++) want[k] = serial.run(start, angles[k], powers[k]);
+        ShotBatch batch = new ShotBatch(start);
+        for (int threads : new int[] {1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ShotResult[] got = batch.run(angles, powers, pool);
+                for (int k=0; k<shots; k++) assertSameResult(want[k], got[k], k);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> batch.run(angles, new double[1]));
+    }
+
+    @Test
+    void batchPlaysFromItsOwnCopy () {
+        TableState start = Tables.standard();
+        ShotBatch batch = new ShotBatch(start);
+        ShotResult before = batch.run(new double[] {0.3}, new double[] {4})[0];
+        // Clearing the caller's table afterwards makes no difference
+        new PhysicsWorld(PhysicsWorld.standardCount).save(start);
+        assertSameResult(before, batch.run(new double[] {0.3}, new double[] {4})[0], 0);
+    }
+
+    @Test
+    void readsATable () throws IOException {
+        Path file = this.dir.resolve("table.txt");
+        Files.write(file, List.of("# cue and black", "", "0 0.1 -0.5", "  1   0.0 1.2  "));
+        TableState t = ShotBatch.readTable(file);
+        assertEquals(PhysicsWorld.standardCount, t.getBallCount());
+        assertFalse(t.isPotted(0));
+        assertEquals(0.1, t.getPosX(0));
+        assertEquals(1.2, t.getPosZ(1));
+        assertEquals(7, t.getPointValue(1));
+        for (int i=2; i<PhysicsWorld.standardCount; i++) assertTrue(t.isPotted(i));
+        Files.write(file, List.of("22 0 0"));
+        assertThrows(IllegalArgumentException.class, () -> ShotBatch.readTable(file));
+        Files.write(file, List.of("0 0"));
+        assertThrows(IllegalArgumentException.class, () -> ShotBatch.readTable(file));
+    }
+
+    @Test
+    void readsShots () throws IOException {
+        Path file = this.dir.resolve("shots.txt");
+        Files.write(file, List.of("# angle power", "0.5 3", "", "3.1 8.5"));
+        double[][] shots = ShotBatch.readShots(file);
+        assertArrayEquals(new double[] {0.5, 3.1}, shots[0]);
+        assertArrayEquals(new double[] {3, 8.5}, shots[1]);
+        Files.write(file, List.of("0.5 0"));
+        assertThrows(IllegalArgumentException.class, () -> ShotBatch.readShots(file));
+        Files.write(file, List.of("0.5"));
+        assertThrows(IllegalArgumentException.class, () -> ShotBatch.readShots(file));
+    }
+
+}
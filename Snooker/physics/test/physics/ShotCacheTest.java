@@ -0,0 +1,132 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the rounding and eviction of {@link ShotCache}, and that a
+ * {@link ShotSimulator} only answers from it when the shot would really
+ * play out the same.
+ */
+public class ShotCacheTest {
+
+    /**
+     * Makes a result to put in a cache
+     * @param angle The angle it says it was played at
+     * @return The result
+     */
+    private static ShotResult result (double angle) {
+        return ShotResult.of(new PhysicsWorld(1), angle, 1, 0, -1, 0, 0);
+    }
+
+    @Test
+    void dropsTheLeastRecentlyUsed () {
+        ShotCache c = new ShotCache(2);
+        ShotResult a = result(0), b = result(1), d = result(2);
+        c.put(1, 0, 1, a);
+        c.put(2, 0, 1, b);
+        // Using the first makes the second the oldest
+        assertSame(a, c.get(1, 0, 1));
+        c.put(3, 0, 1, d);
+        assertEquals(2, c.size());
+        assertEquals(1, c.getEvictions());
+        assertNull(c.get(2, 0, 1));
+        assertSame(a, c.get(1, 0, 1));
+        assertSame(d, c.get(3, 0, 1));
+    }
+
+    @Test
+    void countsHitsAndMisses () {
+        ShotCache c = new ShotCache(4);
+        assertEquals(0, c.getHitRate());
+        c.get(1, 0, 1);
+        c.put(1, 0, 1, result(0));
+        c.get(1, 0, 1);
+        c.get(1, 0, 1);
+        c.get(2, 0, 1);
+        assertEquals(2, c.getHits());
+        assertEquals(2, c.getMisses());
+        assertEquals(0.5, c.getHitRate());
+        c.clear();
+        assertEquals(0, c.size());
+        assertEquals(2, c.getHits());
+        c.resetCounters();
+        assertEquals(0, c.getHits());
+        assertEquals(0, c.getMisses());
+    }
+
+    @Test
+    void roundsToTheStep () {
+        ShotCache c = new ShotCache(4, 0.01, 0.1);
+        ShotResult r = result(0.5);
+        c.put(7, 0.5, 2, r);
+        assertSame(r, c.get(7, 0.504, 2.04));
+        assertSame(r, c.get(7, 0.496, 1.96));
+        assertNull(c.get(7, 0.506, 2));
+        assertNull(c.get(7, 0.5, 2.06));
+        assertNull(c.get(8, 0.5, 2));
+    }
+
+    @Test
+    void hitGivesTheAngleAskedFor () {
+        ShotSimulator sim = new ShotSimulator();
+        sim.setCache(new ShotCache(16));
+        TableState start = Tables.standard();
+        ShotResult played = sim.run(start, 0.1, 3);
+        ShotResult cached = sim.run(start, 0.1 + 2e-5, 3 + 2e-4);
+        assertEquals(1, sim.getPlayedCount());
+        assertEquals(0.1 + 2e-5, cached.getAngle());
+        assertEquals(3 + 2e-4, cached.getPower());
+        assertEquals(played.getPottedMask(), cached.getPottedMask());
+        assertEquals(played.getPosX(PhysicsWorld.CUE), cached.getPosX(PhysicsWorld.CUE));
+    }
+
+    @Test
+    void otherRestitutionMisses () {
+        ShotCache cache = new ShotCache(16);
+        TableState start = Tables.standard();
+        ShotSimulator a = new ShotSimulator(), b = new ShotSimulator();
+        a.setCache(cache);
+        b.setCache(cache);
+        b.getWorld().setRestitution(a.getWorld().getRestitution() * 0.9);
+        a.run(start, 0.1, 3);
+        b.run(start, 0.1, 3);
+        assertEquals(1, b.getPlayedCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void otherStepLengthMisses () {
+        ShotCache cache = new ShotCache(16);
+        TableState start = Tables.standard();
+        ShotSimulator a = new ShotSimulator(), b = new ShotSimulator();
+        a.setCache(cache);
+        b.setCache(cache);
+        b.getWorld().setStepLength(a.getWorld().getStepLength() / 2);
+        a.run(start, 0.1, 3);
+        b.run(start, 0.1, 3);
+        assertEquals(1, b.getPlayedCount());
+        // The same settings on another simulator do hit
+        ShotSimulator c = new ShotSimulator();
+        c.setCache(cache);
+        assertNotNull(c.run(start, 0.1, 3));
+        assertEquals(0, c.getPlayedCount());
+    }
+
+    @Test
+    void keepingTheEndAlwaysPlays () {
+        ShotSimulator sim = new ShotSimulator();
+        sim.setCache(new ShotCache(16));
+        TableState start = Tables.standard(), end = new TableState(PhysicsWorld.standardCount);
+        ShotResult r = sim.run(start, 0.1, 3);
+        sim.run(start, 0.1, 3, end);
+        assertEquals(2, sim.getPlayedCount());
+        assertEquals(r.getPosX(PhysicsWorld.CUE), end.getPosX(PhysicsWorld.CUE));
+        assertEquals(r.getPosZ(PhysicsWorld.CUE), end.getPosZ(PhysicsWorld.CUE));
+    }
+
+}
@@ -0,0 +1,179 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the life of a shot in a {@link ShotManager}, from the strike
+ * to the future completing once the table is at rest, with the physics
+ * advanced by the updates, on its own thread, or moved between the two.
+ */
+public class ShotManagerTest {
+    /** Real seconds between updates, as at 60 frames a second */
+    private static final double FRAME = 1 / 60.0;
+    /** The most updates a shot may take to come to rest */
+    private static final int MAX_FRAMES = 60 * 120;
+    /** Aims the cue ball from baulk up the table, through the pink into the reds */
+    private static final double BREAK = Math.PI - 0.0708;
+    /** A gentle roll towards the baulk cushion, over in about a second of real time */
+    private static final double ROLL = 0.5;
+
+    /**
+     * Updates until a shot has been judged
+     * @param m The manager
+     * @param sleep True to let real time pass between updates, for the physics thread
+     * @return The number of updates it took
+     */
+    private static int playOut (ShotManager m, boolean sleep) throws InterruptedException {
+        for (int f=1; f<=MAX_FRAMES; f++) {
+            if (m.update(FRAME)) return f;
+            if (sleep) Thread.sleep(1);
+        }
+        throw new AssertionError("The shot never came to rest");
+    }
+
+    /**
+     * Returns why a future failed
+     * @param f The future, already failed
+     * @return The cause
+     */
+    private static Throwable failure (CompletableFuture<?> f) {
+        return assertThrows(ExecutionException.class, () -> f.get(0, TimeUnit.SECONDS)).getCause();
+    }
+
+    @Test
+    void completesOnceAtRest () throws Exception {
+        ShotManager m = new ShotManager(PhysicsWorld.createStandard());
+        CompletableFuture<ShotResult> f = m.strikeCueBall(BREAK, 6);
+        assertFalse(m.isAtRest());
+        m.update(FRAME);
+        assertFalse(f.isDone());
+        playOut(m, false);
+        assertTrue(m.isAtRest());
+        ShotResult r = f.get(0, TimeUnit.SECONDS);
+        assertEquals(BREAK, r.getAngle());
+        assertTrue(r.getSteps() > 0);
+        assertEquals(2, r.getFirstHit());
+        // Reds potted stay down, so the world agrees with the result about them
+        for (int i=7; i<PhysicsWorld.standardCount; i++)
+            assertEquals((r.getPottedMask() >>> i & 1) != 0, m.getWorld().isPotted(i));
+    }
+
+    @Test
+    void rejectsAStrikeUntilAtRest () throws Exception {
+        ShotManager m = new ShotManager(PhysicsWorld.createStandard());
+        CompletableFuture<ShotResult> first = m.strikeCueBall(BREAK, 6);
+        // Waiting to be struck
+        assertTrue(failure(m.strikeCueBall(0, 1)) instanceof IllegalStateException);
+        m.update(FRAME);
+        // Moving
+        assertTrue(failure(m.strikeCueBall(0, 1)) instanceof IllegalStateException);
+        playOut(m, false);
+        assertTrue(first.isDone());
+        assertFalse(first.isCompletedExceptionally());
+        CompletableFuture<ShotResult> next = m.strikeCueBall(0, 1);
+        assertFalse(next.isDone());
+    }
+
+    @Test
+    void failsWithoutACueBall () {
+        ShotManager m = new ShotManager(PhysicsWorld.createStandard());
+        m.restoreState(Tables.without(1L << PhysicsWorld.CUE));
+        CompletableFuture<ShotResult> f = m.strikeCueBall(BREAK, 6);
+        // Never struck, so never judged
+        assertFalse(m.update(FRAME));
+        assertTrue(failure(f) instanceof IllegalStateException);
+        assertTrue(m.isAtRest());
+        assertFalse(m.strikeCueBall(0, 1).isDone());
+    }
+
+    @Test
+    void completesOnThePhysicsThread () throws Exception {
+        ShotManager m = new ShotManager(PhysicsWorld.createStandard());
+        m.startPhysicsThread(PhysicsThread.defaultRate);
+        try {
+            CompletableFuture<ShotResult> f = m.strikeCueBall(0, ROLL);
+            playOut(m, true);
+            // Completed by the thread once it runs the command
+            ShotResult r = f.get(10, TimeUnit.SECONDS);
+            assertTrue(r.getSteps() > 0);
+            assertTrue(m.isAtRest());
+        } finally {
+            m.stopPhysicsThread();
+        }
+    }
+
+    @Test
+    void stoppingTheThreadMidShotCarriesOn () throws Exception {
+        ShotManager m = new ShotManager(PhysicsWorld.createStandard());
+        m.startPhysicsThread(PhysicsThread.defaultRate);
+        CompletableFuture<ShotResult> f = m.strikeCueBall(0, ROLL);
+        for (int k=0; k<5; k++) {
+            assertFalse(m.update(FRAME));
+            Thread.sleep(5);
+        }
+        m.stopPhysicsThread();
+        assertFalse(m.isPhysicsThreaded());
+        assertEquals(PhysicsWorld.fixedStep, m.getStepLength());
+        assertFalse(m.isAtRest());
+        playOut(m, false);
+        assertTrue(f.get(0, TimeUnit.SECONDS).getSteps() > 0);
+    }
+
+    @Test
+    void stoppingTheThreadRightAfterJudgingCompletes () throws Exception {
+        ShotManager m = new ShotManager(PhysicsWorld.createStandard());
+        m.startPhysicsThread(PhysicsThread.defaultRate);
+        CompletableFuture<ShotResult> f = m.strikeCueBall(0, ROLL);
+        playOut(m, true);
+        // The completion was only posted, stopping still runs it
+        m.stopPhysicsThread();
+        assertTrue(f.isDone());
+        assertFalse(f.isCompletedExceptionally());
+    }
+
+    @Test
+    void instantPlaybackEndsLikeRealTime () throws Exception {
+        ShotManager live = new ShotManager(PhysicsWorld.createStandard());
+        ShotManager instant = new ShotManager(PhysicsWorld.createStandard());
+        instant.setPlayback(ShotManager.Playback.INSTANT);
+        CompletableFuture<ShotResult> a = live.strikeCueBall(BREAK, 6);
+        CompletableFuture<ShotResult> b = instant.strikeCueBall(BREAK, 6);
+        playOut(live, false);
+        // Worked out ahead on a worker, then shown in one go
+        assertTrue(playOut(instant, true) < MAX_FRAMES);
+        ShotResult x = a.get(0, TimeUnit.SECONDS), y = b.get(0, TimeUnit.SECONDS);
+        assertEquals(x.getPottedMask(), y.getPottedMask());
+        assertEquals(x.getFirstHit(), y.getFirstHit());
+        assertEquals(x.getCushions(), y.getCushions());
+        assertEquals(x.getSteps(), y.getSteps());
+        assertEquals(x.getPosX(PhysicsWorld.CUE), y.getPosX(PhysicsWorld.CUE), 1e-9);
+        assertEquals(x.getPosZ(PhysicsWorld.CUE), y.getPosZ(PhysicsWorld.CUE), 1e-9);
+        assertEquals(live.getStateHash(), instant.getStateHash());
+    }
+
+    @Test
+    void restoringMovesEveryBallOnTheTable () {
+        TableState s = Tables.without(1L << 7);
+        ShotManager m = new ShotManager(PhysicsWorld.createStandard());
+        m.update(FRAME);
+        assertEquals(0, m.getMovedCount());
+        m.restoreState(s);
+        m.update(FRAME);
+        assertEquals(PhysicsWorld.standardCount - 1, m.getMovedCount());
+        for (int k=0; k<m.getMovedCount(); k++) {
+            int i = m.getMoved(k);
+            assertTrue(i != 7);
+            assertEquals(s.getPosX(i), m.getDrawX(i));
+            assertEquals(s.getPosZ(i), m.getDrawZ(i));
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link ShotReplay} shows exactly what playing the
+ * shot live would have, frame by frame, event by event.
+ */
+public class ShotReplayTest {
+    /** Simulated seconds between frames */
+    private static final double FRAME = ShotReplay.defaultInterval;
+
+    /**
+     * Keeps every event as text, in order
+     */
+    private static final class Events implements PhysicsListener {
+        /** The events */
+        final List<String> seen = new ArrayList<>();
+
+        @Override
+        public void ballCollision (int a, int b) {
+            this.seen.add("hit "+a+" "+b);
+        }
+
+        @Override
+        public void ballPotted (int ball, int pocket) {
+            this.seen.add("pot "+ball+" "+pocket);
+        }
+
+        @Override
+        public void contactBegin (int a, int b) {
+            this.seen.add("begin "+a+" "+b);
+        }
+
+        @Override
+        public void contactEnd (int a, int b) {
+            this.seen.add("end "+a+" "+b);
+        }
+
+        @Override
+        public void cushionHit (int ball) {
+            this.seen.add("cushion "+ball);
+        }
+    }
+
+    /**
+     * Breaks off and saves the table just after the strike
+     * @param w The world to break in
+     * @return The table with the cue ball moving
+     */
+    private static TableState struck (PhysicsWorld w) {
+        w.strike(Math.PI - 0.0708, 6);
+        TableState s = new TableState(w.getBallCount());
+        w.save(s);
+        s.setTurn(1);
+        return s;
+    }
+
+    @Test
+    void replayMatchesLivePlay () {
+        PhysicsWorld live = PhysicsWorld.createStandard();
+        TableState start = struck(live);
+        ShotReplay replay = ShotReplay.record(start, FRAME, false);
+        Events liveEvents = new Events(), replayed = new Events();
+        live.setListener(liveEvents);
+        int n = live.getBallCount(), frame = 0, next = 0;
+        while (!live.isAtRest()) {
+            live.advance(FRAME);
+            frame++;
+            for (int i=0; i<n; i++) {
+                assertEquals(live.isPotted(i), replay.isPotted(frame, i));
+                if (!live.isPotted(i)) {
+                    assertEquals((float) live.getPosX(i), replay.getPosX(frame, i), "ball "+i+" frame "+frame);
+                    assertEquals((float) live.getPosZ(i), replay.getPosZ(frame, i), "ball "+i+" frame "+frame);
+                }
+            }
+            // Handing events over a frame at a time keeps them in step
+            next = replay.deliver(next, frame, replayed);
+            assertEquals(liveEvents.seen, replayed.seen, "frame "+frame);
+        }
+        assertEquals(frame + 1, replay.getSampleCount());
+        assertEquals(liveEvents.seen.size(), replay.getEventCount());
+        assertEquals(live.getStepCount(), replay.getSteps());
+        for (int i=0; i<n; i++) {
+            assertEquals(live.getPosX(i), replay.getEnd().getPosX(i));
+            assertEquals(live.getPosZ(i), replay.getEnd().getPosZ(i));
+            assertFalse(replay.isMoving(frame, i));
+        }
+        assertEquals(1, replay.getEnd().getTurn());
+    }
+
+    @Test
+    void eventDrivenReplayMatchesTheSimulator () {
+        PhysicsWorld live = PhysicsWorld.createStandard();
+        TableState start = struck(live);
+        ShotReplay replay = ShotReplay.record(start, FRAME, true);
+        EventSimulator events = new EventSimulator(live);
+        int frame = 0;
+        while (!live.isAtRest()) {
+            events.advance(FRAME);
+            frame++;
+        }
+        assertEquals(frame + 1, replay.getSampleCount());
+        assertEquals(0, replay.getSteps());
+        for (int i=0; i<live.getBallCount(); i++) {
+            assertEquals(live.isPotted(i), replay.getEnd().isPotted(i));
+            assertEquals(live.getPosX(i), replay.getEnd().getPosX(i));
+            assertEquals(live.getPosZ(i), replay.getEnd().getPosZ(i));
+        }
+    }
+
+    @Test
+    void firstSampleIsTheStartAndTheCueMovesFromIt () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        TableState start = struck(w);
+        ShotReplay replay = ShotReplay.record(start, FRAME, false);
+        assertEquals((float) start.getPosX(PhysicsWorld.CUE), replay.getPosX(0, PhysicsWorld.CUE));
+        assertTrue(replay.isMoving(0, PhysicsWorld.CUE));
+        assertFalse(replay.isMoving(0, 10));
+        assertEquals((replay.getSampleCount() - 1) * FRAME, replay.getDuration());
+    }
+
+    @Test
+    void rejectsBadRecordings () {
+        TableState start = Tables.standard();
+        assertThrows(IllegalArgumentException.class, () -> ShotReplay.record(start, 0, false));
+        assertThrows(IllegalArgumentException.class, () -> ShotReplay.record(new TableState(65), FRAME, false));
+    }
+
+}
@@ -0,0 +1,48 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link Snapshot} draws balls part way between the
+ * last two ticks of the physics thread.
+ */
+public class SnapshotTest {
+
+    @Test
+    void interpolatesBetweenTicks () {
+        PhysicsWorld w = new PhysicsWorld(1);
+        w.setBall(0, 0, 0.1, 0.2);
+        Snapshot first = new Snapshot(w, null, 1000);
+        // Nothing to interpolate from yet
+        assertEquals(1, first.alpha(0));
+        assertEquals(0.1, first.getPosX(0, 0));
+        w.setBall(0, 0, 0.3, -0.2);
+        w.strike(0, 1);
+        Snapshot second = new Snapshot(w, first, 2000);
+        assertFalse(second.isAtRest());
+        assertTrue(second.isInMotion(0));
+        assertEquals(0, second.alpha(500));
+        assertEquals(0.25, second.alpha(1250));
+        assertEquals(1, second.alpha(9000));
+        assertEquals(0.1, second.getPosX(0, 0));
+        assertEquals(0.2, second.getPosX(0, 0.5), 1e-15);
+        assertEquals(0.3, second.getPosX(0, 1));
+        assertEquals(0, second.getPosZ(0, 0.5), 1e-15);
+    }
+
+    @Test
+    void potsAndRestAreCopied () {
+        PhysicsWorld w = new PhysicsWorld(2);
+        w.setBall(1, 1, 0, 0);
+        Snapshot s = new Snapshot(w, null, 0);
+        assertEquals(2, s.getBallCount());
+        assertTrue(s.isPotted(0));
+        assertFalse(s.isPotted(1));
+        assertTrue(s.isAtRest());
+    }
+
+}
@@ -0,0 +1,196 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Plays shots through {@link SnookerRules} by handing it the events a world
+ * would, and checks the score, the turn, and which balls are on afterwards.
+ */
+public class SnookerRulesTest {
+    /** Index of the black */
+    private static final int BLACK = 1;
+    /** Index of the pink */
+    private static final int PINK = 2;
+    /** Index of the blue */
+    private static final int BLUE = 3;
+    /** Index of the green */
+    private static final int GREEN = 5;
+    /** Index of the yellow */
+    private static final int YELLOW = 6;
+    /** Index of the first red */
+    private static final int RED = 7;
+
+    /**
+     * Plays a shot and judges it
+     * @param rules The rules
+     * @param first The first ball the cue ball touches, or -1 for none
+     * @param potted The balls that go down
+     * @return The balls to respot
+     */
+    private static int shot (SnookerRules rules, int first, int... potted) {
+        if (first >= 0) rules.contactBegin(PhysicsWorld.CUE, first);
+        for (int i : potted) rules.ballPotted(i, 0);
+        return rules.endShot();
+    }
+
+    /**
+     * Makes rules for a frame with only some balls on the table
+     * @param balls The balls on the table, the cue ball is always added
+     * @return The rules, player 0 to play
+     */
+    private static SnookerRules only (int... balls) {
+        long on = 1L << PhysicsWorld.CUE;
+        for (int i : balls) on |= 1L << i;
+        SnookerRules rules = new SnookerRules();
+        rules.setOnTable(Tables.without(~on));
+        return rules;
+    }
+
+    @Test
+    void redsAreOnAtTheBreak () {
+        SnookerRules rules = new SnookerRules();
+        assertEquals(SnookerRules.REDS, rules.ballOn());
+        assertEquals(SnookerRules.ALL, rules.getOnTable());
+    }
+
+    @Test
+    void anyColourIsOnAfterARed () {
+        SnookerRules rules = new SnookerRules();
+        assertEquals(0, shot(rules, RED, RED));
+        assertEquals(1, rules.getLastPoints());
+        assertEquals(0, rules.getTurn());
+        assertEquals(SnookerRules.COLOURS, rules.ballOn());
+        // Only the colour hit counts as nominated
+        assertEquals(1 << BLUE, rules.legalPots(BLUE));
+        assertEquals(0, rules.legalPots(RED + 1));
+    }
+
+    @Test
+    void redsAreOnAgainAfterAColour () {
+        SnookerRules rules = new SnookerRules();
+        shot(rules, RED, RED);
+        int respot = shot(rules, PINK, PINK);
+        assertEquals(6, rules.getLastPoints());
+        assertEquals(7, rules.getScore(0));
+        assertEquals(0, rules.getTurn());
+        assertEquals(SnookerRules.REDS & ~(1 << RED), rules.ballOn());
+        assertEquals(1 << PINK, respot);
+        assertTrue((rules.getOnTable() & (1 << PINK)) != 0);
+    }
+
+    @Test
+    void missingPassesTheTurnAndTakesTheColourOff () {
+        SnookerRules rules = new SnookerRules();
+        shot(rules, RED, RED);
+        assertEquals(0, shot(rules, BLACK));
+        assertEquals(0, rules.getLastFoul());
+        assertEquals(1, rules.getTurn());
+        assertEquals(SnookerRules.REDS & ~(1 << RED), rules.ballOn());
+    }
+
+    @Test
+    void colourAfterTheLastRedIsRespotted () {
+        SnookerRules rules = only(RED, BLACK, PINK, BLUE, 4, GREEN, YELLOW);
+        shot(rules, RED, RED);
+        assertEquals(SnookerRules.COLOURS, rules.ballOn());
+        assertEquals(1 << BLACK, shot(rules, BLACK, BLACK));
+        assertEquals(8, rules.getScore(0));
+        // Then the colours in order, lowest value first
+        assertEquals(1 << YELLOW, rules.ballOn());
+    }
+
+    @Test
+    void coloursStayDownOnceTheRedsAreGone () {
+        SnookerRules rules = only(BLACK, PINK, BLUE, 4, GREEN, YELLOW);
+        assertEquals(1 << YELLOW, rules.ballOn());
+        assertEquals(0, shot(rules, YELLOW, YELLOW));
+        assertEquals(2, rules.getLastPoints());
+        assertEquals(1 << GREEN, rules.ballOn());
+        assertEquals(0, shot(rules, GREEN, GREEN));
+        assertEquals(1 << 4, rules.ballOn());
+        assertEquals(5, rules.getScore(0));
+    }
+
+    @Test
+    void potOutOfOrderIsAFoulAndRespotted () {
+        SnookerRules rules = only(BLACK, PINK, BLUE, 4, GREEN, YELLOW);
+        assertEquals(1 << PINK, shot(rules, YELLOW, PINK));
+        assertEquals(6, rules.getLastFoul());
+        assertEquals(6, rules.getScore(1));
+        assertEquals(1, rules.getTurn());
+        assertEquals(1 << YELLOW, rules.ballOn());
+    }
+
+    @Test
+    void penaltyIsAtLeastFour () {
+        SnookerRules rules = new SnookerRules();
+        shot(rules, -1);
+        assertEquals(SnookerRules.minFoul, rules.getLastFoul());
+        assertEquals(4, rules.getScore(1));
+        assertEquals(1, rules.getTurn());
+    }
+
+    @Test
+    void penaltyIsTheValueOfTheBallOn () {
+        SnookerRules rules = only(BLACK, PINK, BLUE);
+        shot(rules, -1);
+        assertEquals(5, rules.getLastFoul());
+    }
+
+    @Test
+    void penaltyIsTheValueOfTheHighestBallInvolved () {
+        SnookerRules rules = new SnookerRules();
+        shot(rules, BLACK);
+        assertEquals(7, rules.getLastFoul());
+        // Hitting the red fairly but potting a colour with it
+        rules.setTurn(0);
+        assertEquals(1 << PINK, shot(rules, RED, RED, PINK));
+        assertEquals(6, rules.getLastFoul());
+        assertEquals(0, rules.getLastPoints());
+        assertEquals(1, rules.getTurn());
+    }
+
+    @Test
+    void inOffIsAFoulAndTheCueBallComesBack () {
+        SnookerRules rules = new SnookerRules();
+        int respot = shot(rules, RED, RED, PhysicsWorld.CUE);
+        assertEquals(SnookerRules.CUE, respot);
+        assertEquals(4, rules.getLastFoul());
+        assertEquals(0, rules.getScore(0));
+        assertEquals(4, rules.getScore(1));
+        assertEquals(1, rules.getTurn());
+        assertTrue((rules.getOnTable() & SnookerRules.CUE) != 0);
+        // The red stays down, and the next player is on the reds
+        assertFalse((rules.getOnTable() & (1 << RED)) != 0);
+        assertEquals(SnookerRules.REDS & ~(1 << RED), rules.ballOn());
+    }
+
+    @Test
+    void copyPlaysOnTheSame () {
+        SnookerRules rules = new SnookerRules();
+        shot(rules, RED, RED);
+        SnookerRules copy = new SnookerRules();
+        copy.copyFrom(rules);
+        shot(rules, BLUE, BLUE);
+        shot(copy, BLUE, BLUE);
+        assertEquals(rules.getScore(0), copy.getScore(0));
+        assertEquals(rules.ballOn(), copy.ballOn());
+        assertEquals(rules.getOnTable(), copy.getOnTable());
+    }
+
+    @Test
+    void valuesRunFromYellowToBlack () {
+        assertEquals(0, SnookerRules.value(PhysicsWorld.CUE));
+        assertEquals(7, SnookerRules.value(BLACK));
+        assertEquals(2, SnookerRules.value(YELLOW));
+        assertEquals(1, SnookerRules.value(RED));
+        assertEquals(7, SnookerRules.maxValue(SnookerRules.COLOURS));
+        assertEquals(2, SnookerRules.minValue(SnookerRules.COLOURS));
+        assertEquals(1, SnookerRules.minValue(SnookerRules.ALL));
+    }
+
+}
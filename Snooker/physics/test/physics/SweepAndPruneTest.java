@@ -0,0 +1,58 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link SweepAndPrune} hands over exactly the pairs
+ * from {@link NestedLoop} whose bounding boxes overlap, each once.
+ */
+public class SweepAndPruneTest {
+
+    /**
+     * Returns the pairs from {@link NestedLoop} whose boxes overlap
+     * @param b The balls
+     * @return Each pair as for {@link Pairs#of}
+     */
+    private static Set<Long> overlapping (BallStore b) {
+        Set<Long> boxes = new HashSet<>();
+        int n = b.capacity();
+        for (long key : Pairs.of(new NestedLoop(), b, null)) {
+            int i = (int) (key / n), j = (int) (key % n);
+            if (Math.abs(b.x(i) - b.x(j)) <= 2*Ball.radius && Math.abs(b.z(i) - b.z(j)) <= 2*Ball.radius)
+                boxes.add(key);
+        }
+        return boxes;
+    }
+
+    @Test
+    void findsExactlyTheOverlappingBoxes () {
+        for (long seed=1; seed<=20; seed++) {
+            BallStore b = Pairs.crowd(80, seed);
+            SweepAndPrune s = new SweepAndPrune();
+            s.update(b);
+            Set<Long> pairs = Pairs.of(s, b, null);
+            assertEquals(overlapping(b), pairs, "seed "+seed);
+            assertTrue(pairs.containsAll(Pairs.touching(b)));
+        }
+    }
+
+    @Test
+    void staysSortedAsBallsMove () {
+        Random r = new Random(3);
+        BallStore b = Pairs.crowd(60, 3);
+        SweepAndPrune s = new SweepAndPrune();
+        s.update(b);
+        for (int round=0; round<50; round++) {
+            for (int k=0; k<5; k++) Pairs.scatter(b, r.nextInt(b.capacity()), r);
+            s.update(b);
+            assertEquals(overlapping(b), Pairs.of(s, b, null), "round "+round);
+        }
+    }
+
+}
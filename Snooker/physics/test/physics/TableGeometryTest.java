@@ -0,0 +1,146 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link TableGeometry} pots, bounces and looks ahead
+ * like the table it describes, and that its cell index finds the
+ * same pieces as looking at every one of them.
+ */
+public class TableGeometryTest {
+
+    /**
+     * Checks the indexed clearance against the full scan at random points
+     * @param g The table
+     * @param seed Seed for the points
+     */
+    private static void clearanceMatchesScan (TableGeometry g, long seed) {
+        Random r = new Random(seed);
+        double w = g.getHalfWidth(), l = g.getHalfLength(), reach = g.getClearanceReach();
+        for (int k=0; k<20000; k++) {
+            double x = (r.nextDouble()*2 - 1) * w, z = (r.nextDouble()*2 - 1) * l;
+            double scan = g.clearanceScan(x, z);
+            assertEquals(Math.min(scan, reach), g.clearance(x, z), 1e-12, "at "+x+", "+z);
+        }
+    }
+
+    @Test
+    void clearanceOfTheStandardTable () {
+        clearanceMatchesScan(TableGeometry.standard(), 1);
+    }
+
+    @Test
+    void clearanceWithCushionsOffTheRails () {
+        TableGeometry g = new TableGeometry(0.6, 1.2, 0.1);
+        g.addPocket(0.6, 1.2, 0.05);
+        g.addCushion(0.6, -1.2, 0.6, 1.1, 0.01);
+        // A block in the middle of the table, and a gap where the other rails should be
+        g.addCushion(-0.1, -0.1, 0.1, -0.1);
+        g.addCushion(0.1, 0.1, -0.1, 0.1);
+        clearanceMatchesScan(g, 2);
+    }
+
+    @Test
+    void clearanceOffTheIndexScansEverything () {
+        TableGeometry g = TableGeometry.standard();
+        double x = g.getHalfWidth() + 1, z = 0;
+        assertEquals(g.clearanceScan(x, z), g.clearance(x, z));
+        assertTrue(g.clearance(0, 0) <= g.getClearanceReach());
+    }
+
+    @Test
+    void pocketAtMatchesEveryPocket () {
+        TableGeometry g = TableGeometry.standard();
+        Random r = new Random(3);
+        for (int k=0; k<20000; k++) {
+            // Mostly near the pockets, so there are plenty in and out
+            int near = r.nextInt(g.getPocketCount());
+            double x = g.getPocketX(near) + (r.nextDouble()*2 - 1) * 0.15;
+            double z = g.getPocketZ(near) + (r.nextDouble()*2 - 1) * 0.15;
+            int want = -1;
+            for (int p=0; p<g.getPocketCount(); p++) {
+                double dx = g.getPocketX(p) - x, dz = g.getPocketZ(p) - z, pr = g.getPocketRadius(p);
+                if (dx*dx + dz*dz < pr*pr) want = p;
+            }
+            assertEquals(want, g.pocketAt(x, z), "at "+x+", "+z);
+        }
+    }
+
+    @Test
+    void ballIsMirroredOffARail () {
+        TableGeometry g = TableGeometry.standard();
+        BallStore s = new BallStore(1, false);
+        double rail = g.getHalfWidth() - Ball.radius;
+        s.setX(0, rail + 0.004);
+        s.setZ(0, 0.3);
+        s.setVx(0, 1.5);
+        s.setVz(0, -0.5);
+        assertEquals(1, g.bounce(s, 0));
+        assertEquals(rail - 0.004, s.x(0), 1e-12);
+        assertEquals(0.3, s.z(0));
+        assertEquals(-1.5, s.vx(0), 1e-12);
+        assertEquals(-0.5, s.vz(0), 1e-12);
+        // Already on its way out, so left alone
+        assertEquals(0, g.bounce(s, 0));
+    }
+
+    @Test
+    void ballIsTurnedBackByAJaw () {
+        TableGeometry g = new TableGeometry(0.6, 1.2, 0.1);
+        g.addJaw(0.2, 0.2, 0.03);
+        BallStore s = new BallStore(1, false);
+        double reach = Ball.radius + 0.03 - 0.001;
+        s.setX(0, 0.2 - reach / Math.sqrt(2));
+        s.setZ(0, 0.2 - reach / Math.sqrt(2));
+        s.setVx(0, 1);
+        s.setVz(0, 1);
+        assertEquals(1, g.bounce(s, 0));
+        assertEquals(-1, s.vx(0), 1e-12);
+        assertEquals(-1, s.vz(0), 1e-12);
+    }
+
+    @Test
+    void firstContactFindsWhatIsInTheWay () {
+        TableGeometry g = TableGeometry.standard();
+        int[] hit = new int[2];
+        // Square across the middle of the table, into the cushion between the pockets
+        assertEquals(g.getHalfWidth() - Ball.radius - 0.1, g.firstContact(0.1, 0.5, 1, 0, 10, hit), 1e-12);
+        assertEquals(TableGeometry.CUSHION, hit[0]);
+        // Square across the middle line, through the gap in the rail into the middle pocket
+        g.firstContact(0, 0, 1, 0, 10, hit);
+        assertEquals(TableGeometry.POCKET, hit[0]);
+        assertEquals(4, hit[1]);
+        // Nothing within reach
+        assertEquals(0.2, g.firstContact(0, 0, 1, 0, 0.2, hit));
+        assertEquals(-1, hit[0]);
+    }
+
+    @Test
+    void firstContactSeesCushionsAtAnAngle () {
+        TableGeometry g = new TableGeometry(1, 1, 0.1);
+        // A slanted cushion facing the origin, along x + z = 0.5
+        g.addCushion(0.5, 0, 0, 0.5);
+        int[] hit = new int[2];
+        double u = Math.sqrt(0.5);
+        assertEquals(0.5*u - Ball.radius, g.firstContact(0, 0, u, u, 10, hit), 1e-12);
+        assertEquals(TableGeometry.CUSHION, hit[0]);
+        assertEquals(0, hit[1]);
+        // From behind it the cushion isn't there
+        g.firstContact(1, 1, -u, -u, 10, hit);
+        assertEquals(-1, hit[0]);
+    }
+
+    @Test
+    void rejectsPiecesWithNoSize () {
+        TableGeometry g = new TableGeometry(1, 1, 0.1);
+        assertThrows(IllegalArgumentException.class, () -> g.addCushion(0, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> g.addPocket(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> g.addJaw(0, 0, -1));
+    }
+
+}
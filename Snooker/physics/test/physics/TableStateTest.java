@@ -0,0 +1,103 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link TableState} puts a world back exactly as it was,
+ * part way through a shot or not, and that a {@link TableState.Pool}
+ * hands states out again.
+ */
+public class TableStateTest {
+    /** Simulated seconds between frames */
+    private static final double FRAME = 1 / 60.0;
+
+    /**
+     * Plays the world out to rest a frame at a time
+     * @param w The world
+     * @return Every ball's x, z and potted flag at rest
+     */
+    private static double[] playOut (PhysicsWorld w) {
+        while (!w.isAtRest()) w.advance(FRAME);
+        int n = w.getBallCount();
+        double[] out = new double[3*n];
+        for (int i=0; i<n; i++) {
+            out[3*i] = w.getPosX(i);
+            out[3*i + 1] = w.getPosZ(i);
+            out[3*i + 2] = w.isPotted(i) ? 1 : 0;
+        }
+        return out;
+    }
+
+    @Test
+    void saveHoldsTheWorldAsItWas () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        w.strike(Math.PI - 0.0708, 6);
+        for (int f=0; f<20; f++) w.advance(FRAME);
+        TableState s = new TableState(w.getBallCount());
+        w.save(s);
+        for (int i=0; i<w.getBallCount(); i++) {
+            assertEquals(w.getPosX(i), s.getPosX(i));
+            assertEquals(w.getPosZ(i), s.getPosZ(i));
+            assertEquals(w.getVelX(i), s.getVelX(i));
+            assertEquals(w.getVelZ(i), s.getVelZ(i));
+            assertEquals(w.isPotted(i), s.isPotted(i));
+            assertEquals(w.getPointValue(i), s.getPointValue(i));
+        }
+        double x = s.getPosX(0);
+        // Playing on doesn't reach into the saved copy
+        playOut(w);
+        assertEquals(x, s.getPosX(0));
+    }
+
+    @Test
+    void restoringMidShotPlaysTheSameEveryTime () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        w.strike(Math.PI - 0.0708, 6);
+        for (int f=0; f<20; f++) w.advance(FRAME);
+        TableState mid = new TableState(w.getBallCount());
+        w.save(mid);
+        int touching = w.getContacts().getContactCount();
+        playOut(w);
+        w.restore(mid);
+        assertEquals(touching, w.getContacts().getContactCount());
+        double[] first = playOut(w);
+        // Even into a different world
+        PhysicsWorld other = new PhysicsWorld(w.getBallCount());
+        other.restore(mid);
+        assertArrayEquals(first, playOut(other));
+        w.restore(mid);
+        assertArrayEquals(first, playOut(w));
+    }
+
+    @Test
+    void copyCarriesTheTurn () {
+        TableState a = Tables.standard(), b = new TableState(PhysicsWorld.standardCount);
+        a.setTurn(1);
+        b.copyFrom(a);
+        assertEquals(1, b.getTurn());
+        assertEquals(a.getPosX(5), b.getPosX(5));
+        // Saving is only the table, the turn stays
+        PhysicsWorld.createStandard().save(b);
+        assertEquals(1, b.getTurn());
+    }
+
+    @Test
+    void poolHandsReleasedStatesBack () {
+        TableState.Pool pool = new TableState.Pool(PhysicsWorld.standardCount);
+        TableState a = pool.acquire(), b = pool.acquire();
+        assertNotSame(a, b);
+        assertEquals(0, pool.getFreeCount());
+        pool.release(a);
+        assertEquals(1, pool.getFreeCount());
+        assertSame(a, pool.acquire());
+        assertEquals(0, pool.getFreeCount());
+        assertThrows(IllegalArgumentException.class, () -> pool.release(new TableState(3)));
+    }
+
+}
@@ -0,0 +1,39 @@
+package physics;
+
+/**
+ * Tables shared by the tests
+ */
+final class Tables {
+
+    /**
+     * Not to be made
+     */
+    private Tables () {
+    }
+
+    /**
+     * Saves the standard layout
+     * @return The table
+     */
+    static TableState standard () {
+        TableState s = new TableState(PhysicsWorld.standardCount);
+        PhysicsWorld.createStandard().save(s);
+        return s;
+    }
+
+    /**
+     * Saves the standard layout with some balls already potted
+     * @param potted The balls left off the table, one bit each
+     * @return The table
+     */
+    static TableState without (long potted) {
+        PhysicsWorld standard = PhysicsWorld.createStandard();
+        PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+        for (int i=0; i<PhysicsWorld.standardCount; i++)
+            if ((potted >>> i & 1) == 0) w.setBall(i, standard.getPointValue(i), standard.getPosX(i), standard.getPosZ(i));
+        TableState s = new TableState(PhysicsWorld.standardCount);
+        w.save(s);
+        return s;
+    }
+
+}
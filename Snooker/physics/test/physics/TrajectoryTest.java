@@ -0,0 +1,56 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link Trajectory} folds the path back between the
+ * cushions of the table it is on, not always the standard one.
+ */
+public class TrajectoryTest {
+
+    @Test
+    void ofTakesTheWorldsCushions () {
+        double halfWidth = 0.5, halfLength = 0.8;
+        PhysicsWorld w = new PhysicsWorld(1);
+        w.setGeometry(new TableGeometry(halfWidth, halfLength, 0.1));
+        w.setBall(0, 0, 0.1, -0.2);
+        w.strike(0.7, 2);
+        Trajectory t = Trajectory.of(w, 0);
+        Trajectory same = new Trajectory(0.1, -0.2, w.getVelX(0), w.getVelZ(0), true,
+                halfWidth - Ball.radius, halfLength - Ball.radius);
+        Trajectory standard = new Trajectory(0.1, -0.2, w.getVelX(0), w.getVelZ(0));
+        double[] at = new double[4];
+        for (double time=0; time<t.getRestTime(); time+=0.05) {
+            t.at(time, at);
+            assertTrue(Math.abs(at[0]) <= halfWidth - Ball.radius);
+            assertTrue(Math.abs(at[1]) <= halfLength - Ball.radius);
+            assertEquals(same.xAt(time), at[0]);
+            assertEquals(same.zAt(time), at[1]);
+        }
+        // Bounced off the near end of the small table, which the standard table doesn't have
+        assertNotEquals(standard.zAt(1), t.zAt(1));
+    }
+
+    @Test
+    void standardWorldMatchesTheStandardTable () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        w.strike(0.3, 4);
+        Trajectory t = Trajectory.of(w, PhysicsWorld.CUE);
+        Trajectory standard = new Trajectory(w.getPosX(0), w.getPosZ(0), w.getVelX(0), w.getVelZ(0));
+        for (double time=0; time<t.getRestTime(); time+=0.1) {
+            assertEquals(standard.xAt(time), t.xAt(time));
+            assertEquals(standard.zAt(time), t.zAt(time));
+        }
+    }
+
+    @Test
+    void rejectsEmptyBounds () {
+        assertThrows(IllegalArgumentException.class, () -> new Trajectory(0, 0, 1, 0, true, 0, 1));
+    }
+
+}
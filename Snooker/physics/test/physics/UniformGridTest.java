@@ -0,0 +1,60 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link UniformGrid} hands over every pair that
+ * {@link NestedLoop} would and that actually touches, each once.
+ */
+public class UniformGridTest {
+
+    @Test
+    void findsEveryTouchingPair () {
+        for (long seed=1; seed<=20; seed++) {
+            BallStore b = Pairs.crowd(80, seed);
+            UniformGrid g = new UniformGrid();
+            g.update(b);
+            Set<Long> pairs = Pairs.of(g, b, null);
+            assertTrue(pairs.containsAll(Pairs.touching(b)), "seed "+seed);
+            assertEquals(pairs, Pairs.of(g, b, Pairs.moving(b)));
+        }
+    }
+
+    @Test
+    void activeUpdateMatchesAFreshGrid () {
+        Random r = new Random(7);
+        BallStore b = Pairs.crowd(60, 7);
+        UniformGrid kept = new UniformGrid();
+        kept.update(b);
+        for (int round=0; round<50; round++) {
+            // Move a few balls and tell the grid only about those and the ones moving
+            int[] moved = r.ints(5, 0, b.capacity()).toArray();
+            for (int i : moved) Pairs.scatter(b, i, r);
+            int[] active = IntStream.concat(IntStream.of(moved), IntStream.of(Pairs.moving(b))).distinct().toArray();
+            kept.update(b, active, active.length);
+            UniformGrid fresh = new UniformGrid();
+            fresh.update(b);
+            assertEquals(Pairs.of(fresh, b, null), Pairs.of(kept, b, Pairs.moving(b)), "round "+round);
+        }
+    }
+
+    @Test
+    void ballsOffTheGridAreClampedIntoTheBorder () {
+        BallStore b = new BallStore(2, false);
+        b.setX(0, -0.5);
+        b.setZ(0, 0);
+        b.setX(1, -0.5 - Ball.radius);
+        b.setZ(1, 0);
+        b.setFlags(0, BallStore.IN_MOTION);
+        UniformGrid g = new UniformGrid(0, -1, 1, 2, 2*Ball.radius);
+        g.update(b);
+        assertEquals(Set.of(1L), Pairs.of(g, b, null));
+    }
+
+}
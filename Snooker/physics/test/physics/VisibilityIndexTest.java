@@ -0,0 +1,162 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks {@link VisibilityIndex} on a few hand placed tables, and against
+ * working out the first ball hit the slow way on random ones.
+ */
+public class VisibilityIndexTest {
+    /** Distance between two centres when the balls touch */
+    private static final double R = 2*Ball.radius;
+
+    /**
+     * Makes a world with the cue ball in the middle and a few reds
+     * @param xz x, z of each red in turn
+     * @return The world, with 22 slots
+     */
+    private static PhysicsWorld table (double... xz) {
+        PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+        w.setBall(PhysicsWorld.CUE, 0, 0, 0);
+        for (int k=0; k<xz.length/2; k++) w.setBall(k+1, 1, xz[2*k], xz[2*k+1]);
+        return w;
+    }
+
+    @Test
+    void windowStraightAheadWrapsPastTwoPi () {
+        double d = 0.5, half = Math.asin(R / d);
+        VisibilityIndex vi = new VisibilityIndex(PhysicsWorld.standardCount);
+        vi.update(table(0, d));
+        assertEquals(1, vi.getWindowCount(1));
+        assertEquals(2*Math.PI - half, vi.getWindowStart(1, 0), 1e-12);
+        assertEquals(2*Math.PI + half, vi.getWindowEnd(1, 0), 1e-12);
+        assertEquals(2*half, vi.getVisibleWidth(1), 1e-12);
+        assertEquals(0, Math.sin(vi.getBestAngle(1)), 1e-12);
+        // Either side of zero, and the same angles a turn away
+        assertEquals(1, vi.firstHit(0));
+        assertEquals(1, vi.firstHit(half/2));
+        assertEquals(1, vi.firstHit(-half/2));
+        assertEquals(1, vi.firstHit(2*Math.PI - half/2));
+        assertEquals(1, vi.firstHit(4*Math.PI + half/2));
+        assertEquals(-1, vi.firstHit(half*1.01));
+        assertEquals(-1, vi.firstHit(-half*1.01));
+        assertEquals(-1, vi.firstHit(Math.PI));
+    }
+
+    @Test
+    void nearerBallHidesOneBehindIt () {
+        VisibilityIndex vi = new VisibilityIndex(PhysicsWorld.standardCount);
+        vi.update(table(0.3, 0, 0.6, 0));
+        assertTrue(vi.isVisible(1));
+        assertFalse(vi.isVisible(2));
+        assertEquals(0, vi.getVisibleWidth(2));
+        assertTrue(Double.isNaN(vi.getBestAngle(2)));
+        assertEquals(1, vi.firstHit(Math.PI/2));
+    }
+
+    @Test
+    void nearerBallHidesPartOfOneBehindIt () {
+        // The far ball sits off to one side, so its edge peeks out past the near one
+        double near = 0.3, far = 0.6;
+        double halfNear = Math.asin(R / near), halfFar = Math.asin(R / far);
+        double off = halfNear;
+        VisibilityIndex vi = new VisibilityIndex(PhysicsWorld.standardCount);
+        vi.update(table(near, 0, far*Math.cos(off), -far*Math.sin(off)));
+        double centre = Math.PI/2 + off;
+        assertEquals(1, vi.getWindowCount(2));
+        assertEquals(Math.PI/2 + halfNear, vi.getWindowStart(2, 0), 1e-12);
+        assertEquals(centre + halfFar, vi.getWindowEnd(2, 0), 1e-12);
+        assertEquals(1, vi.firstHit(Math.PI/2 + halfNear*0.99));
+        assertEquals(2, vi.firstHit(Math.PI/2 + halfNear*1.01));
+    }
+
+    @Test
+    void pottedBallsAreIgnored () {
+        PhysicsWorld w = table(0, 0.5);
+        TableState s = new TableState(PhysicsWorld.standardCount);
+        w.save(s);
+        VisibilityIndex vi = new VisibilityIndex(PhysicsWorld.standardCount);
+        vi.update(s);
+        assertEquals(1, vi.firstHit(0));
+        w = new PhysicsWorld(PhysicsWorld.standardCount);
+        w.setBall(PhysicsWorld.CUE, 0, 0, 0);
+        vi.update(w);
+        assertFalse(vi.isVisible(1));
+        assertEquals(-1, vi.firstHit(0));
+    }
+
+    @Test
+    void agreesWithCastingEveryAngle () {
+        Random rnd = new Random(5);
+        VisibilityIndex vi = new VisibilityIndex(PhysicsWorld.standardCount);
+        for (int trial=0; trial<50; trial++) {
+            PhysicsWorld w = new PhysicsWorld(PhysicsWorld.standardCount);
+            for (int i=0; i<PhysicsWorld.standardCount; i++) {
+                double x, z;
+                do {
+                    x = (rnd.nextDouble() - 0.5) * 1.7;
+                    z = (rnd.nextDouble() - 0.5) * 3.4;
+                } while (overlaps(w, i, x, z));
+                w.setBall(i, (i == 0) ? 0 : 1, x, z);
+            }
+            vi.update(w);
+            double cx = w.getPosX(0), cz = w.getPosZ(0);
+            for (int k=0; k<720; k++) {
+                double phi = k * 2*Math.PI / 720 + 1e-7;
+                int want = cast(w, cx, cz, phi), got = vi.firstHit(phi);
+                if (want == got) continue;
+                // Only the nearer centre is taken to be hit, so two balls almost as far away may swap
+                double dw = (want < 0) ? 1e9 : Math.hypot(w.getPosX(want) - cx, w.getPosZ(want) - cz);
+                double dg = (got < 0) ? 1e9 : Math.hypot(w.getPosX(got) - cx, w.getPosZ(got) - cz);
+                assertTrue(Math.abs(dw - dg) <= R, "trial "+trial+" angle "+phi+": got "+got+", should be "+want);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a ball put somewhere would overlap one already placed
+     * @param w The world
+     * @param n Number of balls placed so far
+     * @param x x of the new ball
+     * @param z z of the new ball
+     * @return True if it would
+     */
+    private static boolean overlaps (PhysicsWorld w, int n, double x, double z) {
+        for (int i=0; i<n; i++)
+            if (Math.hypot(w.getPosX(i) - x, w.getPosZ(i) - z) < R) return true;
+        return false;
+    }
+
+    /**
+     * Finds the first ball hit along an angle by checking every ball
+     * @param w The world
+     * @param cx x of the cue ball
+     * @param cz z of the cue ball
+     * @param phi The angle
+     * @return Index of the ball, or -1
+     */
+    private static int cast (PhysicsWorld w, double cx, double cz, double phi) {
+        double ux = Math.sin(phi), uz = Math.cos(phi);
+        int best = -1;
+        double bestT = Double.POSITIVE_INFINITY;
+        for (int i=1; i<w.getBallCount(); i++) {
+            if (w.isPotted(i)) continue;
+            double dx = w.getPosX(i) - cx, dz = w.getPosZ(i) - cz;
+            double along = dx*ux + dz*uz, perp2 = dx*dx + dz*dz - along*along;
+            if (perp2 >= R*R) continue;
+            if (Math.hypot(dx, dz) > R && along <= 0) continue;
+            double t = along - Math.sqrt(R*R - perp2);
+            if (t < bestT) {
+                bestT = t;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,91 @@
+package physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link ZobristHash} kept up to date one ball at a time
+ * always matches hashing the whole table from scratch.
+ */
+public class ZobristHashTest {
+
+    /**
+     * Saves a world
+     * @param w The world
+     * @return A new state holding it
+     */
+    private static TableState save (PhysicsWorld w) {
+        TableState s = new TableState(w.getBallCount());
+        w.save(s);
+        return s;
+    }
+
+    @Test
+    void movingBallsOneAtATimeMatchesHashingAgain () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        ZobristHash h = new ZobristHash(w.getBallCount());
+        h.setAll(w);
+        assertEquals(ZobristHash.hash(save(w), ZobristHash.defaultQuantum), h.get());
+        Random rnd = new Random(3);
+        for (int k=0; k<200; k++) {
+            int i = rnd.nextInt(w.getBallCount());
+            w.setBall(i, w.getPointValue(i), (rnd.nextDouble() - 0.5) * 1.7, (rnd.nextDouble() - 0.5) * 3.4);
+            h.set(w, i);
+            assertEquals(ZobristHash.hash(save(w), ZobristHash.defaultQuantum), h.get());
+        }
+    }
+
+    @Test
+    void pottingAndPuttingBackUndoes () {
+        PhysicsWorld w = PhysicsWorld.createStandard();
+        ZobristHash h = new ZobristHash(w.getBallCount());
+        h.setAll(w);
+        long before = h.get();
+        double x = w.getPosX(1), z = w.getPosZ(1);
+        h.set(1, x, z, true);
+        assertNotEquals(before, h.get());
+        // Where a potted ball is doesn't matter
+        long potted = h.get();
+        h.set(1, x + 0.5, z - 0.5, true);
+        assertEquals(potted, h.get());
+        h.set(1, x, z, false);
+        assertEquals(before, h.get());
+    }
+
+    @Test
+    void positionsAreRoundedToTheQuantum () {
+        ZobristHash h = new ZobristHash(1, 0.01);
+        h.set(0, 0.101, 0.203, false);
+        long a = h.get();
+        h.set(0, 0.109, 0.2099, false);
+        assertEquals(a, h.get());
+        h.set(0, 0.111, 0.203, false);
+        assertNotEquals(a, h.get());
+        // Rounded down, so just either side of zero are different squares
+        h.set(0, 0.001, 0, false);
+        long b = h.get();
+        h.set(0, -0.001, 0, false);
+        assertNotEquals(b, h.get());
+    }
+
+    @Test
+    void swappingTwoBallsChangesTheHash () {
+        ZobristHash h = new ZobristHash(2);
+        h.set(0, 0.3, 0.4, false);
+        h.set(1, 0, 0, true);
+        long a = h.get();
+        h.set(0, 0, 0, true);
+        h.set(1, 0.3, 0.4, false);
+        assertNotEquals(a, h.get());
+    }
+
+    @Test
+    void rejectsAQuantumOfZero () {
+        assertThrows(IllegalArgumentException.class, () -> new ZobristHash(1, 0));
+    }
+
+}
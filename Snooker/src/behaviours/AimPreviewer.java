@@ -0,0 +1,151 @@
+package behaviours;
+
+import java.util.Iterator;
+import org.jogamp.java3d.Behavior;
+import org.jogamp.java3d.BoundingSphere;
+import org.jogamp.java3d.WakeupCriterion;
+import org.jogamp.java3d.WakeupOnElapsedFrames;
+import org.jogamp.vecmath.Point3d;
+
+import objects.AimOverlay;
+import physics.AimPreview;
+import physics.TableState;
+
+/**
+ * Shows where the shot being aimed will go, while the table is at rest. <p>
+ * Every frame the aim is read from the camera and handed to an
+ * {@link AimPreview}, which only does anything when the aim moves into
+ * a new angle bucket, and the prediction for the chosen power is drawn
+ * on an {@link AimOverlay} once its worker threads have played it out.
+ * The overlay is only rewritten when the prediction changes. A frame
+ * costs a few microseconds, see {@link #getFrameNanos()}. <p>
+ * Once a shot comes to rest the table is saved and handed to the preview,
+ * and the preview is kept playing at the same step length as the game.
+ * Add both this and {@link #getOverlay()} to the content branch.
+ */
+public class AimPreviewer extends Behavior {
+    /** To run the behaviour on every frame */
+    private static WakeupCriterion WC_onTick = new WakeupOnElapsedFrames(0);
+
+    /** The balls being aimed at */
+    private final PoolBallManager pbm;
+    /** The camera the aim is read from */
+    private final GroundedCamController gcc;
+    /** Plays out the shots around the aim */
+    private final AimPreview preview = new AimPreview();
+    /** Where the prediction is drawn */
+    private final AimOverlay overlay = new AimOverlay();
+    /** The power level shown, 1 to {@link AimPreview#powerLevels} */
+    private volatile int level = 5;
+    /** Hash of the table last handed to the preview, or 0 before the first */
+    private long tableHash;
+    /** The prediction being drawn, or null */
+    private AimPreview.Prediction drawn;
+    /** Nanoseconds the last frame took, for profiling */
+    private long frameNanos;
+
+    /**
+     * Creates a previewer
+     * @param pbm The balls being aimed at
+     * @param gcc The camera, the shot aims where it looks
+     */
+    public AimPreviewer (PoolBallManager pbm, GroundedCamController gcc) {
+        this.pbm = pbm;
+        this.gcc = gcc;
+        BoundingSphere bounds = new BoundingSphere(new Point3d(), 100.0);
+        super.setSchedulingBounds(bounds);
+    }
+
+    /**
+     * Returns the lines the prediction is drawn with, to add to the scene
+     * @return The overlay
+     */
+    public AimOverlay getOverlay () {
+        return this.overlay;
+    }
+
+    /**
+     * Returns the preview the shots are played out on
+     * @return The preview
+     */
+    public AimPreview getPreview () {
+        return this.preview;
+    }
+
+    /**
+     * Returns the angle being aimed at, the way the camera faces
+     * @return The x-z plane angle, in radians, where 0 aims towards +z
+     */
+    public double getAngle () {
+        return this.gcc.getYaw() + Math.PI;
+    }
+
+    /**
+     * Sets the power level to show
+     * @param level 1 to {@link AimPreview#powerLevels}
+     */
+    public void setLevel (int level) {
+        if (level < 1 || level > AimPreview.powerLevels)
+            throw new IllegalArgumentException("Power level must be between 1 and "+AimPreview.powerLevels+": "+level);
+        this.level = level;
+    }
+
+    /**
+     * Returns the power level shown
+     * @return 1 to {@link AimPreview#powerLevels}
+     */
+    public int getLevel () {
+        return this.level;
+    }
+
+    /**
+     * Returns how long the last frame took, for profiling
+     * @return The time in nanoseconds
+     */
+    public long getFrameNanos () {
+        return this.frameNanos;
+    }
+
+    @Override
+    public void initialize () {
+        super.wakeupOn(WC_onTick);
+    }
+
+    @Override
+    public void processStimulus (Iterator<WakeupCriterion> arg0) {
+        long start = System.nanoTime();
+        if (!this.pbm.isAtRest()) {
+            show(null);
+        } else {
+            // Starting or stopping the physics thread changes the step length, and so every prediction
+            this.preview.setStepLength(this.pbm.getStepLength());
+            long hash = this.pbm.getStateHash();
+            if (hash != this.tableHash) {
+                // A new table, so every prediction so far is wrong
+                this.tableHash = hash;
+                this.preview.clear();
+                show(null);
+                this.pbm.saveStateAsync(new TableState(22)).thenAccept(this.preview::setTable);
+            }
+            double angle = getAngle();
+            int level = this.level;
+            this.preview.aim(angle, level);
+            AimPreview.Prediction p = this.preview.get(angle, level);
+            if (p != null) show(p);
+        }
+        this.frameNanos = System.nanoTime() - start;
+        super.wakeupOn(WC_onTick);
+    }
+
+    /**
+     * Draws a prediction, unless it is already drawn
+     * @param p The prediction, or null to draw nothing
+     */
+    private void show (AimPreview.Prediction p) {
+        if (p == this.drawn) return;
+        this.drawn = p;
+        if (p == null) this.overlay.hide();
+        else this.overlay.show(p);
+    }
+
+}
@@ -42,6 +42,10 @@ java.awt.event.MouseListener
     private static WakeupCriterion wakecon = new WakeupOnElapsedFrames(0);
     /** PI divided by two, save that math */
     private static double PI_2 = Math.PI/2.0;
+    /** Seconds of real time since the last frame */
+    protected double frameTime;
+    /** When the last frame was processed, from {@link System#nanoTime()}, 0 before the first */
+    private long lastTime;
     /** The target TransformGroup, should be the ViewTransform */
     protected TransformGroup targetTG;
     /** The target Transform3D, should be the ViewTransform's transform */
@@ -159,6 +163,9 @@ java.awt.event.MouseListener
      */
     @Override
     public void processStimulus(Iterator<WakeupCriterion> arg0) {
+        long now = System.nanoTime();
+        frameTime = (lastTime == 0) ? 0 : Math.min((now - lastTime) * 1e-9, 0.25);
+        lastTime = now;
         handleKeyInput(); // Change vectors
         updateTargetTG(); // Apply changes
         super.wakeupOn(wakecon);
@@ -167,7 +174,7 @@ java.awt.event.MouseListener
     /** Checks against {@link #keys} and moves {@link #viewPos} accordingly */
     protected void handleKeyInput () {
         // Time difference in seconds
-        double dt = 0.016;
+        double dt = frameTime;
         // Check movement
         if (keys.contains(KeyEvent.VK_W)) viewPos.scaleAdd(+movSpeed*dt, forward, viewPos);
         if (keys.contains(KeyEvent.VK_A)) viewPos.scaleAdd(-movSpeed*dt, right, viewPos);
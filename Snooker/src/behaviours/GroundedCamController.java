@@ -24,7 +24,7 @@ public class GroundedCamController extends FreeCamController {
     @Override
     protected void handleKeyInput () {
         // Time difference in seconds
-        double dt = 0.016;
+        double dt = frameTime;
         // Check movement
         if (keys.contains(KeyEvent.VK_W)) viewPos.scaleAdd(+movSpeed*dt, forward, viewPos);
         if (keys.contains(KeyEvent.VK_A)) viewPos.scaleAdd(-movSpeed*dt, right, viewPos);
@@ -1,10 +1,12 @@
 package behaviours;
 
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
 import org.jogamp.java3d.Behavior;
 import org.jogamp.java3d.BoundingSphere;
 import org.jogamp.java3d.TransformGroup;
 import org.jogamp.java3d.WakeupCriterion;
+import org.jogamp.java3d.WakeupOnBehaviorPost;
 import org.jogamp.java3d.WakeupOnElapsedFrames;
 import org.jogamp.vecmath.Point3d;
 import org.jogamp.vecmath.Vector2f;
@@ -12,15 +14,40 @@ import org.jogamp.vecmath.Vector2f;
 import misc.SoundPlayer;
 import objects.PoolBall;
 import objects.PoolTable;
+import objects.Scoreboard;
 import objects.PoolBall.Type;
+import physics.BroadPhase;
+import physics.NestedLoop;
+import physics.PhysicsListener;
+import physics.PhysicsThread;
+import physics.PhysicsWorld;
+import physics.ShotManager;
+import physics.ShotManager.Playback;
+import physics.ShotResult;
+import physics.SnookerRules;
+import physics.SweepAndPrune;
+import physics.TableState;
+import physics.UniformGrid;
 
 /**
- * Class for spawning, interacting, and colliding pool balls. <p>
+ * Class for spawning and interacting with pool balls. <p>
+ * The physics itself is done by a {@link PhysicsWorld}, played by a
+ * {@link ShotManager}. Each frame this behaviour updates it by the real
+ * time that passed since the last one and copies where it says the balls
+ * are into the {@link PoolBall} transforms, so shots play out the same at
+ * any frame rate. The manager's {@link SnookerRules} judge each shot once
+ * the table comes to rest, the points go on the scoreboard, and the future
+ * from {@link #strikeCueBall(float, float)} completes with what happened.
+ * The world can instead be run on its own {@link PhysicsThread},
+ * see {@link #startPhysicsThread(double)}, and shots can be
+ * worked out ahead and shown faster, see {@link #setPlayback(Playback)}.
+ * Only the balls that moved are looked at each frame, and once
+ * the table is at rest the behaviour sleeps until the next strike. <p>
  * Use {@link #getTG()} to get the transform group that
  * contains all the pool balls. The origin of the tg is the
  * centre of the pool table, where +z is towards the baulk line.
  */
-public class PoolBallManager extends Behavior {
+public class PoolBallManager extends Behavior implements PhysicsListener {
     /** Width of the table in metres */
     public static final double width = PoolTable.tableWidth_2*2;
     /** Equal to {@link #width} divided by 2 */
@@ -34,6 +61,11 @@ public class PoolBallManager extends Behavior {
     /** The distance between the centre of the side pocket and the side of the pool table */
     public static final double sideDif = 0;//Math.sqrt(28 * PoolBall.radius2);
     public static final Vector2f[] pockets = PoolTable.pocketCoords;
+    /** The most real time one frame may advance the physics by, in seconds. <br>
+     * Stops a long stall from being simulated all at once. */
+    public static final double maxFrameTime = 0.25;
+    /** Behaviour post id used to wake the manager up when a ball is struck */
+    private static final int WAKE_ID = 1;
     /** static wake up criterion to run on tick, (every frame) */
     private static WakeupCriterion WC_onTick = new WakeupOnElapsedFrames(0);
     /** Array of all 22 pool balls to iterate over.<br>
@@ -51,30 +83,84 @@ public class PoolBallManager extends Behavior {
      * */
     private PoolBall [] poolballs;
 
+    /** Every pool ball made for the table, at the same indices as {@link #poolballs}. <br>
+     * Potted balls stay here, so restoring a state can put them back on the table. */
+    private final PoolBall [] spawned = new PoolBall [22];
+
+    /** Where the points are shown, or null */
+    private Scoreboard scoreboard;
+
+    /** The headless simulation that actually moves the balls. <br>
+     * Uses the same indices as {@link #poolballs}. */
+    private final PhysicsWorld world;
+
+    /** Plays the shots in {@link #world}, judges them and says which balls to draw where */
+    private final ShotManager shots;
+
+    /** Wakes this behaviour up when {@link #WAKE_ID} is posted, used while the table is at rest */
+    private WakeupCriterion WC_onWake;
+
+    /** Indices of the pool balls given a new position this frame,
+     * the first {@link #touchedCount} are in use */
+    private final int[] touched = new int[22];
+
+    /** Number of entries in use in {@link #touched} */
+    private int touchedCount;
+
+    /** Transform writes made so far in the current frame */
+    private int frameWrites;
+
+    /** Transform writes made in the last complete frame */
+    private int transformWrites;
+
+    /** When the last frame was processed, from {@link System#nanoTime()}, 0 before the first */
+    private long lastTime;
+
     /** The transform group that contains all the pool balls. <br>
      * The origin of this transform group is the centre of the table. */
     private TransformGroup tg;
 
+    /**
+     * Creates the standard snooker layout, finding
+     * collision pairs with a {@link UniformGrid}.
+     */
     public PoolBallManager() {
+        this(new UniformGrid());
+    }
+
+    /**
+     * Creates the standard snooker layout with
+     * a chosen way of finding collision pairs.
+     * @param broadPhase Finds which pairs of balls to check,
+     * such as a {@link UniformGrid}, {@link SweepAndPrune} or {@link NestedLoop}
+     */
+    public PoolBallManager(BroadPhase broadPhase) {
         this.poolballs = new PoolBall [22];
         this.tg = new TransformGroup();
         this.tg.setCapability(TransformGroup.ALLOW_CHILDREN_WRITE|TransformGroup.ALLOW_CHILDREN_EXTEND);
-        double baulkLine = length * 0.3;
-        double Dradius = width / 6;
-        addBall(0, Type.CUE, Dradius/-2, baulkLine+Dradius/4);
-        addBall(1, Type.BLACK, 0, length * -0.409090909);
-        addBall(2, Type.PINK, 0, length / -4);
-        addBall(3, Type.BLUE, 0, 0);
-        addBall(4, Type.BROWN, 0, baulkLine);
-        addBall(5, Type.GREEN, Dradius, baulkLine);
-        addBall(6, Type.YELLOW, -Dradius, baulkLine);
-        addPyramid(7, 5, Type.RED, 0, length/-4 - 2*PoolBall.radius);
+        this.world = PhysicsWorld.createStandard();
+        this.world.setBroadPhase(broadPhase);
+        this.shots = new ShotManager(this.world);
+        this.shots.setListener(this);
+        this.WC_onWake = new WakeupOnBehaviorPost(this, WAKE_ID);
+        for (int i=0; i<22; i++)
+            addBall(i, Type.fromPointValue(this.world.getPointValue(i)), this.world.getPosX(i), this.world.getPosZ(i));
 
         BoundingSphere bounds = new BoundingSphere(new Point3d(), 100.0);
         super.setSchedulingBounds(bounds);
         super.setEnable(true);
     }
 
+    /**
+     * Returns the headless world the pool balls are simulated in. <br>
+     * Useful for reading the pair counters when profiling.
+     * Don't touch it while the physics thread is running.
+     * @return The PhysicsWorld behind this manager
+     */
+    public PhysicsWorld getWorld () {
+        return this.world;
+    }
+
     /**
      * Returns the transform group that stores all the pool balls. <p>
      * The origin is the centre of the pool table where +z is towards
@@ -84,27 +170,7 @@ public class PoolBallManager extends Behavior {
     public TransformGroup getTG () {
         return this.tg;
     }
-    
-    /**
-     * Adds multiple pool balls in a equilateral pyramid shape at the given coord. <br>
-     * It will always grow the pyramid towards -z.
-     * @param index The index to start from
-     * @param layers The number of layers in the pyramid
-     * @param type The type of pool ball to spawn
-     * @param x The x-coord of the first pool ball, at the top of the pyramid
-     * @param z The z-coord of the first pool ball, at the top of the pyramid
-     */
-    private void addPyramid (int index, int layers, Type type, double x, double z) {
-        double difWidth = PoolBall.radius*1.1;
-        double difHeight = Math.sin(Math.PI/3) * PoolBall.radius*2.2;
-        for (int i=0; i<layers; i++) {
-            for (int j=0; j<=i; j++) 
-                addBall(index++, type, x+difWidth*2*j, z);
-            x -= difWidth;
-            z -= difHeight;
-        }
-    }
-    
+
     /**
      * Shortcut function for adding pool balls for the constructor
      * @param i Index to add to
@@ -114,6 +180,7 @@ public class PoolBallManager extends Behavior {
      */
     private void addBall (int i, Type type, double x, double z) {
         this.poolballs[i] = new PoolBall(type, x, z);
+        this.spawned[i] = this.poolballs[i];
         this.tg.addChild(this.poolballs[i]);
     }
 
@@ -124,177 +191,289 @@ public class PoolBallManager extends Behavior {
     
     /**
      * Starts moving the cue ball in the given direction at the given power. <p>
-     * You're fine to pass a negative power to strike the ball backwards.
+     * Safe to call from any thread, such as a key listener. The strike is
+     * handed to the Java3D thread, which strikes the ball on the next frame,
+     * see {@link ShotManager#strikeCueBall(double, double)} for when
+     * the future completes or fails.
      * @param angle The x-z plane angle to aim at, in radians, where 0 aims towards +z
-     * @param power The speed at which the ball should move, in j3d units per second
+     * @param power The speed at which the ball should move, in metres per second
+     * @return Completes with the balls potted, the first ball hit,
+     * the cushion bounces and the steps taken
      */
-    public void strikeCueBall (float angle, float power) {
-        PoolBall cue = this.poolballs[0];
-        if (cue == null) {
-            System.err.println("Tried to strike a cue ball that doesn't exist");
-        } else
-        cue.setVel(Math.sin(angle)*power, Math.cos(angle)*power);
+    public CompletableFuture<ShotResult> strikeCueBall (float angle, float power) {
+        CompletableFuture<ShotResult> done = this.shots.strikeCueBall(angle, power);
+        if (!done.isDone()) super.postId(WAKE_ID);
+        return done;
     }
     
     /**
-     * Moves all the pool balls based on their velocity. <br>
-     * Slows them down based on a drag coefficent. <br>
-     * Does NOT detect collisions.
+     * Chooses between stepping the physics in fixed steps, which
+     * only notices collisions once balls overlap, and the exact
+     * event driven simulation. Stepping is the default.
+     * @param eventDriven True to use an {@link physics.EventSimulator}
      */
-    public void movePoolBalls () {
-        for (int i=0; i<22; i++) {
+    public void setEventDriven (boolean eventDriven) {
+        this.shots.setEventDriven(eventDriven);
+    }
+
+    /**
+     * Moves the physics onto its own thread, so its cost doesn't
+     * hold up rendering. <br>
+     * Each frame then draws the balls between the last two ticks.
+     * Does nothing if the thread is already running.
+     * @param rate Number of physics ticks per second, such as {@link PhysicsThread#defaultRate}
+     */
+    public void startPhysicsThread (double rate) {
+        this.shots.startPhysicsThread(rate);
+    }
+
+    /**
+     * Stops the physics thread, after which the physics
+     * is advanced by this behaviour again.
+     */
+    public void stopPhysicsThread () {
+        this.shots.stopPhysicsThread();
+    }
+
+    /**
+     * Returns the length of the fixed steps the shots are played with,
+     * which changes when the physics thread is started or stopped. <br>
+     * Safe to call from any thread.
+     * @return The step length in seconds
+     */
+    public double getStepLength () {
+        return this.shots.getStepLength();
+    }
+
+    /**
+     * Returns whether the physics is running on its own thread
+     * @return True after {@link #startPhysicsThread(double)}
+     */
+    public boolean isPhysicsThreaded () {
+        return this.shots.isPhysicsThreaded();
+    }
+
+    /**
+     * Copies where the last update left the balls that moved into the
+     * pool balls. Balls just respotted are put back first, so they are
+     * drawn where they landed. <br>
+     * The transforms aren't written until {@link #flushTransforms()}.
+     */
+    private void movePoolBalls () {
+        for (long m=this.shots.getRespotted(); m!=0; m&=m-1) {
+            int i = Long.numberOfTrailingZeros(m);
+            this.poolballs[i] = this.spawned[i];
+        }
+        int n = 0;
+        for (int k=0; k<this.shots.getMovedCount(); k++) {
+            int i = this.shots.getMoved(k);
             PoolBall pb = this.poolballs[i];
-            if (pb != null && pb.isInMotion()) {
-                checkPocketSink(i);
-                checkWallCollision(pb);
+            if (pb != null) {
+                pb.setPos(this.shots.getDrawX(i), this.shots.getDrawZ(i));
+                pb.setVel(this.shots.getDrawVelX(i), this.shots.getDrawVelZ(i));
+                this.touched[n++] = i;
             }
         }
-        // Check ball collisions
-        for (int i=0; i<21; i++) {
-            PoolBall pb1 = this.poolballs[i];
-            if (pb1 != null)
-                for (int j=i+1; j<22; j++) {
-                    PoolBall pb2 = this.poolballs[j];
-                    if (pb2 != null)
-                        checkCollision(pb1, pb2);
-                }
-        }
+        this.touchedCount = n;
     }
 
     /**
-     * Checks if a pool ball is within a pocket
-     * and scores it if so. Takes an index so it
-     * can modifiy the {@link #poolballs} array.
-     * @param index The index the pool ball is at
+     * Sets how shots are shown, see {@link ShotManager#setPlayback(Playback)}. <br>
+     * Takes effect from the next frame, even part way through a shot.
+     * @param playback How to show shots
      */
-    private void checkPocketSink (int index) {
-        PoolBall p = this.poolballs[index];
-        for (int i=0; i<6; i++) { // Lazy check every pocket
-            double difx = pockets[i].getX() - p.getPosX();
-            double difz = pockets[i].getY() - p.getPosZ();
-            if (difx*difx+difz*difz < pocketRadius*pocketRadius) {
-                System.out.println("Scored "+p.getPointValue()+" points!");
-                p.stop();
-                p.setPos(1<<8, 1<<8);
-                this.poolballs[index] = null;
-                break;
+    public void setPlayback (Playback playback) {
+        this.shots.setPlayback(playback);
+        super.postId(WAKE_ID);
+    }
+
+    /**
+     * Returns how shots are shown
+     * @return The playback
+     */
+    public Playback getPlayback () {
+        return this.shots.getPlayback();
+    }
+
+    /**
+     * Sets how much faster than real time {@link Playback#FAST} shows shots
+     * @param speed The speed up, more than zero, {@link ShotManager#defaultFastSpeed} by default
+     */
+    public void setFastSpeed (double speed) {
+        this.shots.setFastSpeed(speed);
+    }
+
+    /**
+     * Returns whose turn it is
+     * @return 0 for player 1, 1 for player 2
+     */
+    public int getTurn () {
+        return this.shots.getTurn();
+    }
+
+    /**
+     * Sets whose turn it is
+     * @param turn 0 for player 1, 1 for player 2
+     */
+    public void setTurn (int turn) {
+        this.shots.setTurn(turn);
+    }
+
+    /**
+     * Returns the rules judging the shots played on this table. <br>
+     * Only read them on the Java3D thread, or while the table is at rest.
+     * @return The rules, with the score and which balls are on
+     */
+    public SnookerRules getRules () {
+        return this.shots.getRules();
+    }
+
+    /**
+     * Sets the scoreboard the points of each shot are added to
+     * @param scoreboard The scoreboard, or null for none
+     */
+    public void setScoreboard (Scoreboard scoreboard) {
+        this.scoreboard = scoreboard;
+    }
+
+    /**
+     * Returns a hash of where the balls are drawn and which are potted,
+     * see {@link ShotManager#getStateHash()}
+     * @return The 64 bit hash, for looking shots up in a {@link physics.ShotCache}
+     */
+    public long getStateHash () {
+        return this.shots.getStateHash();
+    }
+
+    /**
+     * Saves the whole table, every ball and whose turn it is. <br>
+     * Can't be used while the physics thread is running, as only it may read the world.
+     * @param state The state to overwrite, with room for 22 balls,
+     * such as one from a {@link TableState.Pool}
+     */
+    public void saveState (TableState state) {
+        this.shots.saveState(state);
+    }
+
+    /**
+     * Saves the whole table, whether or not the physics thread is running. <br>
+     * With the thread running the save is posted to it, and happens before its next tick.
+     * @param state The state to overwrite, with room for 22 balls
+     * @return Completes with the state once it has been saved, on whichever thread saved it
+     */
+    public CompletableFuture<TableState> saveStateAsync (TableState state) {
+        return this.shots.saveStateAsync(state);
+    }
+
+    /**
+     * Puts the whole table back the way it was saved. <p>
+     * The pool balls are reused rather than rebuilt. Balls potted since
+     * the save come back onto the table, and balls potted in the saved
+     * state are taken off it. Can't be used while the physics thread is running.
+     * @param state A state from {@link #saveState(TableState)}
+     */
+    public void restoreState (TableState state) {
+        this.shots.restoreState(state);
+        for (int i=0; i<22; i++) {
+            PoolBall pb = this.spawned[i];
+            if (!this.world.isPotted(i)) {
+                // Moved into place with the other balls on the next frame
+                this.poolballs[i] = pb;
+            } else if (this.poolballs[i] != null) {
+                pb.stop();
+                pb.setPos(1<<8, 1<<8);
+                if (pb.flushTransform()) this.frameWrites++;
+                this.poolballs[i] = null;
             }
         }
+        super.postId(WAKE_ID);
     }
 
     /**
-     * Checks if a pool ball is about to collide with
-     * a wall and calculates the bounce.
-     * @param p The pool ball to check
+     * Returns whether the table is at rest and nothing will
+     * move until the cue ball is struck again.
+     * @return True if no ball is moving or waiting to be drawn, and no strike is waiting
      */
-    private void checkWallCollision (PoolBall p) {
-        // Calculate raw new values
-        double newX = p.getPosX() + p.getVelX();
-        double newZ = p.getPosZ() + p.getVelZ();
-        double newDX = p.getVelX() * PoolBall.dragCo;
-        double newDZ = p.getVelZ() * PoolBall.dragCo;
-        if (newDX > 0) { // Check right side wall collision
-            double dif = newX + PoolBall.radius - width_2 ; // Distance from right side of pool table to right side of pool ball, + = toward right
-            if (dif > 0) { newX -= dif*2; newDX = -newDX; }
-            newDX -= PoolBall.dragCa; // Constant value drag
-        } else { // Check left side collision
-            double dif = newX - PoolBall.radius + width_2 ; // Distance from left side of pool table to left side of pool ball, + = towards right
-            if (dif < 0) { newX -= dif*2; newDX = -newDX; }
-            newDX += PoolBall.dragCa; // Constant value drag
-        }
-        if (newDZ > 0) { // Check front side collision
-            double dif = newZ + PoolBall.radius - length_2 ; // Distance from front side of pool table to front side of pool ball, + = forwards
-            if (dif > 0) { newZ -= dif*2; newDZ = -newDZ; }
-            newDZ -= PoolBall.dragCa; // Constant value drag
-        } else { // Check back side collision
-            double dif = newZ - PoolBall.radius + length_2 ; // Distance form back side of pool table to back side of pool ball, + = forwards
-            if (dif < 0) { newZ -= dif*2; newDZ = -newDZ; }
-            newDZ += PoolBall.dragCa; // Constant value drag
-        }
-        p.setPos(newX, newZ);
-        p.setVel(newDX, newDZ);
+    public boolean isAtRest () {
+        return this.shots.isAtRest();
     }
 
+    @Override
+    public void contactBegin (int a, int b) {
+        // Play collision sound, once per contact rather than every step they touch
+        if (!this.shots.isMuted()) SoundPlayer.playPoolBallColl();
+    }
 
+    @Override
+    public void ballPotted (int index, int pocket) {
+        PoolBall p = this.poolballs[index];
+        p.stop();
+        p.setPos(1<<8, 1<<8);
+        // It won't be flushed with the rest once its slot is gone
+        if (p.flushTransform()) this.frameWrites++;
+        this.poolballs[index] = null;
+    }
 
     /**
-     * Checks for a collision between the two balls
-     * and calculates the collision if one has occured.
-     * @param a One of the pool balls, non-null
-     * @param b A different pool ball, non-null
+     * Writes the transform of every pool ball given a new position this frame. <br>
+     * Balls at rest aren't looked at, so each moving ball costs
+     * exactly one scene graph update per frame.
+     * @return The number of transforms written
      */
-    private void checkCollision (PoolBall a, PoolBall b) {
-        // Both exist and either or are in motion
-        if (a.isInMotion() || b.isInMotion()) {
-            double difx = b.getPosX() - a.getPosX() ;
-            double difz = b.getPosZ() - a.getPosZ() ;
-            if (difx*difx+difz*difz <= PoolBall.radius2*4) {
-                // Check if they weren't colliding previously
-                // double pdifx = b.getPrevPosX() - a.getPrevPosX() ;
-                // double pdifz = b.getPrevPosZ() - a.getPrevPosZ() ;
-                // if (pdifx*pdifx+pdifz*pdifz > PoolBall.radius2*4) {
-                    // We're colliding for the first time
-
-                    double angle = Math.atan2(difz,difx);
-                    double sin = Math.sin(angle), cos = Math.cos(angle);
-                    
-                    double x1 = 0, z1 = 0;
-                    double x2 = difx*cos+difz*sin;
-                    double z2 = difz*cos-difx*sin;
-                    
-                    // rotate velocity
-                    double vx1 = a.getVelX()*cos+a.getVelZ()*sin;
-                    double vz1 = a.getVelZ()*cos-a.getVelX()*sin;
-                    double vx2 = b.getVelX()*cos+b.getVelZ()*sin;
-                    double vz2 = b.getVelZ()*cos-b.getVelZ()*sin;
-                    
-                    // resolve the 1D case
-                    double vx1final = vx2 ;
-                    double vx2final = vx1 ;
-                    vx1 = vx1final;
-                    vx2 = vx2final;
-
-                    // Compensate for overlap
-                    double absV = Math.abs(vx1)+Math.abs(vx2);
-                    double overlap = (PoolBall.radius*2)-Math.abs(x1-x2);
-                    x1 += vx1/absV*overlap;
-                    x2 += vx2/absV*overlap;
-
-                    // rotate the relative positions back
-                    double x1final = x1*cos-z1*sin;
-                    double z1final = z1*cos+x1*sin;
-                    double x2final = x2*cos-z2*sin;
-                    double z2final = z2*cos+x2*sin;
-
-                    // Play collision sound
-                    SoundPlayer.playPoolBallColl();
-                    
-                    // finally compute the new absolute positions
-                    a.setPos(
-                        a.getPosX() + x1final,
-                        a.getPosZ() + z1final
-                    );
-                    b.setPos(
-                        b.getPosX() + x2final,
-                        b.getPosZ() + z2final
-                    );
-                    a.setVel(
-                        vx1*cos-vz1*sin,
-                        vz1*cos+vx1*sin
-                    );
-                    b.setVel(
-                        vx2*cos-vz2*sin,
-                        vz2*cos+vx2*sin
-                    );
-                //}
-            }
+    public int flushTransforms () {
+        int n = 0;
+        for (int k=0; k<this.touchedCount; k++) {
+            PoolBall pb = this.poolballs[this.touched[k]];
+            if (pb != null && pb.flushTransform()) n++;
         }
+        this.touchedCount = 0;
+        this.frameWrites += n;
+        return n;
+    }
+
+    /**
+     * Returns how many transforms were written in the last frame, for profiling
+     * @return The number of transform writes
+     */
+    public int getTransformWrites () {
+        return this.transformWrites;
     }
 
     @Override
     public void processStimulus(Iterator<WakeupCriterion> arg0) {
+        long now = System.nanoTime();
+        double elapsed = (this.lastTime == 0) ? 0 : (now - this.lastTime) * 1e-9;
+        this.lastTime = now;
+        int turn = this.shots.getTurn();
+        boolean judged = this.shots.update(Math.min(elapsed, maxFrameTime));
         movePoolBalls();
-        super.wakeupOn(WC_onTick);
+        flushTransforms();
+        this.transformWrites = this.frameWrites;
+        this.frameWrites = 0;
+        if (judged) score(turn);
+        if (isAtRest()) {
+            // Sleep until the next strike, rather than waking every frame for nothing
+            this.lastTime = 0;
+            super.wakeupOn(this.WC_onWake);
+        } else {
+            super.wakeupOn(WC_onTick);
+        }
+    }
+
+    /**
+     * Adds the points of the shot just judged to the scoreboard
+     * @param turn Whose turn the shot was
+     */
+    private void score (int turn) {
+        SnookerRules rules = this.shots.getRules();
+        int player = (rules.getLastFoul() > 0) ? 1 - turn : turn;
+        int points = rules.getLastPoints() + rules.getLastFoul();
+        if (this.scoreboard != null) {
+            for (int k=0; k<points; k++) {
+                if (player == 0) this.scoreboard.scoreP1();
+                else this.scoreboard.scoreP2();
+            }
+        }
     }
 
     /**
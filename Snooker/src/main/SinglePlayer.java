@@ -10,6 +10,7 @@ import org.jogamp.vecmath.Point3f;
 import org.jogamp.vecmath.Vector3d;
 import org.jogamp.vecmath.Vector3f;
 
+import behaviours.AimPreviewer;
 import behaviours.GroundedCamController;
 import behaviours.PoolBallManager;
 import jpanels.BasicView;
@@ -18,12 +19,26 @@ import objects.AxisFrame;
 import objects.PoolTable;
 import objects.Scoreboard;
 import objects.SimpleRoom;
+import physics.PhysicsThread;
+import physics.ShotManager;
+import physics.ShotPlanner;
+import physics.TableState;
 
 public class SinglePlayer extends BasicView implements KeyListener {
     private static final long serialVersionUID = 1L;
+    /** Seconds the computer spends choosing each shot */
+    private static final double thinkTime = 2;
     private GroundedCamController gcc;
     private PoolBallManager pbm;
+    /** Draws where the shot being aimed will go */
+    private AimPreviewer previewer;
     private Scoreboard sb;
+    /** Chooses shots for the computer, off the AWT and Java3D threads */
+    private final ShotPlanner planner = new ShotPlanner();
+    /** The table the computer plans from */
+    private final TableState planState = new TableState(22);
+    /** True while the computer is choosing a shot, only touched on the AWT thread */
+    private boolean planning;
     
     public SinglePlayer () {}
 
@@ -40,7 +55,7 @@ public class SinglePlayer extends BasicView implements KeyListener {
         content.addChild(new SimpleRoom(5.0f));
 
         // Add the scoreboard
-//        content.addChild(this.sb = new Scoreboard(new Vector3d(-3,1,-1)));
+        content.addChild(this.sb = new Scoreboard(new Vector3d(-3,1,-1)));
 
         // Add the free cam
         Transform3D t = new Transform3D();
@@ -53,8 +68,14 @@ public class SinglePlayer extends BasicView implements KeyListener {
         
         // Add the pool ball manager
         this.pbm = new PoolBallManager();
+        this.pbm.setScoreboard(this.sb);
         content.addChild(pbm.getTG());
         content.addChild(pbm);
+
+        // Add the aim preview
+        this.previewer = new AimPreviewer(this.pbm, this.gcc);
+        content.addChild(this.previewer.getOverlay());
+        content.addChild(this.previewer);
         this.getCanvas().addKeyListener(this);
 
         content.compile();
@@ -69,6 +90,27 @@ public class SinglePlayer extends BasicView implements KeyListener {
         });
     }
 
+    /**
+     * Has the computer choose a shot and play it once the time is up. <br>
+     * Does nothing while the balls are moving or a shot is already being chosen.
+     */
+    private void playComputerShot () {
+        if (this.planning || !this.pbm.isAtRest()) return;
+        this.planning = true;
+        long targets = this.pbm.getRules().ballOn();
+        this.pbm.saveStateAsync(this.planState)
+            .thenCompose(s -> this.planner.plan(s, targets, thinkTime))
+            .whenComplete((shot, err) -> java.awt.EventQueue.invokeLater(() -> {
+                this.planning = false;
+                if (err != null) {
+                    System.err.println("Computer couldn't pick a shot: "+(err.getCause() != null ? err.getCause() : err));
+                    return;
+                }
+                // The player may have struck while it was thinking
+                if (this.pbm.isAtRest()) this.pbm.strikeCueBall((float) shot.getAngle(), (float) shot.getPower());
+            }));
+    }
+
     @Override
     public void keyPressed(KeyEvent arg0) {}
 
@@ -76,9 +118,11 @@ public class SinglePlayer extends BasicView implements KeyListener {
     public void keyReleased(KeyEvent arg0) {
         int key = arg0.getKeyCode();
         if (key >= KeyEvent.VK_1 && key <= KeyEvent.VK_9) {
-            float angle = (float)(this.gcc.getYaw()+Math.PI);
-            float power = (key-KeyEvent.VK_0)*0.016f;
-            this.pbm.strikeCueBall(angle, power);
+            // Struck at the angle previewed, so it goes where the lines showed
+            int level = key-KeyEvent.VK_0;
+            float angle = (float) this.previewer.getPreview().snap(this.previewer.getAngle());
+            this.previewer.setLevel(level);
+            if (this.pbm.isAtRest()) this.pbm.strikeCueBall(angle, level);
         } else
         if (key == KeyEvent.VK_COMMA) {
             this.sb.scoreP1();
@@ -86,8 +130,20 @@ public class SinglePlayer extends BasicView implements KeyListener {
         if (key == KeyEvent.VK_PERIOD) {
             this.sb.scoreP2();
         } else
+        if (key == KeyEvent.VK_C) {
+            playComputerShot();
+        } else
         if (key == KeyEvent.VK_T) {
             this.pbm.swapShapes();
+        } else
+        if (key == KeyEvent.VK_F) {
+            // Real time, then fast, then instant, then back round
+            ShotManager.Playback[] modes = ShotManager.Playback.values();
+            this.pbm.setPlayback(modes[(this.pbm.getPlayback().ordinal() + 1) % modes.length]);
+        } else
+        if (key == KeyEvent.VK_P) {
+            if (this.pbm.isPhysicsThreaded()) this.pbm.stopPhysicsThread();
+            else this.pbm.startPhysicsThread(PhysicsThread.defaultRate);
         }
     }
 
@@ -0,0 +1,132 @@
+package objects;
+
+import org.jogamp.java3d.Appearance;
+import org.jogamp.java3d.GeometryArray;
+import org.jogamp.java3d.LineArray;
+import org.jogamp.java3d.LineAttributes;
+import org.jogamp.java3d.Shape3D;
+
+import physics.AimPreview;
+
+/**
+ * Lines drawn on the table showing where a shot will send the cue ball
+ * and the first ball it hits, from an {@link AimPreview.Prediction}. <p>
+ * The geometry is made once, big enough for the longest paths, and
+ * holds its coordinates by reference, so showing a new prediction
+ * just rewrites those arrays, one geometry update.
+ */
+public class AimOverlay extends Shape3D {
+    /** Most lines that can be drawn, enough for both paths at their longest */
+    private static final int maxLines = 2 * (AimPreview.maxPoints - 1);
+    /** Height above the table the lines are drawn at, just above the cloth */
+    private static final float y = PoolTable.surfaceHeight + 0.002f;
+    /** Colour of the cue ball's path */
+    private static final float[] cueColour = { 1, 1, 1 };
+    /** Colour of the first ball's path */
+    private static final float[] objectColour = { 1, 0.8f, 0.2f };
+
+    /** The lines, two vertices each */
+    private final LineArray lines;
+    /** Coordinates of the lines, used by reference */
+    private final float[] coords = new float[2*3*maxLines];
+    /** Colours of the lines, used by reference */
+    private final float[] colours = new float[2*3*maxLines];
+    /** Number of vertices in use */
+    private int vertices;
+
+    /**
+     * Creates an empty overlay, shows nothing until {@link #show(AimPreview.Prediction)}
+     */
+    public AimOverlay () {
+        super();
+        this.lines = createGeometry();
+        super.setGeometry(this.lines);
+        super.setAppearance(createAppearance());
+    }
+
+    /**
+     * Makes the lines, with room for the longest paths
+     * @return The geometry
+     */
+    private LineArray createGeometry () {
+        int format = GeometryArray.COORDINATES | GeometryArray.COLOR_3 | GeometryArray.BY_REFERENCE;
+        LineArray geom = new LineArray(2*maxLines, format);
+        geom.setCapability(GeometryArray.ALLOW_REF_DATA_WRITE);
+        geom.setCapability(GeometryArray.ALLOW_COUNT_WRITE);
+        geom.setCoordRefFloat(this.coords);
+        geom.setColorRefFloat(this.colours);
+        geom.setValidVertexCount(0);
+        return geom;
+    }
+
+    /**
+     * Makes the appearance of the lines
+     * @return The appearance
+     */
+    private static Appearance createAppearance () {
+        Appearance app = new Appearance();
+        LineAttributes latt = new LineAttributes(
+            2, // Line width
+            LineAttributes.PATTERN_DASH, // Line pattern
+            true // Line anti-aliasing
+        );
+        app.setLineAttributes(latt);
+        return app;
+    }
+
+    /**
+     * Draws the paths of a prediction, replacing what was shown
+     * @param p The prediction, or null to show nothing
+     */
+    public void show (AimPreview.Prediction p) {
+        this.lines.updateData(g -> {
+            int n = 0;
+            if (p != null) {
+                for (int k=1; k<p.getCuePoints(); k++)
+                    n = line(n, p.getCueX(k-1), p.getCueZ(k-1), p.getCueX(k), p.getCueZ(k), cueColour);
+                for (int k=1; k<p.getObjectPoints(); k++)
+                    n = line(n, p.getObjectX(k-1), p.getObjectZ(k-1), p.getObjectX(k), p.getObjectZ(k), objectColour);
+            }
+            this.vertices = n;
+        });
+        this.lines.setValidVertexCount(this.vertices);
+    }
+
+    /**
+     * Removes the paths, showing nothing
+     */
+    public void hide () {
+        if (this.vertices > 0) show(null);
+    }
+
+    /**
+     * Writes a line into the coordinates
+     * @param n Number of vertices written so far
+     * @param x0 x coord of the start
+     * @param z0 z coord of the start
+     * @param x1 x coord of the end
+     * @param z1 z coord of the end
+     * @param colour Colour of the line
+     * @return The new number of vertices
+     */
+    private int line (int n, float x0, float z0, float x1, float z1, float[] colour) {
+        vertex(n, x0, z0, colour);
+        vertex(n+1, x1, z1, colour);
+        return n + 2;
+    }
+
+    /**
+     * Writes a vertex into the coordinates
+     * @param v Index of the vertex
+     * @param x x coord
+     * @param z z coord
+     * @param colour Colour of the vertex
+     */
+    private void vertex (int v, float x, float z, float[] colour) {
+        this.coords[3*v] = x;
+        this.coords[3*v+1] = y;
+        this.coords[3*v+2] = z;
+        System.arraycopy(colour, 0, this.colours, 3*v, 3);
+    }
+
+}
@@ -10,6 +10,8 @@ import org.jogamp.java3d.utils.geometry.Cylinder;
 import org.jogamp.vecmath.Color3f;
 import org.jogamp.vecmath.Vector3d;
 
+import physics.Ball;
+
 /**
  * When constructed, returns a pool ball object.
  * Which is a TransformGroup which contains a sphere and
@@ -19,19 +21,19 @@ public class PoolBall extends TransformGroup {
     /** The Y-up value that all balls rest ON, not at */
     public static final float height = PoolTable.surfaceHeight;
     /** The radius of each pool ball */
-    public static final float radius = 0.02625f;
+    public static final float radius = (float) Ball.radius;
     /** The y-up position for pool balls to spawn and rest AT */
     public static final float yPos = height + radius;
     /** Equal to {@link #radius} squared */
     public static final float radius2 = radius * radius;
-    /** Drag coefficient for slowing down pool balls, spd*dragCo per frame */
-    public static final double dragCo = 0.985;
-    /** Drag constant for slowing down pool balls, units per frame */
-    public static final double dragCa = 0.00001;
+    /** Drag coefficient for slowing down pool balls, spd*dragCo per {@link Ball#frame} */
+    public static final double dragCo = Ball.dragCo;
+    /** Drag constant for slowing down pool balls, metres per second lost per {@link Ball#frame} */
+    public static final double dragCa = Ball.dragCa;
     /** A speed below this limit is considered neglibile and should be set to 0 */
-    public static final double spdLimit = PoolBall.dragCa / PoolBall.dragCo;
+    public static final double spdLimit = Ball.spdLimit;
     /** Equal to {@link #spdLimit} squared */
-    public static final double spdLimit2 = spdLimit * spdLimit;
+    public static final double spdLimit2 = Ball.spdLimit2;
     /** The transform that translates this ball to it's position */
     private Transform3D t;
     /** Switch to allow the changing of the poolball shape */
@@ -44,10 +46,12 @@ public class PoolBall extends TransformGroup {
     private Vector3d prevPos;
     /** Worldspace position of this ball */
     private Vector3d pos;
-    /** The velocity of this ball in units per frame, or 16ms*/
+    /** The velocity of this ball in metres per second */
     private Vector3d vel;
     /** Is true if the ball is currently translating position */
     private boolean inMotion;
+    /** Is true if {@link #pos} has changed since the transform was last written */
+    private boolean dirty;
     
     /**
      * Enum for every different type of Snooker ball
@@ -88,6 +92,17 @@ public class PoolBall extends TransformGroup {
         public static Type PINK   = new Type(6, new Color3f(0.875f, 0.375f,  0.625f ));
         /** There's one black ball worth 7 points */
         public static Type BLACK  = new Type(7, new Color3f(0.125f, 0.125f,  0.125f ));
+        /** Every type, indexed by point value */
+        private static Type[] byValue = { CUE, RED, YELLOW, GREEN, BROWN, BLUE, PINK, BLACK };
+
+        /**
+         * Returns the type of pool ball worth the given number of points
+         * @param pointValue Number of points, 0 for the cue ball
+         * @return The matching type
+         */
+        public static Type fromPointValue (int pointValue) {
+            return byValue[pointValue];
+        }
     }
 
     /**
@@ -211,16 +226,39 @@ public class PoolBall extends TransformGroup {
     }
 
     /**
-     * Sets the position and therefore translation of this pool ball, <br>
-     * and updates the transform this pool ball belongs to.
+     * Sets the position and therefore translation of this pool ball. <p>
+     * Only the numbers are changed, the transform isn't written
+     * until {@link #flushTransform()}, so a ball can be moved any
+     * number of times per frame for the cost of one scene graph update.
      * @param x The new x position of this pool ball
      * @param z The new z position of this pool ball
      */
     public void setPos (double x, double z) {
         this.prevPos.set(this.pos);
+        if (x == this.pos.x && z == this.pos.z) return;
         this.pos.set(x, PoolBall.yPos, z);
+        this.dirty = true;
+    }
+
+    /**
+     * Writes the position into the transform this pool ball belongs to,
+     * if it has changed since the last write.
+     * @return True if the transform was written
+     */
+    public boolean flushTransform () {
+        if (!this.dirty) return false;
         this.t.setTranslation(this.pos);
         super.setTransform(this.t);
+        this.dirty = false;
+        return true;
+    }
+
+    /**
+     * Returns whether the position has changed since the transform was last written
+     * @return True if {@link #flushTransform()} has something to write
+     */
+    public boolean isDirty () {
+        return this.dirty;
     }
 
     /**
@@ -3,6 +3,7 @@ package objects;
 import org.jogamp.java3d.*;
 import org.jogamp.vecmath.*;
 import appearances.TexturedAppearance;
+import physics.Table;
 import org.jogamp.java3d.utils.geometry.Primitive;
 import org.jogamp.java3d.utils.geometry.Cylinder;
 import org.jogamp.java3d.utils.geometry.Box;
@@ -15,9 +16,9 @@ import org.jogamp.java3d.utils.geometry.Box;
  */
 public class PoolTable extends TransformGroup {
     /** Half the length of the pool table */
-    public static final float tableLength_2 = 3.569f/2;
+    public static final float tableLength_2 = (float) Table.length_2;
     /** Half the width of the pool table */
-    public static final float tableWidth_2 = 1.778f/2;
+    public static final float tableWidth_2 = (float) Table.width_2;
     /** Half the thickness of the pool table top board */
     public static final float tableDepth_2 = 0.05f;
     /** The radius of the table legs */
@@ -27,7 +28,7 @@ public class PoolTable extends TransformGroup {
     /** y-up value where the surface of the table is */
     public static final float surfaceHeight = legHeight + tableDepth_2 ;
     /** Radius of any of the pockets */
-    public static final float pocketRadius = (float) (4 * PoolBall.radius / Math.sqrt(2));
+    public static final float pocketRadius = (float) Table.pocketRadius;
     /** Height of the pockets, should be really thin */
     public static final float pocketHeight = 0.001f;
     /** An appearance object containing a felt texure */
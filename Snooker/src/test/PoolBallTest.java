@@ -131,7 +131,7 @@ public class PoolBallTest extends BasicView implements KeyListener {
         int key = arg0.getKeyCode();
         if (key == KeyEvent.VK_R) {
             float angle = (float)(this.fcc.getYaw()+Math.PI);
-            this.pbm.strikeCueBall(angle, 3.0f*0.016f);
+            this.pbm.strikeCueBall(angle, 3.0f);
         }
     }
 